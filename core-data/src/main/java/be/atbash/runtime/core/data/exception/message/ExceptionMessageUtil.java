@@ -15,27 +15,28 @@
  */
 package be.atbash.runtime.core.data.exception.message;
 
+import be.atbash.runtime.core.data.util.MessageTemplate;
+import be.atbash.runtime.core.data.util.MessageTemplateCache;
 import org.slf4j.helpers.MessageFormatter;
 
 import java.util.Locale;
-import java.util.logging.Level;
-import java.util.logging.LogRecord;
-import java.util.logging.SimpleFormatter;
 
 public final class ExceptionMessageUtil {
 
     private static final ExceptionMessageUtil INSTANCE = new ExceptionMessageUtil();
-    private static final SimpleFormatter formatter = new SimpleFormatter();
 
     private final ExceptionResourceBundle exceptionResourceBundle;
+    private final MessageTemplateCache templateCache;
 
     private ExceptionMessageUtil() {
         exceptionResourceBundle = new ExceptionResourceBundle(Locale.getDefault());
-
+        templateCache = new MessageTemplateCache();
     }
 
     public static void addModule(String moduleName) {
         INSTANCE.exceptionResourceBundle.addModule(moduleName);
+        // Keys that were not found (and thus resolved to the key itself) can now be defined.
+        INSTANCE.templateCache.clear();
     }
 
     public static String formatMessage(String key, Object... parameters) {
@@ -46,16 +47,37 @@ public final class ExceptionMessageUtil {
             formattedMessage = MessageFormatter.basicArrayFormat(key, parameters);
 
         } else {
-            // We use the Formatter used by the java.util.logger to format the message.
-            LogRecord logRecord = new LogRecord(Level.INFO, key);
-            logRecord.setParameters(parameters);
-            logRecord.setResourceBundle(INSTANCE.exceptionResourceBundle);
-
-            //SimpleFormatter.formatMessage is thread safe and doesn't use class variables so can be used
-            // without creating a new instance.
-            formattedMessage = formatter.formatMessage(logRecord);
+            // Same rules as the Formatter used by the java.util.logger, but with the parsed pattern cached.
+            formattedMessage = INSTANCE.formatWithBundle(key, parameters);
         }
 
         return formattedMessage;
     }
+
+    private String formatWithBundle(String key, Object[] parameters) {
+        // The ExceptionResourceBundle returns the key itself when not found.
+        MessageTemplate template = templateCache.getTemplate(exceptionResourceBundle, key);
+        String pattern = template == null ? key : template.getPattern();
+        if (template == null || parameters == null || parameters.length == 0 || !hasPlaceholder(pattern)) {
+            return pattern;
+        }
+        try {
+            return template.format(parameters);
+        } catch (Exception e) {
+            // Formatting failed: use the pattern as is.
+            return pattern;
+        }
+    }
+
+    private static boolean hasPlaceholder(String pattern) {
+        int index = -1;
+        int fence = pattern.length() - 1;
+        while ((index = pattern.indexOf('{', index + 1)) > -1 && index < fence) {
+            char digit = pattern.charAt(index + 1);
+            if (digit >= '0' && digit <= '9') {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.core.data.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable mapping from context roots to a value (like the deployment name) that finds the longest context root
+ * that is a prefix of a request path, based on complete path segments. So {@code /api-v2/hello} is not matched by
+ * the context root {@code /api}.
+ * <p>
+ * Create a new instance when the context roots change (deployment or undeployment) and publish it through a
+ * volatile field, lookups don't need any locking and don't allocate.
+ *
+ * @param <V> The type of the value.
+ */
+public final class ContextRootMapping<V> {
+
+    private static final ContextRootMapping<?> EMPTY = new ContextRootMapping<>(new Node<>());
+
+    private final Node<V> root;
+
+    private ContextRootMapping(Node<V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> ContextRootMapping<V> empty() {
+        return (ContextRootMapping<V>) EMPTY;
+    }
+
+    /**
+     * Build the mapping from context root to value.
+     *
+     * @param contextRoots The context roots (like {@code /root} or {@code /}) and their value.
+     * @param <V>          The type of the value.
+     * @return The mapping.
+     */
+    public static <V> ContextRootMapping<V> of(Map<String, V> contextRoots) {
+        Node<V> root = new Node<>();
+        contextRoots.forEach((contextRoot, value) -> root.add(contextRoot, 0, value));
+        return new ContextRootMapping<>(root);
+    }
+
+    /**
+     * Finds the value of the longest context root that matches the path.
+     *
+     * @param path The path of the request, like {@code /root/path/to/endpoint}.
+     * @return The value or null when no context root matches.
+     */
+    public V find(String path) {
+        V result = root.value;
+        Node<V> current = root;
+        int start = skipSlashes(path, 0);
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            current = current.child(path, start, end - start);
+            if (current == null) {
+                break;
+            }
+            if (current.value != null) {
+                result = current.value;
+            }
+            start = skipSlashes(path, end);
+        }
+        return result;
+    }
+
+    private static int skipSlashes(String path, int start) {
+        int result = start;
+        while (result < path.length() && path.charAt(result) == '/') {
+            result++;
+        }
+        return result;
+    }
+
+    private static final class Node<V> {
+
+        // Number of children is small, a linear search with regionMatches avoids allocating the segment String.
+        private final List<String> segments = new ArrayList<>();
+        private final List<Node<V>> children = new ArrayList<>();
+        private V value;
+
+        void add(String contextRoot, int start, V value) {
+            int segmentStart = skipSlashes(contextRoot, start);
+            if (segmentStart >= contextRoot.length()) {
+                this.value = value;
+                return;
+            }
+            int end = contextRoot.indexOf('/', segmentStart);
+            if (end == -1) {
+                end = contextRoot.length();
+            }
+            Node<V> node = child(contextRoot, segmentStart, end - segmentStart);
+            if (node == null) {
+                node = new Node<>();
+                segments.add(contextRoot.substring(segmentStart, end));
+                children.add(node);
+            }
+            node.add(contextRoot, end, value);
+        }
+
+        Node<V> child(String path, int start, int length) {
+            for (int i = 0; i < segments.size(); i++) {
+                String segment = segments.get(i);
+                if (segment.length() == length && path.regionMatches(start, segment, 0, length)) {
+                    return children.get(i);
+                }
+            }
+            return null;
+        }
+    }
+}
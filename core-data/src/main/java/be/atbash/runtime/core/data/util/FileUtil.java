@@ -17,11 +17,13 @@ package be.atbash.runtime.core.data.util;
 
 import java.io.*;
 import java.util.logging.ErrorManager;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 public final class FileUtil {
 
     private static final String GZIP_EXTENSION = ".gz";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
 
     private FileUtil() {
     }
@@ -40,15 +42,26 @@ public final class FileUtil {
     }
 
     public static boolean gzipFile(File infile) {
+        return gzipFile(infile, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Compresses the file into a file with the .gz extension next to it.
+     *
+     * @param infile           The file to compress
+     * @param compressionLevel The level of the compression (0-9) or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @return true when the compressed file is written.
+     */
+    public static boolean gzipFile(File infile, int compressionLevel) {
 
         boolean status = false;
 
         try (
                 FileInputStream fis = new FileInputStream(infile);
                 FileOutputStream fos = new FileOutputStream(infile.getCanonicalPath() + GZIP_EXTENSION);
-                GZIPOutputStream gzos = new GZIPOutputStream(fos)
+                GZIPOutputStream gzos = new LeveledGZIPOutputStream(fos, compressionLevel)
         ) {
-            byte[] buffer = new byte[1024];
+            byte[] buffer = new byte[GZIP_BUFFER_SIZE];
             int len;
             while ((len = fis.read(buffer)) != -1) {
                 gzos.write(buffer, 0, len);
@@ -63,4 +76,15 @@ public final class FileUtil {
 
         return status;
     }
+
+    /**
+     * GZIPOutputStream only allows to define the compression level through the protected Deflater.
+     */
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+        LeveledGZIPOutputStream(OutputStream out, int compressionLevel) throws IOException {
+            super(out, GZIP_BUFFER_SIZE);
+            def.setLevel(compressionLevel);
+        }
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.core.data.util;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A {@link MessageFormat} pattern that is parsed once. Patterns that only contain placeholders like {0} are
+ * formatted by inserting the parameters between the literal parts, other patterns (with quotes or format types)
+ * are formatted by a copy of a prepared {@code MessageFormat}. The result is the same as
+ * {@link MessageFormat#format(String, Object...)}.
+ * <p>
+ * Instances are thread safe.
+ */
+public final class MessageTemplate {
+
+    private final String pattern;
+
+    // null when the pattern has other elements than simple placeholders.
+    private final String[] literals;
+    private final int[] argumentIndexes;
+
+    private volatile MessageFormat messageFormat;
+
+    private MessageTemplate(String pattern) {
+        this.pattern = pattern;
+        List<String> literalParts = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        if (parse(pattern, literalParts, indexes)) {
+            literals = literalParts.toArray(new String[0]);
+            argumentIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+        } else {
+            literals = null;
+            argumentIndexes = null;
+        }
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public String format(Object[] arguments) {
+        if (literals == null || !hasOnlyTextArguments(arguments)) {
+            // MessageFormat is not thread safe, so we format with a copy.
+            return ((MessageFormat) getMessageFormat().clone()).format(arguments);
+        }
+        StringBuilder result = new StringBuilder(pattern.length() + 16 * argumentIndexes.length);
+        for (int i = 0; i < argumentIndexes.length; i++) {
+            result.append(literals[i]);
+            int index = argumentIndexes[i];
+            if (arguments == null || index >= arguments.length) {
+                // Same as MessageFormat, keep the placeholder.
+                result.append('{').append(index).append('}');
+            } else {
+                result.append(arguments[index]);
+            }
+        }
+        result.append(literals[argumentIndexes.length]);
+        return result.toString();
+    }
+
+    private boolean hasOnlyTextArguments(Object[] arguments) {
+        if (arguments == null) {
+            return true;
+        }
+        for (int index : argumentIndexes) {
+            // MessageFormat uses the Locale specific NumberFormat and DateFormat for these.
+            if (index < arguments.length && (arguments[index] instanceof Number || arguments[index] instanceof Date)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MessageFormat getMessageFormat() {
+        MessageFormat result = messageFormat;
+        if (result == null) {
+            result = new MessageFormat(pattern);
+            messageFormat = result;
+        }
+        return result;
+    }
+
+    private static boolean parse(String pattern, List<String> literalParts, List<Integer> indexes) {
+        StringBuilder literal = new StringBuilder();
+        int length = pattern.length();
+        int position = 0;
+        while (position < length) {
+            char c = pattern.charAt(position);
+            if (c == '\'') {
+                // Quoted text, leave it to MessageFormat.
+                return false;
+            }
+            if (c == '{') {
+                int end = pattern.indexOf('}', position);
+                if (end == -1 || end - position < 2 || end - position > 4) {
+                    return false;
+                }
+                int index = 0;
+                for (int i = position + 1; i < end; i++) {
+                    char digit = pattern.charAt(i);
+                    if (digit < '0' || digit > '9') {
+                        // A format type like {0,number}
+                        return false;
+                    }
+                    index = index * 10 + (digit - '0');
+                }
+                literalParts.add(literal.toString());
+                literal.setLength(0);
+                indexes.add(index);
+                position = end + 1;
+            } else {
+                literal.append(c);
+                position++;
+            }
+        }
+        literalParts.add(literal.toString());
+        return true;
+    }
+
+    public static MessageTemplate of(String pattern) {
+        return new MessageTemplate(pattern);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.core.data.util;
+
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the {@link MessageTemplate}s of the messages so that a pattern is only parsed once. The number of entries
+ * is limited, when the limit is reached, templates are created without keeping them.
+ */
+public final class MessageTemplateCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private final Map<String, MessageTemplate> patternTemplates = new ConcurrentHashMap<>();
+    private final Map<ResourceBundle, Map<String, MessageTemplate>> bundleTemplates = new ConcurrentHashMap<>();
+    private final AtomicInteger entries = new AtomicInteger();
+    private final int maxEntries;
+
+    public MessageTemplateCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public MessageTemplateCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * The template for a message that is the pattern itself.
+     */
+    public MessageTemplate getTemplate(String pattern) {
+        MessageTemplate result = patternTemplates.get(pattern);
+        if (result == null) {
+            result = MessageTemplate.of(pattern);
+            store(patternTemplates, pattern, result);
+        }
+        return result;
+    }
+
+    /**
+     * The template for the pattern defined by the key within the ResourceBundle.
+     *
+     * @return The template or null when the key is not found in the bundle.
+     */
+    public MessageTemplate getTemplate(ResourceBundle bundle, String key) {
+        Map<String, MessageTemplate> templates = bundleTemplates.computeIfAbsent(bundle, rb -> new ConcurrentHashMap<>());
+        MessageTemplate result = templates.get(key);
+        if (result == null) {
+            try {
+                result = MessageTemplate.of(bundle.getString(key));
+            } catch (MissingResourceException e) {
+                return null;
+            }
+            store(templates, key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all templates, for example when the content of a ResourceBundle is changed.
+     */
+    public void clear() {
+        patternTemplates.clear();
+        bundleTemplates.clear();
+        entries.set(0);
+    }
+
+    private void store(Map<String, MessageTemplate> templates, String key, MessageTemplate template) {
+        if (entries.get() < maxEntries && templates.putIfAbsent(key, template) == null) {
+            entries.incrementAndGet();
+        }
+    }
+}
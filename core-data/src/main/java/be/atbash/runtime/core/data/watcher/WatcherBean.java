@@ -17,7 +17,8 @@ package be.atbash.runtime.core.data.watcher;
 
 public enum WatcherBean {
     RuntimeWatcherBean("Atbash:type=Runtime", "Info"),
-    ApplicationWatcherBean("Atbash:type=Server.applications", "data");
+    ApplicationWatcherBean("Atbash:type=Server.applications", "data"),
+    LoggingWatcherBean("Atbash:type=Logging", "handler");
 
     private final String hierarchyName;
     private final String name;
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.core.data.watcher.model;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+public class LoggingMon implements LoggingMonMBean {
+
+    // Shared by all handlers so that the count survives a reconfiguration of the logging.
+    private final LongAdder droppedRecords = new LongAdder();
+    private final LongAdder suppressedRecords = new LongAdder();
+
+    private volatile IntSupplier pendingRecords = () -> 0;
+    private volatile int bufferCapacity;
+    private volatile String overflowPolicy = "";
+
+    private final LongAdder rotations = new LongAdder();
+    private volatile long lastRotationSwapMicros;
+    private volatile long lastCompressionMicros;
+
+    public LongAdder getDroppedRecordsCounter() {
+        return droppedRecords;
+    }
+
+    @Override
+    public long getDroppedRecords() {
+        return droppedRecords.sum();
+    }
+
+    public LongAdder getSuppressedRecordsCounter() {
+        return suppressedRecords;
+    }
+
+    @Override
+    public long getSuppressedRecords() {
+        return suppressedRecords.sum();
+    }
+
+    @Override
+    public int getPendingRecords() {
+        return pendingRecords.getAsInt();
+    }
+
+    public void setPendingRecords(IntSupplier pendingRecords) {
+        this.pendingRecords = pendingRecords;
+    }
+
+    @Override
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+
+    public void setBufferCapacity(int bufferCapacity) {
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    @Override
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    @Override
+    public long getRotations() {
+        return rotations.sum();
+    }
+
+    /**
+     * How long the last rotation blocked the writing of the log records (close, rename and open of the file).
+     */
+    @Override
+    public long getLastRotationSwapMicros() {
+        return lastRotationSwapMicros;
+    }
+
+    /**
+     * How long the compression of the last rotated file took, performed in the background.
+     */
+    @Override
+    public long getLastCompressionMicros() {
+        return lastCompressionMicros;
+    }
+
+    public void recordRotation(long swapMicros) {
+        rotations.increment();
+        lastRotationSwapMicros = swapMicros;
+    }
+
+    public void recordCompression(long compressionMicros) {
+        lastCompressionMicros = compressionMicros;
+    }
+}
@@ -13,27 +13,23 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package be.atbash.runtime.metrics.jaxrs;
+package be.atbash.runtime.core.data.watcher.model;
 
-import jakarta.ws.rs.core.MultivaluedHashMap;
-import jakarta.ws.rs.core.MultivaluedMap;
-import jakarta.ws.rs.core.PathSegment;
+public interface LoggingMonMBean {
 
-public class SimplePathSegment implements PathSegment {
+    long getDroppedRecords();
 
-    private final String path;
+    long getSuppressedRecords();
 
-    public SimplePathSegment(String path) {
-        this.path = path;
-    }
+    int getPendingRecords();
 
-    @Override
-    public String getPath() {
-        return path;
-    }
+    int getBufferCapacity();
 
-    @Override
-    public MultivaluedMap<String, String> getMatrixParameters() {
-        return new MultivaluedHashMap<>();
-    }
+    String getOverflowPolicy();
+
+    long getRotations();
+
+    long getLastRotationSwapMicros();
+
+    long getLastCompressionMicros();
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.core.data.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class ContextRootMappingTest {
+
+    @Test
+    void find() {
+        Map<String, String> roots = new HashMap<>();
+        roots.put("/root", "app");
+        ContextRootMapping<String> mapping = ContextRootMapping.of(roots);
+
+        Assertions.assertThat(mapping.find("/root/path/to/endpoint")).isEqualTo("app");
+        Assertions.assertThat(mapping.find("/root")).isEqualTo("app");
+        Assertions.assertThat(mapping.find("/other/path")).isNull();
+    }
+
+    @Test
+    void find_prefixOfOtherRoot() {
+        Map<String, String> roots = new HashMap<>();
+        roots.put("/api", "api");
+        roots.put("/api-v2", "api2");
+        ContextRootMapping<String> mapping = ContextRootMapping.of(roots);
+
+        Assertions.assertThat(mapping.find("/api/hello")).isEqualTo("api");
+        Assertions.assertThat(mapping.find("/api-v2/hello")).isEqualTo("api2");
+        Assertions.assertThat(mapping.find("/apiv3/hello")).isNull();
+    }
+
+    @Test
+    void find_longestPrefix() {
+        Map<String, String> roots = new HashMap<>();
+        roots.put("/", "root");
+        roots.put("/api", "api");
+        roots.put("/api/v2", "api2");
+        ContextRootMapping<String> mapping = ContextRootMapping.of(roots);
+
+        Assertions.assertThat(mapping.find("/api/v2/hello")).isEqualTo("api2");
+        Assertions.assertThat(mapping.find("/api/v3/hello")).isEqualTo("api");
+        Assertions.assertThat(mapping.find("/other")).isEqualTo("root");
+        Assertions.assertThat(mapping.find("/")).isEqualTo("root");
+    }
+
+    @Test
+    void find_empty() {
+        ContextRootMapping<String> mapping = ContextRootMapping.empty();
+
+        Assertions.assertThat(mapping.find("/root/path")).isNull();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.core.data.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+class FileUtilTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void gzipFile() throws IOException {
+        File file = writeLogFile();
+
+        Assertions.assertThat(FileUtil.gzipFile(file)).isTrue();
+
+        File compressed = new File(file.getAbsolutePath() + ".gz");
+        Assertions.assertThat(readCompressed(compressed)).isEqualTo(Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    void gzipFile_compressionLevel() throws IOException {
+        File file = writeLogFile();
+        File compressed = new File(file.getAbsolutePath() + ".gz");
+
+        Assertions.assertThat(FileUtil.gzipFile(file, Deflater.NO_COMPRESSION)).isTrue();
+        long storedSize = compressed.length();
+        Assertions.assertThat(readCompressed(compressed)).isEqualTo(Files.readAllBytes(file.toPath()));
+
+        Assertions.assertThat(FileUtil.gzipFile(file, Deflater.BEST_COMPRESSION)).isTrue();
+        Assertions.assertThat(compressed.length()).isLessThan(storedSize / 10);
+        Assertions.assertThat(readCompressed(compressed)).isEqualTo(Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    void gzipFile_missingFile() {
+        Assertions.assertThat(FileUtil.gzipFile(tempDir.resolve("missing.log").toFile())).isFalse();
+    }
+
+    private File writeLogFile() throws IOException {
+        Path file = tempDir.resolve("runtime.log");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            content.append("[2023-01-01T10:00:00.000+0000] [INFO] Log message number ").append(i).append('\n');
+        }
+        Files.writeString(file, content);
+        return file.toFile();
+    }
+
+    private static byte[] readCompressed(File file) throws IOException {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.core.data.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.text.MessageFormat;
+import java.util.Date;
+
+class MessageTemplateTest {
+
+    @Test
+    void format() {
+        assertSameAsMessageFormat("DEPLOY-101: Deployment of {0} failed with {1}", "app", "error");
+    }
+
+    @Test
+    void format_placeholderFirstAndLast() {
+        assertSameAsMessageFormat("{0} - {1}", "first", "second");
+    }
+
+    @Test
+    void format_repeatedPlaceholder() {
+        assertSameAsMessageFormat("{0} and again {0}", "value");
+    }
+
+    @Test
+    void format_missingParameter() {
+        assertSameAsMessageFormat("{0} and {1}", "value");
+    }
+
+    @Test
+    void format_nullParameters() {
+        MessageTemplate template = MessageTemplate.of("{0} and {1}");
+        Assertions.assertThat(template.format(null)).isEqualTo(MessageFormat.format("{0} and {1}", (Object[]) null));
+    }
+
+    @Test
+    void format_nullParameter() {
+        assertSameAsMessageFormat("Value {0}", (Object) null);
+    }
+
+    @Test
+    void format_numberParameter() {
+        assertSameAsMessageFormat("Count {0}", 12345);
+    }
+
+    @Test
+    void format_dateParameter() {
+        assertSameAsMessageFormat("At {0}", new Date(0));
+    }
+
+    @Test
+    void format_quotes() {
+        assertSameAsMessageFormat("It''s {0} in '{1}'", "value", "ignored");
+    }
+
+    @Test
+    void format_formatType() {
+        assertSameAsMessageFormat("{0,number,#.##} ms", 1.2345);
+    }
+
+    @Test
+    void format_noPlaceholder() {
+        assertSameAsMessageFormat("Plain message", "value");
+    }
+
+    @Test
+    void format_formatTypeWithWrongParameter() {
+        MessageTemplate template = MessageTemplate.of("{0,number} ms");
+        Assertions.assertThatThrownBy(() -> template.format(new Object[]{"text"}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void assertSameAsMessageFormat(String pattern, Object... parameters) {
+        MessageTemplate template = MessageTemplate.of(pattern);
+        Assertions.assertThat(template.format(parameters)).isEqualTo(MessageFormat.format(pattern, parameters));
+        // Second time, from the prepared template.
+        Assertions.assertThat(template.format(parameters)).isEqualTo(MessageFormat.format(pattern, parameters));
+    }
+}
@@ -26,6 +26,7 @@ import be.atbash.runtime.core.data.watcher.WatcherService;
 import be.atbash.runtime.core.module.RuntimeObjectsManager;
 import be.atbash.runtime.jersey.util.PathUtil;
 import be.atbash.runtime.jetty.JettyModule;
+import be.atbash.runtime.jetty.util.HandlerWrapperUtil;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.handler.HandlerCollection;
 import org.eclipse.jetty.servlet.ServletHolder;
@@ -111,6 +112,8 @@ public class JerseyModule implements Module<RuntimeConfiguration> {
         jerseyServlet.setInitOrder(0);
 
 
+        HandlerWrapperUtil.insertHandlerWrappers(deployment, handler);
+
         handlers.addHandler(handler);
         try {
             deployment.setDeployInitiated();
@@ -28,6 +28,7 @@ import be.atbash.runtime.core.data.module.event.Events;
 import be.atbash.runtime.core.data.module.sniffer.Sniffer;
 import be.atbash.runtime.core.data.watcher.WatcherService;
 import be.atbash.runtime.core.module.RuntimeObjectsManager;
+import be.atbash.runtime.jetty.util.HandlerWrapperUtil;
 import be.atbash.runtime.logging.LoggingUtil;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
@@ -121,6 +122,8 @@ public class JettyModule implements Module<RuntimeConfiguration> {
         // TODO: testing required -> So that we have a CDI container for each deployment?
         // handler.setInitParameter("WELD_CONTEXT_ID_KEY", deployment.getDeploymentName());
 
+        HandlerWrapperUtil.insertHandlerWrappers(deployment, handler);
+
         handlers.addHandler(handler);
         try {
             deployment.setDeployInitiated();
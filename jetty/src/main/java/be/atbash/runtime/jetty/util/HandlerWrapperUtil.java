@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.jetty.util;
+
+import be.atbash.runtime.core.data.deployment.ArchiveDeployment;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.webapp.WebAppContext;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Allows other modules to add a {@link HandlerWrapper} to the {@link WebAppContext} of each deployment. Jetty only
+ * allows to change the handlers of a context before it is started, so the modules that create the WebAppContext
+ * call {@link #insertHandlerWrappers(ArchiveDeployment, WebAppContext)} before they start it.
+ */
+public final class HandlerWrapperUtil {
+
+    private static final List<Function<ArchiveDeployment, HandlerWrapper>> FACTORIES = new CopyOnWriteArrayList<>();
+
+    private HandlerWrapperUtil() {
+    }
+
+    /**
+     * Registers a factory that creates the HandlerWrapper for a deployment. The factory can return null when no
+     * handler is required for the deployment.
+     *
+     * @param factory The factory for the HandlerWrapper.
+     */
+    public static void addHandlerWrapper(Function<ArchiveDeployment, HandlerWrapper> factory) {
+        FACTORIES.add(factory);
+    }
+
+    public static void insertHandlerWrappers(ArchiveDeployment deployment, WebAppContext context) {
+        for (Function<ArchiveDeployment, HandlerWrapper> factory : FACTORIES) {
+            HandlerWrapper handlerWrapper = factory.apply(deployment);
+            if (handlerWrapper != null) {
+                context.insertHandler(handlerWrapper);
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging;
+
+/**
+ * Implemented by a Formatter to indicate for which records it prints the source class and method name.
+ */
+public interface CallerDataFormatter {
+
+    /**
+     * The highest level value (see {@link java.util.logging.Level#intValue()}) of the records for which the
+     * formatter prints the source class and method name. Use {@link CallerDataRequirement#ALL_LEVELS} or
+     * {@link CallerDataRequirement#NO_LEVELS} when it is printed for all or none of the records.
+     */
+    int getCallerDataLevel();
+}
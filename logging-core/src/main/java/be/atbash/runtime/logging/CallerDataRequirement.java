@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+
+/**
+ * Keeps track of the log records for which the caller data (source class and method name) needs to be determined.
+ * Finding the caller requires walking the stack, which is only done when the formatter of a registered handler
+ * prints it. When no handler is registered, the caller data is determined for all records.
+ * <p>
+ * The inference can be switched off completely with the system property {@value #SYSTEM_PROPERTY_CALLER_DATA}=false.
+ */
+public final class CallerDataRequirement {
+
+    public static final String SYSTEM_PROPERTY_CALLER_DATA = "runtime.logging.callerData";
+
+    public static final int ALL_LEVELS = Integer.MAX_VALUE;
+    public static final int NO_LEVELS = Integer.MIN_VALUE;
+
+    private static final Map<Handler, Integer> HANDLERS = new ConcurrentHashMap<>();
+
+    private static volatile int levelThreshold = determineThreshold();
+
+    private CallerDataRequirement() {
+    }
+
+    /**
+     * Registers the handler with the caller data requirement of its formatter.
+     */
+    public static void register(Handler handler, Formatter formatter) {
+        HANDLERS.put(handler, getCallerDataLevel(formatter));
+        levelThreshold = determineThreshold();
+    }
+
+    public static void unregister(Handler handler) {
+        if (HANDLERS.remove(handler) != null) {
+            levelThreshold = determineThreshold();
+        }
+    }
+
+    /**
+     * Is the caller data needed by one of the handlers for a record of this level?
+     */
+    public static boolean isRequired(Level level) {
+        return level.intValue() <= levelThreshold;
+    }
+
+    static int getCallerDataLevel(Formatter formatter) {
+        if (formatter instanceof CallerDataFormatter) {
+            return ((CallerDataFormatter) formatter).getCallerDataLevel();
+        }
+        // The JDK SimpleFormatter and unknown Formatters, assume they print it.
+        return ALL_LEVELS;
+    }
+
+    private static int determineThreshold() {
+        if (!Boolean.parseBoolean(System.getProperty(SYSTEM_PROPERTY_CALLER_DATA, "true"))) {
+            return NO_LEVELS;
+        }
+        if (HANDLERS.isEmpty()) {
+            return ALL_LEVELS;
+        }
+        int result = NO_LEVELS;
+        for (int level : HANDLERS.values()) {
+            result = Math.max(result, level);
+        }
+        return result;
+    }
+}
@@ -15,7 +15,9 @@
  */
 package be.atbash.runtime.logging;
 
+import be.atbash.runtime.logging.slf4j.jul.CopyOnWriteMDCAdapter;
 import org.slf4j.MDC;
+import org.slf4j.spi.MDCAdapter;
 
 import java.util.Map;
 import java.util.logging.Level;
@@ -57,8 +59,18 @@ public class EnhancedLogRecord extends LogRecord {
         this.threadName = threadName;
     }
 
+    /**
+     * Keeps the MDC of the current thread, null when it is empty. With the {@link CopyOnWriteMDCAdapter}, the
+     * immutable map is kept without making a copy.
+     */
     public void captureMDC() {
-        mdc = MDC.getCopyOfContextMap();
+        MDCAdapter adapter = MDC.getMDCAdapter();
+        if (adapter instanceof CopyOnWriteMDCAdapter) {
+            mdc = ((CopyOnWriteMDCAdapter) adapter).getContextSnapshot();
+        } else {
+            Map<String, String> copy = MDC.getCopyOfContextMap();
+            mdc = copy == null || copy.isEmpty() ? null : copy;
+        }
     }
 
     public Map<String, String> getMdc() {
@@ -15,17 +15,47 @@
  */
 package be.atbash.runtime.logging.handler;
 
+import be.atbash.runtime.AtbashRuntimeConstant;
+import be.atbash.runtime.logging.CallerDataRequirement;
+import be.atbash.runtime.logging.EnhancedLogRecord;
 import be.atbash.runtime.logging.LoggingUtil;
+import be.atbash.runtime.logging.handler.queue.LogRecordPump;
+import be.atbash.runtime.logging.handler.queue.LogRecordQueue;
+import be.atbash.runtime.logging.handler.queue.OverflowPolicy;
+import be.atbash.runtime.logging.handler.queue.WaitStrategy;
 
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
 import java.util.logging.LogRecord;
 import java.util.logging.SimpleFormatter;
 import java.util.logging.StreamHandler;
 
 /**
  * We need a specific ConsoleHandler to remove the early logged messages as they are already on console.
+ * <p>
+ * The records are written to the console by a background thread, in batches with a single flush, so that a slow
+ * console (like a pipe in a container) doesn't block the logging threads. It uses the buffer size, wait strategy
+ * and overflow policy options of the LogFileHandler.
  */
 public class RuntimeConsoleHandler extends StreamHandler {
 
+    private static final int DEFAULT_BUFFER_SIZE = 16384;
+    private static final int DEFAULT_SAMPLE_RATE = 10;
+    private static final long DEFAULT_DROPPED_SUMMARY_INTERVAL = 60;
+
+    private final LogRecordQueue pendingRecords;
+    private final LogRecordPump pump;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final Object closeDrainLock = new Object();
+
+    // Only accessed by the pump thread
+    private final long droppedSummaryIntervalNanos;
+    private long nextDroppedSummary;
+
     /**
      * Create a {@code ConsoleHandler} for {@code System.err}.
      * <p>
@@ -35,6 +65,36 @@ public class RuntimeConsoleHandler extends StreamHandler {
     public RuntimeConsoleHandler() {
         // configure with specific defaults for ConsoleHandler
         super(LoggingUtil.oStdErrBackup, new SimpleFormatter());
+        CallerDataRequirement.register(this, getFormatter());
+
+        int bufferSize = getIntProperty("bufferSize", DEFAULT_BUFFER_SIZE);
+        if (bufferSize < 2 || bufferSize > 1 << 24) {
+            // Invalid values are reported by the LogFileHandler.
+            bufferSize = DEFAULT_BUFFER_SIZE;
+        }
+        WaitStrategy waitStrategy = getProperty("waitStrategy").flatMap(WaitStrategy::parse).orElse(WaitStrategy.BLOCKING);
+        OverflowPolicy overflowPolicy = getProperty("overflowPolicy").flatMap(OverflowPolicy::parse).orElse(OverflowPolicy.BLOCK);
+        int sampleRate = getIntProperty("overflowSampleRate", DEFAULT_SAMPLE_RATE);
+        long summaryInterval = getIntProperty("droppedSummaryIntervalInSeconds", (int) DEFAULT_DROPPED_SUMMARY_INTERVAL);
+        droppedSummaryIntervalNanos = TimeUnit.SECONDS.toNanos(summaryInterval > 0 ? summaryInterval : DEFAULT_DROPPED_SUMMARY_INTERVAL);
+        nextDroppedSummary = System.nanoTime() + droppedSummaryIntervalNanos;
+
+        pendingRecords = new LogRecordQueue(bufferSize, waitStrategy, overflowPolicy, sampleRate, new LongAdder());
+        pump = new LogRecordPump("RuntimeConsoleHandler log pump", pendingRecords, super::publish, super::flush, this::logDroppedSummary);
+        pump.start();
+    }
+
+    private static Optional<String> getProperty(String name) {
+        String value = LogManager.getLogManager().getProperty(AtbashRuntimeConstant.LOGFILEHANDLER + "." + name);
+        return Optional.ofNullable(value);
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+        try {
+            return getProperty(name).map(String::trim).map(Integer::parseInt).orElse(defaultValue);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 
     /**
@@ -42,28 +102,83 @@ public class RuntimeConsoleHandler extends StreamHandler {
      * <p>
      * The logging request was made initially to a {@code Logger} object,
      * which initialized the {@code LogRecord} and forwarded it here.
+     * The record is written by the background thread.
      *
      * @param record description of the log event. A null record is
      *               silently ignored and is not published
      */
     @Override
-    public synchronized void publish(LogRecord record) {
-        if (record.getMessage() == null || record.getMessage().startsWith("*")) {
+    public void publish(LogRecord record) {
+        if (record == null || record.getMessage() == null || record.getMessage().startsWith("*")) {
             // This is a message from the EarlyLogHandler and should not be written
             //to console again (is already)
             return;
         }
-        super.publish(record);
-        flush();
+        if (!isLoggable(record)) {
+            return;
+        }
+        if (closed.get()) {
+            // Messages during shutdown are written directly.
+            super.publish(record);
+            super.flush();
+            return;
+        }
+        // Captures the thread name and the caller on the logging thread.
+        EnhancedLogRecord enhancedRecord = EnhancedLogRecord.wrap(record, true);
+        boolean added = pendingRecords.enqueue(enhancedRecord);
+        if (closed.get()) {
+            // Closed in the meantime, the record might be added after the last drain of the pump.
+            writeRemainingRecords();
+            if (!added) {
+                super.publish(enhancedRecord);
+                super.flush();
+            }
+        }
+    }
+
+    /**
+     * Writes the records that are added after the pump has written its last records.
+     */
+    private void writeRemainingRecords() {
+        synchronized (closeDrainLock) {
+            // The queue supports only a single consumer, so wait until the pump is finished.
+            if (pump.stop(1, TimeUnit.SECONDS)) {
+                pendingRecords.drainTo(super::publish, 0);
+                super.flush();
+            }
+        }
     }
 
     /**
-     * Override {@code StreamHandler.close} to do a flush but not
+     * Writes a line with the number of records that are dropped by the overflow policy since the previous summary.
+     * Only called by the pump thread.
+     */
+    private void logDroppedSummary() {
+        long currentTime = System.nanoTime();
+        if (currentTime - nextDroppedSummary < 0) {
+            return;
+        }
+        nextDroppedSummary = currentTime + droppedSummaryIntervalNanos;
+        long dropped = pendingRecords.takeDroppedSinceSummary();
+        if (dropped > 0) {
+            LogRecord summary = new LogRecord(Level.WARNING, String.format("LOG-111: %s log records dropped by the overflow policy '%s'", dropped, pendingRecords.getOverflowPolicy()));
+            summary.setLoggerName(RuntimeConsoleHandler.class.getName());
+            super.publish(summary);
+            super.flush();
+        }
+    }
+
+    /**
+     * Override {@code StreamHandler.close} to write out the pending records and do a flush but not
      * to close the output stream.  That is, we do <b>not</b>
      * close {@code System.err}.
      */
     @Override
-    public synchronized void close() {
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            CallerDataRequirement.unregister(this);
+            pump.stop(1, TimeUnit.SECONDS);  // Wait at max 1 sec
+        }
         flush();
     }
 
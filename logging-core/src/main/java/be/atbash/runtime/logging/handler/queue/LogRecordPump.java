@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.queue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.LogRecord;
+
+/**
+ * Background thread that writes the records of a {@link LogRecordQueue} in batches. Each record of a batch is
+ * given to the record writer, followed by a single call to the end of batch action (like a flush of the stream).
+ * When stopped, the remaining records are written before the thread ends.
+ */
+public class LogRecordPump {
+
+    private static final int MAX_DRAIN_BATCH = 256;
+    private static final long PUMP_WAIT_MILLIS = 100;
+
+    private final LogRecordQueue queue;
+    private final Consumer<LogRecord> recordWriter;
+    private final Runnable endOfBatch;
+    private final Runnable periodicAction;
+
+    private final Thread thread;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile boolean stopRequested;
+
+    /**
+     * @param threadName     Name of the (daemon) thread.
+     * @param queue          The records to write, the pump is the single consumer of the queue.
+     * @param recordWriter   Writes a single record.
+     * @param endOfBatch     Called after each batch of records.
+     * @param periodicAction Called at least every 100 ms, also when there are no records (like writing a summary).
+     */
+    public LogRecordPump(String threadName, LogRecordQueue queue, Consumer<LogRecord> recordWriter, Runnable endOfBatch, Runnable periodicAction) {
+        this.queue = queue;
+        this.recordWriter = recordWriter;
+        this.endOfBatch = endOfBatch;
+        this.periodicAction = periodicAction;
+        thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        while (!stopRequested) {
+            try {
+                // Wait a limited time so that the pump can check if it needs to stop.
+                if (queue.awaitRecords(PUMP_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    queue.drainTo(recordWriter, MAX_DRAIN_BATCH);
+                    endOfBatch.run();
+                }
+                periodicAction.run();
+            } catch (Exception e) {
+                // Continue the loop without exiting
+            }
+        }
+        // The ring buffer only supports a single consumer, so the pump writes out the remaining records itself.
+        try {
+            while (queue.drainTo(recordWriter, MAX_DRAIN_BATCH) > 0) {
+                endOfBatch.run();
+            }
+            periodicAction.run();
+            endOfBatch.run();
+        } finally {
+            // Producers blocked on a full queue don't wait forever.
+            queue.consumerStopped();
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Stops the pump after it has written the pending records. Can be called multiple times, it returns immediately
+     * when the pump has already finished.
+     *
+     * @return false when the pump did not finish within the timeout.
+     */
+    public boolean stop(long timeout, TimeUnit unit) {
+        stopRequested = true;
+        queue.wakeUpConsumer();
+        try {
+            return finished.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
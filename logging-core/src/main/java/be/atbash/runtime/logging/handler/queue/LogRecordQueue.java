@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.ErrorManager;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * The pending records of an asynchronous handler. Records are kept in a {@link LogRecordRingBuffer} and the
+ * {@link OverflowPolicy} decides what happens when the buffer fills up.
+ */
+public class LogRecordQueue {
+
+    // Records below CONFIG (FINE, FINER and FINEST) are dropped by DROP_DEBUG.
+    private static final int LOW_LEVEL_THRESHOLD = Level.CONFIG.intValue();
+
+    private final LogRecordRingBuffer<LogRecord> buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final int highWaterMark;
+    private final LongAdder totalDropped;
+
+    private final AtomicLong droppedSinceSummary = new AtomicLong();
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    /**
+     * @param capacity       Number of records that can be pending.
+     * @param waitStrategy   How the consumer waits for records.
+     * @param overflowPolicy What happens when the buffer fills up.
+     * @param sampleRate     Keep 1 in sampleRate records, only used by {@link OverflowPolicy#SAMPLE}.
+     * @param totalDropped   Counter that is increased for each dropped record, can be shared by multiple queues.
+     */
+    public LogRecordQueue(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy, int sampleRate, LongAdder totalDropped) {
+        this.buffer = new LogRecordRingBuffer<>(capacity, waitStrategy);
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.highWaterMark = buffer.getCapacity() - buffer.getCapacity() / 4;
+        this.totalDropped = totalDropped;
+    }
+
+    /**
+     * Adds the record according to the overflow policy.
+     *
+     * @return false when the record is dropped, or not added since the buffer is full and the consumer is stopped.
+     */
+    public boolean enqueue(LogRecord record) {
+        switch (overflowPolicy) {
+            case DROP_DEBUG:
+                if (record.getLevel().intValue() < LOW_LEVEL_THRESHOLD && buffer.size() >= highWaterMark) {
+                    return dropped();
+                }
+                return put(record);
+            case DROP_NEWEST:
+                return buffer.offer(record) || dropped();
+            case SAMPLE:
+                if (buffer.size() >= highWaterMark && sampleCounter.incrementAndGet() % sampleRate != 0) {
+                    return dropped();
+                }
+                return buffer.offer(record) || dropped();
+            case BLOCK:
+            default:
+                return put(record);
+        }
+    }
+
+    private boolean put(LogRecord record) {
+        if (buffer.offer(record)) {
+            return true;
+        }
+        // buffer is full, start waiting.
+        new ErrorManager().error("LogRecordQueue: Queue full. Waiting to submit.", null, ErrorManager.GENERIC_FAILURE);
+        try {
+            // Gives up when the consumer stops, instead of waiting forever.
+            return buffer.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // too bad, record is lost...
+            new ErrorManager().error("LogRecordQueue: Waiting was interrupted. Log record lost.", e, ErrorManager.GENERIC_FAILURE);
+            return dropped();
+        }
+    }
+
+    private boolean dropped() {
+        droppedSinceSummary.incrementAndGet();
+        totalDropped.increment();
+        return false;
+    }
+
+    /**
+     * Returns the number of records that are dropped since the previous call and resets the count.
+     */
+    public long takeDroppedSinceSummary() {
+        return droppedSinceSummary.getAndSet(0);
+    }
+
+    public int drainTo(Consumer<? super LogRecord> consumer, int maxRecords) {
+        return buffer.drainTo(consumer, maxRecords);
+    }
+
+    public boolean awaitRecords(long timeout, TimeUnit unit) {
+        return buffer.awaitElements(timeout, unit);
+    }
+
+    public void wakeUpConsumer() {
+        buffer.wakeUpConsumer();
+    }
+
+    /**
+     * Called by the consumer when it has written its last records, see {@link LogRecordRingBuffer#stopConsumer()}.
+     */
+    public void consumerStopped() {
+        buffer.stopConsumer();
+    }
+
+    public boolean isConsumerStopped() {
+        return buffer.isConsumerStopped();
+    }
+
+    public int size() {
+        return buffer.size();
+    }
+
+    public int getCapacity() {
+        return buffer.getCapacity();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+}
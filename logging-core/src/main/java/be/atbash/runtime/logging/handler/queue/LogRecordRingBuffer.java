@@ -0,0 +1,246 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, pre-allocated, multi-producer single-consumer ring buffer.
+ * <p>
+ * Producers claim a slot with a CAS on the tail sequence and publish the element by advancing the sequence of
+ * that slot. The consumer reads slots in order and hands them back to the producers after draining them. Each
+ * slot sequence indicates if the slot is free for the producer of a certain round or readable by the consumer.
+ * <p>
+ * Only a single thread may call the consumer methods ({@link #drainTo(Consumer, int)} and
+ * {@link #awaitElements(long, TimeUnit)}).
+ *
+ * @param <E> The type of the elements.
+ */
+public class LogRecordRingBuffer<E> {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final WaitStrategy waitStrategy;
+
+    // Only changed by the consumer thread.
+    private volatile long head;
+
+    private volatile Thread consumerThread;
+    private volatile boolean consumerParked;
+    private volatile boolean consumerStopped;
+
+    public LogRecordRingBuffer(int requestedCapacity, WaitStrategy waitStrategy) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Capacity of the ring buffer must be at least 2");
+        }
+        this.capacity = nextPowerOfTwo(requestedCapacity);
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Adds the element when there is space available.
+     *
+     * @return false when the buffer is full.
+     */
+    public boolean offer(E element) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                // The consumer did not yet release the slot of the previous round.
+                return false;
+            }
+            // else another producer claimed this position already, retry with the new tail.
+        }
+        elements.lazySet(index, element);
+        // Volatile write (and not lazySet) so that the read of consumerParked below can't be reordered before it.
+        sequences.set(index, position + 1);
+        if (waitStrategy == WaitStrategy.BLOCKING && consumerParked) {
+            LockSupport.unpark(consumerThread);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the element, waiting until the consumer made space available when the buffer is full.
+     *
+     * @return false when the buffer is full and the consumer is stopped, so no space will become available.
+     */
+    public boolean put(E element) throws InterruptedException {
+        while (!offer(element)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (consumerStopped) {
+                return false;
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Hands at most {@code maxElements} elements to the consumer in the order they were added. A value <= 0
+     * drains all available elements.
+     *
+     * @return the number of elements drained.
+     */
+    public int drainTo(Consumer<? super E> consumer, int maxElements) {
+        int limit = maxElements <= 0 ? Integer.MAX_VALUE : maxElements;
+        long position = head;
+        int count = 0;
+        try {
+            while (count < limit) {
+                int index = (int) (position & mask);
+                if (sequences.get(index) != position + 1) {
+                    // Slot not yet published.
+                    break;
+                }
+                E element = elements.get(index);
+                elements.lazySet(index, null);
+                // Release the slot for the producers of the next round.
+                sequences.lazySet(index, position + capacity);
+                position++;
+                count++;
+                consumer.accept(element);
+            }
+        } finally {
+            head = position;
+        }
+        return count;
+    }
+
+    /**
+     * Waits, according to the {@link WaitStrategy}, until an element is available or the timeout expires.
+     *
+     * @return true when an element is available.
+     */
+    public boolean awaitElements(long timeout, TimeUnit unit) {
+        if (!isEmpty()) {
+            return true;
+        }
+        consumerThread = Thread.currentThread();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int counter = 0;
+        while (isEmpty()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            if (counter < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (waitStrategy == WaitStrategy.BLOCKING) {
+                parkUntilSignalled(remaining);
+            } else if (waitStrategy == WaitStrategy.YIELDING || counter < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(Math.min(PARK_NANOS, remaining));
+            }
+            counter++;
+        }
+        return true;
+    }
+
+    private void parkUntilSignalled(long nanos) {
+        consumerParked = true;
+        try {
+            // Check again after announcing ourselves as parked so that we can't miss the signal of a producer.
+            if (isEmpty()) {
+                LockSupport.parkNanos(this, nanos);
+            }
+        } finally {
+            consumerParked = false;
+        }
+    }
+
+    /**
+     * Wakes up the consumer when it is waiting for elements, for example, to let it check for a shutdown request.
+     */
+    public void wakeUpConsumer() {
+        Thread thread = consumerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Indicates that the consumer doesn't drain the buffer anymore, producers waiting for space give up.
+     */
+    public void stopConsumer() {
+        consumerStopped = true;
+    }
+
+    public boolean isConsumerStopped() {
+        return consumerStopped;
+    }
+
+    public boolean isEmpty() {
+        long position = head;
+        return sequences.get((int) (position & mask)) != position + 1;
+    }
+
+    /**
+     * The number of elements in the buffer. The value is only an estimate when producers or the consumer are active.
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        int highestBit = Integer.highestOneBit(value);
+        if (highestBit == value) {
+            return value;
+        }
+        if (highestBit >= 1 << 30) {
+            throw new IllegalArgumentException("Capacity of the ring buffer is too large: " + value);
+        }
+        return highestBit << 1;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.queue;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Defines what happens with a log record when the buffer of the asynchronous handler is (almost) full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The logging thread waits until there is space available. No records are lost.
+     */
+    BLOCK,
+
+    /**
+     * Records below CONFIG (FINE and lower, DEBUG and TRACE) are dropped when the buffer is 3/4 full. Other records
+     * wait when the buffer is full.
+     */
+    DROP_DEBUG,
+
+    /**
+     * The record is dropped when the buffer is full. The logging thread never waits.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Only 1 in N records is kept when the buffer is 3/4 full, and records are dropped when it is full. The
+     * logging thread never waits.
+     */
+    SAMPLE;
+
+    /**
+     * Parses the value from the logging configuration ('block', 'drop-debug', 'drop-newest', 'sample'), case-insensitive.
+     */
+    public static Optional<OverflowPolicy> parse(String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        String name = value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_');
+        for (OverflowPolicy policy : values()) {
+            if (policy.name().equals(name)) {
+                return Optional.of(policy);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.queue;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Defines how the single consumer of a {@link LogRecordRingBuffer} waits when no records are available.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Parks the consumer until a producer signals a new record. Lowest CPU usage, but every producer
+     * that finds the consumer parked pays for an unpark.
+     */
+    BLOCKING,
+
+    /**
+     * Spins a short while and then keeps yielding the CPU. Lowest latency, but the consumer thread keeps
+     * a core busy.
+     */
+    YIELDING,
+
+    /**
+     * Spins, yields and finally parks for short periods. Producers never need to signal the consumer.
+     */
+    SPIN_THEN_PARK;
+
+    /**
+     * Parses the value from the logging configuration ('blocking', 'yielding', 'spin-then-park'), case-insensitive.
+     */
+    public static Optional<WaitStrategy> parse(String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        String name = value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_');
+        for (WaitStrategy strategy : values()) {
+            if (strategy.name().equals(name)) {
+                return Optional.of(strategy);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.ratelimit;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.LogRecord;
+
+/**
+ * Token bucket per message id or logger that limits the number of log records that are accepted per second. A
+ * bucket holds at most <i>burst</i> tokens and is refilled with <i>ratePerSecond</i> tokens each second. A record is
+ * suppressed when the bucket of its key is empty.
+ * <p>
+ * The check doesn't take a lock, the bucket is a single timestamp that is updated with a compare-and-set.
+ */
+public final class LogRateLimiter {
+
+    // Protection against an unlimited number of loggers, the others share a single bucket.
+    private static final int MAX_BUCKETS = 10_000;
+    private static final String OTHER_KEY = "<other>";
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final RateLimitKey rateLimitKey;
+    private final LongAdder totalSuppressed;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param ratePerSecond   Number of records per second that are accepted for a key.
+     * @param burst           Number of records that are accepted for a key before the rate is applied.
+     * @param rateLimitKey    How the records are grouped.
+     * @param totalSuppressed Counter that is increased for each suppressed record.
+     */
+    public LogRateLimiter(int ratePerSecond, int burst, RateLimitKey rateLimitKey, LongAdder totalSuppressed) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be larger than 0");
+        }
+        this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        this.burstNanos = nanosPerToken * burst;
+        this.rateLimitKey = rateLimitKey;
+        this.totalSuppressed = totalSuppressed;
+    }
+
+    /**
+     * Takes a token from the bucket of the record.
+     *
+     * @return false when the record must be suppressed.
+     */
+    public boolean tryAcquire(LogRecord record) {
+        return tryAcquire(defineKey(record), System.nanoTime());
+    }
+
+    boolean tryAcquire(String key, long now) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= MAX_BUCKETS) {
+                key = OTHER_KEY;
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(now - burstNanos));
+        }
+        if (bucket.tryAcquire(now)) {
+            return true;
+        }
+        bucket.suppressed.increment();
+        totalSuppressed.increment();
+        return false;
+    }
+
+    /**
+     * The number of suppressed records per key since the previous call. Keys without suppressed records are not
+     * included.
+     */
+    public Map<String, Long> takeSuppressedSinceSummary() {
+        Map<String, Long> result = new TreeMap<>();
+        buckets.forEach((key, bucket) -> {
+            long suppressed = bucket.suppressed.sumThenReset();
+            if (suppressed > 0) {
+                result.put(key, suppressed);
+            }
+        });
+        return result;
+    }
+
+    private String defineKey(LogRecord record) {
+        if (rateLimitKey == RateLimitKey.MESSAGE_ID) {
+            String messageId = getMessageId(record.getMessage());
+            if (messageId != null) {
+                return messageId;
+            }
+        }
+        String loggerName = record.getLoggerName();
+        return loggerName == null ? "" : loggerName;
+    }
+
+    /**
+     * The message id when the message is a message id (the key within the ResourceBundle like DEPLOY-108) or starts
+     * with one followed by a colon (like LOG-111: ...).
+     *
+     * @return null when the message has no message id.
+     */
+    static String getMessageId(String message) {
+        if (message == null) {
+            return null;
+        }
+        int length = message.length();
+        int idx = 0;
+        while (idx < length && !isDigit(message.charAt(idx))) {
+            idx++;
+        }
+        // At least one character before the - and the number
+        if (idx < 2 || idx == length || message.charAt(idx - 1) != '-') {
+            return null;
+        }
+        while (idx < length && isDigit(message.charAt(idx))) {
+            idx++;
+        }
+        if (idx < length && message.charAt(idx) != ':') {
+            return null;
+        }
+        return message.substring(0, idx);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private final class Bucket {
+
+        // Theoretical time the bucket is full again. The bucket is empty when it is a burst ahead of the current time.
+        private final AtomicLong fullAt;
+        private final LongAdder suppressed = new LongAdder();
+
+        private Bucket(long fullAt) {
+            this.fullAt = new AtomicLong(fullAt);
+        }
+
+        private boolean tryAcquire(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long start = now - current > 0 ? now : current;
+                long next = start + nanosPerToken;
+                if (next - now > burstNanos) {
+                    return false;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.ratelimit;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Defines how log records are grouped for the rate limit.
+ */
+public enum RateLimitKey {
+
+    /**
+     * Per message id (like DEPLOY-108), records without a message id are grouped per logger.
+     */
+    MESSAGE_ID,
+
+    /**
+     * Per logger name.
+     */
+    LOGGER;
+
+    /**
+     * Parses the value from the logging configuration ('message-id', 'logger'), case-insensitive.
+     */
+    public static Optional<RateLimitKey> parse(String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        String name = value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_');
+        for (RateLimitKey key : values()) {
+            if (key.name().equals(name)) {
+                return Optional.of(key);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -15,25 +15,33 @@
  */
 package be.atbash.runtime.logging.mapping;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class BundleMapping {
 
     private static final BundleMapping INSTANCE = new BundleMapping();
 
-    private final Map<String, String> mappings = new HashMap<>();
+    private final Map<String, String> mappings = new ConcurrentHashMap<>();
+
+    // Resolved bundle names by logger name.
+    private final Map<String, String> bundleNames = new ConcurrentHashMap<>();
 
     private BundleMapping() {
     }
 
     public void addMapping(String oldResourceBundleName, String newResourceBundleName) {
         mappings.put(oldResourceBundleName, newResourceBundleName);
+        bundleNames.clear();
         // TODO Define an interface and SPI that at deployment we give user the opportunity to specify the mapping for their own application.
     }
 
     public String defineBundleName(String name) {
+        return bundleNames.computeIfAbsent(name, this::resolveBundleName);
+    }
+
+    private String resolveBundleName(String name) {
         String finalName = Optional.ofNullable(mappings.get(name)).orElse(name);
         return "msg." + finalName;
     }
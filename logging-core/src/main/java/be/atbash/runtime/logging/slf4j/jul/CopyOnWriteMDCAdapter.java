@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.slf4j.jul;
+
+import org.slf4j.helpers.ThreadLocalMapOfStacks;
+import org.slf4j.spi.MDCAdapter;
+
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MDC adapter that replaces the map of the thread on each change instead of modifying it. Since the map is never
+ * changed afterwards, a log record can keep a reference to it without making a copy.
+ */
+public class CopyOnWriteMDCAdapter implements MDCAdapter {
+
+    // null when the MDC of the thread is empty. Child threads can share the map of the parent as it is immutable.
+    private final InheritableThreadLocal<Map<String, String>> contextMap = new InheritableThreadLocal<>();
+
+    private final ThreadLocalMapOfStacks threadLocalMapOfDeques = new ThreadLocalMapOfStacks();
+
+    @Override
+    public void put(String key, String val) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        Map<String, String> current = contextMap.get();
+        Map<String, String> copy = current == null ? new HashMap<>(4) : new HashMap<>(current);
+        copy.put(key, val);
+        contextMap.set(Collections.unmodifiableMap(copy));
+    }
+
+    @Override
+    public String get(String key) {
+        Map<String, String> current = contextMap.get();
+        return current == null || key == null ? null : current.get(key);
+    }
+
+    @Override
+    public void remove(String key) {
+        Map<String, String> current = contextMap.get();
+        if (current == null || !current.containsKey(key)) {
+            return;
+        }
+        if (current.size() == 1) {
+            contextMap.remove();
+            return;
+        }
+        Map<String, String> copy = new HashMap<>(current);
+        copy.remove(key);
+        contextMap.set(Collections.unmodifiableMap(copy));
+    }
+
+    @Override
+    public void clear() {
+        contextMap.remove();
+    }
+
+    @Override
+    public Map<String, String> getCopyOfContextMap() {
+        Map<String, String> current = contextMap.get();
+        return current == null ? null : new HashMap<>(current);
+    }
+
+    /**
+     * The current, immutable, context map of the thread without making a copy.
+     *
+     * @return null when the MDC is empty.
+     */
+    public Map<String, String> getContextSnapshot() {
+        return contextMap.get();
+    }
+
+    @Override
+    public void setContextMap(Map<String, String> contextMap) {
+        if (contextMap == null || contextMap.isEmpty()) {
+            this.contextMap.remove();
+        } else {
+            this.contextMap.set(Collections.unmodifiableMap(new HashMap<>(contextMap)));
+        }
+    }
+
+    @Override
+    public void pushByKey(String key, String value) {
+        threadLocalMapOfDeques.pushByKey(key, value);
+    }
+
+    @Override
+    public String popByKey(String key) {
+        return threadLocalMapOfDeques.popByKey(key);
+    }
+
+    @Override
+    public Deque<String> getCopyOfDequeByKey(String key) {
+        return threadLocalMapOfDeques.getCopyOfDequeByKey(key);
+    }
+
+    @Override
+    public void clearDequeByKey(String key) {
+        threadLocalMapOfDeques.clearDequeByKey(key);
+    }
+}
@@ -23,6 +23,7 @@ package be.atbash.runtime.logging.slf4j.jul;
  * Original code was in slf4j-jdk14
  */
 
+import be.atbash.runtime.logging.CallerDataRequirement;
 import be.atbash.runtime.logging.EnhancedLogRecord;
 import org.slf4j.Logger;
 import org.slf4j.Marker;
@@ -42,6 +43,7 @@ import java.util.logging.Level;
  * - Message is passed as is to LogRecord to support ResourceBundles
  * - Usage of the EnhancedLogRecord of Atbash Runtime.
  * - Addition of the MDC
+ * - Caller data only determined when a handler needs it, through a StackWalker
  *
  * @author Ceki G&uuml;lc&uuml;
  * @author Peter Royal
@@ -130,7 +132,12 @@ public final class JULLoggerAdapter extends LegacyAbstractLogger implements Loca
         }
         record.setLoggerName(getName());
         record.setThrown(throwable);
-        fillCallerData(fqcn, record);
+        if (CallerDataRequirement.isRequired(julLevel)) {
+            fillCallerData(fqcn, record);
+        } else {
+            // Prevents that the LogRecord infers the caller itself when a handler asks for it.
+            record.setSourceClassName(null);
+        }
         record.captureMDC();
         logger.log(record);
     }
@@ -153,38 +160,24 @@ public final class JULLoggerAdapter extends LegacyAbstractLogger implements Loca
     }
 
     /**
-     * Fill in caller data if possible.
+     * Fill in caller data if possible. Only the top {@value #MAX_CALLER_FRAMES} frames of the stack are inspected.
      *
      * @param record The record to update
      */
     private void fillCallerData(String callerFQCN, EnhancedLogRecord record) {
-        StackTraceElement[] steArray = new Throwable().getStackTrace();
-
-        int selfIndex = -1;
-        for (int i = 0; i < steArray.length; i++) {
-            String className = steArray[i].getClassName();
-
-            if (barrierMatch(callerFQCN, className)) {
-                selfIndex = i;
-                break;
-            }
-        }
+        StackWalker.StackFrame frame = STACK_WALKER.walk(frames -> frames.limit(MAX_CALLER_FRAMES)
+                .dropWhile(f -> !barrierMatch(callerFQCN, f.getClassName()))
+                .dropWhile(f -> barrierMatch(callerFQCN, f.getClassName()))
+                .findFirst()
+                .orElse(null));
 
-        int found = -1;
-        for (int i = selfIndex + 1; i < steArray.length; i++) {
-            String className = steArray[i].getClassName();
-            if (!(barrierMatch(callerFQCN, className))) {
-                found = i;
-                break;
-            }
-        }
-
-        if (found != -1) {
-            StackTraceElement ste = steArray[found];
+        if (frame != null) {
             // setting the class name has the side effect of setting
             // the needToInferCaller variable to false.
-            record.setSourceClassName(ste.getClassName());
-            record.setSourceMethodName(ste.getMethodName());
+            record.setSourceClassName(frame.getClassName());
+            record.setSourceMethodName(frame.getMethodName());
+        } else {
+            record.setSourceClassName(null);
         }
     }
 
@@ -192,6 +185,9 @@ public final class JULLoggerAdapter extends LegacyAbstractLogger implements Loca
         return logger;
     }
 
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+    private static final int MAX_CALLER_FRAMES = 32;
+
     static String SELF = JULLoggerAdapter.class.getName();
 
     static String SUPER = LegacyAbstractLogger.class.getName();
@@ -17,7 +17,6 @@ package be.atbash.runtime.logging.slf4j.jul;
 
 import org.slf4j.ILoggerFactory;
 import org.slf4j.IMarkerFactory;
-import org.slf4j.helpers.BasicMDCAdapter;
 import org.slf4j.helpers.BasicMarkerFactory;
 import org.slf4j.spi.MDCAdapter;
 import org.slf4j.spi.SLF4JServiceProvider;
@@ -59,6 +58,6 @@ public class JULServiceProvider implements SLF4JServiceProvider {
     public void initialize() {
         loggerFactory = new JULLoggerFactory();
         markerFactory = new BasicMarkerFactory();
-        mdcAdapter = new BasicMDCAdapter();
+        mdcAdapter = new CopyOnWriteMDCAdapter();
     }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.queue;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+class LogRecordPumpTest {
+
+    @Test
+    void writesRecordsInBatches() throws InterruptedException {
+        LogRecordQueue queue = new LogRecordQueue(1024, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK, 10, new LongAdder());
+        List<String> written = new CopyOnWriteArrayList<>();
+        AtomicInteger batches = new AtomicInteger();
+        LogRecordPump pump = new LogRecordPump("test pump", queue, r -> written.add(r.getMessage()), batches::incrementAndGet, () -> {
+        });
+        pump.start();
+
+        for (int i = 0; i < 100; i++) {
+            queue.enqueue(new LogRecord(Level.INFO, "Message " + i));
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (written.size() < 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertThat(pump.stop(1, TimeUnit.SECONDS)).isTrue();
+
+        Assertions.assertThat(written).hasSize(100);
+        Assertions.assertThat(written.get(0)).isEqualTo("Message 0");
+        Assertions.assertThat(written.get(99)).isEqualTo("Message 99");
+        // Not a flush for each record.
+        Assertions.assertThat(batches.get()).isBetween(1, 100);
+    }
+
+    @Test
+    void stop_writesPendingRecords() {
+        LogRecordQueue queue = new LogRecordQueue(1024, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK, 10, new LongAdder());
+        List<String> written = new CopyOnWriteArrayList<>();
+        AtomicInteger periodic = new AtomicInteger();
+        LogRecordPump pump = new LogRecordPump("test pump", queue, r -> written.add(r.getMessage()), () -> {
+        }, periodic::incrementAndGet);
+
+        for (int i = 0; i < 500; i++) {
+            queue.enqueue(new LogRecord(Level.INFO, "Message " + i));
+        }
+        pump.start();
+
+        Assertions.assertThat(pump.stop(1, TimeUnit.SECONDS)).isTrue();
+        Assertions.assertThat(written).hasSize(500);
+        Assertions.assertThat(periodic.get()).isPositive();
+    }
+
+    @Test
+    void stop_releasesWaitingProducers() throws InterruptedException {
+        LogRecordQueue queue = new LogRecordQueue(2, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK, 10, new LongAdder());
+        LogRecordPump pump = new LogRecordPump("test pump", queue, r -> {
+        }, () -> {
+        }, () -> {
+        });
+        pump.start();
+        Assertions.assertThat(pump.stop(1, TimeUnit.SECONDS)).isTrue();
+        Assertions.assertThat(queue.isConsumerStopped()).isTrue();
+
+        // Nobody drains the queue anymore, the producer doesn't wait forever for space.
+        queue.enqueue(new LogRecord(Level.INFO, "Message 1"));
+        queue.enqueue(new LogRecord(Level.INFO, "Message 2"));
+        Assertions.assertThat(queue.enqueue(new LogRecord(Level.INFO, "Message 3"))).isFalse();
+
+        // Already finished
+        Assertions.assertThat(pump.stop(0, TimeUnit.SECONDS)).isTrue();
+    }
+}
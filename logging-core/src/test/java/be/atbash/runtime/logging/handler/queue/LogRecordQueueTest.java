@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogRecordQueueTest {
+
+    @Test
+    void enqueue_dropNewest() {
+        LongAdder dropped = new LongAdder();
+        LogRecordQueue queue = new LogRecordQueue(4, WaitStrategy.BLOCKING, OverflowPolicy.DROP_NEWEST, 1, dropped);
+        for (int i = 0; i < 4; i++) {
+            assertThat(queue.enqueue(new LogRecord(Level.INFO, "message " + i))).isTrue();
+        }
+        assertThat(queue.enqueue(new LogRecord(Level.SEVERE, "lost"))).isFalse();
+
+        List<LogRecord> records = new ArrayList<>();
+        queue.drainTo(records::add, 0);
+        assertThat(records).extracting(LogRecord::getMessage).containsExactly("message 0", "message 1", "message 2", "message 3");
+        assertThat(dropped.sum()).isEqualTo(1);
+        assertThat(queue.takeDroppedSinceSummary()).isEqualTo(1);
+        assertThat(queue.takeDroppedSinceSummary()).isEqualTo(0);
+    }
+
+    @Test
+    void enqueue_dropDebug() {
+        LongAdder dropped = new LongAdder();
+        LogRecordQueue queue = new LogRecordQueue(8, WaitStrategy.BLOCKING, OverflowPolicy.DROP_DEBUG, 1, dropped);
+        for (int i = 0; i < 6; i++) {
+            assertThat(queue.enqueue(new LogRecord(Level.FINE, "debug " + i))).isTrue();
+        }
+        // 3/4 full, debug records are dropped but others are still accepted.
+        assertThat(queue.enqueue(new LogRecord(Level.FINEST, "trace"))).isFalse();
+        assertThat(queue.enqueue(new LogRecord(Level.FINE, "debug"))).isFalse();
+        assertThat(queue.enqueue(new LogRecord(Level.CONFIG, "config"))).isTrue();
+        assertThat(queue.enqueue(new LogRecord(Level.INFO, "info"))).isTrue();
+
+        assertThat(queue.size()).isEqualTo(8);
+        assertThat(dropped.sum()).isEqualTo(2);
+    }
+
+    @Test
+    void enqueue_sample() {
+        LongAdder dropped = new LongAdder();
+        LogRecordQueue queue = new LogRecordQueue(16, WaitStrategy.BLOCKING, OverflowPolicy.SAMPLE, 2, dropped);
+        for (int i = 0; i < 12; i++) {
+            assertThat(queue.enqueue(new LogRecord(Level.INFO, "message " + i))).isTrue();
+        }
+        // 3/4 full, 1 in 2 records is kept.
+        int kept = 0;
+        for (int i = 0; i < 8; i++) {
+            if (queue.enqueue(new LogRecord(Level.INFO, "sampled " + i))) {
+                kept++;
+            }
+        }
+        assertThat(kept).isEqualTo(4);
+        assertThat(dropped.sum()).isEqualTo(4);
+        assertThat(queue.size()).isEqualTo(16);
+
+        // Full, also the sampled records are dropped.
+        assertThat(queue.enqueue(new LogRecord(Level.INFO, "full 1"))).isFalse();
+        assertThat(queue.enqueue(new LogRecord(Level.INFO, "full 2"))).isFalse();
+        assertThat(dropped.sum()).isEqualTo(6);
+    }
+
+    @Test
+    void enqueue_sharedCounter() {
+        LongAdder dropped = new LongAdder();
+        LogRecordQueue queue1 = new LogRecordQueue(2, WaitStrategy.BLOCKING, OverflowPolicy.DROP_NEWEST, 1, dropped);
+        LogRecordQueue queue2 = new LogRecordQueue(2, WaitStrategy.BLOCKING, OverflowPolicy.DROP_NEWEST, 1, dropped);
+        for (int i = 0; i < 3; i++) {
+            queue1.enqueue(new LogRecord(Level.INFO, "message"));
+            queue2.enqueue(new LogRecord(Level.INFO, "message"));
+        }
+        assertThat(dropped.sum()).isEqualTo(2);
+        assertThat(queue1.takeDroppedSinceSummary()).isEqualTo(1);
+    }
+
+    @Test
+    void enqueue_blockGivesUpWhenConsumerStopped() throws InterruptedException {
+        LogRecordQueue queue = new LogRecordQueue(2, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK, 1, new LongAdder());
+        assertThat(queue.enqueue(new LogRecord(Level.INFO, "message 1"))).isTrue();
+        assertThat(queue.enqueue(new LogRecord(Level.INFO, "message 2"))).isTrue();
+
+        AtomicBoolean added = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> added.set(queue.enqueue(new LogRecord(Level.INFO, "message 3"))));
+        producer.start();
+        // Producer waits for space.
+        producer.join(200);
+        assertThat(producer.isAlive()).isTrue();
+
+        queue.consumerStopped();
+        producer.join(1000);
+        assertThat(producer.isAlive()).isFalse();
+        assertThat(added.get()).isFalse();
+        assertThat(queue.isConsumerStopped()).isTrue();
+    }
+
+    @Test
+    void parse() {
+        assertThat(OverflowPolicy.parse("block")).contains(OverflowPolicy.BLOCK);
+        assertThat(OverflowPolicy.parse("drop-debug")).contains(OverflowPolicy.DROP_DEBUG);
+        assertThat(OverflowPolicy.parse("DROP_NEWEST")).contains(OverflowPolicy.DROP_NEWEST);
+        assertThat(OverflowPolicy.parse("sample")).contains(OverflowPolicy.SAMPLE);
+        assertThat(OverflowPolicy.parse("drop-oldest")).isEmpty();
+    }
+}
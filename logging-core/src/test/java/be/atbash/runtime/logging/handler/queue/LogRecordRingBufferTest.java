@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogRecordRingBufferTest {
+
+    @Test
+    void capacity_roundedToPowerOfTwo() {
+        LogRecordRingBuffer<String> buffer = new LogRecordRingBuffer<>(1000, WaitStrategy.BLOCKING);
+        assertThat(buffer.getCapacity()).isEqualTo(1024);
+    }
+
+    @Test
+    void offer_fullBuffer() {
+        LogRecordRingBuffer<Integer> buffer = new LogRecordRingBuffer<>(4, WaitStrategy.BLOCKING);
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+        assertThat(buffer.offer(4)).isFalse();
+        assertThat(buffer.size()).isEqualTo(4);
+
+        List<Integer> drained = new ArrayList<>();
+        assertThat(buffer.drainTo(drained::add, 2)).isEqualTo(2);
+        assertThat(buffer.offer(4)).isTrue();
+        assertThat(buffer.offer(5)).isTrue();
+        assertThat(buffer.offer(6)).isFalse();
+
+        assertThat(buffer.drainTo(drained::add, 0)).isEqualTo(4);
+        assertThat(drained).containsExactly(0, 1, 2, 3, 4, 5);
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
+    @Test
+    void drainTo_wrapsAround() {
+        LogRecordRingBuffer<Integer> buffer = new LogRecordRingBuffer<>(8, WaitStrategy.YIELDING);
+        List<Integer> drained = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+            assertThat(buffer.offer(-i)).isTrue();
+            buffer.drainTo(drained::add, 0);
+        }
+        assertThat(drained).hasSize(200);
+        assertThat(drained.get(198)).isEqualTo(99);
+        assertThat(drained.get(199)).isEqualTo(-99);
+    }
+
+    @Test
+    void awaitElements_timeout() {
+        LogRecordRingBuffer<String> buffer = new LogRecordRingBuffer<>(8, WaitStrategy.BLOCKING);
+        assertThat(buffer.awaitElements(20, TimeUnit.MILLISECONDS)).isFalse();
+
+        buffer.offer("test");
+        assertThat(buffer.awaitElements(20, TimeUnit.MILLISECONDS)).isTrue();
+    }
+
+    @ParameterizedTest
+    @EnumSource(WaitStrategy.class)
+    void multipleProducers(WaitStrategy waitStrategy) throws InterruptedException {
+        int producers = 4;
+        int perProducer = 20000;
+        // Small buffer so that producers also have to wait for the consumer.
+        LogRecordRingBuffer<long[]> buffer = new LogRecordRingBuffer<>(64, waitStrategy);
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            executor.submit(() -> {
+                start.await();
+                for (long i = 0; i < perProducer; i++) {
+                    buffer.put(new long[]{producer, i});
+                }
+                return null;
+            });
+        }
+
+        long[] lastSeen = new long[producers];
+        Arrays.fill(lastSeen, -1);
+        boolean[] outOfOrder = new boolean[1];
+        int received = 0;
+        start.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (received < producers * perProducer && System.nanoTime() < deadline) {
+            if (buffer.awaitElements(100, TimeUnit.MILLISECONDS)) {
+                received += buffer.drainTo(element -> {
+                    int producer = (int) element[0];
+                    if (element[1] != lastSeen[producer] + 1) {
+                        outOfOrder[0] = true;
+                    }
+                    lastSeen[producer] = element[1];
+                }, 32);
+            }
+        }
+        executor.shutdown();
+
+        assertThat(received).isEqualTo(producers * perProducer);
+        assertThat(outOfOrder[0]).isFalse();
+        assertThat(buffer.isEmpty()).isTrue();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void wakeUpConsumer() throws InterruptedException {
+        LogRecordRingBuffer<String> buffer = new LogRecordRingBuffer<>(8, WaitStrategy.BLOCKING);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            buffer.awaitElements(1, TimeUnit.MINUTES);
+            done.countDown();
+        });
+        consumer.start();
+        Thread.sleep(50);
+
+        buffer.offer("wake up");
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void parse() {
+        assertThat(WaitStrategy.parse("blocking")).contains(WaitStrategy.BLOCKING);
+        assertThat(WaitStrategy.parse(" Yielding ")).contains(WaitStrategy.YIELDING);
+        assertThat(WaitStrategy.parse("spin-then-park")).contains(WaitStrategy.SPIN_THEN_PARK);
+        assertThat(WaitStrategy.parse("busy")).isEmpty();
+        assertThat(WaitStrategy.parse(null)).isEmpty();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.ratelimit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+class LogRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void tryAcquire_burst() {
+        LongAdder suppressed = new LongAdder();
+        LogRateLimiter limiter = new LogRateLimiter(10, 5, RateLimitKey.MESSAGE_ID, suppressed);
+
+        long now = 1000 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertThat(limiter.tryAcquire("JWT-050", now)).isTrue();
+        }
+        Assertions.assertThat(limiter.tryAcquire("JWT-050", now)).isFalse();
+        Assertions.assertThat(limiter.tryAcquire("JWT-050", now)).isFalse();
+        Assertions.assertThat(suppressed.sum()).isEqualTo(2);
+
+        // Other key has its own bucket
+        Assertions.assertThat(limiter.tryAcquire("RC-011", now)).isTrue();
+    }
+
+    @Test
+    void tryAcquire_refill() {
+        LogRateLimiter limiter = new LogRateLimiter(10, 1, RateLimitKey.MESSAGE_ID, new LongAdder());
+
+        long now = 1000 * SECOND;
+        Assertions.assertThat(limiter.tryAcquire("JWT-050", now)).isTrue();
+        Assertions.assertThat(limiter.tryAcquire("JWT-050", now + SECOND / 20)).isFalse();
+        // After 100 ms, a new token is available.
+        Assertions.assertThat(limiter.tryAcquire("JWT-050", now + SECOND / 10)).isTrue();
+        Assertions.assertThat(limiter.tryAcquire("JWT-050", now + SECOND / 10)).isFalse();
+    }
+
+    @Test
+    void takeSuppressedSinceSummary() {
+        LogRateLimiter limiter = new LogRateLimiter(1, 1, RateLimitKey.MESSAGE_ID, new LongAdder());
+
+        long now = 1000 * SECOND;
+        limiter.tryAcquire("JWT-050", now);
+        limiter.tryAcquire("JWT-050", now);
+        limiter.tryAcquire("JWT-050", now);
+        limiter.tryAcquire("RC-011", now);
+
+        Assertions.assertThat(limiter.takeSuppressedSinceSummary()).containsOnly(Assertions.entry("JWT-050", 2L));
+        Assertions.assertThat(limiter.takeSuppressedSinceSummary()).isEmpty();
+    }
+
+    @Test
+    void tryAcquire_keyedByLogger() {
+        LogRateLimiter limiter = new LogRateLimiter(1, 1, RateLimitKey.LOGGER, new LongAdder());
+
+        Assertions.assertThat(limiter.tryAcquire(record("be.atbash.Service", "JWT-050"))).isTrue();
+        Assertions.assertThat(limiter.tryAcquire(record("be.atbash.Service", "RC-011"))).isFalse();
+        Assertions.assertThat(limiter.tryAcquire(record("be.atbash.Other", "RC-011"))).isTrue();
+    }
+
+    @Test
+    void tryAcquire_messageIdFallbackToLogger() {
+        LogRateLimiter limiter = new LogRateLimiter(1, 1, RateLimitKey.MESSAGE_ID, new LongAdder());
+
+        Assertions.assertThat(limiter.tryAcquire(record("be.atbash.Service", "Plain message"))).isTrue();
+        Assertions.assertThat(limiter.tryAcquire(record("be.atbash.Service", "Other message"))).isFalse();
+        Assertions.assertThat(limiter.tryAcquire(record("be.atbash.Service", "JWT-050"))).isTrue();
+        Assertions.assertThat(limiter.takeSuppressedSinceSummary()).containsOnlyKeys("be.atbash.Service");
+    }
+
+    @Test
+    void getMessageId() {
+        Assertions.assertThat(LogRateLimiter.getMessageId("DEPLOY-108")).isEqualTo("DEPLOY-108");
+        Assertions.assertThat(LogRateLimiter.getMessageId("LOG-111: 5 log records dropped")).isEqualTo("LOG-111");
+        Assertions.assertThat(LogRateLimiter.getMessageId("Just a message")).isNull();
+        Assertions.assertThat(LogRateLimiter.getMessageId("LOG-111 without colon")).isNull();
+        Assertions.assertThat(LogRateLimiter.getMessageId("-011")).isNull();
+        Assertions.assertThat(LogRateLimiter.getMessageId(null)).isNull();
+    }
+
+    private static LogRecord record(String loggerName, String message) {
+        LogRecord result = new LogRecord(Level.INFO, message);
+        result.setLoggerName(loggerName);
+        return result;
+    }
+}
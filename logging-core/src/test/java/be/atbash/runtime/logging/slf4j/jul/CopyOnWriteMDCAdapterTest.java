@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.slf4j.jul;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+class CopyOnWriteMDCAdapterTest {
+
+    @Test
+    void getContextSnapshot_emptyIsNull() {
+        CopyOnWriteMDCAdapter adapter = new CopyOnWriteMDCAdapter();
+        Assertions.assertThat(adapter.getContextSnapshot()).isNull();
+        Assertions.assertThat(adapter.getCopyOfContextMap()).isNull();
+
+        adapter.put("key", "value");
+        adapter.remove("key");
+        Assertions.assertThat(adapter.getContextSnapshot()).isNull();
+    }
+
+    @Test
+    void getContextSnapshot_notChangedByLaterPut() {
+        CopyOnWriteMDCAdapter adapter = new CopyOnWriteMDCAdapter();
+        adapter.put("key1", "value1");
+
+        Map<String, String> snapshot = adapter.getContextSnapshot();
+        adapter.put("key2", "value2");
+        adapter.remove("key1");
+
+        Assertions.assertThat(snapshot).containsOnly(Assertions.entry("key1", "value1"));
+        Assertions.assertThat(adapter.getContextSnapshot()).containsOnly(Assertions.entry("key2", "value2"));
+        Assertions.assertThatThrownBy(() -> snapshot.put("key3", "value3"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void setContextMap() {
+        CopyOnWriteMDCAdapter adapter = new CopyOnWriteMDCAdapter();
+        adapter.setContextMap(Map.of("key", "value"));
+        Assertions.assertThat(adapter.get("key")).isEqualTo("value");
+
+        adapter.clear();
+        Assertions.assertThat(adapter.get("key")).isNull();
+        Assertions.assertThat(adapter.getContextSnapshot()).isNull();
+    }
+}
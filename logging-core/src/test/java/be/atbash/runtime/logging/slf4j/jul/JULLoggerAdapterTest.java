@@ -15,6 +15,8 @@
  */
 package be.atbash.runtime.logging.slf4j.jul;
 
+import be.atbash.runtime.logging.CallerDataFormatter;
+import be.atbash.runtime.logging.CallerDataRequirement;
 import be.atbash.runtime.logging.EnhancedLogRecord;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
@@ -29,7 +31,11 @@ import org.slf4j.MDC;
 import org.slf4j.event.Level;
 
 import java.util.ResourceBundle;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
+import java.util.logging.StreamHandler;
 
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.when;
@@ -158,4 +164,64 @@ class JULLoggerAdapterTest {
         Assertions.assertThat(capture.getSourceMethodName()).isEqualTo("log_propagateParameters");
         Assertions.assertThat(capture.getMdc()).isNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    void log_callerDataNotRequired() {
+        when(loggerMock.isLoggable(java.util.logging.Level.INFO)).thenReturn(true);
+        when(loggerMock.getName()).thenReturn("loggerName");
+        JULLoggerAdapter adapter = new JULLoggerAdapter(loggerMock);
+
+        Handler handler = new StreamHandler();
+        CallerDataRequirement.register(handler, new TestFormatter(java.util.logging.Level.FINE.intValue()));
+        try {
+            adapter.log(null, this.getClass().getName(), 20, "Basic message", new Object[]{}, null);
+        } finally {
+            CallerDataRequirement.unregister(handler);
+        }
+        Mockito.verify(loggerMock).log(enhancedLogRecordCaptor.capture());
+
+        EnhancedLogRecord capture = enhancedLogRecordCaptor.getValue();
+        Assertions.assertThat(capture.getMessage()).isEqualTo("Basic message");
+        Assertions.assertThat(capture.getSourceClassName()).isNull();
+        Assertions.assertThat(capture.getSourceMethodName()).isNull();
+    }
+
+    @Test
+    void log_callerDataRequiredForLevel() {
+        when(loggerMock.isLoggable(java.util.logging.Level.FINE)).thenReturn(true);
+        when(loggerMock.getName()).thenReturn("loggerName");
+        JULLoggerAdapter adapter = new JULLoggerAdapter(loggerMock);
+
+        Handler handler = new StreamHandler();
+        CallerDataRequirement.register(handler, new TestFormatter(java.util.logging.Level.FINE.intValue()));
+        try {
+            adapter.log(null, this.getClass().getName(), 10, "Debug message", new Object[]{}, null);
+        } finally {
+            CallerDataRequirement.unregister(handler);
+        }
+        Mockito.verify(loggerMock).log(enhancedLogRecordCaptor.capture());
+
+        EnhancedLogRecord capture = enhancedLogRecordCaptor.getValue();
+        Assertions.assertThat(capture.getSourceClassName()).isEqualTo(this.getClass().getName());
+        Assertions.assertThat(capture.getSourceMethodName()).isEqualTo("log_callerDataRequiredForLevel");
+    }
+
+    private static class TestFormatter extends Formatter implements CallerDataFormatter {
+
+        private final int callerDataLevel;
+
+        TestFormatter(int callerDataLevel) {
+            this.callerDataLevel = callerDataLevel;
+        }
+
+        @Override
+        public int getCallerDataLevel() {
+            return callerDataLevel;
+        }
+
+        @Override
+        public String format(LogRecord record) {
+            return record.getMessage();
+        }
+    }
+}
@@ -17,6 +17,7 @@ package be.atbash.runtime.logging;
 
 import be.atbash.runtime.AtbashRuntimeConstant;
 import be.atbash.runtime.core.data.RuntimeConfiguration;
+import be.atbash.runtime.core.data.watcher.model.LoggingMon;
 import be.atbash.runtime.logging.earlylog.EarlyLogHandler;
 import be.atbash.runtime.logging.earlylog.EarlyLogRecords;
 import be.atbash.runtime.logging.handler.LogFileHandler;
@@ -37,6 +38,8 @@ public final class LoggingManager {
 
     private EarlyLogHandler handler;
 
+    private final LoggingMon loggingMon = new LoggingMon();
+
     private LoggingManager() {
     }
 
@@ -69,7 +72,8 @@ public final class LoggingManager {
         rootLogger.removeHandler(handler);
 
         java.util.logging.Logger logger = java.util.logging.Logger.getLogger("be.atbash.runtime");
-        EarlyLogRecords.getEarlyMessages().forEach(logger::log);
+        // In order, and the records are released afterwards.
+        EarlyLogRecords.replay(logger::log);
     }
 
     public void configureLogging(RuntimeConfiguration configuration) {
@@ -117,6 +121,13 @@ public final class LoggingManager {
 
     }
 
+    /**
+     * The statistics of the asynchronous log handlers, exposed through JMX.
+     */
+    public LoggingMon getLoggingMon() {
+        return loggingMon;
+    }
+
     public static LoggingManager getInstance() {
         return INSTANCE;
     }
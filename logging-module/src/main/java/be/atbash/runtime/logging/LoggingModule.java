@@ -20,6 +20,7 @@ import be.atbash.runtime.core.data.Specification;
 import be.atbash.runtime.core.data.module.Module;
 import be.atbash.runtime.core.data.module.event.EventPayload;
 import be.atbash.runtime.core.data.module.sniffer.Sniffer;
+import be.atbash.runtime.core.data.watcher.WatcherBean;
 import be.atbash.runtime.core.data.watcher.WatcherService;
 import be.atbash.runtime.core.module.RuntimeObjectsManager;
 import org.slf4j.Logger;
@@ -88,6 +89,8 @@ public class LoggingModule implements Module<RuntimeConfiguration> {
 
         LoggingManager.getInstance().removeEarlyLogHandler();
 
+        watcherService.registerBean(WatcherBean.LoggingWatcherBean, LoggingManager.getInstance().getLoggingMon());
+
         watcherService.logWatcherEvent(Module.LOGGING_MODULE_NAME, LoggingUtil.formatMessage(LOGGER, "LOG-1002"), false);
 
     }
@@ -16,27 +16,69 @@
 package be.atbash.runtime.logging.earlylog;
 
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
 /**
- *
+ * Keeps the log records of the startup, before the logging is configured, so that they can be written to the log
+ * file afterwards. Only the last {@value #CAPACITY} records are kept.
  */
 public class EarlyLogRecords {
-    private final static List<LogRecord> messages =  new CopyOnWriteArrayList<>();
+
+    private static final int CAPACITY = 10_000;
+
+    private static final Object LOCK = new Object();
+
+    // Grows up to CAPACITY, oldest record is removed when full.
+    private static ArrayDeque<LogRecord> messages = new ArrayDeque<>();
+    private static long discarded;
 
     private EarlyLogRecords() {
         // no instances allowed...
     }
 
     public static void add(LogRecord logRecord) {
-        messages.add(logRecord);
-
+        synchronized (LOCK) {
+            if (messages.size() == CAPACITY) {
+                messages.removeFirst();
+                discarded++;
+            }
+            messages.addLast(logRecord);
+        }
     }
 
+    /**
+     * A copy of the records that are kept.
+     */
     public static List<LogRecord> getEarlyMessages() {
-        return messages;
+        synchronized (LOCK) {
+            return new ArrayList<>(messages);
+        }
+    }
+
+    /**
+     * Hands the records over in the order they are logged and releases them. When records were discarded because
+     * the buffer was full, a record mentioning the number of discarded records is given first.
+     */
+    public static void replay(Consumer<LogRecord> consumer) {
+        ArrayDeque<LogRecord> records;
+        long discardedRecords;
+        synchronized (LOCK) {
+            records = messages;
+            discardedRecords = discarded;
+            messages = new ArrayDeque<>();
+            discarded = 0;
+        }
+        if (discardedRecords > 0) {
+            LogRecord record = new LogRecord(Level.WARNING, String.format("LOG-119: %s early log records discarded, only the last %s are kept", discardedRecords, CAPACITY));
+            record.setLoggerName(EarlyLogRecords.class.getName());
+            consumer.accept(record);
+        }
+        records.forEach(consumer);
     }
 
 }
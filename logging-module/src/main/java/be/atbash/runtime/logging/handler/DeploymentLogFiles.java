@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler;
+
+import be.atbash.runtime.core.data.deployment.AbstractDeployment;
+import be.atbash.runtime.core.data.deployment.ArchiveDeployment;
+import be.atbash.runtime.logging.util.LogUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.logging.LogRecord;
+
+/**
+ * Routes the log records of a deployment to a separate log file. A record belongs to a deployment when the logger
+ * name starts with one of the prefixes defined in the `deployment.<name>.loggers` option, or when it is logged from
+ * a thread that has the deployment ClassLoader as context ClassLoader. Each file has its own {@link LogFileHandler},
+ * and thus its own buffer, pump thread and rotation.
+ */
+final class DeploymentLogFiles {
+
+    private final Function<String, LogFileHandler> handlerFactory;
+
+    // Copy on write, read for each published record.
+    private volatile DeploymentRoute[] routes = new DeploymentRoute[0];
+
+    DeploymentLogFiles(Function<String, LogFileHandler> handlerFactory) {
+        this.handlerFactory = handlerFactory;
+    }
+
+    /**
+     * The handler for the deployment of the record.
+     *
+     * @return null when the record doesn't belong to a deployment with a separate log file.
+     */
+    LogFileHandler findHandler(LogRecord record) {
+        DeploymentRoute[] current = routes;
+        if (current.length == 0) {
+            return null;
+        }
+        String loggerName = record.getLoggerName();
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        for (DeploymentRoute route : current) {
+            if (route.matches(loggerName, contextClassLoader)) {
+                return route.handler;
+            }
+        }
+        return null;
+    }
+
+    synchronized void open(AbstractDeployment deployment) {
+        String deploymentName = deployment.getDeploymentName();
+        close(deploymentName);
+
+        String loggers = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("deployment") + "." + deploymentName + ".loggers").orElse("");
+        String[] loggerPrefixes = Arrays.stream(loggers.split(","))
+                .map(String::trim)
+                .filter(prefix -> !prefix.isEmpty())
+                .toArray(String[]::new);
+        ArchiveDeployment archiveDeployment = deployment instanceof ArchiveDeployment ? (ArchiveDeployment) deployment : null;
+
+        LogFileHandler handler = handlerFactory.apply(deploymentName);
+        List<DeploymentRoute> newRoutes = new ArrayList<>(Arrays.asList(routes));
+        newRoutes.add(new DeploymentRoute(deploymentName, loggerPrefixes, archiveDeployment, handler));
+        routes = newRoutes.toArray(new DeploymentRoute[0]);
+    }
+
+    synchronized void close(String deploymentName) {
+        List<DeploymentRoute> newRoutes = new ArrayList<>(Arrays.asList(routes));
+        DeploymentRoute removed = null;
+        for (DeploymentRoute route : newRoutes) {
+            if (route.deploymentName.equals(deploymentName)) {
+                removed = route;
+            }
+        }
+        if (removed == null) {
+            return;
+        }
+        newRoutes.remove(removed);
+        routes = newRoutes.toArray(new DeploymentRoute[0]);
+        // Records published in the meantime by threads that still see the old routes are ignored by the closed handler.
+        removed.handler.close();
+    }
+
+    synchronized void closeAll() {
+        DeploymentRoute[] current = routes;
+        routes = new DeploymentRoute[0];
+        for (DeploymentRoute route : current) {
+            route.handler.close();
+        }
+    }
+
+    /**
+     * The name of the log file for the deployment, characters that are not safe in a file name are replaced. The
+     * history files of a log file are the files that start with its name, so a name that overlaps with the name of the
+     * runtime log file (like the deployment {@code runtime}) gets the prefix {@code deployment-}.
+     *
+     * @param deploymentName     The name of the deployment.
+     * @param runtimeLogFileName The name of the runtime log file, without directory.
+     */
+    static String defineFileName(String deploymentName, String runtimeLogFileName) {
+        String result = deploymentName.replaceAll("[^A-Za-z0-9._-]", "_") + ".log";
+        // Case-insensitive, as file systems can be.
+        String name = result.toLowerCase(Locale.ROOT);
+        String runtimeName = runtimeLogFileName.toLowerCase(Locale.ROOT);
+        if (name.startsWith(runtimeName) || runtimeName.startsWith(name)) {
+            result = "deployment-" + result;
+        }
+        return result;
+    }
+
+    private static final class DeploymentRoute {
+
+        private final String deploymentName;
+        private final String[] loggerPrefixes;
+        private final ArchiveDeployment deployment;
+        private final LogFileHandler handler;
+
+        private DeploymentRoute(String deploymentName, String[] loggerPrefixes, ArchiveDeployment deployment, LogFileHandler handler) {
+            this.deploymentName = deploymentName;
+            this.loggerPrefixes = loggerPrefixes;
+            this.deployment = deployment;
+            this.handler = handler;
+        }
+
+        private boolean matches(String loggerName, ClassLoader contextClassLoader) {
+            if (loggerName != null) {
+                for (String prefix : loggerPrefixes) {
+                    if (loggerName.startsWith(prefix)
+                            && (loggerName.length() == prefix.length() || loggerName.charAt(prefix.length()) == '.')) {
+                        return true;
+                    }
+                }
+            }
+            // The ClassLoader is only assigned during the deployment, so it is retrieved each time.
+            ClassLoader deploymentClassLoader = deployment == null ? null : deployment.getClassLoader();
+            ClassLoader classLoader = contextClassLoader;
+            while (deploymentClassLoader != null && classLoader != null) {
+                if (classLoader == deploymentClassLoader) {
+                    return true;
+                }
+                classLoader = classLoader.getParent();
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Defines when the written log records are forced to the storage device.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * The records are handed to the operating system after each batch, which decides when they are stored.
+     */
+    NONE,
+
+    /**
+     * The file is forced to the storage device after each batch (group commit).
+     */
+    BATCH,
+
+    /**
+     * The file is forced to the storage device at most every `fsyncIntervalInMillis` milliseconds.
+     */
+    INTERVAL;
+
+    /**
+     * Parses the value from the logging configuration ('none', 'batch', 'interval'), case-insensitive.
+     */
+    public static Optional<FsyncPolicy> parse(String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        String name = value.trim().toUpperCase(Locale.ENGLISH);
+        for (FsyncPolicy policy : values()) {
+            if (policy.name().equals(name)) {
+                return Optional.of(policy);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -15,7 +15,9 @@
  */
 package be.atbash.runtime.logging.handler;
 
+import be.atbash.runtime.core.data.RunData;
 import be.atbash.runtime.core.data.RuntimeConfiguration;
+import be.atbash.runtime.core.data.deployment.AbstractDeployment;
 import be.atbash.runtime.core.data.exception.IncorrectConfigurationException;
 import be.atbash.runtime.core.data.exception.UnexpectedException;
 import be.atbash.runtime.core.data.module.event.EventManager;
@@ -23,38 +25,52 @@ import be.atbash.runtime.core.data.module.event.EventPayload;
 import be.atbash.runtime.core.data.module.event.ModuleEventListener;
 import be.atbash.runtime.core.data.util.FileUtil;
 import be.atbash.runtime.core.data.util.Synchronizer;
+import be.atbash.runtime.core.data.watcher.model.LoggingMon;
 import be.atbash.runtime.core.module.RuntimeObjectsManager;
+import be.atbash.runtime.logging.CallerDataRequirement;
 import be.atbash.runtime.logging.EnhancedLogRecord;
+import be.atbash.runtime.logging.LoggingManager;
 import be.atbash.runtime.logging.handler.formatter.JSONLogFormatter;
 import be.atbash.runtime.logging.handler.formatter.ODLLogFormatter;
 import be.atbash.runtime.logging.handler.formatter.UniformLogFormatter;
+import be.atbash.runtime.logging.handler.queue.LogRecordQueue;
+import be.atbash.runtime.logging.handler.queue.OverflowPolicy;
+import be.atbash.runtime.logging.handler.queue.WaitStrategy;
+import be.atbash.runtime.logging.handler.ratelimit.LogRateLimiter;
+import be.atbash.runtime.logging.handler.ratelimit.RateLimitKey;
 import be.atbash.runtime.logging.handler.rotation.RotationTimerUtil;
 import be.atbash.runtime.logging.util.LogUtil;
 import be.atbash.util.reflection.ClassUtils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Formatter;
 import java.util.logging.*;
+import java.util.zip.Deflater;
 
+import static be.atbash.runtime.core.data.module.event.Events.DEPLOYMENT;
 import static be.atbash.runtime.core.data.module.event.Events.LOGGING_UPDATE;
+import static be.atbash.runtime.core.data.module.event.Events.UNDEPLOYMENT;
 
 /**
  * LogFileHandler publishes formatted log Messages to a FILE.
  * Inspired by code of GlassFish
  */
-public class LogFileHandler extends StreamHandler implements ModuleEventListener {
+public class LogFileHandler extends Handler implements ModuleEventListener {
     // This class is referenced by name in a constant of be.atbash.runtime.AtbashRuntimeConstant.
     // If name or package changes, make sure the String constant is also changed.
 
@@ -62,26 +78,59 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
 
     private static final String LOG_FILE_NAME = "runtime.log";
 
-    private final BlockingQueue<LogRecord> pendingRecords = new ArrayBlockingQueue<>(10000);
+    private static final int DEFAULT_BUFFER_SIZE = 16384;
+    private static final int MAX_DRAIN_BATCH = 256;
+    private static final long PUMP_WAIT_MILLIS = 100;
 
-    // This is a OutputStream to keep track of number of bytes
-    // written out to the stream
-    private MeteredStream meter;
+    private static final int DEFAULT_SAMPLE_RATE = 10;
+    private static final long DEFAULT_DROPPED_SUMMARY_INTERVAL = 60;
 
+    private LogRecordQueue pendingRecords;
+
+    // null when no rate limit is defined.
+    private LogRateLimiter rateLimiter;
+
+    // Only accessed by the pump thread
+    private long droppedSummaryIntervalNanos;
+    private long nextDroppedSummary;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long DEFAULT_FSYNC_INTERVAL = 1000;
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+    // Encodes the formatted records, reused for each file (after rotation).
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+    // Only accessed while holding the rotationLock
+    private LogFileWriter writer;
+    private boolean headWritten;
+
+    private FsyncPolicy fsyncPolicy;
+    private long fsyncIntervalMillis;
 
     private static final String LOG_ROTATE_DATE_FORMAT = "yyyy-MM-dd'T'HH-mm-ss";
-    private static final DateFormat ROTATE_FILE_DATE_FORMAT = new SimpleDateFormat(LOG_ROTATE_DATE_FORMAT);
+    private static final DateTimeFormatter ROTATE_FILE_DATE_FORMAT = DateTimeFormatter.ofPattern(LOG_ROTATE_DATE_FORMAT);
 
     private static final String DEFAULT_LOG_FILE_FORMATTER_CLASS_NAME = UniformLogFormatter.class.getName();
 
     private Synchronizer synchronizer;
 
     private Thread pump;
+    private final AtomicBoolean pumpStopped = new AtomicBoolean(false);
 
-    private int flushFrequency = 1;
     private int maxHistoryFiles = 10;
 
     private boolean compressionOnRotation;
+    private int compressionLevel;
+
+    // Compresses the rotated files and cleans up the history files.
+    private final ExecutorService rotationExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "LogFileHandler rotation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LoggingMon loggingMon = LoggingManager.getInstance().getLoggingMon();
 
     // rotation
     /**
@@ -110,41 +159,81 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
 
     private final RuntimeConfiguration configuration;
 
+    // null for the handler of the runtime log file.
+    private final String deploymentName;
+
+    // The separate log files of the deployments, null when not active or for the handler of a deployment.
+    private DeploymentLogFiles deploymentLogFiles;
+
     public LogFileHandler() {
         // Instantiated by Java Util LogManager and thus need to retrieve  RuntimeConfiguration through RuntimeObjectsManager.
-        this.configuration = RuntimeObjectsManager.getInstance().getExposedObject(RuntimeConfiguration.class);
+        this(RuntimeObjectsManager.getInstance().getExposedObject(RuntimeConfiguration.class), null);
+    }
+
+    /**
+     * Handler for the separate log file of a deployment.
+     */
+    LogFileHandler(RuntimeConfiguration configuration, String deploymentName) {
+        this.configuration = configuration;
+        this.deploymentName = deploymentName;
         postConstruct();
     }
 
     public void postConstruct() {
 
+        initializeLevelAndEncoding();
+
+        initializeFsyncPolicy();
+
+        Optional<String> formatterName = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("formatter"));
+        String fileHandlerFormatter = formatterName.orElse(DEFAULT_LOG_FILE_FORMATTER_CLASS_NAME);
+        configureLogFormatter(fileHandlerFormatter);
+
         File logFile = determineLogFileName();
 
         changeFileName(logFile);
 
+        initializePendingRecords();
+
+        initializeRateLimit();
+
         initializePump();
 
         initializeTimeBasedRotation();
 
         initializeRotationOnFileSizeLimit();
 
-        initializeFlushFrequency();
-
         initializeMaxHistoryFiles();
 
         initializeCompressionOnRotation();
 
         // Always rotate at startup or when configuration changes!
-        rotate();
+        swapFile();
 
-        Optional<String> formatterName = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("formatter"));
-        String fileHandlerFormatter = formatterName.orElse(DEFAULT_LOG_FILE_FORMATTER_CLASS_NAME);
-        configureLogFormatter(fileHandlerFormatter);
+        if (deploymentName == null) {
+            initializeDeploymentLogFiles();
+            EventManager.getInstance().registerListener(this);
+        }
+    }
+
+    private void initializeDeploymentLogFiles() {
+        if (!LogUtil.getBooleanProperty(LogUtil.getLogPropertyKey("deploymentLogFiles"), false)) {
+            return;
+        }
+        deploymentLogFiles = new DeploymentLogFiles(name -> new LogFileHandler(configuration, name));
 
-        EventManager.getInstance().registerListener(this);
+        // When the handler is recreated due to a change in the logging configuration.
+        RunData runData = RuntimeObjectsManager.getInstance().getExposedObject(RunData.class);
+        if (runData != null) {
+            runData.getDeployments().forEach(deploymentLogFiles::open);
+        }
     }
 
     private File determineLogFileName() {
+        if (deploymentName != null) {
+            String runtimeLogFileName = new File(getLogFileName()).getName();
+            return new File(configuration.getLoggingDirectory(), DeploymentLogFiles.defineFileName(deploymentName, runtimeLogFileName));
+        }
         String filename = getLogFileName();
 
         // determine absolute name
@@ -179,8 +268,80 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
 
         }
         setFormatter(formatter);
-        formatterName = formatter.getClass().getName();
-        LOGGER.warning(String.format("Server log file is using Formatter class '%s'", formatterName));
+        CallerDataRequirement.register(this, formatter);
+        if (deploymentName == null) {
+            formatterName = formatter.getClass().getName();
+            LOGGER.warning(String.format("Server log file is using Formatter class '%s'", formatterName));
+        }
+    }
+
+    private void initializePendingRecords() {
+        int bufferSize = LogUtil.getIntProperty(LogUtil.getLogPropertyKey("bufferSize"), DEFAULT_BUFFER_SIZE);
+        if (bufferSize < 2 || bufferSize > 1 << 24) {
+            LOGGER.warning(String.format("LOG-106: Invalid value for `bufferSize` (should be between 2 and 16777216). Default value %s is used: '%s'", DEFAULT_BUFFER_SIZE, bufferSize));
+            bufferSize = DEFAULT_BUFFER_SIZE;
+        }
+
+        Optional<String> waitStrategyValue = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("waitStrategy"));
+        WaitStrategy waitStrategy = waitStrategyValue.flatMap(WaitStrategy::parse).orElse(WaitStrategy.BLOCKING);
+        if (waitStrategyValue.isPresent() && WaitStrategy.parse(waitStrategyValue.get()).isEmpty()) {
+            LOGGER.warning(String.format("LOG-107: Invalid value for `waitStrategy` (should be blocking, yielding or spin-then-park). Default value blocking is used: '%s'", waitStrategyValue.get()));
+        }
+
+        Optional<String> overflowPolicyValue = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("overflowPolicy"));
+        OverflowPolicy overflowPolicy = overflowPolicyValue.flatMap(OverflowPolicy::parse).orElse(OverflowPolicy.BLOCK);
+        if (overflowPolicyValue.isPresent() && OverflowPolicy.parse(overflowPolicyValue.get()).isEmpty()) {
+            LOGGER.warning(String.format("LOG-108: Invalid value for `overflowPolicy` (should be block, drop-debug, drop-newest or sample). Default value block is used: '%s'", overflowPolicyValue.get()));
+        }
+
+        int sampleRate = LogUtil.getIntProperty(LogUtil.getLogPropertyKey("overflowSampleRate"), DEFAULT_SAMPLE_RATE);
+        if (sampleRate <= 0) {
+            LOGGER.warning(String.format("LOG-109: Invalid value for `overflowSampleRate` (should be larger than 0). Default value %s is used: '%s'", DEFAULT_SAMPLE_RATE, sampleRate));
+            sampleRate = DEFAULT_SAMPLE_RATE;
+        }
+
+        long summaryInterval = LogUtil.getLongProperty(LogUtil.getLogPropertyKey("droppedSummaryIntervalInSeconds"), DEFAULT_DROPPED_SUMMARY_INTERVAL);
+        if (summaryInterval <= 0) {
+            LOGGER.warning(String.format("LOG-110: Invalid value for `droppedSummaryIntervalInSeconds` (should be larger than 0). Default value %s is used: '%s'", DEFAULT_DROPPED_SUMMARY_INTERVAL, summaryInterval));
+            summaryInterval = DEFAULT_DROPPED_SUMMARY_INTERVAL;
+        }
+        droppedSummaryIntervalNanos = TimeUnit.SECONDS.toNanos(summaryInterval);
+        nextDroppedSummary = System.nanoTime() + droppedSummaryIntervalNanos;
+
+        pendingRecords = new LogRecordQueue(bufferSize, waitStrategy, overflowPolicy, sampleRate, loggingMon.getDroppedRecordsCounter());
+        if (deploymentName != null) {
+            // The dropped records are counted together with the runtime log file, the other values are of that file.
+            return;
+        }
+        loggingMon.setPendingRecords(pendingRecords::size);
+        loggingMon.setBufferCapacity(pendingRecords.getCapacity());
+        loggingMon.setOverflowPolicy(overflowPolicy.name());
+    }
+
+    private void initializeRateLimit() {
+        int ratePerSecond = LogUtil.getIntProperty(LogUtil.getLogPropertyKey("rateLimitPerSecond"), 0);
+        if (ratePerSecond < 0) {
+            LOGGER.warning(String.format("LOG-116: Invalid value for `rateLimitPerSecond` (should be 0 or larger). Default value 0 is used: '%s'", ratePerSecond));
+            ratePerSecond = 0;
+        }
+        if (ratePerSecond == 0) {
+            // No rate limit
+            return;
+        }
+
+        int burst = LogUtil.getIntProperty(LogUtil.getLogPropertyKey("rateLimitBurst"), ratePerSecond);
+        if (burst <= 0) {
+            LOGGER.warning(String.format("LOG-121: Invalid value for `rateLimitBurst` (should be larger than 0). Default value %s is used: '%s'", ratePerSecond, burst));
+            burst = ratePerSecond;
+        }
+
+        Optional<String> rateLimitByValue = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("rateLimitBy"));
+        RateLimitKey rateLimitKey = rateLimitByValue.flatMap(RateLimitKey::parse).orElse(RateLimitKey.MESSAGE_ID);
+        if (rateLimitByValue.isPresent() && RateLimitKey.parse(rateLimitByValue.get()).isEmpty()) {
+            LOGGER.warning(String.format("LOG-117: Invalid value for `rateLimitBy` (should be message-id or logger). Default value message-id is used: '%s'", rateLimitByValue.get()));
+        }
+
+        rateLimiter = new LogRateLimiter(ratePerSecond, burst, rateLimitKey, loggingMon.getSuppressedRecordsCounter());
     }
 
     private void initializeTimeBasedRotation() {
@@ -234,11 +395,37 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
         }
     }
 
-    private void initializeFlushFrequency() {
-        flushFrequency = LogUtil.getIntProperty(LogUtil.getLogPropertyKey("flushFrequency"), 1);
-        if (flushFrequency <= 0) {
-            LOGGER.warning(String.format("LOG-104: Invalid value for `flushFrequency` (should be larger than 0). Default value 1 is used: '%s'", flushFrequency));
-            flushFrequency = 1;
+    private void initializeLevelAndEncoding() {
+        Optional<String> level = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("level"));
+        if (level.isPresent()) {
+            try {
+                setLevel(Level.parse(level.get()));
+            } catch (IllegalArgumentException e) {
+                LOGGER.warning(String.format("LOG-113: Invalid value for `level`. Default value ALL is used: '%s'", level.get()));
+            }
+        }
+
+        Optional<String> encoding = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("encoding"));
+        if (encoding.isPresent()) {
+            try {
+                setEncoding(encoding.get());
+            } catch (UnsupportedEncodingException e) {
+                LOGGER.warning(String.format("LOG-114: Invalid value for `encoding`. The default encoding of the platform is used: '%s'", encoding.get()));
+            }
+        }
+    }
+
+    private void initializeFsyncPolicy() {
+        Optional<String> fsyncPolicyValue = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("fsyncPolicy"));
+        fsyncPolicy = fsyncPolicyValue.flatMap(FsyncPolicy::parse).orElse(FsyncPolicy.NONE);
+        if (fsyncPolicyValue.isPresent() && FsyncPolicy.parse(fsyncPolicyValue.get()).isEmpty()) {
+            LOGGER.warning(String.format("LOG-112: Invalid value for `fsyncPolicy` (should be none, batch or interval). Default value none is used: '%s'", fsyncPolicyValue.get()));
+        }
+
+        fsyncIntervalMillis = LogUtil.getLongProperty(LogUtil.getLogPropertyKey("fsyncIntervalInMillis"), DEFAULT_FSYNC_INTERVAL);
+        if (fsyncIntervalMillis <= 0) {
+            LOGGER.warning(String.format("LOG-120: Invalid value for `fsyncIntervalInMillis` (should be larger than 0). Default value %s is used: '%s'", DEFAULT_FSYNC_INTERVAL, fsyncIntervalMillis));
+            fsyncIntervalMillis = DEFAULT_FSYNC_INTERVAL;
         }
     }
 
@@ -253,6 +440,11 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
 
     private void initializeCompressionOnRotation() {
         compressionOnRotation = LogUtil.getBooleanProperty(LogUtil.getLogPropertyKey("compressOnRotation"), false);
+        compressionLevel = LogUtil.getIntProperty(LogUtil.getLogPropertyKey("compressionLevel"), DEFAULT_COMPRESSION_LEVEL);
+        if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            LOGGER.warning(String.format("LOG-115: Invalid value for `compressionLevel` (should be between 0 and 9). Default value %s is used: '%s'", DEFAULT_COMPRESSION_LEVEL, compressionLevel));
+            compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+        }
     }
 
     private Formatter findFormatter(String formatterName) {
@@ -272,20 +464,38 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
     }
 
     void initializePump() {
+        CountDownLatch pumpStarted = new CountDownLatch(1);
         pump = new Thread(() -> {
+            // The Synchronizer must be created by the pump as it holds the lock until the pump is stopped.
             synchronizer = new Synchronizer();
+            pumpStarted.countDown();
             while (!synchronizer.isSignalled()) {
                 try {
                     log();
+                    logSummaries(false);
                 } catch (Exception e) {
                     // Continue the loop without exiting
                 }
             }
-            synchronizer.release();
+            // The ring buffer only supports a single consumer, so the pump writes out the remaining records itself.
+            try {
+                drainAllPendingRecords();
+                logSummaries(true);
+            } finally {
+                // Producers blocked on a full buffer don't wait forever.
+                pendingRecords.consumerStopped();
+                synchronizer.release();
+            }
         });
-        pump.setName("LogFileHandler log pump");
+        pump.setName(deploymentName == null ? "LogFileHandler log pump" : "LogFileHandler log pump " + deploymentName);
         pump.setDaemon(true);
         pump.start();
+        // So that a close() right after the creation stops the pump and writes the pending records.
+        try {
+            pumpStarted.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public void preDestroy() {
@@ -294,31 +504,159 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
     }
 
     private void drainAllPendingRecords() {
-        drainPendingRecords(0);
+        synchronized (rotationLock) {
+            while (drainPendingRecords() > 0) {
+                // Keep draining until no more records are available.
+            }
+            flush();
+        }
     }
 
     /**
-     * Drains the amount of {@link LogRecord}s in the pending records queue.
-     * If passed in the amount <= 0 all of the records get drained.
+     * Drains a batch of {@link LogRecord}s from the pending records buffer into the write buffer. Must only be
+     * called by the pump thread (single consumer) while holding the rotationLock.
      *
-     * @param flushAmount number of records to drain from the queue of pending records.
+     * @return number of records drained from the buffer of pending records.
      */
-    private void drainPendingRecords(int flushAmount) {
-        if (!pendingRecords.isEmpty()) {
-            Collection<LogRecord> records;
-            if (flushAmount > 0) {
-                records = new ArrayList<>(flushAmount);
-                pendingRecords.drainTo(records, flushAmount);
-            } else {
-                records = new ArrayList<>(pendingRecords.size());
-                pendingRecords.drainTo(records);
+    private int drainPendingRecords() {
+        return pendingRecords.drainTo(this::writeRecord, MAX_DRAIN_BATCH);
+    }
+
+    /**
+     * Formats the record and adds it to the write buffer. Must be called while holding the rotationLock.
+     */
+    private void writeRecord(LogRecord record) {
+        if (writer == null) {
+            return;
+        }
+        String message;
+        try {
+            message = getFormatter().format(record);
+        } catch (Exception ex) {
+            // We don't want to throw an exception here, but we report the exception to any registered ErrorManager.
+            reportError(null, ex, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+
+        try {
+            if (!headWritten) {
+                writer.write(getFormatter().getHead(this));
+                headWritten = true;
+            }
+            writer.write(message);
+        } catch (Exception ex) {
+            reportError(null, ex, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * Writes the buffered records to the file, and forces them to disk according to the fsync policy.
+     */
+    @Override
+    public void flush() {
+        synchronized (rotationLock) {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.endOfBatch();
+            } catch (IOException ex) {
+                reportError(null, ex, ErrorManager.FLUSH_FAILURE);
+            }
+        }
+    }
+
+    /**
+     * Forces the records written before an idle period to disk, when the fsync policy is interval.
+     */
+    private void forceIfDue() {
+        synchronized (rotationLock) {
+            if (writer == null) {
+                return;
             }
-            for (LogRecord record : records) {
-                super.publish(record);
+            try {
+                writer.forceIfDue();
+            } catch (IOException ex) {
+                reportError(null, ex, ErrorManager.FLUSH_FAILURE);
             }
         }
     }
 
+    @Override
+    public void close() {
+        // Called by the LogManager when the logging configuration is reset.
+        if (deploymentLogFiles != null) {
+            deploymentLogFiles.closeAll();
+        }
+        reset();
+        CallerDataRequirement.unregister(this);
+        cancelOldTimer();
+        synchronized (rotationLock) {
+            closeFile();
+        }
+        // Give the compression of a rotated file the chance to finish.
+        rotationExecutor.shutdown();
+        try {
+            rotationExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes out the buffered records and the tail of the formatter and closes the file. Must be called while
+     * holding the rotationLock.
+     */
+    private void closeFile() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            if (headWritten) {
+                writer.write(getFormatter().getTail(this));
+            }
+            writer.close();
+        } catch (Exception ex) {
+            reportError(null, ex, ErrorManager.CLOSE_FAILURE);
+        }
+        writer = null;
+    }
+
+    /**
+     * Writes a line with the number of records that are dropped by the overflow policy, and a line per message id
+     * or logger with the number of records suppressed by the rate limit, since the previous summary.
+     * Must only be called by the pump thread.
+     *
+     * @param now Don't wait until the summary interval has passed.
+     */
+    private void logSummaries(boolean now) {
+        long currentTime = System.nanoTime();
+        if (!now && currentTime - nextDroppedSummary < 0) {
+            return;
+        }
+        nextDroppedSummary = currentTime + droppedSummaryIntervalNanos;
+        long dropped = pendingRecords.takeDroppedSinceSummary();
+        if (dropped > 0) {
+            writeSummary(String.format("LOG-111: %s log records dropped by the overflow policy '%s'", dropped, pendingRecords.getOverflowPolicy()));
+        }
+        if (rateLimiter != null) {
+            rateLimiter.takeSuppressedSinceSummary().forEach((key, suppressed) ->
+                    writeSummary(String.format("LOG-118: %s log records of '%s' suppressed by the rate limit", suppressed, key)));
+        }
+    }
+
+    private void writeSummary(String message) {
+        LogRecord summary = new LogRecord(Level.WARNING, message);
+        summary.setLoggerName(LogFileHandler.class.getName());
+        if (!isLoggable(summary)) {
+            return;
+        }
+        synchronized (rotationLock) {
+            writeRecord(EnhancedLogRecord.wrap(summary, true));
+            flush();
+        }
+    }
+
     /**
      * This method is invoked from LogManager.reInitializeLoggers() to
      * change the location of the file.
@@ -330,7 +668,7 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
             return;
         }
         synchronized (rotationLock) {
-            super.close();  // performs also flush
+            closeFile();  // performs also flush
             try {
                 openFile(file);
                 absoluteFile = file;
@@ -357,6 +695,14 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
         if (LOGGING_UPDATE.equals(eventPayload.getEventCode())) {
             updateForLoggingConfigurationChanges();
         }
+        if (deploymentLogFiles != null && DEPLOYMENT.equals(eventPayload.getEventCode())) {
+            AbstractDeployment deployment = eventPayload.getPayload();
+            deploymentLogFiles.open(deployment);
+        }
+        if (deploymentLogFiles != null && UNDEPLOYMENT.equals(eventPayload.getEventCode())) {
+            String name = eventPayload.getPayload();
+            deploymentLogFiles.close(name);
+        }
     }
 
     private void updateForLoggingConfigurationChanges() {
@@ -374,10 +720,9 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
     }
 
     private void reset() {
-        // drain and return all
-        drainAllPendingRecords();
-
-        if (pump != null) {
+        if (pump != null && synchronizer != null && pumpStopped.compareAndSet(false, true)) {
+            // The pump drains and writes all pending records before it stops.
+            pendingRecords.wakeUpConsumer();
             synchronizer.raiseSignal(1, TimeUnit.SECONDS);  // Wait at max 1 sec
         }
 
@@ -393,14 +738,13 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
 
 
     private synchronized void determineRotationOnFileSizeLimit() {
-        if (limitForFileRotation > 0 && (meter.getBytesWritten() >= limitForFileRotation)) {
+        if (limitForFileRotation > 0 && writer != null && (writer.getBytesWritten() >= limitForFileRotation)) {
             rotationRequested.set(true);
         }
     }
 
     /**
-     * Creates the file and initialized MeteredStream and passes it on to
-     * Superclass (java.util.logging.StreamHandler).
+     * Creates the file and the LogFileWriter that appends to it. Must be called while holding the rotationLock.
      */
     private void openFile(File file) throws IOException {
         // check that the parent directory exists.
@@ -409,78 +753,84 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
             throw new IOException("parent.dir.create.failed" +
                     String.format("Failed to create the parent dir %s", parent.getAbsolutePath()));
         }
-        FileOutputStream fout = new FileOutputStream(file, true);
-        BufferedOutputStream bout = new BufferedOutputStream(fout);
-        meter = new MeteredStream(bout, file.length());
-        setOutputStream(meter);
+        Charset charset = getEncoding() == null ? Charset.defaultCharset() : Charset.forName(getEncoding());
+        writer = new LogFileWriter(file, charset, fsyncPolicy, fsyncIntervalMillis, writeBuffer);
+        headWritten = false;
     }
 
     /**
-     * cleanup the history log file based on attributes set under logging.properties file".
+     * cleanup the history log file based on attributes set under logging.properties file". Runs on the rotation
+     * executor, the current log file is never deleted.
      */
     public void cleanUpHistoryLogFiles() {
         if (maxHistoryFiles == 0)
             return;
 
-        synchronized (rotationLock) {
-            File dir = absoluteFile.getParentFile();
-            if (dir == null) {
-                return;
-            }
+        File dir = absoluteFile.getParentFile();
+        if (dir == null) {
+            return;
+        }
 
-            // Get a list of all files in the directory.
-            String logFileName = absoluteFile.getName();
-            File[] allFiles = dir.listFiles();
-            List<String> logFiles = new ArrayList<>();
-            for (int i = 0; allFiles != null && i < allFiles.length; i++) {
-                if (!logFileName.equals(allFiles[i].getName())
-                        && allFiles[i].isFile()
-                        && allFiles[i].getName().startsWith(logFileName)) {
-                    logFiles.add(allFiles[i].getAbsolutePath());
-                }
-            }
-            if (logFiles.size() <= maxHistoryFiles) {
-                return;
+        // Get a list of all files in the directory.
+        String logFileName = absoluteFile.getName();
+        File[] allFiles = dir.listFiles();
+        List<String> logFiles = new ArrayList<>();
+        for (int i = 0; allFiles != null && i < allFiles.length; i++) {
+            if (!logFileName.equals(allFiles[i].getName())
+                    && allFiles[i].isFile()
+                    && allFiles[i].getName().startsWith(logFileName)) {
+                logFiles.add(allFiles[i].getAbsolutePath());
             }
+        }
+        if (logFiles.size() <= maxHistoryFiles) {
+            return;
+        }
 
-            Collections.sort(logFiles);
-            try {
-                for (int i = 0; i < logFiles.size() - maxHistoryFiles; i++) {
-                    File logFile = new File(logFiles.get(i));
-                    boolean deleted = logFile.delete();
-                    if (!deleted) {
-                        LOGGER.warning(String.format("LOG-004: Unable to delete log file '%s'", logFile.getAbsolutePath()));
-                    }
+        Collections.sort(logFiles);
+        try {
+            for (int i = 0; i < logFiles.size() - maxHistoryFiles; i++) {
+                File logFile = new File(logFiles.get(i));
+                boolean deleted = logFile.delete();
+                if (!deleted) {
+                    LOGGER.warning(String.format("LOG-004: Unable to delete log file '%s'", logFile.getAbsolutePath()));
                 }
-            } catch (Exception e) {
-                new ErrorManager().error(
-                        "FATAL ERROR: COULD NOT DELETE LOG FILE.", e,
-                        ErrorManager.GENERIC_FAILURE);
             }
+        } catch (Exception e) {
+            new ErrorManager().error(
+                    "FATAL ERROR: COULD NOT DELETE LOG FILE.", e,
+                    ErrorManager.GENERIC_FAILURE);
         }
     }
 
 
     /**
-     * A Simple rotate method to close the old file and start the new one
-     * when the limit is reached.
+     * Requests a rotation of the log file. The pump thread swaps the file after writing the current batch, the
+     * compression and cleanup of the history files are performed in the background.
      */
     public void rotate() {
+        rotationRequested.set(true);
+        pendingRecords.wakeUpConsumer();
+    }
 
+    /**
+     * Closes the current file, renames it and starts a new one. Only the swap is performed while holding the
+     * rotationLock (and thus blocks the pump thread), the compression and cleanup are submitted to the rotation executor.
+     */
+    private void swapFile() {
+        File rotatedFile;
         synchronized (rotationLock) {
-            if (meter != null && meter.getBytesWritten() <= 0) {
-                // Rotation requested with empty file -> ignore rotate
+            if (writer == null || writer.getBytesWritten() <= 0) {
+                // Handler is closed or rotation requested with empty file -> ignore rotate
                 return;
             }
 
-            // We could also do meter.close  but since the meteredStream just forward, we don't need to close it explicitly
-            // and close() handles the Exceptions for us.
-            close();  // Performs a flush
+            long start = System.nanoTime();
+            closeFile();  // Performs a flush
             try {
 
                 File oldFile = absoluteFile;
                 String renamedFileName = defineRenamedFileName();
-                File rotatedFile = new File(renamedFileName);
+                rotatedFile = new File(renamedFileName);
                 boolean renameSuccess = oldFile.renameTo(rotatedFile);
 
                 if (!renameSuccess) {
@@ -490,13 +840,13 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
                     // Plan B to copy bytes explicitly to a renamed
                     // file.
                     Files.copy(absoluteFile.toPath(), rotatedFile.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
-                }
 
-                // This clears out the server log file
-                FileOutputStream oldFileFO = new FileOutputStream(oldFile);
-                oldFileFO.close();
+                    // This clears out the server log file
+                    FileOutputStream oldFileFO = new FileOutputStream(oldFile);
+                    oldFileFO.close();
+                }
 
-                // Open the log file again (with a MeteredStream)
+                // Open the log file again
                 openFile(absoluteFile);
 
                 // This will ensure that the log rotation timer
@@ -504,27 +854,43 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
                 // for time based log rotation
                 restartTimeBasedLogRotation();
 
-                compressRotatedFile(rotatedFile);
-
-                cleanUpHistoryLogFiles();
-
             } catch (IOException ix) {
                 new ErrorManager().error("Error, could not rotate log file", ix, ErrorManager.GENERIC_FAILURE);
+                return;
             }
+            loggingMon.recordRotation(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
 
+        if (compressionOnRotation || maxHistoryFiles > 0) {
+            try {
+                rotationExecutor.execute(() -> compressAndCleanUp(rotatedFile));
+            } catch (RejectedExecutionException e) {
+                // Handler is closed, compress and clean up on this thread.
+                compressAndCleanUp(rotatedFile);
+            }
         }
+    }
 
+    private void compressAndCleanUp(File rotatedFile) {
+        try {
+            compressRotatedFile(rotatedFile);
+        } catch (IOException ix) {
+            new ErrorManager().error("Error, could not compress rotated log file", ix, ErrorManager.GENERIC_FAILURE);
+        }
+        cleanUpHistoryLogFiles();
     }
 
     private void compressRotatedFile(File rotatedFile) throws IOException {
         if (compressionOnRotation) {
-            boolean compressed = FileUtil.gzipFile(rotatedFile);
+            long start = System.nanoTime();
+            boolean compressed = FileUtil.gzipFile(rotatedFile, compressionLevel);
             if (compressed) {
                 boolean deleted = rotatedFile.delete();
                 if (!deleted) {
                     // FIXME should we throw exception? a bit harsh.
                     throw new IOException("Could not delete uncompressed log file: " + rotatedFile.getAbsolutePath());
                 }
+                loggingMon.recordCompression(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
             } else {
                 // FIXME should we throw exception? a bit harsh.
                 throw new IOException("Could not compress log file: " + rotatedFile.getAbsolutePath());
@@ -533,8 +899,14 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
     }
 
     private String defineRenamedFileName() {
-        // This method is called within a Synchronized block on ROTATION_LOCK, so it is safe to use a static SimpleDateFormat instance.
-        return absoluteFile + "_" + ROTATE_FILE_DATE_FORMAT.format(new Date());
+        String baseName = absoluteFile + "_" + ROTATE_FILE_DATE_FORMAT.format(LocalDateTime.now());
+        // Multiple rotations within the same second should not overwrite the previous rotated file.
+        String result = baseName;
+        int sequence = 1;
+        while (new File(result).exists() || new File(result + ".gz").exists()) {
+            result = baseName + "-" + sequence++;
+        }
+        return result;
     }
 
     private void restartTimeBasedLogRotation() {
@@ -550,50 +922,57 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
     }
 
     /**
-     * 5005
-     * Retrieves the LogRecord from our Queue and store them in the file
+     * Retrieves a batch of LogRecords from our ring buffer and store them in the file
      */
     public void log() {
 
-        LogRecord record;
-
-        // take is blocking so we take one record off the queue
-        try {
-            record = pendingRecords.take();
-            super.publish(record);
-        } catch (InterruptedException e) {
-            // Re-interrupt the current thread to have proper cleanup.
-            Thread.currentThread().interrupt();
-            return;
-        }
-
-        if (flushFrequency > 1) {
-            // now try to read more.  we end up blocking on the above take call if nothing is in the queue
-            drainPendingRecords(flushFrequency - 1);
+        // Wait a limited time so that the pump can check if it needs to stop.
+        if (pendingRecords.awaitRecords(PUMP_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+            synchronized (rotationLock) {
+                // All records of the batch are written with a single write to the file.
+                drainPendingRecords();
+                flush();
+            }
+            determineRotationOnFileSizeLimit();
+        } else {
+            forceIfDue();
         }
-
-        flush();
-        determineRotationOnFileSizeLimit();
-        if (rotationRequested.get()) {
+        if (rotationRequested.getAndSet(false)) {
             // If we have written more than the limit set for the
             // file, or rotation requested from the Timer Task
             // start fresh with a new file after renaming the old file.
-            synchronized (rotationLock) {
-                rotate();
-                rotationRequested.set(false);
-            }
+            swapFile();
         }
 
     }
 
     /**
-     * Publishes the logrecord storing it in our queue
+     * Publishes the logrecord storing it in our ring buffer. Producers don't take a lock. When the buffer is
+     * (almost) full, the overflow policy decides if the caller waits or the record is dropped.
      */
     @Override
-    public synchronized void publish(LogRecord record) {
+    public void publish(LogRecord record) {
 
         // the queue has shutdown, we are not processing any more records
-        if (synchronizer != null && synchronizer.isSignalled()) {
+        if (pumpStopped.get()) {
+            return;
+        }
+
+        if (deploymentLogFiles != null) {
+            LogFileHandler deploymentHandler = deploymentLogFiles.findHandler(record);
+            if (deploymentHandler != null) {
+                deploymentHandler.publish(record);
+                return;
+            }
+        }
+
+        // Before the rate limit, records that are not written must not use the tokens or be counted as suppressed.
+        if (!isLoggable(record)) {
+            return;
+        }
+
+        if (rateLimiter != null && !rateLimiter.tryAcquire(record)) {
+            // Counted and reported in the summary.
             return;
         }
 
@@ -603,22 +982,7 @@ public class LogFileHandler extends StreamHandler implements ModuleEventListener
         // this fix is limited to records published through this handler only.
         EnhancedLogRecord wrappedRecord = EnhancedLogRecord.wrap(record, true);
 
-
-        try {
-            pendingRecords.add(wrappedRecord);
-        } catch (IllegalStateException e) {
-            // queue is full, start waiting.
-            new ErrorManager().error("LogFileHandler: Queue full. Waiting to submit.", e, ErrorManager.GENERIC_FAILURE);
-            try {
-                pendingRecords.put(wrappedRecord);
-            } catch (InterruptedException e1) {
-                Thread.currentThread().interrupt();
-                // too bad, record is lost...
-                new ErrorManager().error("LogFileHandler: Waiting was interrupted. Log record lost.", e1, ErrorManager.GENERIC_FAILURE);
-            }
-        }
-
-
+        pendingRecords.enqueue(wrappedRecord);
     }
 
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the formatted log records to the file. The records are encoded into a reusable direct buffer that is
+ * written with a single {@link FileChannel#write(ByteBuffer)} call at the end of a batch (or when the buffer is
+ * full). The {@link FsyncPolicy} defines when the file is forced to the storage device.
+ * <p>
+ * Not thread safe, the LogFileHandler only uses it from the pump thread or while holding the rotation lock.
+ */
+class LogFileWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+
+    private long bytesWritten;
+    private long lastForce;
+    private boolean unforcedData;
+
+    /**
+     * @param buffer The buffer used to encode the records, reused by the writers of the same handler. Use a direct
+     *               buffer to avoid the copy to a temporary direct buffer by the channel.
+     */
+    LogFileWriter(File file, Charset charset, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, ByteBuffer buffer) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.buffer = buffer;
+        this.buffer.clear();
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.bytesWritten = channel.size();
+        this.lastForce = System.nanoTime();
+    }
+
+    /**
+     * Encodes the text into the buffer. The buffer is only written to the file when it is full.
+     */
+    void write(String text) throws IOException {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                writeBuffer();
+            }
+        } while (result.isOverflow());
+        do {
+            result = encoder.flush(buffer);
+            if (result.isOverflow()) {
+                writeBuffer();
+            }
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Writes the buffered records to the file and forces them to the storage device according to the {@link FsyncPolicy}.
+     */
+    void endOfBatch() throws IOException {
+        writeBuffer();
+        if (!unforcedData) {
+            return;
+        }
+        if (fsyncPolicy == FsyncPolicy.BATCH) {
+            force();
+        } else {
+            forceIfDue();
+        }
+    }
+
+    /**
+     * Forces the written records to the storage device when the interval of the {@link FsyncPolicy#INTERVAL} policy
+     * has passed. Called regularly when no records arrive, so that the last batch before an idle period is also
+     * forced.
+     *
+     * @return true when the file is forced.
+     */
+    boolean forceIfDue() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.INTERVAL || !unforcedData || System.nanoTime() - lastForce < fsyncIntervalNanos) {
+            return false;
+        }
+        force();
+        return true;
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+            unforcedData = true;
+        }
+        buffer.clear();
+    }
+
+    private void force() throws IOException {
+        // The metadata (like last modified time) is not important for a log file.
+        channel.force(false);
+        lastForce = System.nanoTime();
+        unforcedData = false;
+    }
+
+    /**
+     * The size of the file, including the bytes that are still in the buffer.
+     */
+    long getBytesWritten() {
+        return bytesWritten + buffer.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBuffer();
+            if (unforcedData && fsyncPolicy != FsyncPolicy.NONE) {
+                force();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -15,30 +15,92 @@
  */
 package be.atbash.runtime.logging.handler.formatter;
 
-import java.text.MessageFormat;
-import java.util.MissingResourceException;
+import be.atbash.runtime.core.data.util.MessageTemplate;
+import be.atbash.runtime.core.data.util.MessageTemplateCache;
+import be.atbash.runtime.logging.CallerDataFormatter;
+
+import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.ResourceBundle;
 import java.util.function.Function;
 import java.util.logging.Formatter;
+import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
 /**
  * A Parent Formatter supporting the Exclude Fields Support and providing the logic for the Product version value.
  * Inspired by code of Payara
  */
-public abstract class CommonFormatter extends Formatter {
+public abstract class CommonFormatter extends Formatter implements CallerDataFormatter {
+
+    // Buffers larger than this are not kept, so that one huge message doesn't retain the memory.
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
 
     private final AdditionalLogFieldsSupport additionalLogFieldsSupport;
 
+    // Parsed patterns of the messages, so that they are not parsed for each record.
+    private final MessageTemplateCache templateCache = new MessageTemplateCache();
+
+    // The buffer of the thread, null while it is in use (like a nested format from within a toString()).
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
     protected CommonFormatter(String excludeFields) {
         super();
         this.additionalLogFieldsSupport = new AdditionalLogFieldsSupport(excludeFields);
     }
 
+    @Override
+    public int getCallerDataLevel() {
+        // The source class and method are only written for FINE and lower.
+        return Level.FINE.intValue();
+    }
+
     protected boolean isFieldIncluded(AdditionalLogFieldsSupport.SupplementalAttribute excludeField) {
         return !additionalLogFieldsSupport.isSet(excludeField);
     }
 
+    /**
+     * Returns the buffer of the current thread to build the formatted record. Must be given back with
+     * {@link #releaseBuffer(StringBuilder)}.
+     *
+     * @return An empty buffer.
+     */
+    protected StringBuilder acquireBuffer() {
+        StringBuilder result = buffers.get();
+        if (result == null) {
+            // Already in use by this thread.
+            return new StringBuilder(512);
+        }
+        buffers.set(null);
+        return result;
+    }
+
+    /**
+     * Gives the buffer back so that it is reused by the next record formatted on this thread.
+     *
+     * @param buffer The buffer returned by {@link #acquireBuffer()}.
+     * @return The content of the buffer.
+     */
+    protected String releaseBuffer(StringBuilder buffer) {
+        String result = buffer.toString();
+        if (buffer.capacity() <= MAX_RETAINED_CAPACITY) {
+            buffer.setLength(0);
+            buffers.set(buffer);
+        } else {
+            buffers.set(new StringBuilder(512));
+        }
+        return result;
+    }
+
+    /**
+     * Appends the stack trace directly to the buffer, without an intermediate {@code StringWriter}.
+     */
+    protected static void appendStackTrace(StringBuilder buffer, Throwable throwable) {
+        PrintWriter writer = new PrintWriter(new StringBuilderWriter(buffer));
+        throwable.printStackTrace(writer);
+        writer.flush();
+    }
+
     protected String formatLogMessage(String logMessage, LogRecord record, Function<String, ResourceBundle> rbGetter) {
         try {
             return formatLogMessage0(logMessage, record.getLoggerName(), record.getParameters(), rbGetter);
@@ -61,18 +123,52 @@ public abstract class CommonFormatter extends Formatter {
         if (logMessage.contains("{0") && logMessage.contains("}") && parameters != null) {
             // If we find {0} or {1} etc., in the message, then it's most
             // likely finer level messages for Method Entry, Exit etc.,
-            logMessage = MessageFormat.format(logMessage, parameters);
+            logMessage = templateCache.getTemplate(logMessage).format(parameters);
         } else {
             ResourceBundle rb = rbGetter.apply(loggerName);
             if (rb != null && rb.containsKey(logMessage)) {
-                try {
-                    logMessage = MessageFormat.format(rb.getString(logMessage), parameters);
-                } catch (MissingResourceException e) {
-                    // If we don't find an entry, then we are covered
-                    // because the logMessage is initialized already
+                // If we don't find an entry, then we are covered
+                // because the logMessage is initialized already
+                MessageTemplate template = templateCache.getTemplate(rb, logMessage);
+                if (template != null) {
+                    logMessage = template.format(parameters);
                 }
             }
         }
         return logMessage;
     }
+
+    private static final class StringBuilderWriter extends Writer {
+
+        private final StringBuilder buffer;
+
+        private StringBuilderWriter(StringBuilder buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            buffer.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+            buffer.append(str, offset, offset + length);
+        }
+
+        @Override
+        public void write(int c) {
+            buffer.append((char) c);
+        }
+
+        @Override
+        public void flush() {
+            // Nothing to flush
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
 }
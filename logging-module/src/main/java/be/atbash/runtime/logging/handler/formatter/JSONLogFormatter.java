@@ -15,15 +15,19 @@
  */
 package be.atbash.runtime.logging.handler.formatter;
 
-import be.atbash.json.JSONValue;
 import be.atbash.runtime.logging.EnhancedLogRecord;
 
-import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.text.SimpleDateFormat;
-import java.util.*;
-import java.util.logging.*;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.logging.ErrorManager;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
 /**
  * Class for converting a {@link LogRecord} to Json format.
@@ -39,7 +43,9 @@ public class JSONLogFormatter extends CommonFormatter {
     private final Map<String, ResourceBundle> loggerResourceBundleTable;
     private final LogManager logManager;
 
-    private final Date date = new Date();
+    private final TimestampFormatter timestampFormatter = TimestampFormatter.of(TimestampFormatter.RFC_3339_DATE_FORMAT);
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     // Event separator
     private static final String LINE_SEPARATOR = System.lineSeparator();
@@ -60,8 +66,9 @@ public class JSONLogFormatter extends CommonFormatter {
     private static final String LOG_MESSAGE_KEY = "LogMessage";
     private static final String THROWABLE_KEY = "Throwable";
 
-    private static final String RFC3339_DATE_FORMAT =
-            "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+    private static final Set<String> STANDARD_KEYS = Set.of(TIMESTAMP_KEY, LOG_LEVEL_KEY, LOGGER_NAME_KEY,
+            THREAD_ID_KEY, THREAD_NAME_KEY, LEVEL_VALUE_KEY, TIME_MILLIS_KEY, MESSAGE_ID_KEY, LOG_MESSAGE_KEY,
+            THROWABLE_KEY, CLASS_NAME, METHOD_NAME);
 
 
     public JSONLogFormatter(String excludeFields) {
@@ -81,83 +88,49 @@ public class JSONLogFormatter extends CommonFormatter {
     }
 
     /**
+     * Writes the fields directly into the reusable buffer of the thread, without an intermediate Map.
+     * Additional fields (Map parameters and MDC) never replace one of the standard fields, for the same key the
+     * value of the last Map is used.
+     *
      * @param record The record to format.
      * @return The JSON formatted record.
      */
     private String jsonLogFormat(LogRecord record) {
+        StringBuilder buffer = acquireBuffer();
         try {
-            Map<String, Object> eventObject = new TreeMap<>();
+            buffer.append('{');
 
-            /*
-             * Create the timestamp field and append to object.
-             */
-            SimpleDateFormat dateFormatter = new SimpleDateFormat(RFC3339_DATE_FORMAT);
+            writeField(buffer, TIMESTAMP_KEY, timestampFormatter.format(record.getMillis()));
 
-            date.setTime(record.getMillis());
-            String timestampValue = dateFormatter.format(date);
-            eventObject.put(TIMESTAMP_KEY, timestampValue);
-
-            /*
-             * Create the event level field and append to object.
-             */
-            Level eventLevel = record.getLevel();
-            eventObject.put(LOG_LEVEL_KEY, eventLevel.getLocalizedName());
+            Level level = record.getLevel();
+            writeField(buffer, LOG_LEVEL_KEY, level.getLocalizedName());
 
-            /*
-             * Get the logger name and append to object.
-             */
             String loggerName = record.getLoggerName();
+            writeField(buffer, LOGGER_NAME_KEY, loggerName == null ? "" : loggerName);
 
-            if (null == loggerName) {
-                loggerName = "";
-            }
-
-            eventObject.put(LOGGER_NAME_KEY, loggerName);
-
-            /*
-             * Get thread information and append to object if not excluded.
-             */
             if (isFieldIncluded(AdditionalLogFieldsSupport.SupplementalAttribute.TID)) {
-                // Thread ID
-                int threadId = record.getThreadID();
-                eventObject.put(THREAD_ID_KEY, String.valueOf(threadId));
+                writeKey(buffer, THREAD_ID_KEY).append('"').append(record.getThreadID()).append('"');
 
-                // Thread Name
                 String threadName;
-
                 if (record instanceof EnhancedLogRecord) {
                     threadName = ((EnhancedLogRecord) record).getThreadName();
                 } else {
                     threadName = Thread.currentThread().getName();
                 }
-
-                eventObject.put(THREAD_NAME_KEY, threadName);
+                writeField(buffer, THREAD_NAME_KEY, threadName);
             }
 
-
-            /*
-             * Get millis time for log entry timestamp
-             */
             if (isFieldIncluded(AdditionalLogFieldsSupport.SupplementalAttribute.TIME_MILLIS)) {
-                long timestamp = record.getMillis();
-                eventObject.put(TIME_MILLIS_KEY, String.valueOf(timestamp));
+                writeKey(buffer, TIME_MILLIS_KEY).append('"').append(record.getMillis()).append('"');
             }
 
-            /*
-             * Include the integer value for log level
-             */
-            Level level = record.getLevel();
             if (isFieldIncluded(AdditionalLogFieldsSupport.SupplementalAttribute.LEVEL_VALUE)) {
-                int levelValue = level.intValue();
-                eventObject.put(LEVEL_VALUE_KEY, String.valueOf(levelValue));
+                writeKey(buffer, LEVEL_VALUE_KEY).append('"').append(level.intValue()).append('"');
             }
 
-            /*
-             * Stick the message id on the entry
-             */
             String messageId = getMessageId(record);
             if (messageId != null && !messageId.isEmpty()) {
-                eventObject.put(MESSAGE_ID_KEY, messageId);
+                writeField(buffer, MESSAGE_ID_KEY, messageId);
             }
 
             /*
@@ -165,73 +138,53 @@ public class JSONLogFormatter extends CommonFormatter {
              */
             if (level.intValue() <= Level.FINE.intValue()) {
                 String sourceClassName = record.getSourceClassName();
-
                 if (null != sourceClassName && !sourceClassName.isEmpty()) {
-                    eventObject.put(CLASS_NAME, sourceClassName);
+                    writeField(buffer, CLASS_NAME, sourceClassName);
                 }
 
                 String sourceMethodName = record.getSourceMethodName();
-
                 if (null != sourceMethodName && !sourceMethodName.isEmpty()) {
-                    eventObject.put(METHOD_NAME, sourceMethodName);
+                    writeField(buffer, METHOD_NAME, sourceMethodName);
                 }
             }
 
-            List<Object> parameters = new ArrayList<>();
-
-            if (record.getParameters() != null) {
-                parameters.addAll(Arrays.asList(record.getParameters()));
-            }
-            if (record instanceof EnhancedLogRecord) {
-                // We need to add MDC as a Map since there is specific support for Map parameters.
-                parameters.add(((EnhancedLogRecord) record).getMdc());
-            }
-
-            for (Object parameter : parameters) {
-                if (parameter instanceof Map) {
-                    for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) parameter).entrySet()) {
-                        // there are implementations that allow <null> keys...
-                        String key;
-                        if (entry.getKey() != null) {
-                            key = entry.getKey().toString();
-                        } else {
-                            key = "null";
-                        }
-
-                        // also handle <null> values...
-                        if (entry.getValue() != null) {
-                            eventObject.put(key, entry.getValue().toString());
-                        } else {
-                            eventObject.put(key, "null");
-                        }
+            Object[] parameters = record.getParameters();
+            Map<String, String> mdc = record instanceof EnhancedLogRecord ? ((EnhancedLogRecord) record).getMdc() : null;
+            if (parameters != null) {
+                for (int i = 0; i < parameters.length; i++) {
+                    if (parameters[i] instanceof Map) {
+                        writeMapFields(buffer, (Map<?, ?>) parameters[i], parameters, i + 1, mdc);
                     }
                 }
             }
+            if (mdc != null) {
+                writeMapFields(buffer, mdc, null, 0, null);
+            }
 
             String logMessage = record.getMessage();
-
             if (logMessage != null && !logMessage.isBlank()) {
-                logMessage = formatLogMessage(logMessage, record, this::getResourceBundle);
-                eventObject.put(LOG_MESSAGE_KEY, logMessage);
+                writeField(buffer, LOG_MESSAGE_KEY, formatLogMessage(logMessage, record, this::getResourceBundle));
             }
 
             Throwable throwable = getThrowable(record);
             if (null != throwable) {
-                String stacktraceText = getStacktraceAsText(throwable);
-                Map<String, String> traceObject = new TreeMap<>();
-
+                writeKey(buffer, THROWABLE_KEY).append('{');
                 if (throwable.getMessage() != null) {
-                    traceObject.put(EXCEPTION_KEY, throwable.getMessage());
+                    writeField(buffer, EXCEPTION_KEY, throwable.getMessage());
                 }
-                traceObject.put(STACK_TRACE_KEY, stacktraceText);
-                eventObject.put(THROWABLE_KEY, traceObject);
-
+                writeKey(buffer, STACK_TRACE_KEY).append('"');
+                // The stack trace is escaped while it is written in the buffer.
+                PrintWriter writer = new PrintWriter(new EscapingWriter(buffer));
+                throwable.printStackTrace(writer);
+                writer.flush();
+                buffer.append("\"}");
             }
 
-
-            return JSONValue.toJSONString(eventObject) + LINE_SEPARATOR;
+            buffer.append('}').append(LINE_SEPARATOR);
+            return releaseBuffer(buffer);
 
         } catch (Exception ex) {
+            releaseBuffer(buffer);
             new ErrorManager().error(
                     "Error in formatting Logrecord", ex,
                     ErrorManager.FORMAT_FAILURE);
@@ -239,15 +192,84 @@ public class JSONLogFormatter extends CommonFormatter {
         }
     }
 
-    private static String getStacktraceAsText(Throwable throwable) throws IOException {
-        String logMessage;
-        try (StringWriter stringWriter = new StringWriter();
-             PrintWriter printWriter = new PrintWriter(stringWriter)) {
+    private static void writeMapFields(StringBuilder buffer, Map<?, ?> values, Object[] parameters, int nextParameter, Map<String, String> mdc) {
+        for (Map.Entry<?, ?> entry : values.entrySet()) {
+            // there are implementations that allow <null> keys...
+            String key = entry.getKey() != null ? entry.getKey().toString() : "null";
+            if (STANDARD_KEYS.contains(key) || isDefinedLater(key, parameters, nextParameter, mdc)) {
+                continue;
+            }
+            // also handle <null> values...
+            writeField(buffer, key, entry.getValue() != null ? entry.getValue().toString() : "null");
+        }
+    }
+
+    private static boolean isDefinedLater(String key, Object[] parameters, int nextParameter, Map<String, String> mdc) {
+        if (parameters != null) {
+            for (int i = nextParameter; i < parameters.length; i++) {
+                if (parameters[i] instanceof Map && ((Map<?, ?>) parameters[i]).containsKey(key)) {
+                    return true;
+                }
+            }
+        }
+        return mdc != null && mdc.containsKey(key);
+    }
+
+    private static StringBuilder writeKey(StringBuilder buffer, String key) {
+        if (buffer.charAt(buffer.length() - 1) != '{') {
+            buffer.append(',');
+        }
+        buffer.append('"');
+        escape(buffer, key);
+        return buffer.append("\":");
+    }
+
+    private static void writeField(StringBuilder buffer, String key, String value) {
+        writeKey(buffer, key).append('"');
+        escape(buffer, value);
+        buffer.append('"');
+    }
 
-            throwable.printStackTrace(printWriter);
-            logMessage = stringWriter.toString();
+    private static void escape(StringBuilder buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            escape(buffer, value.charAt(i));
+        }
+    }
+
+    private static void escape(StringBuilder buffer, char c) {
+        switch (c) {
+            case '"':
+                buffer.append("\\\"");
+                break;
+            case '\\':
+                buffer.append("\\\\");
+                break;
+            case '\n':
+                buffer.append("\\n");
+                break;
+            case '\r':
+                buffer.append("\\r");
+                break;
+            case '\t':
+                buffer.append("\\t");
+                break;
+            case '\b':
+                buffer.append("\\b");
+                break;
+            case '\f':
+                buffer.append("\\f");
+                break;
+            default:
+                if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                    buffer.append("\\u")
+                            .append(HEX_DIGITS[(c >> 12) & 0xF])
+                            .append(HEX_DIGITS[(c >> 8) & 0xF])
+                            .append(HEX_DIGITS[(c >> 4) & 0xF])
+                            .append(HEX_DIGITS[c & 0xF]);
+                } else {
+                    buffer.append(c);
+                }
         }
-        return logMessage;
     }
 
     /**
@@ -299,4 +321,45 @@ public class JSONLogFormatter extends CommonFormatter {
 
         return bundle;
     }
+
+    /**
+     * Writes the characters JSON escaped in the buffer, so that the stack trace doesn't need to be escaped afterwards.
+     */
+    private static final class EscapingWriter extends Writer {
+
+        private final StringBuilder buffer;
+
+        private EscapingWriter(StringBuilder buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                escape(buffer, chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                escape(buffer, str.charAt(i));
+            }
+        }
+
+        @Override
+        public void write(int c) {
+            escape(buffer, (char) c);
+        }
+
+        @Override
+        public void flush() {
+            // Nothing to flush
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+    }
 }
@@ -17,11 +17,6 @@ package be.atbash.runtime.logging.handler.formatter;
 
 import be.atbash.runtime.logging.EnhancedLogRecord;
 
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -54,7 +49,7 @@ public class ODLLogFormatter extends AnsiColorFormatter {
     private static final String FIELD_END_MARKER = "]";
     private static final char FIELD_SEPARATOR = ' ';
 
-    private static final String RFC_3339_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+    private final TimestampFormatter timestampFormatter = TimestampFormatter.of(TimestampFormatter.RFC_3339_DATE_FORMAT);
 
     public ODLLogFormatter(String excludeFields) {
         super(excludeFields);
@@ -82,29 +77,15 @@ public class ODLLogFormatter extends AnsiColorFormatter {
     /**
      * Note: This method is not synchronized, we are assuming that the
      * synchronization will happen at the Log Handler.publish( ) method.
+     * The record is built in the reusable buffer of the thread.
      */
     private String odlLogFormat(LogRecord record) {
 
+        StringBuilder recordBuffer = acquireBuffer();
         try {
-            // creating message from log record using resource bundle and appending parameters
-            String message = getLogMessage(record);
-            if (message == null || message.isEmpty()) {
-                return "";
-            }
-
-            // Starting formatting message
-            // Adding record begin marker
-            StringBuilder recordBuffer = new StringBuilder();
-
-            // A Dummy Container Date Object is used to format the date
-            Date date = new Date();
-
             // Adding timestamp
-            SimpleDateFormat dateFormatter = new SimpleDateFormat(RFC_3339_DATE_FORMAT);
-            date.setTime(record.getMillis());
             recordBuffer.append(FIELD_BEGIN_MARKER);
-            String timestamp = dateFormatter.format(date);
-            recordBuffer.append(timestamp);
+            recordBuffer.append(timestampFormatter.format(record.getMillis()));
             recordBuffer.append(FIELD_END_MARKER);
             recordBuffer.append(FIELD_SEPARATOR);
 
@@ -124,8 +105,10 @@ public class ODLLogFormatter extends AnsiColorFormatter {
 
             // Adding message ID
             recordBuffer.append(FIELD_BEGIN_MARKER);
-            String msgId = UniformLogFormatter.getMessageId(record);
-            recordBuffer.append((msgId == null) ? "" : msgId);
+            int msgIdLength = UniformLogFormatter.getMessageIdLength(record.getMessage());
+            if (msgIdLength > 0) {
+                recordBuffer.append(record.getMessage(), 0, msgIdLength);
+            }
             recordBuffer.append(FIELD_END_MARKER);
             recordBuffer.append(FIELD_SEPARATOR);
 
@@ -216,10 +199,18 @@ public class ODLLogFormatter extends AnsiColorFormatter {
                 }
             }
 
-            recordBuffer.append(message);
+            // creating message from log record using resource bundle and appending parameters
+            int messageStart = recordBuffer.length();
+            appendLogMessage(recordBuffer, record);
+            if (recordBuffer.length() == messageStart) {
+                // No message, nothing to log.
+                releaseBuffer(recordBuffer);
+                return "";
+            }
             recordBuffer.append(LINE_SEPARATOR);
-            return recordBuffer.toString();
+            return releaseBuffer(recordBuffer);
         } catch (Exception ex) {
+            releaseBuffer(recordBuffer);
             new ErrorManager().error(
                     "Error in formatting Logrecord", ex,
                     ErrorManager.FORMAT_FAILURE);
@@ -229,26 +220,17 @@ public class ODLLogFormatter extends AnsiColorFormatter {
         }
     }
 
-    private String getLogMessage(LogRecord record) throws IOException {
+    private void appendLogMessage(StringBuilder buffer, LogRecord record) {
         String logMessage = record.getMessage();
         if (logMessage == null) {
             logMessage = "";
         }
-        logMessage = formatLogMessage(logMessage, record, this::getResourceBundle);
+        buffer.append(formatLogMessage(logMessage, record, this::getResourceBundle));
         Throwable throwable = UniformLogFormatter.getThrowable(record);
         if (throwable != null) {
-            StringBuilder buffer = new StringBuilder();
-            buffer.append(logMessage);
             buffer.append(LINE_SEPARATOR);
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            throwable.printStackTrace(pw);
-            pw.close();
-            buffer.append(sw);
-            logMessage = buffer.toString();
-            sw.close();
+            appendStackTrace(buffer, throwable);
         }
-        return logMessage;
     }
 
     private synchronized ResourceBundle getResourceBundle(String loggerName) {
@@ -15,6 +15,8 @@
  */
 package be.atbash.runtime.logging.handler.formatter;
 
+import be.atbash.runtime.logging.CallerDataFormatter;
+import be.atbash.runtime.logging.CallerDataRequirement;
 import be.atbash.runtime.logging.EnhancedLogRecord;
 import be.atbash.runtime.logging.util.LogUtil;
 
@@ -26,7 +28,7 @@ import java.util.logging.Formatter;
 import java.util.logging.LogRecord;
 import java.util.stream.Collectors;
 
-public class SimpleLogFormatter extends Formatter {
+public class SimpleLogFormatter extends Formatter implements CallerDataFormatter {
 
     private final String DEFAULT_FORMAT = "%1$tb %1$td, %1$tY %1$tT %2$s %4$s: %5$s%6$s%n";
     private final String DEFAULT_FORMAT_WITH_MDC = "%1$tb %1$td, %1$tY %1$tT %2$s %4$s: [%7$s]%5$s%6$s%n";
@@ -39,6 +41,13 @@ public class SimpleLogFormatter extends Formatter {
         formatWithMDC = LogUtil.getStringProperty(this.getClass().getName() + ".format.mdc").orElse(DEFAULT_FORMAT_WITH_MDC);
     }
 
+    @Override
+    public int getCallerDataLevel() {
+        // The source is the second argument of the format.
+        boolean sourceUsed = format.contains("%2$") || formatWithMDC.contains("%2$");
+        return sourceUsed ? CallerDataRequirement.ALL_LEVELS : CallerDataRequirement.NO_LEVELS;
+    }
+
     /**
      * Format the given LogRecord.
      * <p>
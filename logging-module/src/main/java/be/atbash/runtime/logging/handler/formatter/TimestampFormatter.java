@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.formatter;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats the timestamp of the log records. Many records are logged within the same millisecond, so the text of the
+ * last timestamp is kept and reused. {@link DateTimeFormatter} is immutable, so instances can be used by several
+ * threads.
+ */
+final class TimestampFormatter {
+
+    static final String RFC_3339_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+
+    private final DateTimeFormatter formatter;
+
+    private volatile CachedTimestamp cached = new CachedTimestamp(Long.MIN_VALUE, "");
+
+    private TimestampFormatter(String pattern) {
+        formatter = DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.systemDefault());
+    }
+
+    /**
+     * Creates the formatter for the pattern, the RFC 3339 format is used when the pattern isn't valid.
+     *
+     * @param pattern The pattern as defined by {@link DateTimeFormatter}.
+     * @return The formatter.
+     */
+    static TimestampFormatter of(String pattern) {
+        try {
+            TimestampFormatter result = new TimestampFormatter(pattern);
+            // Some patterns are only rejected when formatting (like a field not available in an Instant)
+            result.format(System.currentTimeMillis());
+            return result;
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return new TimestampFormatter(RFC_3339_DATE_FORMAT);
+        }
+    }
+
+    String format(long millis) {
+        CachedTimestamp current = cached;
+        if (current.millis == millis) {
+            return current.text;
+        }
+        String text = formatter.format(Instant.ofEpochMilli(millis));
+        cached = new CachedTimestamp(millis, text);
+        return text;
+    }
+
+    private static final class CachedTimestamp {
+
+        private final long millis;
+        private final String text;
+
+        private CachedTimestamp(long millis, String text) {
+            this.millis = millis;
+            this.text = text;
+        }
+    }
+}
@@ -20,10 +20,6 @@ package be.atbash.runtime.logging.handler.formatter;
 import be.atbash.runtime.logging.EnhancedLogRecord;
 import be.atbash.runtime.logging.util.LogUtil;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -31,8 +27,6 @@ import java.util.logging.ErrorManager;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.LogRecord;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * UniformLogFormatter conforms to the logging format defined by the
@@ -48,7 +42,6 @@ public class UniformLogFormatter extends AnsiColorFormatter {
     private static final String RECORD_BEGIN_MARKER = "[#|";
     private static final String RECORD_END_MARKER = "|#]";
     private static final String RECORD_FIELD_SEPARATOR = "|";
-    private static final String RFC_3339_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
 
     private static final String METHOD_NAME = "MethodName";
     private static final String CLASS_NAME = "ClassName";
@@ -57,18 +50,13 @@ public class UniformLogFormatter extends AnsiColorFormatter {
     // and can be searched using the LoggerName as the key
     private final Map<String, ResourceBundle> loggerResourceBundleTable;
     private final LogManager logManager;
-    // A Dummy Container Date Object is used to format the date
-    private final Date date = new Date();
-
-
-    private static final Pattern MESSAGE_ID_PATTERN = Pattern.compile("(\\D+)-(\\d+):\\s(.+)");
+    private TimestampFormatter timestampFormatter;
 
     private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
     private String recordBeginMarker;
     private String recordEndMarker;
     private String recordFieldSeparator;
-    private String recordDateFormat;
 
     public static final char NVPAIR_SEPARATOR = ';';
     public static final char NV_SEPARATOR = '=';
@@ -86,14 +74,10 @@ public class UniformLogFormatter extends AnsiColorFormatter {
         recordBeginMarker = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("logFormatBeginMarker")).orElse(RECORD_BEGIN_MARKER);
         recordEndMarker = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("logFormatEndMarker")).orElse(RECORD_END_MARKER);
         recordFieldSeparator = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("logFormatFieldSeparator")).orElse(RECORD_FIELD_SEPARATOR);
-        recordDateFormat = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("logFormatDateFormat")).orElse(RFC_3339_DATE_FORMAT);
+        String recordDateFormat = LogUtil.getStringProperty(LogUtil.getLogPropertyKey("logFormatDateFormat")).orElse(TimestampFormatter.RFC_3339_DATE_FORMAT);
 
-        SimpleDateFormat sdf = new SimpleDateFormat(recordDateFormat);
-        try {
-            sdf.format(new Date());
-        } catch (Exception e) {
-            recordDateFormat = RFC_3339_DATE_FORMAT;
-        }
+        // Falls back to the RFC 3339 format when the pattern is invalid.
+        timestampFormatter = TimestampFormatter.of(recordDateFormat);
     }
 
     /**
@@ -117,21 +101,15 @@ public class UniformLogFormatter extends AnsiColorFormatter {
     /**
      * Note: This method is not synchronized, we are assuming that the
      * synchronization will happen at the Log Handler.publish( ) method.
+     * The record is built in the reusable buffer of the thread.
      */
     private String uniformLogFormat(LogRecord record) {
 
+        StringBuilder recordBuffer = acquireBuffer();
         try {
 
-            SimpleDateFormat dateFormatter = new SimpleDateFormat(recordDateFormat);
-
-            StringBuilder recordBuffer = new StringBuilder(recordBeginMarker);
-            // The following operations are to format the date and time in a
-            // human readable  format.
-            // _REVISIT_: Use HiResolution timer to analyze the number of
-            // Microseconds spent on formatting date object
-            date.setTime(record.getMillis());
-            String timestamp = dateFormatter.format(date);
-            recordBuffer.append(timestamp);
+            recordBuffer.append(recordBeginMarker);
+            recordBuffer.append(timestampFormatter.format(record.getMillis()));
             if (color()) {
                 recordBuffer.append(getColor(record.getLevel()));
             }
@@ -180,10 +158,11 @@ public class UniformLogFormatter extends AnsiColorFormatter {
                 recordBuffer.append(levelValue).append(NVPAIR_SEPARATOR);
             }
 
-            String msgId = getMessageId(record);
-            if (msgId != null && !msgId.isEmpty()) {
+            String msg = record.getMessage();
+            int msgIdLength = getMessageIdLength(msg);
+            if (msgIdLength > 0) {
                 recordBuffer.append("_MessageID").append(NV_SEPARATOR);
-                recordBuffer.append(msgId).append(NVPAIR_SEPARATOR);
+                recordBuffer.append(msg, 0, msgIdLength).append(NVPAIR_SEPARATOR);
             }
 
             // See 6316018. ClassName and MethodName information should be
@@ -225,43 +204,27 @@ public class UniformLogFormatter extends AnsiColorFormatter {
             // in some case no msg is passed to the logger API. We assume that either:
             // 1. A message was logged in a previous logger call and now just the exception is logged.
             // 2. There is a bug in the calling code causing the message to be missing.
-            if (logMessage == null || logMessage.trim().equals("")) {
+            if (logMessage == null || logMessage.isBlank()) {
 
                 if (record.getThrown() != null) {
                     // case 1: Just log the exception instead of a message
-                    StringWriter sw = new StringWriter();
-                    PrintWriter pw = new PrintWriter(sw);
-                    record.getThrown().printStackTrace(pw);
-                    pw.close();
-                    logMessage = sw.toString();
-                    sw.close();
-                } else {
-                    // GLASSFISH-18816: Suppress noise.
-                    logMessage = "";
+                    appendStackTrace(recordBuffer, record.getThrown());
                 }
-                recordBuffer.append(logMessage);
+                // else GLASSFISH-18816: Suppress noise.
             } else {
-                logMessage = formatLogMessage(logMessage, record, this::getResourceBundle);
-                StringBuilder logMessageBuffer = new StringBuilder();
-                logMessageBuffer.append(logMessage);
+                recordBuffer.append(formatLogMessage(logMessage, record, this::getResourceBundle));
 
                 Throwable throwable = getThrowable(record);
                 if (throwable != null) {
-                    logMessageBuffer.append(LINE_SEPARATOR);
-                    StringWriter sw = new StringWriter();
-                    PrintWriter pw = new PrintWriter(sw);
-                    throwable.printStackTrace(pw);
-                    pw.close();
-                    logMessageBuffer.append(sw);
-                    sw.close();
+                    recordBuffer.append(LINE_SEPARATOR);
+                    appendStackTrace(recordBuffer, throwable);
                 }
-                logMessage = logMessageBuffer.toString();
-                recordBuffer.append(logMessage);
             }
             recordBuffer.append(recordEndMarker).append(LINE_SEPARATOR);//.append(LINE_SEPARATOR);
-            return recordBuffer.toString();
+            return releaseBuffer(recordBuffer);
 
         } catch (Exception ex) {
+            releaseBuffer(recordBuffer);
             new ErrorManager().error(
                     "Error in formatting Logrecord", ex,
                     ErrorManager.FORMAT_FAILURE);
@@ -274,13 +237,56 @@ public class UniformLogFormatter extends AnsiColorFormatter {
 
     static String getMessageId(LogRecord lr) {
         String msg = lr.getMessage();
-        if (msg != null && !msg.isEmpty()) {
-            Matcher matcher = MESSAGE_ID_PATTERN.matcher(msg);
-            if (matcher.matches()) {
-                return matcher.group(1) + "-" + matcher.group(2);
+        int length = getMessageIdLength(msg);
+        return length > 0 ? msg.substring(0, length) : null;
+    }
+
+    /**
+     * Determines the length of the message id at the start of the message, as in {@code RUNTIME-001: Message}. This
+     * is the same as matching the pattern {@code (\D+)-(\d+):\s(.+)} but without the allocations of the Matcher.
+     *
+     * @param msg The message
+     * @return The length of the message id or 0 when the message doesn't start with a message id.
+     */
+    static int getMessageIdLength(String msg) {
+        if (msg == null) {
+            return 0;
+        }
+        int length = msg.length();
+        int idx = 0;
+        while (idx < length && !isDigit(msg.charAt(idx))) {
+            idx++;
+        }
+        // At least one non-digit before the - and the number
+        if (idx < 2 || idx == length || msg.charAt(idx - 1) != '-') {
+            return 0;
+        }
+        while (idx < length && isDigit(msg.charAt(idx))) {
+            idx++;
+        }
+        int result = idx;
+        // Followed by ':', a whitespace and the text on a single line.
+        if (idx + 2 >= length || msg.charAt(idx) != ':' || !isWhitespace(msg.charAt(idx + 1))) {
+            return 0;
+        }
+        for (int i = idx + 2; i < length; i++) {
+            if (isLineTerminator(msg.charAt(i))) {
+                return 0;
             }
         }
-        return null;
+        return result;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
     }
 
     static Throwable getThrowable(LogRecord record) {
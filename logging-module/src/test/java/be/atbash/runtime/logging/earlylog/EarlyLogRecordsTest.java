@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.earlylog;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.stream.Collectors;
+
+class EarlyLogRecordsTest {
+
+    @AfterEach
+    public void teardown() {
+        EarlyLogRecords.replay(r -> {
+        });
+    }
+
+    @Test
+    void replay() {
+        EarlyLogRecords.add(new LogRecord(Level.INFO, "*First"));
+        EarlyLogRecords.add(new LogRecord(Level.INFO, "*Second"));
+
+        List<String> replayed = new ArrayList<>();
+        EarlyLogRecords.replay(r -> replayed.add(r.getMessage()));
+
+        Assertions.assertThat(replayed).containsExactly("*First", "*Second");
+        // Released after the replay.
+        Assertions.assertThat(EarlyLogRecords.getEarlyMessages()).isEmpty();
+    }
+
+    @Test
+    void add_bounded() {
+        for (int i = 0; i < 10_005; i++) {
+            EarlyLogRecords.add(new LogRecord(Level.INFO, "*Message " + i));
+        }
+
+        List<LogRecord> replayed = new ArrayList<>();
+        EarlyLogRecords.replay(replayed::add);
+
+        Assertions.assertThat(replayed).hasSize(10_001);
+        Assertions.assertThat(replayed.get(0).getMessage()).startsWith("LOG-119: 5 early log records discarded");
+        Assertions.assertThat(replayed.get(1).getMessage()).isEqualTo("*Message 5");
+        Assertions.assertThat(replayed.get(10_000).getMessage()).isEqualTo("*Message 10004");
+    }
+
+    @Test
+    void getEarlyMessages() {
+        EarlyLogRecords.add(new LogRecord(Level.SEVERE, "*Problem"));
+
+        List<String> messages = EarlyLogRecords.getEarlyMessages().stream()
+                .map(LogRecord::getMessage)
+                .collect(Collectors.toList());
+        Assertions.assertThat(messages).containsExactly("*Problem");
+        // Still available for the replay
+        Assertions.assertThat(EarlyLogRecords.getEarlyMessages()).hasSize(1);
+    }
+}
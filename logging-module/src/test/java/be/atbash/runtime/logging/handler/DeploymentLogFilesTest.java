@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler;
+
+import be.atbash.runtime.core.data.RuntimeConfiguration;
+import be.atbash.runtime.core.data.deployment.ArchiveDeployment;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+class DeploymentLogFilesTest {
+
+    @TempDir
+    private File configDirectory;
+
+    private DeploymentLogFiles deploymentLogFiles;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        String properties = "be.atbash.runtime.logging.handler.LogFileHandler.deployment.demo.loggers=com.acme.demo, com.acme.shared\n"
+                + "be.atbash.runtime.logging.handler.LogFileHandler.deployment.runtime.loggers=com.acme.runtime\n";
+        LogManager.getLogManager().readConfiguration(new ByteArrayInputStream(properties.getBytes(StandardCharsets.UTF_8)));
+
+        RuntimeConfiguration configuration = new RuntimeConfiguration.Builder(configDirectory, "default").build();
+        deploymentLogFiles = new DeploymentLogFiles(name -> new LogFileHandler(configuration, name));
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        deploymentLogFiles.closeAll();
+        LogManager.getLogManager().readConfiguration();
+    }
+
+    @Test
+    void findHandler_loggerPrefix() {
+        deploymentLogFiles.open(new ArchiveDeployment(new File("demo.war"), "demo"));
+
+        Assertions.assertThat(deploymentLogFiles.findHandler(record("com.acme.demo.Service"))).isNotNull();
+        Assertions.assertThat(deploymentLogFiles.findHandler(record("com.acme.shared"))).isNotNull();
+        Assertions.assertThat(deploymentLogFiles.findHandler(record("com.acme.demonstration.Service"))).isNull();
+        Assertions.assertThat(deploymentLogFiles.findHandler(record("be.atbash.runtime.Other"))).isNull();
+        Assertions.assertThat(deploymentLogFiles.findHandler(record(null))).isNull();
+    }
+
+    @Test
+    void findHandler_noLoggersDefined() {
+        deploymentLogFiles.open(new ArchiveDeployment(new File("other.war"), "other"));
+
+        Assertions.assertThat(deploymentLogFiles.findHandler(record("com.acme.demo.Service"))).isNull();
+    }
+
+    @Test
+    void close() throws IOException {
+        deploymentLogFiles.open(new ArchiveDeployment(new File("demo.war"), "demo"));
+
+        LogFileHandler handler = deploymentLogFiles.findHandler(record("com.acme.demo.Service"));
+        handler.publish(record("com.acme.demo.Service"));
+
+        deploymentLogFiles.close("demo");
+        Assertions.assertThat(deploymentLogFiles.findHandler(record("com.acme.demo.Service"))).isNull();
+
+        File logFile = new File(configDirectory, "logs/demo.log");
+        Assertions.assertThat(logFile).exists();
+        Assertions.assertThat(Files.readString(logFile.toPath())).contains("Message of the deployment");
+    }
+
+    @Test
+    void close_runtimeLogFileName() throws IOException {
+        deploymentLogFiles.open(new ArchiveDeployment(new File("runtime.war"), "runtime"));
+
+        deploymentLogFiles.findHandler(record("com.acme.runtime.Service")).publish(record("com.acme.runtime.Service"));
+        deploymentLogFiles.close("runtime");
+
+        Assertions.assertThat(new File(configDirectory, "logs/runtime.log")).doesNotExist();
+        File logFile = new File(configDirectory, "logs/deployment-runtime.log");
+        Assertions.assertThat(Files.readString(logFile.toPath())).contains("Message of the deployment");
+    }
+
+    @Test
+    void defineFileName() {
+        Assertions.assertThat(DeploymentLogFiles.defineFileName("demo-app_1.0", "runtime.log")).isEqualTo("demo-app_1.0.log");
+        Assertions.assertThat(DeploymentLogFiles.defineFileName("../demo app", "runtime.log")).isEqualTo(".._demo_app.log");
+    }
+
+    @Test
+    void defineFileName_runtimeLogFile() {
+        // Same file as the runtime log file or seen as one of its history files.
+        Assertions.assertThat(DeploymentLogFiles.defineFileName("runtime", "runtime.log")).isEqualTo("deployment-runtime.log");
+        Assertions.assertThat(DeploymentLogFiles.defineFileName("Runtime", "runtime.log")).isEqualTo("deployment-Runtime.log");
+        Assertions.assertThat(DeploymentLogFiles.defineFileName("runtime.log", "runtime.log")).isEqualTo("deployment-runtime.log.log");
+        Assertions.assertThat(DeploymentLogFiles.defineFileName("server", "server.log")).isEqualTo("deployment-server.log");
+        Assertions.assertThat(DeploymentLogFiles.defineFileName("runtime-app", "runtime.log")).isEqualTo("runtime-app.log");
+    }
+
+    private static LogRecord record(String loggerName) {
+        LogRecord result = new LogRecord(Level.INFO, "Message of the deployment");
+        result.setLoggerName(loggerName);
+        return result;
+    }
+}
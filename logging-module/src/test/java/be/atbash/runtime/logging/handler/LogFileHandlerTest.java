@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler;
+
+import be.atbash.runtime.core.data.RuntimeConfiguration;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+class LogFileHandlerTest {
+
+    @TempDir
+    private File configDirectory;
+
+    @AfterEach
+    public void teardown() throws IOException {
+        LogManager.getLogManager().readConfiguration();
+    }
+
+    @Test
+    void publish_filteredRecordsNotRateLimited() throws IOException {
+        String properties = "be.atbash.runtime.logging.handler.LogFileHandler.level=INFO\n"
+                + "be.atbash.runtime.logging.handler.LogFileHandler.rateLimitPerSecond=1\n"
+                + "be.atbash.runtime.logging.handler.LogFileHandler.rateLimitBy=logger\n";
+        LogManager.getLogManager().readConfiguration(new ByteArrayInputStream(properties.getBytes(StandardCharsets.UTF_8)));
+
+        RuntimeConfiguration configuration = new RuntimeConfiguration.Builder(configDirectory, "default").build();
+        LogFileHandler handler = new LogFileHandler(configuration, "demo");
+        for (int i = 0; i < 10; i++) {
+            handler.publish(record(Level.FINE, "Debug message " + i));
+        }
+        handler.publish(record(Level.INFO, "Info message"));
+        handler.close();
+
+        String content = Files.readString(new File(configDirectory, "logs/demo.log").toPath());
+        Assertions.assertThat(content).contains("Info message");
+        Assertions.assertThat(content).doesNotContain("Debug message");
+    }
+
+    private static LogRecord record(Level level, String message) {
+        LogRecord result = new LogRecord(level, message);
+        result.setLoggerName("com.acme.demo.Service");
+        return result;
+    }
+}
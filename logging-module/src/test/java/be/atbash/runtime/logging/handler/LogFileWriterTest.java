@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogFileWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void write() throws IOException {
+        File file = tempDir.resolve("runtime.log").toFile();
+        try (LogFileWriter writer = new LogFileWriter(file, StandardCharsets.UTF_8, FsyncPolicy.NONE, 1000, ByteBuffer.allocateDirect(1024))) {
+            writer.write("First line\n");
+            writer.write("Second line with é\n");
+            // Only written to the file at the end of the batch.
+            assertThat(file).isEmpty();
+            assertThat(writer.getBytesWritten()).isEqualTo(31);
+
+            writer.endOfBatch();
+            assertThat(Files.readString(file.toPath())).isEqualTo("First line\nSecond line with é\n");
+            assertThat(writer.getBytesWritten()).isEqualTo(31);
+        }
+    }
+
+    @Test
+    void write_largerThanBuffer() throws IOException {
+        File file = tempDir.resolve("runtime.log").toFile();
+        String line = "0123456789".repeat(50) + "\n";
+        try (LogFileWriter writer = new LogFileWriter(file, StandardCharsets.UTF_8, FsyncPolicy.BATCH, 1000, ByteBuffer.allocateDirect(64))) {
+            for (int i = 0; i < 10; i++) {
+                writer.write(line);
+            }
+            writer.endOfBatch();
+            assertThat(writer.getBytesWritten()).isEqualTo(5010);
+        }
+        assertThat(Files.readString(file.toPath())).isEqualTo(line.repeat(10));
+    }
+
+    @Test
+    void write_appendsToExistingFile() throws IOException {
+        File file = tempDir.resolve("runtime.log").toFile();
+        Files.writeString(file.toPath(), "Existing\n");
+
+        try (LogFileWriter writer = new LogFileWriter(file, StandardCharsets.UTF_8, FsyncPolicy.INTERVAL, 10, ByteBuffer.allocateDirect(1024))) {
+            assertThat(writer.getBytesWritten()).isEqualTo(9);
+            writer.write("New\n");
+        }
+        // close writes the remaining content of the buffer.
+        assertThat(Files.readString(file.toPath())).isEqualTo("Existing\nNew\n");
+    }
+
+    @Test
+    void forceIfDue_idle() throws IOException, InterruptedException {
+        File file = tempDir.resolve("runtime.log").toFile();
+        try (LogFileWriter writer = new LogFileWriter(file, StandardCharsets.UTF_8, FsyncPolicy.INTERVAL, 1000, ByteBuffer.allocateDirect(1024))) {
+            writer.write("Last line before idle period\n");
+            writer.endOfBatch();
+            // Interval not yet passed.
+            assertThat(writer.forceIfDue()).isFalse();
+
+            // No new batches arrive, the pump calls forceIfDue while waiting for records.
+            Thread.sleep(1100);
+            assertThat(writer.forceIfDue()).isTrue();
+            // Nothing written since the last force.
+            assertThat(writer.forceIfDue()).isFalse();
+        }
+    }
+
+    @Test
+    void forceIfDue_otherPolicy() throws IOException {
+        File file = tempDir.resolve("runtime.log").toFile();
+        try (LogFileWriter writer = new LogFileWriter(file, StandardCharsets.UTF_8, FsyncPolicy.NONE, 0, ByteBuffer.allocateDirect(1024))) {
+            writer.write("Line\n");
+            writer.endOfBatch();
+            assertThat(writer.forceIfDue()).isFalse();
+        }
+    }
+
+    @Test
+    void parse() {
+        assertThat(FsyncPolicy.parse("none")).contains(FsyncPolicy.NONE);
+        assertThat(FsyncPolicy.parse("Batch")).contains(FsyncPolicy.BATCH);
+        assertThat(FsyncPolicy.parse("interval")).contains(FsyncPolicy.INTERVAL);
+        assertThat(FsyncPolicy.parse("always")).isEmpty();
+    }
+}
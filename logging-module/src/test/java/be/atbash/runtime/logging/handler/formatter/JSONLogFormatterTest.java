@@ -27,6 +27,8 @@ import org.slf4j.MDC;
 
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
@@ -264,4 +266,56 @@ class JSONLogFormatterTest {
 
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void format_escapingAndParameterMaps() {
+        JSONLogFormatter logFormatter = new JSONLogFormatter("tid,timeMillis,levelValue");
+        LogRecord record = new LogRecord(Level.INFO, "Quote \" backslash \\ tab \t control \u0001");
+        record.setLoggerName("JUnit.test");
+        Map<String, Object> first = new HashMap<>();
+        first.put("key", "first");
+        first.put("Level", "ignored");
+        first.put("line", "a\nb");
+        record.setParameters(new Object[]{first, Map.of("key", "second")});
+
+        String message = logFormatter.format(record);
+
+        CustomAssertions.assertThat(message).isJsonFormat();
+        AbstractMapAssert mapAssert = CustomAssertions.assertThat(message).asMap();
+        mapAssert.containsOnlyKeys("LoggerName", "LogMessage", "Level", "Timestamp", "key", "line");
+        mapAssert.containsEntry("LogMessage", "Quote \" backslash \\ tab \t control \u0001");
+        mapAssert.containsEntry("Level", "INFO");
+        mapAssert.containsEntry("key", "second");
+        mapAssert.containsEntry("line", "a\nb");
+        Assertions.assertThat(message).doesNotContain("\"key\":\"first\"");
+    }
+
+    @Test
+    void format_withException_escapedStackTrace() {
+        JSONLogFormatter logFormatter = new JSONLogFormatter("");
+        LogRecord record = new LogRecord(Level.INFO, "Just a message");
+        record.setThrown(new IllegalStateException("Quote \" backslash \\ control \u0001 separator \u2028"));
+
+        String message = logFormatter.format(record);
+
+        CustomAssertions.assertThat(message).isJsonFormat();
+        Assertions.assertThat(message).contains("\\u0001").contains("\\u2028");
+        JSONObject throwable = (JSONObject) ((JSONObject) new JSONParser().parse(message)).get("Throwable");
+        String stackTrace = throwable.get("StackTrace").toString();
+        Assertions.assertThat(stackTrace).startsWith("java.lang.IllegalStateException: Quote \" backslash \\ control \u0001 separator \u2028" + System.lineSeparator());
+        Assertions.assertThat(stackTrace).contains("\tat " + JSONLogFormatterTest.class.getName());
+    }
+
+    @Test
+    void format_reusesBuffer() {
+        JSONLogFormatter logFormatter = new JSONLogFormatter("");
+        LogRecord record1 = new LogRecord(Level.INFO, "A long message that is longer than the second one");
+        LogRecord record2 = new LogRecord(Level.INFO, "Short");
+
+        logFormatter.format(record1);
+        String message = logFormatter.format(record2);
+
+        CustomAssertions.assertThat(message).isJsonFormat();
+        CustomAssertions.assertThat(message).asMap().containsEntry("LogMessage", "Short");
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.logging.handler.formatter;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+class TimestampFormatterTest {
+
+    @Test
+    void format_sameAsSimpleDateFormat() {
+        TimestampFormatter formatter = TimestampFormatter.of(TimestampFormatter.RFC_3339_DATE_FORMAT);
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(TimestampFormatter.RFC_3339_DATE_FORMAT);
+
+        long[] values = {0L, 1_700_000_000_123L, 1_700_000_000_123L, 1_700_000_000_124L};
+        for (long value : values) {
+            Assertions.assertThat(formatter.format(value)).isEqualTo(simpleDateFormat.format(new Date(value)));
+        }
+    }
+
+    @Test
+    void format_cachedWithinMillisecond() {
+        TimestampFormatter formatter = TimestampFormatter.of(TimestampFormatter.RFC_3339_DATE_FORMAT);
+
+        String first = formatter.format(1_700_000_000_123L);
+        Assertions.assertThat(formatter.format(1_700_000_000_123L)).isSameAs(first);
+        Assertions.assertThat(formatter.format(1_700_000_000_124L)).isNotEqualTo(first);
+    }
+
+    @Test
+    void of_invalidPattern() {
+        TimestampFormatter formatter = TimestampFormatter.of("yyyy-MM-dd'T'HH:mm:ss.SSSZ qqqqqqq");
+
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(TimestampFormatter.RFC_3339_DATE_FORMAT);
+        Assertions.assertThat(formatter.format(1_700_000_000_123L)).isEqualTo(simpleDateFormat.format(new Date(1_700_000_000_123L)));
+    }
+}
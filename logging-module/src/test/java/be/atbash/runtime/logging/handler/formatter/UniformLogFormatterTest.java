@@ -18,6 +18,7 @@ package be.atbash.runtime.logging.handler.formatter;
 import be.atbash.runtime.CustomAssertions;
 import be.atbash.runtime.logging.EnhancedLogRecord;
 import org.assertj.core.api.AbstractMapAssert;
+import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.MDC;
@@ -156,4 +157,18 @@ class UniformLogFormatterTest {
         mapAssert.containsEntry("key", "value");
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void getMessageIdLength() {
+        Assertions.assertThat(UniformLogFormatter.getMessageIdLength("LOG-011: Unknown field")).isEqualTo(7);
+        Assertions.assertThat(UniformLogFormatter.getMessageIdLength("JETTY-104: End of registration")).isEqualTo(9);
+        Assertions.assertThat(UniformLogFormatter.getMessageIdLength("A-B-12:\tx")).isEqualTo(6);
+        Assertions.assertThat(UniformLogFormatter.getMessageIdLength("Just a message")).isEqualTo(0);
+        Assertions.assertThat(UniformLogFormatter.getMessageIdLength("-011: No prefix")).isEqualTo(0);
+        Assertions.assertThat(UniformLogFormatter.getMessageIdLength("LOG011: No dash")).isEqualTo(0);
+        Assertions.assertThat(UniformLogFormatter.getMessageIdLength("LOG-011:No space")).isEqualTo(0);
+        Assertions.assertThat(UniformLogFormatter.getMessageIdLength("LOG-011: ")).isEqualTo(0);
+        Assertions.assertThat(UniformLogFormatter.getMessageIdLength("LOG-011: Multi\nline")).isEqualTo(0);
+        Assertions.assertThat(UniformLogFormatter.getMessageIdLength(null)).isEqualTo(0);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics;
+
+import be.atbash.runtime.metrics.collector.HistogramCollector;
+import be.atbash.runtime.metrics.collector.HistogramSnapshot;
+import be.atbash.runtime.metrics.collector.MetricsCollector;
+import be.atbash.runtime.metrics.collector.TimeWindowCollector;
+import be.atbash.runtime.metrics.snapshot.EndpointSnapshot;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * All collectors that keep data for one endpoint.
+ */
+public class EndpointMetrics {
+
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final MetricsCollector collector;
+    private final TimeWindowCollector windowCollector;  // null when no windows are configured.
+    private final MetricsCollector[] phaseCollectors;  // Indexed by the ordinal of RequestPhase
+    private final LongAdder[] statusCounts = new LongAdder[STATUS_CLASSES.length];  // Indexed by status / 100 - 1
+    private final Map<String, LongAdder> exceptionCounts = new ConcurrentHashMap<>();
+    private final long slowRequestThreshold;  // in µs, -1 when disabled.
+
+    public EndpointMetrics(MetricsCollector collector, TimeWindowCollector windowCollector, MetricsCollector[] phaseCollectors) {
+        this(collector, windowCollector, phaseCollectors, -1);
+    }
+
+    public EndpointMetrics(MetricsCollector collector, TimeWindowCollector windowCollector, MetricsCollector[] phaseCollectors, long slowRequestThreshold) {
+        this.slowRequestThreshold = slowRequestThreshold;
+        this.collector = collector;
+        this.windowCollector = windowCollector;
+        this.phaseCollectors = phaseCollectors;
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] = new LongAdder();
+        }
+    }
+
+    public void handle(long requestTime) {
+        collector.handle(requestTime);
+        if (windowCollector != null) {
+            windowCollector.handle(requestTime);
+        }
+    }
+
+    public void handlePhase(RequestPhase phase, long phaseTime) {
+        phaseCollectors[phase.ordinal()].handle(phaseTime);
+    }
+
+    public void handleStatus(int status) {
+        int idx = status / 100 - 1;
+        if (idx >= 0 && idx < statusCounts.length) {
+            statusCounts[idx].increment();
+        }
+    }
+
+    public void handleException(String exceptionType) {
+        exceptionCounts.computeIfAbsent(exceptionType, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * The number of requests for each status class (like {@code 2xx}) that has at least one request.
+     *
+     * @return The number of requests keyed by the status class.
+     */
+    public Map<String, Long> getStatusCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        for (int i = 0; i < statusCounts.length; i++) {
+            long count = statusCounts[i].sum();
+            if (count > 0) {
+                result.put(STATUS_CLASSES[i], count);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The number of requests that failed with an exception, keyed by the class name of the exception.
+     *
+     * @return The number of requests keyed by the exception type.
+     */
+    public Map<String, Long> getExceptionCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        exceptionCounts.forEach((type, count) -> result.put(type, count.sum()));
+        return result;
+    }
+
+    /**
+     * Is the request slow, should it be reported as a Flight Recorder event?
+     *
+     * @param requestTime The duration of the request in µs.
+     * @return true when the duration is at least the threshold of the endpoint.
+     */
+    public boolean isSlowRequest(long requestTime) {
+        return slowRequestThreshold >= 0 && requestTime >= slowRequestThreshold;
+    }
+
+    /**
+     * Adds the counts of the persisted histograms. Only possible when the histogram collector is used.
+     *
+     * @param snapshot The snapshot of the endpoint.
+     * @return true when the request time histogram is restored.
+     */
+    public boolean restore(EndpointSnapshot snapshot) {
+        if (!(collector instanceof HistogramCollector) || !((HistogramCollector) collector).restore(snapshot.getRequestTime())) {
+            return false;
+        }
+        for (RequestPhase phase : RequestPhase.values()) {
+            HistogramSnapshot phaseSnapshot = snapshot.getPhase(phase);
+            MetricsCollector phaseCollector = phaseCollectors[phase.ordinal()];
+            if (phaseSnapshot != null && phaseCollector instanceof HistogramCollector) {
+                ((HistogramCollector) phaseCollector).restore(phaseSnapshot);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes a snapshot of the histograms of the endpoint.
+     *
+     * @return The snapshot or null when the histogram collector isn't used.
+     */
+    public EndpointSnapshot snapshot(String deploymentName, String endpoint) {
+        if (!(collector instanceof HistogramCollector)) {
+            return null;
+        }
+        HistogramSnapshot[] phases = new HistogramSnapshot[phaseCollectors.length];
+        for (int i = 0; i < phaseCollectors.length; i++) {
+            if (phaseCollectors[i] instanceof HistogramCollector) {
+                phases[i] = ((HistogramCollector) phaseCollectors[i]).snapshot();
+            }
+        }
+        return new EndpointSnapshot(deploymentName, endpoint, ((HistogramCollector) collector).snapshot(), phases);
+    }
+
+    public MetricsCollector getCollector() {
+        return collector;
+    }
+
+    public TimeWindowCollector getWindowCollector() {
+        return windowCollector;
+    }
+
+    public MetricsCollector getPhaseCollector(RequestPhase phase) {
+        return phaseCollectors[phase.ordinal()];
+    }
+}
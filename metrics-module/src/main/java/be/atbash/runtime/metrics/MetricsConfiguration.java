@@ -0,0 +1,439 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics;
+
+import be.atbash.runtime.core.data.exception.IncorrectConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration values of the Metrics module, defined with the set command as {@code metrics.<key>=<value>}.
+ */
+public class MetricsConfiguration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsConfiguration.class);
+
+    public static final String COLLECTOR = "collector";
+    public static final String COLLECTOR_SIZE = "collector.size";
+    public static final String HISTOGRAM_PRECISION = "histogram.precision";
+    public static final String HISTOGRAM_HIGHEST = "histogram.highest";
+    public static final String WINDOWS = "windows";
+    public static final String WINDOW_SLICE = "window.slice";
+    public static final String WINDOW_PRECISION = "window.precision";
+    public static final String HISTOGRAM_BUCKETS = "histogram.buckets";
+    public static final String SCRAPE_CACHE = "scrape.cache";
+    public static final String ENDPOINTS_MAX = "endpoints.max";
+    public static final String SNAPSHOT_INTERVAL = "snapshot.interval";
+    public static final String PUSH_INTERVAL = "push.interval";
+    public static final String PUSH_URL = "push.url";
+    public static final String PUSH_FILE = "push.file";
+    public static final String PUSH_BATCH_SIZE = "push.batch.size";
+    public static final String PUSH_BUFFER_SIZE = "push.buffer.size";
+    public static final String PUSH_COMPRESS = "push.compress";
+    public static final String PUSH_SERVICE_NAME = "push.service.name";
+    public static final String JFR_THRESHOLD = "jfr.threshold";
+    public static final String JVM = "jvm";
+    public static final String JETTY = "jetty";
+    public static final String LOGGING = "logging";
+
+    public static final String COLLECTOR_CIRCULAR = "circular";
+    public static final String COLLECTOR_HISTOGRAM = "histogram";
+
+    private final Map<String, String> values;
+
+    private final String collector;
+    private final int collectorSize;
+    private final int histogramPrecision;
+    private final long histogramHighest;
+    private final List<Duration> windows;
+    private final long windowSlice;
+    private final int windowPrecision;
+    private final long[] histogramBuckets;
+    private final long scrapeCache;
+    private final int maxEndpoints;
+    private final long snapshotInterval;
+    private final long pushInterval;
+    private final URI pushUrl;
+    private final Path pushFile;
+    private final int pushBatchSize;
+    private final int pushBufferSize;
+    private final boolean pushCompress;
+    private final String pushServiceName;
+    // Key suffix (empty, .<deployment> or .<deployment>.<path>) -> threshold in µs
+    private final Map<String, Long> jfrThresholds;
+    private final boolean jvmMetrics;
+    private final boolean jettyMetrics;
+    private final boolean loggingMetrics;
+
+    public MetricsConfiguration() {
+        this(new HashMap<>());
+    }
+
+    public MetricsConfiguration(Map<String, String> values) {
+        this.values = values;
+
+        collector = values.getOrDefault(COLLECTOR, COLLECTOR_CIRCULAR);
+        if (!COLLECTOR_CIRCULAR.equals(collector) && !COLLECTOR_HISTOGRAM.equals(collector)) {
+            throw new IncorrectConfigurationException("METRICS-001", COLLECTOR + "=" + collector);
+        }
+        collectorSize = getIntValue(COLLECTOR_SIZE, 128);
+        if (collectorSize == 0) {
+            throw new IncorrectConfigurationException("METRICS-001", COLLECTOR_SIZE + "=" + collectorSize);
+        }
+        histogramPrecision = getIntValue(HISTOGRAM_PRECISION, 2);
+        if (histogramPrecision < 1 || histogramPrecision > 5) {
+            throw new IncorrectConfigurationException("METRICS-001", HISTOGRAM_PRECISION + "=" + histogramPrecision);
+        }
+        histogramHighest = getLongValue(HISTOGRAM_HIGHEST, 60_000_000L);  // 1 minute in µs
+
+        windows = parseWindows(values.getOrDefault(WINDOWS, "1,5,15"));
+        windowSlice = getLongValue(WINDOW_SLICE, 15);
+        if (windowSlice == 0) {
+            throw new IncorrectConfigurationException("METRICS-001", WINDOW_SLICE + "=" + windowSlice);
+        }
+        windowPrecision = getIntValue(WINDOW_PRECISION, 1);
+        if (windowPrecision < 1 || windowPrecision > 5) {
+            throw new IncorrectConfigurationException("METRICS-001", WINDOW_PRECISION + "=" + windowPrecision);
+        }
+        histogramBuckets = parseBuckets(values.getOrDefault(HISTOGRAM_BUCKETS, "0.001,0.005,0.01,0.025,0.05,0.1,0.25,0.5,1,2.5,5,10"));
+        scrapeCache = getLongValue(SCRAPE_CACHE, 5);
+        maxEndpoints = getIntValue(ENDPOINTS_MAX, 100);
+        if (maxEndpoints == 0) {
+            throw new IncorrectConfigurationException("METRICS-001", ENDPOINTS_MAX + "=" + maxEndpoints);
+        }
+        snapshotInterval = getLongValue(SNAPSHOT_INTERVAL, 0);
+        pushInterval = getLongValue(PUSH_INTERVAL, 0);
+        pushUrl = parsePushUrl(values.get(PUSH_URL));
+        String file = values.get(PUSH_FILE);
+        pushFile = file == null || file.isBlank() ? null : Path.of(file.trim());
+        pushBatchSize = getIntValue(PUSH_BATCH_SIZE, 10);
+        if (pushBatchSize == 0) {
+            throw new IncorrectConfigurationException("METRICS-001", PUSH_BATCH_SIZE + "=" + pushBatchSize);
+        }
+        pushBufferSize = getIntValue(PUSH_BUFFER_SIZE, 100);
+        if (pushBufferSize == 0) {
+            throw new IncorrectConfigurationException("METRICS-001", PUSH_BUFFER_SIZE + "=" + pushBufferSize);
+        }
+        pushCompress = getBooleanValue(PUSH_COMPRESS, true);
+        pushServiceName = values.getOrDefault(PUSH_SERVICE_NAME, "atbash-runtime");
+        jfrThresholds = parseJfrThresholds();
+        jvmMetrics = getBooleanValue(JVM, true);
+        jettyMetrics = getBooleanValue(JETTY, true);
+        loggingMetrics = getBooleanValue(LOGGING, true);
+    }
+
+    private long[] parseBuckets(String value) {
+        List<Long> result = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            try {
+                // Boundaries are defined in seconds, collectors work in µs.
+                long micros = new BigDecimal(part.trim()).movePointRight(6).longValueExact();
+                if (micros <= 0) {
+                    throw new IncorrectConfigurationException("METRICS-001", HISTOGRAM_BUCKETS + "=" + value);
+                }
+                result.add(micros);
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw new IncorrectConfigurationException("METRICS-001", HISTOGRAM_BUCKETS + "=" + value);
+            }
+        }
+        return result.stream()
+                .sorted()
+                .distinct()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private static URI parsePushUrl(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            URI result = new URI(value.trim());
+            if (!"http".equalsIgnoreCase(result.getScheme()) && !"https".equalsIgnoreCase(result.getScheme())) {
+                throw new IncorrectConfigurationException("METRICS-001", PUSH_URL + "=" + value);
+            }
+            return result;
+        } catch (URISyntaxException e) {
+            throw new IncorrectConfigurationException("METRICS-001", PUSH_URL + "=" + value);
+        }
+    }
+
+    private Map<String, Long> parseJfrThresholds() {
+        Map<String, Long> result = new HashMap<>();
+        result.put("", 1_000_000L);  // 1 second
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String key = entry.getKey();
+            if (!key.equals(JFR_THRESHOLD) && !key.startsWith(JFR_THRESHOLD + ".")) {
+                continue;
+            }
+            try {
+                long millis = Long.parseLong(entry.getValue().trim());
+                if (millis < -1) {
+                    throw new IncorrectConfigurationException("METRICS-001", key + "=" + entry.getValue());
+                }
+                result.put(key.substring(JFR_THRESHOLD.length()), millis < 0 ? -1 : millis * 1000);
+            } catch (NumberFormatException e) {
+                throw new IncorrectConfigurationException("METRICS-001", key + "=" + entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private List<Duration> parseWindows(String value) {
+        List<Duration> result = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            try {
+                long minutes = Long.parseLong(part.trim());
+                if (minutes <= 0) {
+                    throw new IncorrectConfigurationException("METRICS-001", WINDOWS + "=" + value);
+                }
+                result.add(Duration.ofMinutes(minutes));
+            } catch (NumberFormatException e) {
+                throw new IncorrectConfigurationException("METRICS-001", WINDOWS + "=" + value);
+            }
+        }
+        Collections.sort(result);
+        return Collections.unmodifiableList(result);
+    }
+
+    public String getCollector() {
+        return collector;
+    }
+
+    public int getCollectorSize() {
+        return collectorSize;
+    }
+
+    public int getHistogramPrecision() {
+        return histogramPrecision;
+    }
+
+    public long getHistogramHighest() {
+        return histogramHighest;
+    }
+
+    /**
+     * The time windows for which percentiles are calculated, in ascending order. Empty when disabled.
+     *
+     * @return The time windows.
+     */
+    public List<Duration> getWindows() {
+        return windows;
+    }
+
+    /**
+     * Duration of a time slice of the windows in seconds.
+     *
+     * @return Duration of a time slice in seconds.
+     */
+    public long getWindowSlice() {
+        return windowSlice;
+    }
+
+    public int getWindowPrecision() {
+        return windowPrecision;
+    }
+
+    /**
+     * The upper bounds of the buckets of the Prometheus histogram in microseconds, in ascending order.
+     *
+     * @return The bucket boundaries in microseconds.
+     */
+    public long[] getHistogramBuckets() {
+        return histogramBuckets.clone();
+    }
+
+    /**
+     * Number of seconds the rendered Prometheus output is reused for the next scrapes. 0 disables the cache.
+     *
+     * @return The cache duration in seconds.
+     */
+    public long getScrapeCache() {
+        return scrapeCache;
+    }
+
+    /**
+     * Maximum number of endpoints of a deployment for which metrics are kept. Requests for other endpoints are
+     * recorded under the endpoint {@code __other__}.
+     *
+     * @return The maximum number of endpoints for each deployment.
+     */
+    public int getMaxEndpoints() {
+        return maxEndpoints;
+    }
+
+    /**
+     * Number of seconds between the snapshots of the histograms that are written to the configuration directory and
+     * restored at the next start. 0 disables the snapshots.
+     *
+     * @return The interval in seconds.
+     */
+    public long getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Number of seconds between the collections of the metrics that are pushed to the {@link #getPushUrl()} and
+     * {@link #getPushFile()}. 0 disables the push of metrics.
+     *
+     * @return The interval in seconds.
+     */
+    public long getPushInterval() {
+        return pushInterval;
+    }
+
+    /**
+     * @return The HTTP endpoint that receives the metrics in OTLP JSON format, null when not configured.
+     */
+    public URI getPushUrl() {
+        return pushUrl;
+    }
+
+    /**
+     * @return The file to which the metrics are appended in OTLP JSON format (one line per batch), null when not
+     * configured.
+     */
+    public Path getPushFile() {
+        return pushFile;
+    }
+
+    /**
+     * @return The maximum number of collections that are sent in one request.
+     */
+    public int getPushBatchSize() {
+        return pushBatchSize;
+    }
+
+    /**
+     * @return The maximum number of collections that are kept when they can't be sent. The oldest are dropped.
+     */
+    public int getPushBufferSize() {
+        return pushBufferSize;
+    }
+
+    /**
+     * @return Are the requests to the {@link #getPushUrl()} compressed with gzip?
+     */
+    public boolean isPushCompress() {
+        return pushCompress;
+    }
+
+    /**
+     * @return The value of the {@code service.name} resource attribute of the pushed metrics.
+     */
+    public String getPushServiceName() {
+        return pushServiceName;
+    }
+
+    /**
+     * The duration above which a request of the endpoint is reported as a Flight Recorder event. The most specific
+     * value of {@code jfr.threshold.<deployment>.<path>}, {@code jfr.threshold.<deployment>} and
+     * {@code jfr.threshold} is used (in milliseconds).
+     *
+     * @param deploymentName The name of the deployment.
+     * @param endpoint       The endpoint name, like {@code GET /hello/{name}}.
+     * @return The threshold in microseconds or -1 when no events must be created.
+     */
+    public long getJfrThreshold(String deploymentName, String endpoint) {
+        int idx = endpoint.indexOf(' ');
+        String path = idx < 0 ? endpoint : endpoint.substring(idx + 1);
+        Long result = jfrThresholds.get("." + deploymentName + "." + path);
+        if (result == null) {
+            result = jfrThresholds.get("." + deploymentName);
+        }
+        return result == null ? jfrThresholds.get("") : result;
+    }
+
+    /**
+     * Are the memory, garbage collection, class loading and thread metrics of the JVM exported?
+     *
+     * @return true when the JVM metrics are exported.
+     */
+    public boolean isJvmMetrics() {
+        return jvmMetrics;
+    }
+
+    /**
+     * Are the thread pool and connector metrics of Jetty exported?
+     *
+     * @return true when the Jetty metrics are exported.
+     */
+    public boolean isJettyMetrics() {
+        return jettyMetrics;
+    }
+
+    /**
+     * Are the pending and dropped records of the asynchronous log handlers exported?
+     *
+     * @return true when the logging metrics are exported.
+     */
+    public boolean isLoggingMetrics() {
+        return loggingMetrics;
+    }
+
+    private boolean getBooleanValue(String key, boolean defaultValue) {
+        String value = values.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        if (!"true".equalsIgnoreCase(value.trim()) && !"false".equalsIgnoreCase(value.trim())) {
+            throw new IncorrectConfigurationException("METRICS-001", key + "=" + value);
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private int getIntValue(String key, int defaultValue) {
+        long result = getLongValue(key, defaultValue);
+        if (result > Integer.MAX_VALUE) {
+            LOGGER.warn(String.format("METRICS-110: Value for '%s' is too large (%s). Default value is used: %s", key, result, defaultValue));
+            return defaultValue;
+        }
+        return (int) result;
+    }
+
+    private long getLongValue(String key, long defaultValue) {
+        String value = values.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            long result = Long.parseLong(value.trim());
+            if (result < 0) {
+                throw new IncorrectConfigurationException("METRICS-001", key + "=" + value);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IncorrectConfigurationException("METRICS-001", key + "=" + value);
+        }
+    }
+}
@@ -15,13 +15,19 @@
  */
 package be.atbash.runtime.metrics;
 
+import be.atbash.runtime.metrics.collector.HistogramData;
 import be.atbash.runtime.metrics.collector.Percentiles;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interface for the class that processes the timing of a request so that classes
  * that make use of the percentile data can request data. See {@link MetricsDataProviderConsumer}
+ * <p>
+ * All values of the percentiles are in microseconds.
  */
 public interface MetricsDataProvider {
 
@@ -30,4 +36,67 @@ public interface MetricsDataProvider {
     List<String> listEndpoints(String deploymentName);
 
     Percentiles getEndpointMetrics(String deploymentName, String endpointPath);
+
+    /**
+     * Percentiles of the duration of a phase of the requests.
+     *
+     * @return The percentiles or null if there are no data for the endpoint.
+     */
+    Percentiles getEndpointPhaseMetrics(String deploymentName, String endpointPath, RequestPhase phase);
+
+    /**
+     * The time windows for which percentiles are available, in ascending order.
+     *
+     * @return The time windows, empty when there are no time windows configured.
+     */
+    List<Duration> getWindows();
+
+    /**
+     * Percentiles of the requests within the time window (a value returned by {@link #getWindows()}).
+     *
+     * @return The percentiles or null if there are no data for the endpoint.
+     */
+    Percentiles getEndpointMetrics(String deploymentName, String endpointPath, Duration window);
+
+    /**
+     * Cumulative counts of the requests for the configured bucket boundaries (in microseconds).
+     *
+     * @return The histogram data or null if there are no data for the endpoint or the collector doesn't support it.
+     */
+    HistogramData getEndpointHistogram(String deploymentName, String endpointPath);
+
+    /**
+     * The number of requests for each status class of the response (like {@code 2xx}).
+     *
+     * @return The number of requests keyed by the status class, empty if there are no data for the endpoint.
+     */
+    Map<String, Long> getEndpointStatusCounts(String deploymentName, String endpointPath);
+
+    /**
+     * The number of requests that failed with an exception.
+     *
+     * @return The number of requests keyed by the class name of the exception, empty if there are none.
+     */
+    Map<String, Long> getEndpointExceptionCounts(String deploymentName, String endpointPath);
+
+    /**
+     * The number of requests that are currently processed for each deployment.
+     *
+     * @return The number of requests keyed by the deployment name.
+     */
+    Map<String, Long> getInFlightRequests();
+
+    /**
+     * The deployments whose metrics contain the data of a snapshot written before the last restart.
+     *
+     * @return The time of the snapshot keyed by the deployment name.
+     */
+    Map<String, Instant> getRestoredDeployments();
+
+    /**
+     * The histogram of the endpoint as it was restored from the snapshot written before the last restart.
+     *
+     * @return The histogram data or null if the data of the endpoint are not restored.
+     */
+    HistogramData getRestoredHistogram(String deploymentName, String endpointPath);
 }
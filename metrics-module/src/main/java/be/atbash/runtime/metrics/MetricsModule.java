@@ -25,22 +25,56 @@ import be.atbash.runtime.core.data.module.sniffer.Sniffer;
 import be.atbash.runtime.core.module.RuntimeObjectsManager;
 import be.atbash.runtime.jersey.JerseyModule;
 import be.atbash.runtime.jersey.util.ExtraPackagesUtil;
+import be.atbash.runtime.jetty.util.HandlerWrapperUtil;
 import be.atbash.runtime.metrics.jetty.AtbashMetricsHandler;
 import be.atbash.runtime.metrics.jetty.PrometheusMetricsHandler;
+import be.atbash.runtime.metrics.jetty.RequestCompletionListener;
+import be.atbash.runtime.metrics.jetty.RequestStartHandler;
+import be.atbash.runtime.metrics.jetty.WebAppMetricsHandler;
+import be.atbash.runtime.metrics.push.MetricsPusher;
+import be.atbash.runtime.metrics.snapshot.MetricsSnapshot;
+import be.atbash.runtime.metrics.snapshot.MetricsSnapshotFile;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.handler.HandlerCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class MetricsModule implements Module<RuntimeConfiguration> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsModule.class);
+
     public static final String METRICS_MODULE_NAME = "metrics";
 
+    private static final String SNAPSHOT_FILE = "metrics.snapshot";
+
     private RuntimeConfiguration configuration;
 
     private HandlerCollection handlers;
 
     private RequestMetricsPump requestMetricsPump;
 
+    private MetricsSnapshotFile snapshotFile;
+
+    private ScheduledExecutorService snapshotExecutor;
+
+    private MetricsPusher metricsPusher;
+
+    public MetricsModule() {
+    }
+
+    // For testing the event handling without running the module.
+    MetricsModule(RequestMetricsPump requestMetricsPump) {
+        this.requestMetricsPump = requestMetricsPump;
+    }
+
     @Override
     public String name() {
         return METRICS_MODULE_NAME;
@@ -82,7 +116,9 @@ public class MetricsModule implements Module<RuntimeConfiguration> {
             requestMetricsPump.registerApplication(eventPayload.getPayload());
         }
         if (Events.UNDEPLOYMENT.equals(eventPayload.getEventCode())) {
-            requestMetricsPump.unregisterApplication(eventPayload.getPayload());
+            // The payload is the name of the deployment.
+            String deploymentName = eventPayload.getPayload();
+            requestMetricsPump.unregisterApplication(deploymentName);
         }
     }
 
@@ -103,22 +139,102 @@ public class MetricsModule implements Module<RuntimeConfiguration> {
 
     @Override
     public void run() {
-        requestMetricsPump = new RequestMetricsPump();
+        MetricsConfiguration metricsConfiguration = new MetricsConfiguration(configuration.getConfig().getModuleConfiguration(METRICS_MODULE_NAME));
+        requestMetricsPump = new RequestMetricsPump(metricsConfiguration);
+        startSnapshots(metricsConfiguration);
+        startPusher(metricsConfiguration);
 
         AtbashMetricsHandler atbashMetricsHandler = new AtbashMetricsHandler();
         atbashMetricsHandler.setProvider(requestMetricsPump);
 
-        PrometheusMetricsHandler prometheusMetricsHandler = new PrometheusMetricsHandler();
+        PrometheusMetricsHandler prometheusMetricsHandler = new PrometheusMetricsHandler(metricsConfiguration);
         prometheusMetricsHandler.setProvider(requestMetricsPump);
 
         handlers = RuntimeObjectsManager.getInstance().getExposedObject(HandlerCollection.class);
+        // Must be the first handler so that the time spent in Jetty can be determined.
+        handlers.prependHandler(new RequestStartHandler());
         handlers.addHandler(atbashMetricsHandler);
         handlers.addHandler(prometheusMetricsHandler);
 
+        // Timing of the Servlet and static content requests of each deployment.
+        HandlerWrapperUtil.addHandlerWrapper(deployment -> new WebAppMetricsHandler(requestMetricsPump, deployment.getDeploymentName()));
+
+        // In-flight requests and status of the requests that don't go through JAX-RS.
+        RequestCompletionListener completionListener = new RequestCompletionListener(requestMetricsPump);
+        for (Connector connector : handlers.getServer().getConnectors()) {
+            connector.addBean(completionListener);
+            if (metricsConfiguration.isJettyMetrics()) {
+                // Open connections and bytes in/out for the Prometheus output.
+                connector.addBean(new ConnectionStatistics());
+            }
+        }
+
+    }
+
+    private void startSnapshots(MetricsConfiguration metricsConfiguration) {
+        long interval = metricsConfiguration.getSnapshotInterval();
+        if (interval == 0) {
+            return;
+        }
+        if (configuration.isStateless()) {
+            LOGGER.warn("METRICS-101: Metrics snapshots are not supported for a stateless instance");
+            return;
+        }
+        if (!MetricsConfiguration.COLLECTOR_HISTOGRAM.equals(metricsConfiguration.getCollector())) {
+            LOGGER.warn("METRICS-102: Metrics snapshots require the histogram collector (metrics.collector=histogram)");
+            return;
+        }
+        snapshotFile = new MetricsSnapshotFile(new File(configuration.getConfigDirectory(), SNAPSHOT_FILE).toPath());
+        try {
+            MetricsSnapshot snapshot = snapshotFile.read();
+            if (snapshot != null) {
+                requestMetricsPump.restore(snapshot);
+                LOGGER.info("METRICS-103: Metrics restored from the snapshot of " + snapshot.getTimestamp());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("METRICS-104: Unable to restore the metrics from " + snapshotFile.getFile() + " : " + e.getMessage());
+        }
+
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Metrics snapshot writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotExecutor.scheduleWithFixedDelay(this::writeSnapshot, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private void startPusher(MetricsConfiguration metricsConfiguration) {
+        long interval = metricsConfiguration.getPushInterval();
+        if (interval == 0) {
+            return;
+        }
+        metricsPusher = new MetricsPusher(metricsConfiguration, requestMetricsPump);
+        if (!metricsPusher.hasSinks()) {
+            LOGGER.warn("METRICS-109: Push of metrics requires metrics.push.url or metrics.push.file");
+            metricsPusher = null;
+            return;
+        }
+        metricsPusher.start(interval);
+    }
+
+    private void writeSnapshot() {
+        try {
+            snapshotFile.write(requestMetricsPump.createSnapshot());
+        } catch (IOException e) {
+            LOGGER.warn("METRICS-105: Unable to write the metrics snapshot to " + snapshotFile.getFile() + " : " + e.getMessage());
+        }
     }
 
     @Override
     public void stop() {
         requestMetricsPump.stop();
+        if (metricsPusher != null) {
+            metricsPusher.stop();
+        }
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+            // Last snapshot so that the data since the previous one isn't lost.
+            writeSnapshot();
+        }
     }
 }
\ No newline at end of file
@@ -16,142 +16,445 @@
 package be.atbash.runtime.metrics;
 
 import be.atbash.runtime.core.data.deployment.AbstractDeployment;
-import be.atbash.runtime.core.data.exception.UnexpectedException;
-import be.atbash.runtime.core.data.util.Synchronizer;
+import be.atbash.runtime.core.data.util.ContextRootMapping;
+import be.atbash.runtime.metrics.collector.HistogramCollector;
+import be.atbash.runtime.metrics.collector.HistogramData;
 import be.atbash.runtime.metrics.collector.MetricsCollector;
 import be.atbash.runtime.metrics.collector.Percentiles;
 import be.atbash.runtime.metrics.collector.SimpleCircularCollector;
+import be.atbash.runtime.metrics.collector.StripeUtil;
+import be.atbash.runtime.metrics.collector.TimeWindowCollector;
 import be.atbash.runtime.metrics.jaxrs.RequestMetricsData;
+import be.atbash.runtime.metrics.jfr.RequestEvent;
+import be.atbash.runtime.metrics.jfr.RequestEventEmitter;
+import be.atbash.runtime.metrics.snapshot.EndpointSnapshot;
+import be.atbash.runtime.metrics.snapshot.MetricsSnapshot;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
+/**
+ * Records the request metrics into the collectors. The recording happens on the request thread itself, without
+ * locks or a hand-off to another thread. The collectors are striped so that concurrent requests for the same
+ * endpoint don't contend and the stripes are merged when the data is requested.
+ * <p>
+ * Durations are measured in nanoseconds and recorded in the collectors in microseconds.
+ */
 public class RequestMetricsPump implements MetricsDataProvider {
 
-    private static final Object LOCK = new Object();
-
-    private Synchronizer synchronizer;
+    /**
+     * Endpoint name for the metrics of all requests of the deployment.
+     */
+    public static final String ALL_ENDPOINTS = "/*";
 
-    private final BlockingQueue<RequestMetricsData> pendingMetrics = new ArrayBlockingQueue<>(10000);
+    /**
+     * Endpoint name for the requests of new endpoints when the deployment has already the maximum number of endpoints.
+     */
+    public static final String OTHER_ENDPOINTS = "__other__";
 
-    private Thread pump;
+    /**
+     * Endpoint name, after the HTTP method, for the requests that don't match a resource method (like a 404).
+     */
+    public static final String UNMATCHED_ENDPOINTS = "__unmatched__";
 
     // context -> deploymentName
-    private final Map<String, String> activeApplications = new HashMap<>();
+    private final Map<String, String> activeApplications = new ConcurrentHashMap<>();
+
+    // Rebuild when applications are (un)registered, used for the lock-free lookup of the application.
+    private volatile ContextRootMapping<String> applicationMapping = ContextRootMapping.empty();
+
+    private final Map<EndpointKey, EndpointMetrics> collectorsPerEndpoint = new ConcurrentHashMap<>();
+
+    // deploymentName -> number of endpoints with metrics, without the ALL_ENDPOINTS and OTHER_ENDPOINTS.
+    private final Map<String, AtomicInteger> endpointCounts = new ConcurrentHashMap<>();
+
+    // deploymentName -> number of requests that are currently processed.
+    private final Map<String, LongAdder> inFlightRequests = new ConcurrentHashMap<>();
+
+    // deploymentName -> persisted endpoints, restored when the deployment is registered.
+    private final Map<String, List<EndpointSnapshot>> pendingSnapshots = new ConcurrentHashMap<>();
+
+    // deploymentName -> time of the snapshot from which the metrics are restored.
+    private final Map<String, Instant> restoredDeployments = new ConcurrentHashMap<>();
+
+    // The restored histograms, so that the data of the previous process are not pushed again.
+    private final Map<EndpointKey, HistogramData> restoredHistograms = new ConcurrentHashMap<>();
+
+    private final int stripes = StripeUtil.defaultStripes();
+
+    private final MetricsConfiguration configuration;
+
+    private final long[] histogramBuckets;
 
-    private final Map<EndpointKey, MetricsCollector> collectorsPerEndpoint = new HashMap<>();
+    private Instant snapshotTimestamp;
 
     public RequestMetricsPump() {
-        initializePump();
-    }
-
-    void initializePump() {
-        pump = new Thread(() -> {
-            synchronizer = new Synchronizer();
-            while (!synchronizer.isSignalled()) {
-                try {
-                    process();
-                } catch (Exception e) {
-                    // Continue the loop without exiting
-                }
-            }
-            synchronizer.release();
-        });
-        pump.setName("Metrics data Log pump");
-        pump.setDaemon(true);
-        pump.start();
+        this(new MetricsConfiguration());
+    }
+
+    public RequestMetricsPump(MetricsConfiguration configuration) {
+        this.configuration = configuration;
+        histogramBuckets = configuration.getHistogramBuckets();
     }
 
     public void stop() {
-        if (pump != null) {
-            synchronizer.raiseSignal(1, TimeUnit.SECONDS);  // Wait at max 1 sec
+        // Nothing to stop, recording happens on the request threads.
+    }
+
+    private EndpointMetrics createEndpointMetrics(EndpointKey key) {
+        MetricsCollector[] phaseCollectors = new MetricsCollector[RequestPhase.values().length];
+        for (int i = 0; i < phaseCollectors.length; i++) {
+            phaseCollectors[i] = determineCollector();
         }
+        String endpoint = key.getPath();
+        long slowRequestThreshold = ALL_ENDPOINTS.equals(endpoint) || OTHER_ENDPOINTS.equals(endpoint)
+                ? -1 : configuration.getJfrThreshold(key.getDeploymentName(), endpoint);
+        return new EndpointMetrics(determineCollector(), determineWindowCollector(), phaseCollectors, slowRequestThreshold);
     }
 
-    private void process() {
-        try {
-            RequestMetricsData metricsData = pendingMetrics.take();
-            synchronized (LOCK) {
-                String application = findApplication(metricsData.getFullPath());
-                EndpointKey key = new EndpointKey(application, metricsData.getMethodAndPath());
-                MetricsCollector collector = collectorsPerEndpoint.computeIfAbsent(key, this::determineCollector);
-                collector.handle(metricsData.getDuration());
+    private MetricsCollector determineCollector() {
+        if (MetricsConfiguration.COLLECTOR_HISTOGRAM.equals(configuration.getCollector())) {
+            return new HistogramCollector(configuration.getHistogramPrecision(), configuration.getHistogramHighest());
+        }
+        return new SimpleCircularCollector(configuration.getCollectorSize(), stripes);
+    }
+
+    private TimeWindowCollector determineWindowCollector() {
+        List<Duration> windows = configuration.getWindows();
+        if (windows.isEmpty()) {
+            return null;
+        }
+        long maxWindow = windows.get(windows.size() - 1).toMillis();
+        return new TimeWindowCollector(configuration.getWindowSlice() * 1000, maxWindow,
+                configuration.getWindowPrecision(), configuration.getHistogramHighest());
+    }
 
-                key = new EndpointKey(application, "/*");
-                collector = collectorsPerEndpoint.computeIfAbsent(key, this::determineCollector);
-                collector.handle(metricsData.getDuration());
+    public void offer(RequestMetricsData metricsData) {
+        String application = applicationMapping.find(metricsData.getFullPath());
+        if (application == null) {
+            // Not for one of the applications, like a scan for random URLs. Not recorded to keep the memory usage fixed.
+            return;
+        }
+        EndpointMetrics endpointMetrics = findEndpointMetrics(application, metricsData.getMethodAndPath());
+        if (endpointMetrics == null) {
+            // Application is undeployed in the meantime.
+            return;
+        }
+        record(endpointMetrics, metricsData);
+        EndpointMetrics allEndpointsMetrics = findEndpointMetrics(application, ALL_ENDPOINTS);
+        if (allEndpointsMetrics != null) {
+            record(allEndpointsMetrics, metricsData);
+        }
+        if (endpointMetrics.isSlowRequest(TimeUnit.NANOSECONDS.toMicros(metricsData.getDuration()))) {
+            RequestEventEmitter.emit(application, metricsData.getMethodAndPath(), metricsData);
+        }
+    }
 
+    /**
+     * Returns the metrics of the endpoint, creating them when needed. When the deployment has already the maximum
+     * number of endpoints, the metrics of the {@link #OTHER_ENDPOINTS} are returned for a new endpoint.
+     *
+     * The metrics are only created while the deployment is active so that a request that is still running during
+     * the undeployment doesn't leave collectors behind.
+     *
+     * @return The metrics for the endpoint or null when the deployment isn't active.
+     */
+    private EndpointMetrics findEndpointMetrics(String deploymentName, String endpoint) {
+        EndpointKey key = new EndpointKey(deploymentName, endpoint);
+        EndpointMetrics result = collectorsPerEndpoint.get(key);
+        if (result != null) {
+            return result;
+        }
+        AtomicInteger endpointCount = endpointCounts.get(deploymentName);
+        if (endpointCount == null) {
+            return null;
+        }
+        if (ALL_ENDPOINTS.equals(endpoint) || OTHER_ENDPOINTS.equals(endpoint)) {
+            result = collectorsPerEndpoint.computeIfAbsent(key, k -> isActive(deploymentName, endpointCount) ? createEndpointMetrics(k) : null);
+        } else {
+            result = collectorsPerEndpoint.computeIfAbsent(key, k -> isActive(deploymentName, endpointCount) && reserveEndpoint(endpointCount) ? createEndpointMetrics(k) : null);
+            if (result == null && isActive(deploymentName, endpointCount)) {
+                key = new EndpointKey(deploymentName, OTHER_ENDPOINTS);
+                result = collectorsPerEndpoint.computeIfAbsent(key, k -> isActive(deploymentName, endpointCount) ? createEndpointMetrics(k) : null);
             }
-        } catch (InterruptedException e) {
-            // Keep thread interrupted for correct cleanup and closure.
-            Thread.currentThread().interrupt();
-            throw new UnexpectedException(UnexpectedException.UnexpectedExceptionCode.UE001, e);
         }
+        if (result != null && !isActive(deploymentName, endpointCount)) {
+            // Undeployed while the metrics were created, the cleanup might have missed them.
+            collectorsPerEndpoint.remove(key, result);
+            return null;
+        }
+        return result;
     }
 
-    private String findApplication(String path) {
-        return activeApplications.entrySet().stream()
-                .filter(e -> path.startsWith(e.getKey()))
-                .map(Map.Entry::getValue)
-                .findAny()
-                .orElse("???" + path);
+    /**
+     * The count is removed from {@link #endpointCounts} before the collectors of the deployment are removed
+     * in {@link #unregisterApplication(String)}, and a new registration uses a new count instance.
+     */
+    private boolean isActive(String deploymentName, AtomicInteger endpointCount) {
+        return endpointCounts.get(deploymentName) == endpointCount;
     }
 
-    private MetricsCollector determineCollector(EndpointKey key) {
-        // FIXME Make this configurable
-        return new SimpleCircularCollector(128);
+    private boolean reserveEndpoint(AtomicInteger endpointCount) {
+        int maxEndpoints = configuration.getMaxEndpoints();
+        while (true) {
+            int current = endpointCount.get();
+            if (current >= maxEndpoints) {
+                return false;
+            }
+            if (endpointCount.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
     }
 
-    public void offer(RequestMetricsData metricsData) {
-        if (!pendingMetrics.offer(metricsData)) {
-            throw new UnexpectedException(UnexpectedException.UnexpectedExceptionCode.UE001, "Queue full");
+    /**
+     * Records a request that isn't processed by JAX-RS, like a Servlet or static content.
+     *
+     * @param deploymentName The name of the deployment.
+     * @param endpoint       The endpoint name, HTTP method and servlet mapping.
+     * @param method         The HTTP method of the request.
+     * @param durationNanos  The duration of the request in nanoseconds.
+     * @param status         The HTTP status of the response.
+     * @param event          The ended JFR event of the request, committed when the request is slow. Can be null.
+     */
+    public void offer(String deploymentName, String endpoint, String method, long durationNanos, int status, RequestEvent event) {
+        EndpointMetrics endpointMetrics = findEndpointMetrics(deploymentName, endpoint);
+        if (endpointMetrics == null) {
+            return;
+        }
+        long duration = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+        endpointMetrics.handle(duration);
+        endpointMetrics.handleStatus(status);
+        if (endpointMetrics.isSlowRequest(duration)) {
+            RequestEventEmitter.emit(event, deploymentName, endpoint, method, status, durationNanos);
+        }
+
+        endpointMetrics = findEndpointMetrics(deploymentName, ALL_ENDPOINTS);
+        if (endpointMetrics != null) {
+            endpointMetrics.handle(duration);
+            endpointMetrics.handleStatus(status);
+        }
+    }
+
+    /**
+     * Records the status of a request that isn't processed by JAX-RS, for the deployment as a whole.
+     *
+     * @param deploymentName The name of the deployment as returned by {@link #requestStarted(String)}.
+     * @param status         The HTTP status of the response.
+     */
+    public void offerStatus(String deploymentName, int status) {
+        EndpointMetrics endpointMetrics = findEndpointMetrics(deploymentName, ALL_ENDPOINTS);
+        if (endpointMetrics != null) {
+            endpointMetrics.handleStatus(status);
         }
     }
 
-    public void registerApplication(AbstractDeployment deployment) {
-        synchronized (LOCK) {
-            activeApplications.put(deployment.getContextRoot(), deployment.getDeploymentName());
+    /**
+     * Marks the start of a request for the in-flight gauge of the deployment.
+     *
+     * @param path The path of the request URI.
+     * @return The deployment name or null when the request doesn't belong to a deployment.
+     */
+    public String requestStarted(String path) {
+        String deploymentName = applicationMapping.find(path);
+        if (deploymentName == null) {
+            return null;
         }
+        LongAdder counter = inFlightRequests.get(deploymentName);
+        if (counter == null) {
+            return null;
+        }
+        counter.increment();
+        return deploymentName;
     }
 
-    public void unregisterApplication(AbstractDeployment deployment) {
-        synchronized (LOCK) {
-            activeApplications.remove(deployment.getContextRoot());
-            // FIXME clear data for application
+    public void requestFinished(String deploymentName) {
+        LongAdder counter = inFlightRequests.get(deploymentName);
+        if (counter != null) {
+            counter.decrement();
         }
     }
 
+    private void record(EndpointMetrics endpointMetrics, RequestMetricsData metricsData) {
+        endpointMetrics.handle(TimeUnit.NANOSECONDS.toMicros(metricsData.getDuration()));
+        if (metricsData.getStatus() > 0) {
+            endpointMetrics.handleStatus(metricsData.getStatus());
+        }
+        if (metricsData.getExceptionType() != null) {
+            endpointMetrics.handleException(metricsData.getExceptionType());
+        }
+        for (RequestPhase phase : RequestPhase.values()) {
+            long phaseDuration = metricsData.getPhaseDuration(phase);
+            if (phaseDuration >= 0) {
+                endpointMetrics.handlePhase(phase, TimeUnit.NANOSECONDS.toMicros(phaseDuration));
+            }
+        }
+    }
+
+    public synchronized void registerApplication(AbstractDeployment deployment) {
+        activeApplications.put(deployment.getContextRoot(), deployment.getDeploymentName());
+        applicationMapping = ContextRootMapping.of(activeApplications);
+        inFlightRequests.putIfAbsent(deployment.getDeploymentName(), new LongAdder());
+        endpointCounts.putIfAbsent(deployment.getDeploymentName(), new AtomicInteger());
+        restoreDeployment(deployment.getDeploymentName());
+    }
+
+    private void restoreDeployment(String deploymentName) {
+        List<EndpointSnapshot> snapshots = pendingSnapshots.remove(deploymentName);
+        if (snapshots == null) {
+            return;
+        }
+        boolean restored = false;
+        for (EndpointSnapshot snapshot : snapshots) {
+            EndpointMetrics endpointMetrics = findEndpointMetrics(deploymentName, snapshot.getEndpoint());
+            if (endpointMetrics != null && endpointMetrics.restore(snapshot)) {
+                restoredHistograms.put(new EndpointKey(deploymentName, snapshot.getEndpoint()),
+                        endpointMetrics.getCollector().calculateHistogram(histogramBuckets));
+                restored = true;
+            }
+        }
+        if (restored) {
+            restoredDeployments.put(deploymentName, snapshotTimestamp);
+        }
+    }
+
+    /**
+     * Keeps the persisted metrics so that they are added to the collectors when the deployment is registered.
+     *
+     * @param snapshot The snapshot read at startup.
+     */
+    public synchronized void restore(MetricsSnapshot snapshot) {
+        snapshotTimestamp = snapshot.getTimestamp();
+        for (EndpointSnapshot endpoint : snapshot.getEndpoints()) {
+            pendingSnapshots.computeIfAbsent(endpoint.getDeploymentName(), k -> new ArrayList<>()).add(endpoint);
+        }
+        activeApplications.values().forEach(this::restoreDeployment);
+    }
+
+    /**
+     * Takes a snapshot of the histograms of all endpoints. The persisted data of deployments that are not yet
+     * registered is included so that it isn't lost when the snapshot is written before the deployment is active.
+     *
+     * @return The snapshot, without endpoints when the histogram collector isn't used.
+     */
+    public synchronized MetricsSnapshot createSnapshot() {
+        List<EndpointSnapshot> endpoints = new ArrayList<>();
+        collectorsPerEndpoint.forEach((key, endpointMetrics) -> {
+            EndpointSnapshot snapshot = endpointMetrics.snapshot(key.getDeploymentName(), key.getPath());
+            if (snapshot != null) {
+                endpoints.add(snapshot);
+            }
+        });
+        pendingSnapshots.values().forEach(endpoints::addAll);
+        return new MetricsSnapshot(Instant.ofEpochMilli(System.currentTimeMillis()), endpoints);
+    }
+
+    /**
+     * Removes the deployment and all its metrics.
+     *
+     * @param deploymentName The name of the deployment, the payload of the UNDEPLOYMENT event.
+     */
+    public synchronized void unregisterApplication(String deploymentName) {
+        activeApplications.values().removeIf(deploymentName::equals);
+        applicationMapping = ContextRootMapping.of(activeApplications);
+        inFlightRequests.remove(deploymentName);
+        restoredDeployments.remove(deploymentName);
+        restoredHistograms.keySet().removeIf(key -> key.getDeploymentName().equals(deploymentName));
+        // First remove the count so that no new endpoints are created for the deployment.
+        endpointCounts.remove(deploymentName);
+        collectorsPerEndpoint.keySet().removeIf(key -> key.getDeploymentName().equals(deploymentName));
+    }
+
 
     @Override
     public List<String> listDeploymentNames() {
-        synchronized (LOCK) {
-            return new ArrayList<>(activeApplications.values());
-        }
+        return new ArrayList<>(activeApplications.values());
     }
 
     @Override
     public List<String> listEndpoints(String deploymentName) {
-        synchronized (LOCK) {
-            return collectorsPerEndpoint.keySet()
-                    .stream()
-                    .filter(k -> deploymentName.equals(k.getDeploymentName()))
-                    .map(EndpointKey::getPath)
-                    .collect(Collectors.toList());
-        }
+        return collectorsPerEndpoint.keySet()
+                .stream()
+                .filter(k -> deploymentName.equals(k.getDeploymentName()))
+                .map(EndpointKey::getPath)
+                .collect(Collectors.toList());
     }
 
     @Override
     public Percentiles getEndpointMetrics(String deploymentName, String endpointPath) {
-        synchronized (LOCK) {
-            EndpointKey key = new EndpointKey(deploymentName, endpointPath);
-            MetricsCollector collector = collectorsPerEndpoint.get(key);
-            return collector == null ? null : collector.calculatePercentiles();
+        EndpointKey key = new EndpointKey(deploymentName, endpointPath);
+        EndpointMetrics endpointMetrics = collectorsPerEndpoint.get(key);
+        return endpointMetrics == null ? null : endpointMetrics.getCollector().calculatePercentiles();
+    }
+
+    @Override
+    public Percentiles getEndpointPhaseMetrics(String deploymentName, String endpointPath, RequestPhase phase) {
+        EndpointKey key = new EndpointKey(deploymentName, endpointPath);
+        EndpointMetrics endpointMetrics = collectorsPerEndpoint.get(key);
+        return endpointMetrics == null ? null : endpointMetrics.getPhaseCollector(phase).calculatePercentiles();
+    }
+
+    @Override
+    public List<Duration> getWindows() {
+        return configuration.getWindows();
+    }
+
+    @Override
+    public Percentiles getEndpointMetrics(String deploymentName, String endpointPath, Duration window) {
+        EndpointKey key = new EndpointKey(deploymentName, endpointPath);
+        EndpointMetrics endpointMetrics = collectorsPerEndpoint.get(key);
+        if (endpointMetrics == null || endpointMetrics.getWindowCollector() == null) {
+            return null;
         }
+        return endpointMetrics.getWindowCollector().calculatePercentiles(window.toMillis());
+    }
+
+    @Override
+    public HistogramData getEndpointHistogram(String deploymentName, String endpointPath) {
+        EndpointKey key = new EndpointKey(deploymentName, endpointPath);
+        EndpointMetrics endpointMetrics = collectorsPerEndpoint.get(key);
+        return endpointMetrics == null ? null : endpointMetrics.getCollector().calculateHistogram(histogramBuckets);
+    }
+
+    @Override
+    public Map<String, Long> getEndpointStatusCounts(String deploymentName, String endpointPath) {
+        EndpointKey key = new EndpointKey(deploymentName, endpointPath);
+        EndpointMetrics endpointMetrics = collectorsPerEndpoint.get(key);
+        return endpointMetrics == null ? Collections.emptyMap() : endpointMetrics.getStatusCounts();
+    }
+
+    @Override
+    public Map<String, Long> getEndpointExceptionCounts(String deploymentName, String endpointPath) {
+        EndpointKey key = new EndpointKey(deploymentName, endpointPath);
+        EndpointMetrics endpointMetrics = collectorsPerEndpoint.get(key);
+        return endpointMetrics == null ? Collections.emptyMap() : endpointMetrics.getExceptionCounts();
+    }
+
+    @Override
+    public Map<String, Instant> getRestoredDeployments() {
+        return new TreeMap<>(restoredDeployments);
+    }
+
+    @Override
+    public HistogramData getRestoredHistogram(String deploymentName, String endpointPath) {
+        return restoredHistograms.get(new EndpointKey(deploymentName, endpointPath));
+    }
+
+    @Override
+    public Map<String, Long> getInFlightRequests() {
+        Map<String, Long> result = new TreeMap<>();
+        // A request that started before a redeployment could decrement the new counter, never report negative values.
+        inFlightRequests.forEach((name, counter) -> result.put(name, Math.max(0, counter.sum())));
+        return result;
     }
 }
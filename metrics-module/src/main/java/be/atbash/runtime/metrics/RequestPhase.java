@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics;
+
+/**
+ * The phases of a request for which the duration is recorded separately.
+ */
+public enum RequestPhase {
+
+    /**
+     * Time between the arrival of the request in the Jetty handlers and the start of the processing by Jersey.
+     */
+    JETTY("jetty"),
+    /**
+     * Time for matching the request to the resource method and executing the filters.
+     */
+    MATCHING("matching"),
+    /**
+     * Time spent in the resource method.
+     */
+    RESOURCE("resource"),
+    /**
+     * Time for the response filters and writing the response entity.
+     */
+    WRITE("write");
+
+    private final String label;
+
+    RequestPhase(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
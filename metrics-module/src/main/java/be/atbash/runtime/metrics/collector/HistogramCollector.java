@@ -0,0 +1,229 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.collector;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collector based on a log-linear bucket histogram (like HdrHistogram). Values below {@code subBucketCount} are
+ * recorded exactly, larger values are recorded in buckets with a relative error determined by the precision
+ * (number of significant decimal digits). Memory usage is fixed and determined at construction time, recording a
+ * value is O(1) without allocation and all values since the creation (or last reset) are taken into account.
+ */
+public class HistogramCollector implements MetricsCollector {
+
+    private final int subBucketBits;
+    private final int subBucketCount;
+    private final int subBucketHalfCount;
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param precision             Number of significant decimal digits (1-5) that are kept for each value.
+     * @param highestTrackableValue Highest value that can be recorded, higher values are recorded as this value.
+     */
+    public HistogramCollector(int precision, long highestTrackableValue) {
+        if (precision < 1 || precision > 5) {
+            throw new IllegalArgumentException("precision must be between 1 and 5");
+        }
+        long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, precision);
+        subBucketBits = 64 - Long.numberOfLeadingZeros(largestValueWithSingleUnitResolution - 1);
+        subBucketCount = 1 << subBucketBits;
+        subBucketHalfCount = subBucketCount / 2;
+        this.highestTrackableValue = Math.max(highestTrackableValue, subBucketCount - 1);
+        counts = new AtomicLongArray(bucketIndex(this.highestTrackableValue) + 1);
+    }
+
+    /**
+     * Determines the index within the counts array for the value.
+     *
+     * @param value The value (positive)
+     * @return Index of the bucket.
+     */
+    int bucketIndex(long value) {
+        if (value < subBucketCount) {
+            return (int) Math.max(value, 0);
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (subBucketBits - 1);
+        return subBucketCount + (shift - 1) * subBucketHalfCount + (int) ((value >>> shift) - subBucketHalfCount);
+    }
+
+    /**
+     * Determines the highest value that is recorded in the bucket.
+     *
+     * @param index Index of the bucket
+     * @return Highest value that ends up in the bucket.
+     */
+    long highestEquivalentValue(int index) {
+        if (index < subBucketCount) {
+            return index;
+        }
+        int offset = index - subBucketCount;
+        int shift = offset / subBucketHalfCount + 1;
+        long subBucket = offset % subBucketHalfCount + subBucketHalfCount;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public void handle(long requestTime) {
+        counts.incrementAndGet(bucketIndex(Math.min(requestTime, highestTrackableValue)));
+        sum.add(requestTime);
+    }
+
+    @Override
+    public Percentiles calculatePercentiles() {
+        // Take a copy so that the counts are consistent during the calculation.
+        long[] snapshot = new long[counts.length()];
+        addCounts(snapshot);
+        return calculatePercentiles(snapshot);
+    }
+
+    /**
+     * Adds the counts of this histogram to the target array, which must have the same number of buckets.
+     *
+     * @param target Array that receives the counts.
+     */
+    void addCounts(long[] target) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += counts.get(i);
+        }
+    }
+
+    /**
+     * Calculates the percentiles for the bucket counts that have the same layout as this histogram.
+     *
+     * @param snapshot Counts for each bucket.
+     * @return The percentiles.
+     */
+    Percentiles calculatePercentiles(long[] snapshot) {
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+
+        long[] values = new long[PercentileValue.values().length];
+        // The PercentileValues are in ascending order, so we can walk the buckets only once.
+        int idx = 0;
+        long cumulative = 0;
+        for (PercentileValue percentileValue : PercentileValue.values()) {
+            if (total == 0) {
+                continue;
+            }
+            // Same rank definition as Percentiles uses for the raw values.
+            long rank = Math.max((long) (percentileValue.getValue() / 100.0 * total), 1);
+            while (cumulative + snapshot[idx] < rank) {
+                cumulative += snapshot[idx];
+                idx++;
+            }
+            values[percentileValue.ordinal()] = highestEquivalentValue(idx);
+        }
+        return Percentiles.ofPercentileValues(values, (int) Math.min(Integer.MAX_VALUE, total));
+    }
+
+    @Override
+    public int getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    @Override
+    public HistogramData calculateHistogram(long[] boundaries) {
+        long[] cumulativeCounts = new long[boundaries.length];
+        long total = 0;
+        int boundaryIdx = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            long value = highestEquivalentValue(i);
+            while (boundaryIdx < boundaries.length && boundaries[boundaryIdx] < value) {
+                cumulativeCounts[boundaryIdx++] = total;
+            }
+            total += count;
+        }
+        while (boundaryIdx < boundaries.length) {
+            cumulativeCounts[boundaryIdx++] = total;
+        }
+        return new HistogramData(boundaries, cumulativeCounts, total, sum.sum());
+    }
+
+    /**
+     * Takes a snapshot of the non-empty buckets.
+     *
+     * @return The snapshot.
+     */
+    public HistogramSnapshot snapshot() {
+        int[] indexes = new int[16];
+        long[] values = new long[16];
+        int size = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            indexes[size] = i;
+            values[size] = count;
+            size++;
+        }
+        return new HistogramSnapshot(counts.length(), Arrays.copyOf(indexes, size), Arrays.copyOf(values, size), sum.sum());
+    }
+
+    /**
+     * Adds the counts of the snapshot to this histogram.
+     *
+     * @param snapshot The snapshot, taken from a histogram with the same precision and highest trackable value.
+     * @return false when the snapshot has a different number of buckets and is ignored.
+     */
+    public boolean restore(HistogramSnapshot snapshot) {
+        if (snapshot.getBucketCount() != counts.length()) {
+            return false;
+        }
+        int[] indexes = snapshot.getIndexes();
+        long[] values = snapshot.getCounts();
+        for (int i = 0; i < indexes.length; i++) {
+            counts.addAndGet(indexes[i], values[i]);
+        }
+        sum.add(snapshot.getSum());
+        return true;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+    }
+
+    /**
+     * Number of buckets used by the histogram.
+     *
+     * @return Number of buckets.
+     */
+    public int getBucketCount() {
+        return counts.length();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.collector;
+
+/**
+ * Cumulative counts of the requests for a set of bucket boundaries, together with the total count and sum of all
+ * values.
+ */
+public class HistogramData {
+
+    private final long[] boundaries;
+    private final long[] cumulativeCounts;
+    private final long count;
+    private final long sum;
+
+    public HistogramData(long[] boundaries, long[] cumulativeCounts, long count, long sum) {
+        this.boundaries = boundaries;
+        this.cumulativeCounts = cumulativeCounts;
+        this.count = count;
+        this.sum = sum;
+    }
+
+    /**
+     * @return The upper bounds (inclusive) of the buckets.
+     */
+    public long[] getBoundaries() {
+        return boundaries;
+    }
+
+    /**
+     * @return Number of values that are less than or equal to the boundary with the same index.
+     */
+    public long[] getCumulativeCounts() {
+        return cumulativeCounts;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.collector;
+
+/**
+ * The non-empty buckets of a {@link HistogramCollector}, used to persist the collected data and restore it after a
+ * restart.
+ */
+public class HistogramSnapshot {
+
+    private final int bucketCount;
+    private final int[] indexes;  // Ascending
+    private final long[] counts;
+    private final long sum;
+
+    public HistogramSnapshot(int bucketCount, int[] indexes, long[] counts, long sum) {
+        if (indexes.length != counts.length) {
+            throw new IllegalArgumentException("indexes and counts must have the same length");
+        }
+        this.bucketCount = bucketCount;
+        this.indexes = indexes;
+        this.counts = counts;
+        this.sum = sum;
+    }
+
+    /**
+     * @return Number of buckets of the histogram the snapshot is taken from.
+     */
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    /**
+     * @return Index of the buckets that have a count, in ascending order.
+     */
+    public int[] getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * @return The count for the bucket of {@link #getIndexes()} with the same index.
+     */
+    public long[] getCounts() {
+        return counts;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+}
@@ -22,4 +22,14 @@ public interface MetricsCollector {
     Percentiles calculatePercentiles();
 
     int getCount();
+
+    /**
+     * Calculates the cumulative counts for the bucket boundaries, as used by a Prometheus histogram.
+     *
+     * @param boundaries The upper bounds (inclusive) of the buckets in ascending order.
+     * @return The histogram data or null when the collector doesn't keep track of all requests.
+     */
+    default HistogramData calculateHistogram(long[] boundaries) {
+        return null;
+    }
 }
@@ -15,14 +15,15 @@
  */
 package be.atbash.runtime.metrics.collector;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.StringJoiner;
 
 public class Percentiles {
 
-    private static final int[] percentiles = {1, 5, 10, 25, 50, 75, 90, 95, 99};
+    private static final PercentileValue[] PERCENTILE_VALUES = PercentileValue.values();
 
-    private final Map<Integer, Long> values = new HashMap<>();
+    // Indexed by the ordinal of PercentileValue
+    private final long[] values = new long[PERCENTILE_VALUES.length];
 
     private final int count;
 
@@ -37,32 +38,35 @@ public class Percentiles {
     }
 
     /**
-     * Determines the percentiles of the sorted list of values. Returns 0 when list it empty
+     * Used by the collectors that calculate the percentile values themselves.
      *
-     * @param valuesList
+     * @param values Percentile values indexed by the ordinal of {@link PercentileValue}.
+     * @param count  Number of requests.
      */
-    private void calculatePercentiles(List<Long> valuesList) {
-        for (int percentile : percentiles) {
-            if (valuesList.isEmpty()) {
-                values.put(percentile, 0L);
-            } else {
-                int index = (int) (percentile / 100.0 * valuesList.size()) - 1;
-                values.put(percentile, valuesList.get(Math.max(index, 0)));
-            }
-        }
+    static Percentiles ofPercentileValues(long[] values, int count) {
+        return new Percentiles(count, values);
+    }
+
+    private Percentiles(int count, long[] values) {
+        System.arraycopy(values, 0, this.values, 0, this.values.length);
+        this.count = count;
     }
 
     /**
-     * Determines the percentiles of an unsorted array of values.
+     * Determines the percentiles of an unsorted array of values. Returns 0 when array is empty
      *
      * @param data
      */
     private void calculatePercentiles(long[] data) {
-        List<Long> valuesList = Arrays.stream(data)
-                .boxed()
-                .sorted()
-                .collect(Collectors.toList());
-        calculatePercentiles(valuesList);
+        Arrays.sort(data);
+        for (PercentileValue percentile : PERCENTILE_VALUES) {
+            if (data.length == 0) {
+                values[percentile.ordinal()] = 0L;
+            } else {
+                int index = (int) (percentile.getValue() / 100.0 * data.length) - 1;
+                values[percentile.ordinal()] = data[Math.max(index, 0)];
+            }
+        }
     }
 
     public int getCount() {
@@ -70,7 +74,7 @@ public class Percentiles {
     }
 
     public long getPercentile(PercentileValue percentile) {
-        return values.get(percentile.getValue());
+        return values[percentile.ordinal()];
     }
 
     public long getValueP01() {
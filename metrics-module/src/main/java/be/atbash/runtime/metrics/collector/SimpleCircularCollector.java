@@ -15,32 +15,95 @@
  */
 package be.atbash.runtime.metrics.collector;
 
-public class SimpleCircularCollector implements MetricsCollector {
-
-    private final long[] reservoir;
-    private final int size;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
-    private int idx;
+/**
+ * Keeps the last request times in a circular buffer of {@code size} entries. The buffer can be split in stripes so
+ * that concurrent request threads don't contend on the same write index, each stripe keeps the last request times
+ * of the threads that write to it in its share of the buffer. Writing is lock-free, the stripes are merged when the
+ * percentiles are calculated.
+ */
+public class SimpleCircularCollector implements MetricsCollector {
 
-    private int count;
+    private final Stripe[] stripes;
+    private final int mask;
 
     public SimpleCircularCollector(int size) {
-        this.reservoir = new long[size];
-        this.size = size;
+        this(size, 1);
     }
+
+    /**
+     * @param size    Total size of the circular buffer, divided over the stripes.
+     * @param stripes Number of stripes, rounded up to a power of 2 but not more than the size.
+     */
+    public SimpleCircularCollector(int size, int stripes) {
+        int stripeCount = Math.min(StripeUtil.powerOfTwo(stripes), Integer.highestOneBit(size));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            // The remainder is divided over the first stripes so that the total is the requested size.
+            this.stripes[i] = new Stripe(size / stripeCount + (i < size % stripeCount ? 1 : 0));
+        }
+        this.mask = stripeCount - 1;
+    }
+
     public Percentiles calculatePercentiles() {
-        return new Percentiles(reservoir, count);
+        long count = 0;
+        int length = 0;
+        for (Stripe stripe : stripes) {
+            length += stripe.length();
+        }
+        long[] data = new long[length];
+        int offset = 0;
+        for (Stripe stripe : stripes) {
+            offset += stripe.copyTo(data, offset, length - offset);
+            count += stripe.written.get();
+        }
+        return new Percentiles(data, (int) Math.min(Integer.MAX_VALUE, Math.max(count, offset)));
     }
 
     @Override
     public void handle(long requestTime) {
-        reservoir[idx] = requestTime;
-        idx = ++idx % size;
-        count++;
+        stripes[StripeUtil.stripeIndex(mask)].handle(requestTime);
     }
 
     @Override
     public int getCount() {
-        return count;
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.written.get();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, count);
+    }
+
+    private static class Stripe {
+
+        private final AtomicLongArray reservoir;
+        private final AtomicLong written = new AtomicLong();
+        private final int size;
+
+        Stripe(int size) {
+            this.reservoir = new AtomicLongArray(size);
+            this.size = size;
+        }
+
+        void handle(long requestTime) {
+            long idx = written.getAndIncrement();
+            reservoir.set((int) (idx % size), requestTime);
+        }
+
+        int length() {
+            return (int) Math.min(size, written.get());
+        }
+
+        int copyTo(long[] target, int offset, int max) {
+            // Values written after the length was determined are ignored. A slot that is claimed but not yet
+            // written contains the previous value (or 0) which is acceptable for the percentile calculation.
+            int length = Math.min(length(), max);
+            for (int i = 0; i < length; i++) {
+                target[offset + i] = reservoir.get(i);
+            }
+            return length;
+        }
     }
 }
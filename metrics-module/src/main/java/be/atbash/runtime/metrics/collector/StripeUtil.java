@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.collector;
+
+/**
+ * Helper for the collectors that split their data in stripes so that concurrent request threads are
+ * spread over different memory locations.
+ */
+public final class StripeUtil {
+
+    private StripeUtil() {
+    }
+
+    /**
+     * Number of stripes that a collector uses by default, based on the number of processors.
+     *
+     * @return number of stripes, always a power of 2.
+     */
+    public static int defaultStripes() {
+        return powerOfTwo(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Rounds up the value to the next power of 2 (with a minimum of 1).
+     *
+     * @param value value to round
+     * @return power of 2 equal or larger than the value.
+     */
+    public static int powerOfTwo(int value) {
+        if (value <= 1) {
+            return 1;
+        }
+        return Integer.highestOneBit(value - 1) << 1;
+    }
+
+    /**
+     * Selects the stripe for the current Thread.
+     *
+     * @param mask number of stripes - 1
+     * @return index of the stripe
+     */
+    public static int stripeIndex(int mask) {
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 16)) & mask;
+    }
+}
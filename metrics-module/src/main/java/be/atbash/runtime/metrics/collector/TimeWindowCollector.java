@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.collector;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the request times in a ring of time slices, each slice is a {@link HistogramCollector}. The percentiles
+ * for a time window (like the last 5 minutes) are calculated by merging the slices that fall within the window.
+ * When the ring rotates, the oldest slice is cleared and reused, so memory usage is fixed.
+ */
+public class TimeWindowCollector implements MetricsCollector {
+
+    private final Slice[] slices;
+    private final long sliceMillis;
+    private final LongSupplier clock;
+
+    /**
+     * @param sliceMillis           Duration of one slice in milliseconds
+     * @param maxWindowMillis       Largest window that will be requested.
+     * @param precision             Precision of the histogram of each slice.
+     * @param highestTrackableValue Highest value of the histogram of each slice.
+     */
+    public TimeWindowCollector(long sliceMillis, long maxWindowMillis, int precision, long highestTrackableValue) {
+        this(sliceMillis, maxWindowMillis, precision, highestTrackableValue, System::currentTimeMillis);
+    }
+
+    TimeWindowCollector(long sliceMillis, long maxWindowMillis, int precision, long highestTrackableValue, LongSupplier clock) {
+        this.sliceMillis = sliceMillis;
+        this.clock = clock;
+        int sliceCount = (int) ((maxWindowMillis + sliceMillis - 1) / sliceMillis);
+        slices = new Slice[Math.max(sliceCount, 1)];
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = new Slice(new HistogramCollector(precision, highestTrackableValue));
+        }
+    }
+
+    @Override
+    public void handle(long requestTime) {
+        long sliceNumber = clock.getAsLong() / sliceMillis;
+        Slice slice = slices[(int) (sliceNumber % slices.length)];
+        long current = slice.sliceNumber.get();
+        if (current != sliceNumber && slice.sliceNumber.compareAndSet(current, sliceNumber)) {
+            // Slice is reused for a new time period. Values recorded concurrently during the reset can be lost.
+            slice.histogram.reset();
+        }
+        slice.histogram.handle(requestTime);
+    }
+
+    /**
+     * Calculate the percentiles of the requests that happened in the last {@code windowMillis}. The window is
+     * rounded up to a multiple of the slice duration and includes the current slice.
+     *
+     * @param windowMillis The duration of the window in milliseconds.
+     * @return The percentiles of the window.
+     */
+    public Percentiles calculatePercentiles(long windowMillis) {
+        long sliceNumber = clock.getAsLong() / sliceMillis;
+        long windowSlices = Math.min((windowMillis + sliceMillis - 1) / sliceMillis, slices.length);
+
+        long[] merged = new long[slices[0].histogram.getBucketCount()];
+        for (Slice slice : slices) {
+            long number = slice.sliceNumber.get();
+            if (number <= sliceNumber && number > sliceNumber - windowSlices) {
+                slice.histogram.addCounts(merged);
+            }
+        }
+        return slices[0].histogram.calculatePercentiles(merged);
+    }
+
+    @Override
+    public Percentiles calculatePercentiles() {
+        return calculatePercentiles(slices.length * sliceMillis);
+    }
+
+    @Override
+    public int getCount() {
+        return calculatePercentiles().getCount();
+    }
+
+    private static class Slice {
+        private final AtomicLong sliceNumber = new AtomicLong(-1);
+        private final HistogramCollector histogram;
+
+        Slice(HistogramCollector histogram) {
+            this.histogram = histogram;
+        }
+    }
+}
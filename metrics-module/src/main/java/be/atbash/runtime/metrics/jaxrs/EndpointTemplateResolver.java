@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jaxrs;
+
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.uri.UriTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Determines the endpoint name (HTTP method and URI template, like {@code GET /hello/{name}}) from the resource
+ * method that Jersey matched for the request. The name is cached for each resource method and HTTP method of the
+ * request, so it is only build once for each endpoint. The HTTP method is part of the key since the same resource
+ * method also handles other methods, like a {@code HEAD} request for a {@code GET} method.
+ */
+public class EndpointTemplateResolver {
+
+    // resource method -> HTTP method of the request -> endpoint name
+    private final Map<ResourceMethod, Map<String, String>> endpointNames = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the endpoint name for the request or null when no resource method is matched (like a 404).
+     *
+     * @param uriInfo The UriInfo of the request.
+     * @param method  The HTTP method of the request.
+     * @return The endpoint name or null.
+     */
+    public String resolve(ExtendedUriInfo uriInfo, String method) {
+        ResourceMethod resourceMethod = uriInfo.getMatchedResourceMethod();
+        if (resourceMethod == null) {
+            return null;
+        }
+        if (!uriInfo.getMatchedResourceLocators().isEmpty()) {
+            // The same resource method can be reached through different sub-resource locators.
+            return defineEndpointName(uriInfo.getMatchedTemplates(), method);
+        }
+        return endpointNames.computeIfAbsent(resourceMethod, rm -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method, m -> defineEndpointName(uriInfo.getMatchedTemplates(), m));
+    }
+
+    static String defineEndpointName(List<UriTemplate> matchedTemplates, String method) {
+        StringBuilder result = new StringBuilder();
+        // Templates are in the order of last matched first.
+        for (int i = matchedTemplates.size() - 1; i >= 0; i--) {
+            String template = matchedTemplates.get(i).getTemplate();
+            if (template.isEmpty() || "/".equals(template)) {
+                continue;
+            }
+            if (template.charAt(0) != '/') {
+                result.append('/');
+            }
+            result.append(template);
+        }
+        if (result.length() == 0) {
+            result.append('/');
+        }
+        return (method + " " + result).intern();
+    }
+}
@@ -15,73 +15,170 @@
  */
 package be.atbash.runtime.metrics.jaxrs;
 
-import jakarta.ws.rs.core.MultivaluedMap;
-import jakarta.ws.rs.core.PathSegment;
+import be.atbash.runtime.metrics.RequestMetricsPump;
+import be.atbash.runtime.metrics.RequestPhase;
+import be.atbash.runtime.metrics.jfr.RequestEvent;
+import be.atbash.runtime.metrics.jfr.RequestEventEmitter;
 import jakarta.ws.rs.core.UriInfo;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
+/**
+ * Timing information of a request, all times are based on {@link System#nanoTime()}.
+ */
 public class RequestMetricsData {
 
+    private static final long NOT_REACHED = Long.MIN_VALUE;
 
     private UriInfo requestUriInfo;
     private final String method;
 
     private final long start;
+    private final long jerseyStart;
+    private long resourceMethodStart = NOT_REACHED;
+    private long resourceMethodFinished = NOT_REACHED;
 
     private long duration;
+    private final long[] phaseDurations = new long[RequestPhase.values().length];
     private String fullPath;
-    private String path;
+    private String methodAndPath;
+    private int status;
+    private String exceptionType;
+    private final RequestEvent event;
 
     public RequestMetricsData(UriInfo requestUriInfo, String method) {
+        this(requestUriInfo, method, System.nanoTime(), RequestEventEmitter.begin());
+    }
+
+    /**
+     * @param requestUriInfo The UriInfo of the request.
+     * @param method         The HTTP method.
+     * @param start          The moment the request arrived in Jetty, as {@link System#nanoTime()}.
+     */
+    public RequestMetricsData(UriInfo requestUriInfo, String method, long start) {
+        this(requestUriInfo, method, start, null);
+    }
+
+    /**
+     * @param requestUriInfo The UriInfo of the request.
+     * @param method         The HTTP method.
+     * @param start          The moment the request arrived in Jetty, as {@link System#nanoTime()}.
+     * @param event          The JFR event started when the request arrived in Jetty, null when not recorded.
+     */
+    public RequestMetricsData(UriInfo requestUriInfo, String method, long start, RequestEvent event) {
         this.requestUriInfo = requestUriInfo;
         this.method = method;
-        this.start = System.currentTimeMillis();
+        this.start = start;
+        this.jerseyStart = System.nanoTime();
+        this.event = event;
     }
 
+    /**
+     * Duration of the request in nanoseconds.
+     *
+     * @return the duration in nanoseconds.
+     */
     public long getDuration() {
         return duration;
     }
 
+    /**
+     * Duration of the phase of the request in nanoseconds.
+     *
+     * @param phase The phase of the request
+     * @return the duration in nanoseconds or a negative value when the phase was not reached (for example due to an
+     * exception).
+     */
+    public long getPhaseDuration(RequestPhase phase) {
+        return phaseDurations[phase.ordinal()];
+    }
+
+    public void resourceMethodStart() {
+        resourceMethodStart = System.nanoTime();
+    }
+
+    public void resourceMethodFinished() {
+        resourceMethodFinished = System.nanoTime();
+    }
+
     public void stop() {
-        duration = System.currentTimeMillis() - start;
+        long end = System.nanoTime();
+        duration = end - start;
+        if (event != null) {
+            event.end();
+        }
 
-        // We also need to extract some info out of UriInfo.
+        phaseDurations[RequestPhase.JETTY.ordinal()] = jerseyStart - start;
+        phaseDurations[RequestPhase.MATCHING.ordinal()] = phaseDuration(jerseyStart, resourceMethodStart);
+        phaseDurations[RequestPhase.RESOURCE.ordinal()] = phaseDuration(resourceMethodStart, resourceMethodFinished);
+        phaseDurations[RequestPhase.WRITE.ordinal()] = phaseDuration(resourceMethodFinished, end);
 
         fullPath = requestUriInfo.getRequestUri().getPath();
-        List<PathSegment> segments = requestUriInfo.getPathSegments();
-        Map<String, String> pathParametersMapped = calculateParameterMap(requestUriInfo.getPathParameters());
-
-        path = definePath(segments, pathParametersMapped);
+        if (methodAndPath == null) {
+            // No resource method matched. Never use the requested path, random URLs would use up the endpoints.
+            methodAndPath = method + " " + RequestMetricsPump.UNMATCHED_ENDPOINTS;
+        }
         requestUriInfo = null;  // So that RequestContext can be freed.
     }
 
-    private String definePath(List<PathSegment> segments, Map<String, String> pathParametersMapped) {
-        StringBuilder result = new StringBuilder();
-        for (PathSegment segment : segments) {
-            result.append("/");
-            result.append(pathParametersMapped.computeIfAbsent(segment.getPath(), k -> segment.getPath()));
-
+    private static long phaseDuration(long phaseStart, long phaseEnd) {
+        if (phaseStart == NOT_REACHED || phaseEnd == NOT_REACHED) {
+            return -1;
         }
-        return result.toString();
+        return phaseEnd - phaseStart;
     }
 
-    private Map<String, String> calculateParameterMap(MultivaluedMap<String, String> pathParameters) {
-        Map<String, String> result = new HashMap<>();
-        for (Map.Entry<String, List<String>> entry : pathParameters.entrySet()) {
-            String pathValue = entry.getValue().get(0);  // TODO How to have multiple entries
-            result.put(pathValue, "{" + entry.getKey() + "}");
-        }
-        return result;
+    /**
+     * Defines the endpoint name, HTTP method and URI template, of the matched resource method.
+     *
+     * @param methodAndPath The endpoint name like {@code GET /hello/{name}}
+     */
+    public void setMethodAndPath(String methodAndPath) {
+        this.methodAndPath = methodAndPath;
+    }
+
+    public String getMethod() {
+        return method;
     }
 
     public String getMethodAndPath() {
-        return method + " " + path;
+        return methodAndPath;
     }
 
     public String getFullPath() {
         return fullPath;
     }
+
+    /**
+     * The status of the response, 0 when unknown.
+     *
+     * @return The HTTP status of the response.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * The class name of the exception that occurred during the processing of the request.
+     *
+     * @return The class name or null when there was no exception.
+     */
+    public String getExceptionType() {
+        return exceptionType;
+    }
+
+    public void setExceptionType(String exceptionType) {
+        this.exceptionType = exceptionType;
+    }
+
+    /**
+     * The JFR event of the request, ended by {@link #stop()} and committed when the request is slow.
+     *
+     * @return The event or null when the event isn't recorded.
+     */
+    public RequestEvent getEvent() {
+        return event;
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jaxrs;
+
+import be.atbash.runtime.core.module.RuntimeObjectsManager;
+import be.atbash.runtime.metrics.RequestMetricsPump;
+import be.atbash.runtime.metrics.jetty.RequestCompletionListener;
+import be.atbash.runtime.metrics.jetty.RequestStartHandler;
+import jakarta.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Captures the timing of each phase of the request through the Jersey monitoring events and hands the data to the
+ * {@link RequestMetricsPump} when the response is written.
+ */
+@Provider
+public class RestMetricsListener implements ApplicationEventListener {
+
+    private final RequestMetricsPump metricsPump;
+
+    private final EndpointTemplateResolver templateResolver = new EndpointTemplateResolver();
+
+    public RestMetricsListener() {
+        metricsPump = RuntimeObjectsManager.getInstance().getExposedObject(RequestMetricsPump.class);
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+        // Nothing to do on the application level.
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        ContainerRequest containerRequest = requestEvent.getContainerRequest();
+        Object start = containerRequest.getProperty(RequestStartHandler.REQUEST_START);
+        RequestMetricsData metricsData;
+        if (start instanceof Long) {
+            Object event = containerRequest.getProperty(RequestStartHandler.REQUEST_EVENT);
+            metricsData = new RequestMetricsData(containerRequest.getUriInfo(), containerRequest.getMethod(), (Long) start,
+                    // Same simple name as the Jersey RequestEvent.
+                    event instanceof be.atbash.runtime.metrics.jfr.RequestEvent ? (be.atbash.runtime.metrics.jfr.RequestEvent) event : null);
+        } else {
+            metricsData = new RequestMetricsData(containerRequest.getUriInfo(), containerRequest.getMethod());
+        }
+        return new MetricsRequestEventListener(metricsData);
+    }
+
+    private class MetricsRequestEventListener implements RequestEventListener {
+
+        private final RequestMetricsData metricsData;
+
+        MetricsRequestEventListener(RequestMetricsData metricsData) {
+            this.metricsData = metricsData;
+        }
+
+        @Override
+        public void onEvent(RequestEvent event) {
+            switch (event.getType()) {
+                case RESOURCE_METHOD_START:
+                    metricsData.resourceMethodStart();
+                    break;
+                case RESOURCE_METHOD_FINISHED:
+                    metricsData.resourceMethodFinished();
+                    break;
+                case ON_EXCEPTION:
+                    if (metricsData.getExceptionType() == null) {
+                        // Only the original exception, not the ones from the exception mappers or response filters.
+                        metricsData.setExceptionType(event.getException().getClass().getName());
+                    }
+                    break;
+                case FINISHED:
+                    metricsData.setMethodAndPath(templateResolver.resolve(event.getUriInfo(), event.getContainerRequest().getMethod()));
+                    // Without a response, the exception is propagated to the servlet container that returns a 500.
+                    metricsData.setStatus(event.getContainerResponse() == null ? 500 : event.getContainerResponse().getStatus());
+                    // The Jetty listener must not count this request a second time.
+                    event.getContainerRequest().setProperty(RequestCompletionListener.REQUEST_RECORDED, Boolean.TRUE);
+                    metricsData.stop();
+                    metricsPump.offer(metricsData);
+                    break;
+                default:
+                    // Other events are not used.
+            }
+        }
+    }
+}
@@ -26,7 +26,10 @@ import org.eclipse.jetty.server.handler.AbstractHandler;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 public class AtbashMetricsHandler extends AbstractHandler implements MetricsDataProviderConsumer {
 
@@ -46,6 +49,7 @@ public class AtbashMetricsHandler extends AbstractHandler implements MetricsData
 
         PrintWriter writer = response.getWriter();
         writer.println("<h2>Atbash Metrics</h2>");
+        writer.println("<p>All times are in microseconds.</p>");
         List<String> deploymentNames = provider.listDeploymentNames();
         for (String deploymentName : deploymentNames) {
             showDataForDeployment(writer, deploymentName);
@@ -54,6 +58,11 @@ public class AtbashMetricsHandler extends AbstractHandler implements MetricsData
 
     private void showDataForDeployment(PrintWriter writer, String deploymentName) {
         writer.println("<h3>" + deploymentName + "</h3>");
+        writer.println("<p>In flight : " + provider.getInFlightRequests().getOrDefault(deploymentName, 0L) + "</p>");
+        Instant restored = provider.getRestoredDeployments().get(deploymentName);
+        if (restored != null) {
+            writer.println("<p>Restored from snapshot of " + restored + "</p>");
+        }
         List<String> endpoints = provider.listEndpoints(deploymentName);
         writer.println("<ul>");
         for (String endpoint : endpoints) {
@@ -64,6 +73,39 @@ public class AtbashMetricsHandler extends AbstractHandler implements MetricsData
             writer.println(metrics.getCount());
             writer.println(" : ");
             writer.println(metrics);  // FIXME a better layout
+            showCounts(writer, provider.getEndpointStatusCounts(deploymentName, endpoint));
+            showCounts(writer, provider.getEndpointExceptionCounts(deploymentName, endpoint));
+            showWindowData(writer, deploymentName, endpoint);
+            writer.println("</li>");
+        }
+        writer.println("</ul>");
+    }
+
+    private void showCounts(PrintWriter writer, Map<String, Long> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        writer.println(" : ");
+        writer.println(counts);
+    }
+
+    private void showWindowData(PrintWriter writer, String deploymentName, String endpoint) {
+        List<Duration> windows = provider.getWindows();
+        if (windows.isEmpty()) {
+            return;
+        }
+        writer.println("<ul>");
+        for (Duration window : windows) {
+            Percentiles metrics = provider.getEndpointMetrics(deploymentName, endpoint, window);
+            if (metrics == null) {
+                continue;
+            }
+            writer.println("<li>");
+            writer.println("last " + window.toMinutes() + " min");
+            writer.println(" : ");
+            writer.println(metrics.getCount());
+            writer.println(" : ");
+            writer.println(metrics);
             writer.println("</li>");
         }
         writer.println("</ul>");
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jetty;
+
+import be.atbash.runtime.metrics.collector.PercentileValue;
+
+/**
+ * Writes the Prometheus (or OpenMetrics) text exposition format directly into a {@link StringBuilder}, without the
+ * intermediate Strings that {@code String.format} creates for every line.
+ */
+class ExpositionWriter {
+
+    private static final String[] QUANTILE_LABELS = defineQuantileLabels();
+
+    private final StringBuilder builder;
+    private final boolean openMetrics;
+    private boolean firstLabel;
+
+    ExpositionWriter(StringBuilder builder, boolean openMetrics) {
+        this.builder = builder;
+        this.openMetrics = openMetrics;
+    }
+
+    ExpositionWriter metadata(String name, String type, String help) {
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes the metadata of a counter. The samples of a counter use the name with the {@code _total} suffix, but
+     * for OpenMetrics the metric family is named without the suffix.
+     */
+    ExpositionWriter counterMetadata(String name, String help) {
+        return metadata(openMetrics ? name : name + "_total", "counter", help);
+    }
+
+    ExpositionWriter sample(String name, String suffix) {
+        builder.append(name);
+        if (suffix != null) {
+            builder.append(suffix);
+        }
+        builder.append('{');
+        firstLabel = true;
+        return this;
+    }
+
+    ExpositionWriter label(String name, String value) {
+        if (!firstLabel) {
+            builder.append(',');
+        }
+        firstLabel = false;
+        builder.append(name).append("=\"");
+        appendEscaped(value);
+        builder.append('"');
+        return this;
+    }
+
+    ExpositionWriter quantile(PercentileValue percentileValue) {
+        if (!firstLabel) {
+            builder.append(',');
+        }
+        firstLabel = false;
+        builder.append("quantile=\"").append(QUANTILE_LABELS[percentileValue.ordinal()]).append('"');
+        return this;
+    }
+
+    /**
+     * Adds the {@code le} label of a histogram bucket.
+     *
+     * @param micros The upper bound of the bucket in microseconds or a negative value for {@code +Inf}.
+     */
+    ExpositionWriter le(long micros) {
+        if (!firstLabel) {
+            builder.append(',');
+        }
+        firstLabel = false;
+        builder.append("le=\"");
+        if (micros < 0) {
+            builder.append("+Inf");
+        } else {
+            appendSeconds(micros);
+            if (openMetrics && micros % 1_000_000 == 0) {
+                // OpenMetrics requires the canonical float representation.
+                builder.append(".0");
+            }
+        }
+        builder.append('"');
+        return this;
+    }
+
+    void value(long value) {
+        endLabels();
+        builder.append(value).append('\n');
+    }
+
+    void value(double value) {
+        endLabels();
+        builder.append(value).append('\n');
+    }
+
+    void seconds(long micros) {
+        endLabels();
+        appendSeconds(micros);
+        builder.append('\n');
+    }
+
+    private void endLabels() {
+        if (firstLabel) {
+            // No labels, remove the opening brace.
+            builder.setLength(builder.length() - 1);
+            builder.append(' ');
+        } else {
+            builder.append("} ");
+        }
+    }
+
+    void end() {
+        if (openMetrics) {
+            builder.append("# EOF\n");
+        }
+    }
+
+    /**
+     * Appends the value in microseconds as seconds in plain notation without trailing zeros, like {@code 1.5}, without
+     * creating a BigDecimal.
+     */
+    private void appendSeconds(long micros) {
+        if (micros < 0) {
+            builder.append('-');
+            micros = -micros;
+        }
+        builder.append(micros / 1_000_000);
+        long fraction = micros % 1_000_000;
+        if (fraction == 0) {
+            return;
+        }
+        builder.append('.');
+        // Write the digits until the remainder is 0, so that there are no trailing zeros.
+        for (long divisor = 100_000; fraction > 0; divisor /= 10) {
+            builder.append((char) ('0' + fraction / divisor));
+            fraction %= divisor;
+        }
+    }
+
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+
+    private static String[] defineQuantileLabels() {
+        PercentileValue[] values = PercentileValue.values();
+        String[] result = new String[values.length];
+        for (PercentileValue value : values) {
+            result[value.ordinal()] = Double.toString(value.getValue() / 100.0);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jetty;
+
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.function.Supplier;
+
+/**
+ * Exports the utilization of the Jetty thread pool and the connection statistics of the connectors. The connection
+ * statistics are only available when a {@link ConnectionStatistics} bean is added to the connector.
+ */
+class JettyMetricsExporter implements MetricsExporter {
+
+    private final Supplier<Server> serverSupplier;
+
+    JettyMetricsExporter(Supplier<Server> serverSupplier) {
+        this.serverSupplier = serverSupplier;
+    }
+
+    @Override
+    public void export(ExpositionWriter writer) {
+        Server server = serverSupplier.get();
+        if (server == null) {
+            return;
+        }
+        exportThreadPool(writer, server.getThreadPool());
+        exportConnectors(writer, server.getConnectors());
+    }
+
+    private void exportThreadPool(ExpositionWriter writer, ThreadPool threadPool) {
+        if (!(threadPool instanceof QueuedThreadPool)) {
+            return;
+        }
+        QueuedThreadPool pool = (QueuedThreadPool) threadPool;
+
+        writer.metadata("jetty_threads_current", "gauge", "Number of threads in the Jetty thread pool");
+        writer.sample("jetty_threads_current", null).value(pool.getThreads());
+        writer.metadata("jetty_threads_busy", "gauge", "Number of busy threads in the Jetty thread pool");
+        writer.sample("jetty_threads_busy", null).value(pool.getBusyThreads());
+        writer.metadata("jetty_threads_idle", "gauge", "Number of idle threads in the Jetty thread pool");
+        writer.sample("jetty_threads_idle", null).value(pool.getIdleThreads());
+        writer.metadata("jetty_threads_max", "gauge", "Maximum number of threads of the Jetty thread pool");
+        writer.sample("jetty_threads_max", null).value(pool.getMaxThreads());
+        writer.metadata("jetty_threads_utilization", "gauge", "Ratio (0-1) of the threads of the Jetty thread pool that are in use");
+        writer.sample("jetty_threads_utilization", null).value(pool.getUtilizationRate());
+        writer.metadata("jetty_queue_size", "gauge", "Number of jobs waiting for a thread of the Jetty thread pool");
+        writer.sample("jetty_queue_size", null).value(pool.getQueueSize());
+    }
+
+    private void exportConnectors(ExpositionWriter writer, Connector[] connectors) {
+        ConnectionStatistics[] statistics = new ConnectionStatistics[connectors.length];
+        String[] names = new String[connectors.length];
+        boolean found = false;
+        for (int i = 0; i < connectors.length; i++) {
+            statistics[i] = connectors[i].getBean(ConnectionStatistics.class);
+            names[i] = connectorName(connectors[i], i);
+            found |= statistics[i] != null;
+        }
+        if (!found) {
+            return;
+        }
+
+        writer.metadata("jetty_connections_open", "gauge", "Number of open connections of the connector");
+        for (int i = 0; i < statistics.length; i++) {
+            if (statistics[i] != null) {
+                writer.sample("jetty_connections_open", null).label("connector", names[i]).value(statistics[i].getConnections());
+            }
+        }
+        writer.counterMetadata("jetty_connections", "Number of connections opened by the connector");
+        for (int i = 0; i < statistics.length; i++) {
+            if (statistics[i] != null) {
+                writer.sample("jetty_connections", "_total").label("connector", names[i]).value(statistics[i].getConnectionsTotal());
+            }
+        }
+        writer.counterMetadata("jetty_received_bytes", "Number of bytes received by the connector");
+        for (int i = 0; i < statistics.length; i++) {
+            if (statistics[i] != null) {
+                writer.sample("jetty_received_bytes", "_total").label("connector", names[i]).value(statistics[i].getReceivedBytes());
+            }
+        }
+        writer.counterMetadata("jetty_sent_bytes", "Number of bytes sent by the connector");
+        for (int i = 0; i < statistics.length; i++) {
+            if (statistics[i] != null) {
+                writer.sample("jetty_sent_bytes", "_total").label("connector", names[i]).value(statistics[i].getSentBytes());
+            }
+        }
+    }
+
+    private static String connectorName(Connector connector, int idx) {
+        if (connector.getName() != null) {
+            return connector.getName();
+        }
+        if (connector instanceof NetworkConnector) {
+            return "http-" + ((NetworkConnector) connector).getPort();
+        }
+        return "connector-" + idx;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jetty;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * Exports the memory, garbage collection, class loading and thread information of the JVM. The platform MXBeans are
+ * looked up once and called directly, so a scrape doesn't go through the MBeanServer.
+ */
+class JvmMetricsExporter implements MetricsExporter {
+
+    private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+    private final List<MemoryPoolMXBean> memoryPoolMXBeans = ManagementFactory.getMemoryPoolMXBeans();
+    private final List<GarbageCollectorMXBean> garbageCollectorMXBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    private final ClassLoadingMXBean classLoadingMXBean = ManagementFactory.getClassLoadingMXBean();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    @Override
+    public void export(ExpositionWriter writer) {
+        exportMemory(writer);
+        exportMemoryPools(writer);
+        exportGarbageCollection(writer);
+        exportClassLoading(writer);
+        exportThreads(writer);
+    }
+
+    private void exportMemory(ExpositionWriter writer) {
+        MemoryUsage heap = memoryMXBean.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memoryMXBean.getNonHeapMemoryUsage();
+
+        writer.metadata("jvm_memory_used_bytes", "gauge", "Used bytes of a given JVM memory area");
+        writer.sample("jvm_memory_used_bytes", null).label("area", "heap").value(heap.getUsed());
+        writer.sample("jvm_memory_used_bytes", null).label("area", "nonheap").value(nonHeap.getUsed());
+        writer.metadata("jvm_memory_committed_bytes", "gauge", "Committed bytes of a given JVM memory area");
+        writer.sample("jvm_memory_committed_bytes", null).label("area", "heap").value(heap.getCommitted());
+        writer.sample("jvm_memory_committed_bytes", null).label("area", "nonheap").value(nonHeap.getCommitted());
+        writer.metadata("jvm_memory_max_bytes", "gauge", "Max bytes of a given JVM memory area, -1 when undefined");
+        writer.sample("jvm_memory_max_bytes", null).label("area", "heap").value(heap.getMax());
+        writer.sample("jvm_memory_max_bytes", null).label("area", "nonheap").value(nonHeap.getMax());
+    }
+
+    private void exportMemoryPools(ExpositionWriter writer) {
+        // Each pool is asked only once for its usage so that the used, committed and max values are consistent.
+        MemoryUsage[] usages = new MemoryUsage[memoryPoolMXBeans.size()];
+        for (int i = 0; i < usages.length; i++) {
+            usages[i] = memoryPoolMXBeans.get(i).getUsage();
+        }
+
+        writer.metadata("jvm_memory_pool_used_bytes", "gauge", "Used bytes of a given JVM memory pool");
+        for (int i = 0; i < usages.length; i++) {
+            if (usages[i] != null) {
+                writer.sample("jvm_memory_pool_used_bytes", null).label("pool", memoryPoolMXBeans.get(i).getName()).value(usages[i].getUsed());
+            }
+        }
+        writer.metadata("jvm_memory_pool_committed_bytes", "gauge", "Committed bytes of a given JVM memory pool");
+        for (int i = 0; i < usages.length; i++) {
+            if (usages[i] != null) {
+                writer.sample("jvm_memory_pool_committed_bytes", null).label("pool", memoryPoolMXBeans.get(i).getName()).value(usages[i].getCommitted());
+            }
+        }
+        writer.metadata("jvm_memory_pool_max_bytes", "gauge", "Max bytes of a given JVM memory pool, -1 when undefined");
+        for (int i = 0; i < usages.length; i++) {
+            if (usages[i] != null) {
+                writer.sample("jvm_memory_pool_max_bytes", null).label("pool", memoryPoolMXBeans.get(i).getName()).value(usages[i].getMax());
+            }
+        }
+    }
+
+    private void exportGarbageCollection(ExpositionWriter writer) {
+        writer.metadata("jvm_gc_collection_seconds", "summary", "Time spent in a given JVM garbage collector");
+        for (GarbageCollectorMXBean garbageCollectorMXBean : garbageCollectorMXBeans) {
+            writer.sample("jvm_gc_collection_seconds", "_count").label("gc", garbageCollectorMXBean.getName())
+                    .value(garbageCollectorMXBean.getCollectionCount());
+            // Collection time is in milliseconds.
+            writer.sample("jvm_gc_collection_seconds", "_sum").label("gc", garbageCollectorMXBean.getName())
+                    .seconds(Math.max(0, garbageCollectorMXBean.getCollectionTime()) * 1000);
+        }
+    }
+
+    private void exportClassLoading(ExpositionWriter writer) {
+        writer.metadata("jvm_classes_currently_loaded", "gauge", "The number of classes that are currently loaded in the JVM");
+        writer.sample("jvm_classes_currently_loaded", null).value(classLoadingMXBean.getLoadedClassCount());
+        writer.counterMetadata("jvm_classes_loaded", "The total number of classes that have been loaded since the JVM has started");
+        writer.sample("jvm_classes_loaded", "_total").value(classLoadingMXBean.getTotalLoadedClassCount());
+        writer.counterMetadata("jvm_classes_unloaded", "The total number of classes that have been unloaded since the JVM has started");
+        writer.sample("jvm_classes_unloaded", "_total").value(classLoadingMXBean.getUnloadedClassCount());
+    }
+
+    private void exportThreads(ExpositionWriter writer) {
+        writer.metadata("jvm_threads_current", "gauge", "Current thread count of the JVM");
+        writer.sample("jvm_threads_current", null).value(threadMXBean.getThreadCount());
+        writer.metadata("jvm_threads_daemon", "gauge", "Daemon thread count of the JVM");
+        writer.sample("jvm_threads_daemon", null).value(threadMXBean.getDaemonThreadCount());
+        writer.metadata("jvm_threads_peak", "gauge", "Peak thread count of the JVM");
+        writer.sample("jvm_threads_peak", null).value(threadMXBean.getPeakThreadCount());
+    }
+}
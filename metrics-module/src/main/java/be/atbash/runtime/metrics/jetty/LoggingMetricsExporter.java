@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jetty;
+
+import be.atbash.runtime.core.data.watcher.WatcherBean;
+import be.atbash.runtime.core.data.watcher.WatcherService;
+import be.atbash.runtime.core.data.watcher.model.LoggingMonMBean;
+import be.atbash.runtime.core.module.RuntimeObjectsManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Exports the pending, dropped and suppressed records of the asynchronous log handlers and the rotations of the log file. Nothing is exported when the logging
+ * module didn't register its statistics.
+ */
+class LoggingMetricsExporter implements MetricsExporter {
+
+    private final Supplier<LoggingMonMBean> loggingMonSupplier;
+
+    LoggingMetricsExporter(Supplier<LoggingMonMBean> loggingMonSupplier) {
+        this.loggingMonSupplier = loggingMonSupplier;
+    }
+
+    @Override
+    public void export(ExpositionWriter writer) {
+        LoggingMonMBean loggingMon = loggingMonSupplier.get();
+        if (loggingMon == null) {
+            return;
+        }
+        writer.counterMetadata("log_records_dropped", "The total number of log records that are dropped by the overflow policy");
+        writer.sample("log_records_dropped", "_total").label("policy", loggingMon.getOverflowPolicy()).value(loggingMon.getDroppedRecords());
+        writer.counterMetadata("log_records_suppressed", "The total number of log records that are suppressed by the rate limit");
+        writer.sample("log_records_suppressed", "_total").value(loggingMon.getSuppressedRecords());
+        writer.metadata("log_records_pending", "gauge", "Number of log records waiting to be written");
+        writer.sample("log_records_pending", null).value(loggingMon.getPendingRecords());
+        writer.metadata("log_buffer_capacity", "gauge", "Number of log records that can be pending before the overflow policy is applied");
+        writer.sample("log_buffer_capacity", null).value(loggingMon.getBufferCapacity());
+        writer.counterMetadata("log_rotations", "The total number of rotations of the log file");
+        writer.sample("log_rotations", "_total").value(loggingMon.getRotations());
+        writer.metadata("log_rotation_last_swap_seconds", "gauge", "Time the writing of log records was blocked by the last rotation");
+        writer.sample("log_rotation_last_swap_seconds", null).seconds(loggingMon.getLastRotationSwapMicros());
+        writer.metadata("log_rotation_last_compression_seconds", "gauge", "Time the background compression of the last rotated log file took");
+        writer.sample("log_rotation_last_compression_seconds", null).seconds(loggingMon.getLastCompressionMicros());
+    }
+
+    static LoggingMonMBean lookupLoggingMon() {
+        WatcherService watcherService = RuntimeObjectsManager.getInstance().getExposedObject(WatcherService.class);
+        if (watcherService == null) {
+            return null;
+        }
+        return watcherService.retrieveBean(WatcherBean.LoggingWatcherBean);
+    }
+}
@@ -15,8 +15,11 @@
  */
 package be.atbash.runtime.metrics.jetty;
 
+import be.atbash.runtime.metrics.MetricsConfiguration;
 import be.atbash.runtime.metrics.MetricsDataProvider;
 import be.atbash.runtime.metrics.MetricsDataProviderConsumer;
+import be.atbash.runtime.metrics.RequestPhase;
+import be.atbash.runtime.metrics.collector.HistogramData;
 import be.atbash.runtime.metrics.collector.PercentileValue;
 import be.atbash.runtime.metrics.collector.Percentiles;
 import jakarta.servlet.ServletException;
@@ -26,13 +29,64 @@ import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class PrometheusMetricsHandler extends AbstractHandler implements MetricsDataProviderConsumer {
 
+    static final String CONTENT_TYPE_PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
+    static final String CONTENT_TYPE_OPENMETRICS = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final String RESPONSE_TIME = "application_response_time_seconds";
+    private static final String RESPONSE_TIME_WINDOW = "application_response_time_window_seconds";
+    private static final String REQUEST_PHASE = "application_request_phase_seconds";
+    private static final String RESPONSE_TIME_HISTOGRAM = "application_response_time_histogram_seconds";
+    private static final String REQUESTS = "application_requests";
+    private static final String REQUEST_EXCEPTIONS = "application_request_exceptions";
+    private static final String REQUESTS_IN_FLIGHT = "application_requests_in_flight";
+    private static final String METRICS_RESTORED = "application_metrics_restored_timestamp_seconds";
+
+    private static final PercentileValue[] PERCENTILE_VALUES = PercentileValue.values();
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
+    private final long cacheNanos;
+
+    private final List<MetricsExporter> exporters = new ArrayList<>();
+
     private MetricsDataProvider provider;
 
+    // The last rendered output for each format, reused by the scrapes during the cache duration.
+    private volatile RenderedMetrics prometheusCache;
+    private volatile RenderedMetrics openMetricsCache;
+
+    public PrometheusMetricsHandler() {
+        this(Duration.ZERO);
+    }
+
+    /**
+     * @param scrapeCache How long the rendered output is reused for the next scrapes. {@link Duration#ZERO} renders
+     *                    the output for each scrape.
+     */
+    public PrometheusMetricsHandler(Duration scrapeCache) {
+        cacheNanos = scrapeCache.toNanos();
+    }
+
+    public PrometheusMetricsHandler(MetricsConfiguration configuration) {
+        this(Duration.ofSeconds(configuration.getScrapeCache()));
+        if (configuration.isJvmMetrics()) {
+            exporters.add(new JvmMetricsExporter());
+        }
+        if (configuration.isJettyMetrics()) {
+            exporters.add(new JettyMetricsExporter(this::getServer));
+        }
+        if (configuration.isLoggingMetrics()) {
+            exporters.add(new LoggingMetricsExporter(LoggingMetricsExporter::lookupLoggingMon));
+        }
+    }
+
     @Override
     public void setProvider(MetricsDataProvider provider) {
         this.provider = provider;
@@ -43,30 +97,256 @@ public class PrometheusMetricsHandler extends AbstractHandler implements Metrics
             return;
         }
         baseRequest.setHandled(true);
-        response.setContentType("text/plain; version=0.0.4");
 
-        PrintWriter writer = response.getWriter();
-        writer.println("# TYPE application_response_time_seconds summary");
-        writer.println("# HELP application_response_time_seconds Server response time");
+        boolean openMetrics = acceptsOpenMetrics(request);
+        response.setContentType(openMetrics ? CONTENT_TYPE_OPENMETRICS : CONTENT_TYPE_PROMETHEUS);
+
+        response.getWriter().write(getRenderedMetrics(openMetrics));
+    }
+
+    private static boolean acceptsOpenMetrics(HttpServletRequest request) {
+        if (request == null) {
+            return false;
+        }
+        String accept = request.getHeader("Accept");
+        return accept != null && accept.contains("application/openmetrics-text");
+    }
+
+    private String getRenderedMetrics(boolean openMetrics) {
+        long now = System.nanoTime();
+        RenderedMetrics cached = openMetrics ? openMetricsCache : prometheusCache;
+        if (cached != null && cached.isValid(now)) {
+            return cached.content;
+        }
+        synchronized (this) {
+            // Another scrape could have rendered it while we were waiting.
+            cached = openMetrics ? openMetricsCache : prometheusCache;
+            if (cached != null && cached.isValid(now)) {
+                return cached.content;
+            }
+            cached = new RenderedMetrics(render(openMetrics), now + cacheNanos);
+            if (cacheNanos > 0) {
+                if (openMetrics) {
+                    openMetricsCache = cached;
+                } else {
+                    prometheusCache = cached;
+                }
+            }
+            return cached.content;
+        }
+    }
+
+    private String render(boolean openMetrics) {
+        StringBuilder builder = new StringBuilder(4096);
+        ExpositionWriter writer = new ExpositionWriter(builder, openMetrics);
+
+        writer.metadata(RESPONSE_TIME, "summary", "Server response time");
 
         List<String> deploymentNames = provider.listDeploymentNames();
         for (String deploymentName : deploymentNames) {
             showDataForDeployment(writer, deploymentName);
         }
+
+        List<Duration> windows = provider.getWindows();
+        if (!windows.isEmpty()) {
+            writer.metadata(RESPONSE_TIME_WINDOW, "summary", "Server response time within a time window");
+            for (String deploymentName : deploymentNames) {
+                showWindowDataForDeployment(writer, deploymentName, windows);
+            }
+        }
+
+        boolean headerWritten = false;
+        for (String deploymentName : deploymentNames) {
+            headerWritten = showPhaseDataForDeployment(writer, deploymentName, headerWritten);
+        }
+
+        headerWritten = false;
+        for (String deploymentName : deploymentNames) {
+            headerWritten = showHistogramDataForDeployment(writer, deploymentName, headerWritten);
+        }
+
+        headerWritten = false;
+        for (String deploymentName : deploymentNames) {
+            headerWritten = showStatusDataForDeployment(writer, deploymentName, headerWritten);
+        }
+
+        headerWritten = false;
+        for (String deploymentName : deploymentNames) {
+            headerWritten = showExceptionDataForDeployment(writer, deploymentName, headerWritten);
+        }
+
+        Map<String, Long> inFlightRequests = provider.getInFlightRequests();
+        if (!inFlightRequests.isEmpty()) {
+            writer.metadata(REQUESTS_IN_FLIGHT, "gauge", "Number of requests that are currently processed");
+            inFlightRequests.forEach((deploymentName, count) ->
+                    writer.sample(REQUESTS_IN_FLIGHT, null).label("application", deploymentName).value(count));
+        }
+
+        Map<String, Instant> restoredDeployments = provider.getRestoredDeployments();
+        if (!restoredDeployments.isEmpty()) {
+            writer.metadata(METRICS_RESTORED, "gauge", "Time of the snapshot from which the metrics are restored after a restart");
+            restoredDeployments.forEach((deploymentName, timestamp) ->
+                    writer.sample(METRICS_RESTORED, null).label("application", deploymentName).seconds(timestamp.toEpochMilli() * 1000));
+        }
+
+        for (MetricsExporter exporter : exporters) {
+            exporter.export(writer);
+        }
+
+        writer.end();
+        return builder.toString();
     }
 
-    private void showDataForDeployment(PrintWriter writer, String deploymentName) {
+    private void showDataForDeployment(ExpositionWriter writer, String deploymentName) {
         List<String> endpoints = provider.listEndpoints(deploymentName);
 
         for (String endpoint : endpoints) {
             Percentiles metrics = provider.getEndpointMetrics(deploymentName, endpoint);
-            writer.println(String.format("application_response_time_seconds_count{application=\"%s\",endpoint=\"%s\"} %s", deploymentName, endpoint, metrics.getCount()));
-            for (PercentileValue percentileValue : PercentileValue.values()) {
-                long percentile = metrics.getPercentile(percentileValue);
-                writer.println(String.format("application_response_time_seconds{application=\"%s\",endpoint=\"%s\",quantile=\"%s\"} %s", deploymentName, endpoint, percentileValue.getValue() / 100.0, percentile));
+            if (metrics == null) {
+                // Deployment is undeployed in the meantime.
+                continue;
+            }
+            writer.sample(RESPONSE_TIME, "_count")
+                    .label("application", deploymentName).label("endpoint", endpoint)
+                    .value(metrics.getCount());
+            for (PercentileValue percentileValue : PERCENTILE_VALUES) {
+                writer.sample(RESPONSE_TIME, null)
+                        .label("application", deploymentName).label("endpoint", endpoint)
+                        .quantile(percentileValue)
+                        .seconds(metrics.getPercentile(percentileValue));
+            }
+        }
+    }
+
+    private void showWindowDataForDeployment(ExpositionWriter writer, String deploymentName, List<Duration> windows) {
+        List<String> endpoints = provider.listEndpoints(deploymentName);
+
+        for (String endpoint : endpoints) {
+            for (Duration window : windows) {
+                Percentiles metrics = provider.getEndpointMetrics(deploymentName, endpoint, window);
+                if (metrics == null) {
+                    continue;
+                }
+                String windowLabel = window.toMinutes() + "m";
+                writer.sample(RESPONSE_TIME_WINDOW, "_count")
+                        .label("application", deploymentName).label("endpoint", endpoint).label("window", windowLabel)
+                        .value(metrics.getCount());
+                for (PercentileValue percentileValue : PERCENTILE_VALUES) {
+                    writer.sample(RESPONSE_TIME_WINDOW, null)
+                            .label("application", deploymentName).label("endpoint", endpoint).label("window", windowLabel)
+                            .quantile(percentileValue)
+                            .seconds(metrics.getPercentile(percentileValue));
+                }
+            }
+        }
+    }
+
+    private boolean showPhaseDataForDeployment(ExpositionWriter writer, String deploymentName, boolean headerWritten) {
+        List<String> endpoints = provider.listEndpoints(deploymentName);
+
+        for (String endpoint : endpoints) {
+            for (RequestPhase phase : PHASES) {
+                Percentiles metrics = provider.getEndpointPhaseMetrics(deploymentName, endpoint, phase);
+                if (metrics == null) {
+                    continue;
+                }
+                if (!headerWritten) {
+                    writer.metadata(REQUEST_PHASE, "summary", "Server time for each phase of the request");
+                    headerWritten = true;
+                }
+                writer.sample(REQUEST_PHASE, "_count")
+                        .label("application", deploymentName).label("endpoint", endpoint).label("phase", phase.getLabel())
+                        .value(metrics.getCount());
+                for (PercentileValue percentileValue : PERCENTILE_VALUES) {
+                    writer.sample(REQUEST_PHASE, null)
+                            .label("application", deploymentName).label("endpoint", endpoint).label("phase", phase.getLabel())
+                            .quantile(percentileValue)
+                            .seconds(metrics.getPercentile(percentileValue));
+                }
+            }
+        }
+        return headerWritten;
+    }
+
+    private boolean showHistogramDataForDeployment(ExpositionWriter writer, String deploymentName, boolean headerWritten) {
+        List<String> endpoints = provider.listEndpoints(deploymentName);
+
+        for (String endpoint : endpoints) {
+            HistogramData histogram = provider.getEndpointHistogram(deploymentName, endpoint);
+            if (histogram == null) {
+                continue;
             }
+            if (!headerWritten) {
+                writer.metadata(RESPONSE_TIME_HISTOGRAM, "histogram", "Server response time");
+                headerWritten = true;
+            }
+            long[] boundaries = histogram.getBoundaries();
+            long[] cumulativeCounts = histogram.getCumulativeCounts();
+            for (int i = 0; i < boundaries.length; i++) {
+                writer.sample(RESPONSE_TIME_HISTOGRAM, "_bucket")
+                        .label("application", deploymentName).label("endpoint", endpoint)
+                        .le(boundaries[i])
+                        .value(cumulativeCounts[i]);
+            }
+            writer.sample(RESPONSE_TIME_HISTOGRAM, "_bucket")
+                    .label("application", deploymentName).label("endpoint", endpoint)
+                    .le(-1)
+                    .value(histogram.getCount());
+            writer.sample(RESPONSE_TIME_HISTOGRAM, "_sum")
+                    .label("application", deploymentName).label("endpoint", endpoint)
+                    .seconds(histogram.getSum());
+            writer.sample(RESPONSE_TIME_HISTOGRAM, "_count")
+                    .label("application", deploymentName).label("endpoint", endpoint)
+                    .value(histogram.getCount());
         }
+        return headerWritten;
     }
 
+    private boolean showStatusDataForDeployment(ExpositionWriter writer, String deploymentName, boolean headerWritten) {
+        List<String> endpoints = provider.listEndpoints(deploymentName);
+
+        for (String endpoint : endpoints) {
+            Map<String, Long> statusCounts = provider.getEndpointStatusCounts(deploymentName, endpoint);
+            if (!statusCounts.isEmpty() && !headerWritten) {
+                writer.counterMetadata(REQUESTS, "Number of requests for each status class of the response");
+                headerWritten = true;
+            }
+            statusCounts.forEach((status, count) ->
+                    writer.sample(REQUESTS, "_total")
+                            .label("application", deploymentName).label("endpoint", endpoint).label("status", status)
+                            .value(count));
+        }
+        return headerWritten;
+    }
 
+    private boolean showExceptionDataForDeployment(ExpositionWriter writer, String deploymentName, boolean headerWritten) {
+        List<String> endpoints = provider.listEndpoints(deploymentName);
+
+        for (String endpoint : endpoints) {
+            Map<String, Long> exceptionCounts = provider.getEndpointExceptionCounts(deploymentName, endpoint);
+            if (!exceptionCounts.isEmpty() && !headerWritten) {
+                writer.counterMetadata(REQUEST_EXCEPTIONS, "Number of requests that failed with an exception");
+                headerWritten = true;
+            }
+            exceptionCounts.forEach((exception, count) ->
+                    writer.sample(REQUEST_EXCEPTIONS, "_total")
+                            .label("application", deploymentName).label("endpoint", endpoint).label("exception", exception)
+                            .value(count));
+        }
+        return headerWritten;
+    }
+
+    private static class RenderedMetrics {
+        private final String content;
+        private final long validUntil;
+
+        RenderedMetrics(String content, long validUntil) {
+            this.content = content;
+            this.validUntil = validUntil;
+        }
+
+        boolean isValid(long now) {
+            return now - validUntil < 0;
+        }
+    }
 }
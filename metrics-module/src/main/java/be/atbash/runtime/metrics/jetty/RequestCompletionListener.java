@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jetty;
+
+import be.atbash.runtime.metrics.RequestMetricsPump;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+
+/**
+ * Listener on the Jetty connectors that keeps track of the in-flight requests of each deployment and records the
+ * status of the requests that are not processed by JAX-RS. The listener sees every request, including the
+ * asynchronous ones, from the moment the headers are parsed until the response is completely written.
+ */
+public class RequestCompletionListener implements HttpChannel.Listener {
+
+    /**
+     * Request attribute set by the JAX-RS listener when it has recorded the request itself.
+     */
+    public static final String REQUEST_RECORDED = "ATBASH.METRICS.RECORDED";
+
+    private static final String REQUEST_DEPLOYMENT = "ATBASH.METRICS.DEPLOYMENT";
+
+    private final RequestMetricsPump metricsPump;
+
+    public RequestCompletionListener(RequestMetricsPump metricsPump) {
+        this.metricsPump = metricsPump;
+    }
+
+    @Override
+    public void onRequestBegin(Request request) {
+        String deploymentName = metricsPump.requestStarted(request.getRequestURI());
+        if (deploymentName != null) {
+            request.setAttribute(REQUEST_DEPLOYMENT, deploymentName);
+        }
+    }
+
+    @Override
+    public void onComplete(Request request) {
+        Object deploymentName = request.getAttribute(REQUEST_DEPLOYMENT);
+        if (deploymentName == null) {
+            return;
+        }
+        metricsPump.requestFinished((String) deploymentName);
+        if (request.getAttribute(REQUEST_RECORDED) == null) {
+            metricsPump.offerStatus((String) deploymentName, request.getResponse().getStatus());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jetty;
+
+import be.atbash.runtime.metrics.jfr.RequestEvent;
+import be.atbash.runtime.metrics.jfr.RequestEventEmitter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+/**
+ * Handler that must be the first one in the handler collection. It stores the time the request arrives in the
+ * Jetty handlers (as {@link System#nanoTime()}) so that the time before the request reaches Jersey can be determined.
+ * When the JFR {@link RequestEvent} is recorded, the event is started here so that it covers the entire request.
+ */
+public class RequestStartHandler extends AbstractHandler {
+
+    public static final String REQUEST_START = "ATBASH.METRICS.START";
+    public static final String REQUEST_EVENT = "ATBASH.METRICS.EVENT";
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) {
+        if (baseRequest.getAttribute(REQUEST_START) == null) {
+            baseRequest.setAttribute(REQUEST_START, System.nanoTime());
+            RequestEvent event = RequestEventEmitter.begin();
+            if (event != null) {
+                baseRequest.setAttribute(REQUEST_EVENT, event);
+            }
+        }
+    }
+}
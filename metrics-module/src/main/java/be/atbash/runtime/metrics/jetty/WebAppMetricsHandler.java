@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jetty;
+
+import be.atbash.runtime.metrics.RequestMetricsPump;
+import be.atbash.runtime.metrics.jfr.RequestEvent;
+import be.atbash.runtime.metrics.jfr.RequestEventEmitter;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletMapping;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Handler that is inserted in the WebAppContext of each deployment and records the duration and status of the
+ * requests that are not processed by JAX-RS, like Servlets and static content. The endpoint is named after the
+ * servlet mapping, like {@code GET /hello/*} or {@code GET /} for the static content served by the default servlet.
+ */
+public class WebAppMetricsHandler extends HandlerWrapper {
+
+    private static final String ASYNC_LISTENER = "ATBASH.METRICS.ASYNC";
+
+    private final RequestMetricsPump metricsPump;
+    private final String deploymentName;
+
+    // pattern -> HTTP method -> endpoint name, so that we don't need to concatenate for each request.
+    private final Map<String, Map<String, String>> endpointNames = new ConcurrentHashMap<>();
+
+    public WebAppMetricsHandler(RequestMetricsPump metricsPump, String deploymentName) {
+        this.metricsPump = metricsPump;
+        this.deploymentName = deploymentName;
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+        if (baseRequest.getAttribute(ASYNC_LISTENER) != null) {
+            // Dispatch of an asynchronous request, the listener records it when it completes.
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+        Object start = baseRequest.getAttribute(RequestStartHandler.REQUEST_START);
+        long startNanos = start instanceof Long ? (Long) start : System.nanoTime();
+        // Determined before the servlet is called, a forward changes the mapping.
+        HttpServletMapping mapping = baseRequest.getHttpServletMapping();
+        try {
+            super.handle(target, baseRequest, request, response);
+        } finally {
+            if (baseRequest.isAsyncStarted()) {
+                baseRequest.setAttribute(ASYNC_LISTENER, Boolean.TRUE);
+                baseRequest.getAsyncContext().addListener(new MetricsAsyncListener(baseRequest, startNanos, mapping));
+            } else {
+                record(baseRequest, startNanos, mapping);
+            }
+        }
+    }
+
+    private void record(Request baseRequest, long startNanos, HttpServletMapping mapping) {
+        if (baseRequest.getAttribute(RequestCompletionListener.REQUEST_RECORDED) != null) {
+            // Processed and recorded by JAX-RS.
+            return;
+        }
+        long duration = System.nanoTime() - startNanos;
+        RequestEvent event = RequestEventEmitter.end(baseRequest.getAttribute(RequestStartHandler.REQUEST_EVENT));
+        String pattern = mapping == null || mapping.getPattern() == null ? "/" : mapping.getPattern();
+        // Clients can send any method, use a fixed name for the unknown ones so that the cache remains small.
+        String method = HttpMethod.CACHE.get(baseRequest.getMethod()) == null ? "OTHER" : baseRequest.getMethod();
+        String endpoint = endpointNames.computeIfAbsent(pattern, p -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method, m -> m + " " + (pattern.isEmpty() ? "/" : pattern));
+
+        metricsPump.offer(deploymentName, endpoint, method, duration, baseRequest.getResponse().getStatus(), event);
+        baseRequest.setAttribute(RequestCompletionListener.REQUEST_RECORDED, Boolean.TRUE);
+    }
+
+    private class MetricsAsyncListener implements AsyncListener {
+
+        private final Request baseRequest;
+        private final long startNanos;
+        private final HttpServletMapping mapping;
+
+        MetricsAsyncListener(Request baseRequest, long startNanos, HttpServletMapping mapping) {
+            this.baseRequest = baseRequest;
+            this.startNanos = startNanos;
+            this.mapping = mapping;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            record(baseRequest, startNanos, mapping);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // Recorded in onComplete.
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // Recorded in onComplete.
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Keep listening when the request is suspended again.
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
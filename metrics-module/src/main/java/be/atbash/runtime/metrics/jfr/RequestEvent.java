@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for a request that took longer than the configured threshold of the endpoint. Committed on
+ * the request thread so that JFR can correlate it with the GC, lock and I/O events of that moment.
+ */
+@Name(RequestEvent.NAME)
+@Label("Slow Request")
+@Description("Request that took longer than the threshold of the endpoint")
+@Category({"Atbash", "Metrics"})
+@StackTrace(false)
+public class RequestEvent extends Event {
+
+    public static final String NAME = "be.atbash.runtime.Request";
+
+    @Label("Deployment")
+    String deployment;
+
+    @Label("Endpoint")
+    @Description("HTTP method and URI template or servlet mapping")
+    String endpoint;
+
+    @Label("Method")
+    String method;
+
+    @Label("Status")
+    int status;
+
+    @Label("Request Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long requestTime;
+
+    @Label("Jetty Time")
+    @Description("Time before the request reached JAX-RS, -1 when unknown")
+    @Timespan(Timespan.NANOSECONDS)
+    long jettyTime = -1;
+
+    @Label("Matching Time")
+    @Description("Time for matching the resource method and the request filters, -1 when unknown")
+    @Timespan(Timespan.NANOSECONDS)
+    long matchingTime = -1;
+
+    @Label("Resource Time")
+    @Description("Time spent in the resource method, -1 when unknown")
+    @Timespan(Timespan.NANOSECONDS)
+    long resourceTime = -1;
+
+    @Label("Write Time")
+    @Description("Time for the response filters and writing the response, -1 when unknown")
+    @Timespan(Timespan.NANOSECONDS)
+    long writeTime = -1;
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jfr;
+
+import be.atbash.runtime.metrics.RequestPhase;
+import be.atbash.runtime.metrics.jaxrs.RequestMetricsData;
+import jdk.jfr.EventType;
+
+/**
+ * Commits the {@link RequestEvent} for a slow request. When Flight Recorder isn't recording the event, nothing is
+ * allocated.
+ */
+public final class RequestEventEmitter {
+
+    private static final EventType EVENT_TYPE = EventType.getEventType(RequestEvent.class);
+
+    private RequestEventEmitter() {
+    }
+
+    /**
+     * Starts the event for a request, must be called on the thread of the request when it arrives so that the event
+     * has the duration of the request.
+     *
+     * @return The started event or null when the event isn't recorded.
+     */
+    public static RequestEvent begin() {
+        if (!EVENT_TYPE.isEnabled()) {
+            return null;
+        }
+        RequestEvent event = new RequestEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event started with {@link #begin()}, when the request is finished.
+     *
+     * @param event The event stored for the request, can be null.
+     * @return The event or null when there is no event for the request.
+     */
+    public static RequestEvent end(Object event) {
+        if (!(event instanceof RequestEvent)) {
+            return null;
+        }
+        RequestEvent result = (RequestEvent) event;
+        result.end();
+        return result;
+    }
+
+    public static void emit(String deploymentName, String endpoint, RequestMetricsData metricsData) {
+        RequestEvent event = metricsData.getEvent();
+        if (event == null) {
+            return;
+        }
+        fillEvent(event, deploymentName, endpoint, metricsData.getMethod(), metricsData.getStatus(), metricsData.getDuration());
+        event.jettyTime = metricsData.getPhaseDuration(RequestPhase.JETTY);
+        event.matchingTime = metricsData.getPhaseDuration(RequestPhase.MATCHING);
+        event.resourceTime = metricsData.getPhaseDuration(RequestPhase.RESOURCE);
+        event.writeTime = metricsData.getPhaseDuration(RequestPhase.WRITE);
+        event.commit();
+    }
+
+    public static void emit(RequestEvent event, String deploymentName, String endpoint, String method, int status, long durationNanos) {
+        if (event == null) {
+            return;
+        }
+        fillEvent(event, deploymentName, endpoint, method, status, durationNanos);
+        event.commit();
+    }
+
+    private static void fillEvent(RequestEvent event, String deploymentName, String endpoint, String method, int status, long durationNanos) {
+        event.deployment = deploymentName;
+        event.endpoint = endpoint;
+        event.method = method;
+        event.status = status;
+        event.requestTime = durationNanos;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.push;
+
+import be.atbash.runtime.metrics.EndpointKey;
+import be.atbash.runtime.metrics.MetricsDataProvider;
+import be.atbash.runtime.metrics.collector.HistogramData;
+import be.atbash.runtime.metrics.collector.PercentileValue;
+import be.atbash.runtime.metrics.collector.Percentiles;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects the changes of the metrics since the previous collection and writes them as the {@code metrics} of an
+ * OTLP JSON document (delta temporality). Data points without changes are not written.
+ * <p>
+ * Not thread safe, collections are performed by a single thread.
+ */
+class DeltaCollector {
+
+    static final String REQUEST_DURATION = "http.server.request.duration";
+    static final String REQUESTS = "http.server.requests";
+    static final String REQUEST_EXCEPTIONS = "http.server.request.exceptions";
+    static final String ACTIVE_REQUESTS = "http.server.active_requests";
+
+    private static final int AGGREGATION_TEMPORALITY_DELTA = 1;
+    private static final PercentileValue[] PERCENTILE_VALUES = PercentileValue.values();
+
+    private final MetricsDataProvider provider;
+
+    // Previous values, replaced at each collection so that removed endpoints are forgotten.
+    private Map<EndpointKey, HistogramState> previousHistograms = new HashMap<>();
+    private Map<String, Long> previousCounts = new HashMap<>();
+
+    private long previousTimeNanos;
+
+    DeltaCollector(MetricsDataProvider provider, long startTimeMillis) {
+        this.provider = provider;
+        previousTimeNanos = startTimeMillis * 1_000_000;
+    }
+
+    /**
+     * Collects the changes since the previous collection.
+     *
+     * @param timeMillis The time of the collection.
+     * @return The comma separated metrics in OTLP JSON format, empty when nothing changed.
+     */
+    String collect(long timeMillis) {
+        long timeNanos = timeMillis * 1_000_000;
+        Map<EndpointKey, HistogramState> histograms = new HashMap<>();
+        Map<String, Long> counts = new HashMap<>();
+
+        StringBuilder durations = new StringBuilder();
+        StringBuilder summaries = new StringBuilder();
+        StringBuilder requests = new StringBuilder();
+        StringBuilder exceptions = new StringBuilder();
+        for (String deploymentName : provider.listDeploymentNames()) {
+            for (String endpoint : provider.listEndpoints(deploymentName)) {
+                EndpointKey key = new EndpointKey(deploymentName, endpoint);
+                HistogramData histogram = provider.getEndpointHistogram(deploymentName, endpoint);
+                if (histogram != null) {
+                    HistogramState state = new HistogramState(histogram);
+                    histograms.put(key, state);
+                    writeHistogramPoint(durations, key, state.delta(determinePrevious(key)), histogram.getBoundaries(), timeNanos);
+                } else {
+                    writeSummaryPoint(summaries, key, provider.getEndpointMetrics(deploymentName, endpoint), timeNanos);
+                }
+                provider.getEndpointStatusCounts(deploymentName, endpoint).forEach((status, count) ->
+                        writeCountPoint(requests, counts, key, "status", status, count, timeNanos));
+                provider.getEndpointExceptionCounts(deploymentName, endpoint).forEach((exception, count) ->
+                        writeCountPoint(exceptions, counts, key, "exception", exception, count, timeNanos));
+            }
+        }
+        StringBuilder inFlight = new StringBuilder();
+        provider.getInFlightRequests().forEach((deploymentName, count) -> {
+            separator(inFlight).append("{\"attributes\":[");
+            attribute(inFlight, "application", deploymentName).append("],\"timeUnixNano\":\"").append(timeNanos)
+                    .append("\",\"asInt\":\"").append(count).append("\"}");
+        });
+
+        previousHistograms = histograms;
+        previousCounts = counts;
+        previousTimeNanos = timeNanos;
+
+        StringBuilder result = new StringBuilder();
+        if (durations.length() > 0) {
+            metric(result, REQUEST_DURATION, "s", "histogram")
+                    .append("{\"aggregationTemporality\":").append(AGGREGATION_TEMPORALITY_DELTA)
+                    .append(",\"dataPoints\":[").append(durations).append("]}}");
+        }
+        if (summaries.length() > 0) {
+            metric(result, REQUEST_DURATION, "s", "summary")
+                    .append("{\"dataPoints\":[").append(summaries).append("]}}");
+        }
+        if (requests.length() > 0) {
+            sum(metric(result, REQUESTS, "{request}", "sum"), requests);
+        }
+        if (exceptions.length() > 0) {
+            sum(metric(result, REQUEST_EXCEPTIONS, "{request}", "sum"), exceptions);
+        }
+        if (inFlight.length() > 0) {
+            metric(result, ACTIVE_REQUESTS, "{request}", "gauge")
+                    .append("{\"dataPoints\":[").append(inFlight).append("]}}");
+        }
+        return result.toString();
+    }
+
+    /**
+     * The state of the previous collection. For an endpoint that is restored from a snapshot, the restored data are
+     * the starting point as they are already pushed by the previous process.
+     */
+    private HistogramState determinePrevious(EndpointKey key) {
+        HistogramState result = previousHistograms.get(key);
+        if (result == null) {
+            HistogramData restored = provider.getRestoredHistogram(key.getDeploymentName(), key.getPath());
+            if (restored != null) {
+                result = new HistogramState(restored);
+            }
+        }
+        return result;
+    }
+
+    private void writeHistogramPoint(StringBuilder builder, EndpointKey key, HistogramState delta, long[] boundaries, long timeNanos) {
+        if (delta.count == 0) {
+            return;
+        }
+        startPoint(builder, key, timeNanos).append(",\"count\":\"").append(delta.count)
+                .append("\",\"sum\":").append(seconds(delta.sum)).append(",\"bucketCounts\":[");
+        for (int i = 0; i < delta.bucketCounts.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append('"').append(delta.bucketCounts[i]).append('"');
+        }
+        builder.append("],\"explicitBounds\":[");
+        for (int i = 0; i < boundaries.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(seconds(boundaries[i]));
+        }
+        builder.append("]}");
+    }
+
+    private void writeSummaryPoint(StringBuilder builder, EndpointKey key, Percentiles percentiles, long timeNanos) {
+        // The circular collector only keeps the most recent requests, the quantiles are reported as they are.
+        // The sum of the durations isn't known, so it is not written.
+        if (percentiles == null || percentiles.getCount() == 0) {
+            return;
+        }
+        startPoint(builder, key, timeNanos).append(",\"count\":\"").append(percentiles.getCount())
+                .append("\",\"quantileValues\":[");
+        for (int i = 0; i < PERCENTILE_VALUES.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"quantile\":").append(PERCENTILE_VALUES[i].getValue() / 100.0)
+                    .append(",\"value\":").append(seconds(percentiles.getPercentile(PERCENTILE_VALUES[i]))).append('}');
+        }
+        builder.append("]}");
+    }
+
+    private void writeCountPoint(StringBuilder builder, Map<String, Long> counts, EndpointKey key, String attributeName, String attributeValue, long count, long timeNanos) {
+        String countKey = key.getDeploymentName() + '\u0000' + key.getPath() + '\u0000' + attributeName + '\u0000' + attributeValue;
+        counts.put(countKey, count);
+        long previous = previousCounts.getOrDefault(countKey, 0L);
+        // A lower value means that the counter is reset (redeployment), the new value is the delta.
+        long delta = count >= previous ? count - previous : count;
+        if (delta == 0) {
+            return;
+        }
+        separator(builder).append("{\"attributes\":[");
+        attribute(builder, "application", key.getDeploymentName()).append(',');
+        attribute(builder, "endpoint", key.getPath()).append(',');
+        attribute(builder, attributeName, attributeValue).append("],\"startTimeUnixNano\":\"").append(previousTimeNanos)
+                .append("\",\"timeUnixNano\":\"").append(timeNanos).append("\",\"asInt\":\"").append(delta).append("\"}");
+    }
+
+    private StringBuilder startPoint(StringBuilder builder, EndpointKey key, long timeNanos) {
+        separator(builder).append("{\"attributes\":[");
+        attribute(builder, "application", key.getDeploymentName()).append(',');
+        return attribute(builder, "endpoint", key.getPath()).append("],\"startTimeUnixNano\":\"").append(previousTimeNanos)
+                .append("\",\"timeUnixNano\":\"").append(timeNanos).append('"');
+    }
+
+    private static StringBuilder metric(StringBuilder builder, String name, String unit, String type) {
+        return separator(builder).append("{\"name\":\"").append(name).append("\",\"unit\":\"").append(unit)
+                .append("\",\"").append(type).append("\":");
+    }
+
+    private static void sum(StringBuilder builder, StringBuilder dataPoints) {
+        builder.append("{\"aggregationTemporality\":").append(AGGREGATION_TEMPORALITY_DELTA)
+                .append(",\"isMonotonic\":true,\"dataPoints\":[").append(dataPoints).append("]}}");
+    }
+
+    private static StringBuilder separator(StringBuilder builder) {
+        if (builder.length() > 0) {
+            builder.append(',');
+        }
+        return builder;
+    }
+
+    static StringBuilder attribute(StringBuilder builder, String key, String value) {
+        builder.append("{\"key\":\"");
+        escape(builder, key);
+        builder.append("\",\"value\":{\"stringValue\":\"");
+        escape(builder, value);
+        return builder.append("\"}}");
+    }
+
+    static void escape(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+    }
+
+    private static String seconds(long micros) {
+        return BigDecimal.valueOf(micros, 6).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Counts of the individual buckets (not cumulative), with the values above the highest boundary as last bucket.
+     */
+    private static final class HistogramState {
+
+        private final long[] bucketCounts;
+        private final long count;
+        private final long sum;
+
+        private HistogramState(long[] bucketCounts, long count, long sum) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        private HistogramState(HistogramData data) {
+            long[] cumulative = data.getCumulativeCounts();
+            bucketCounts = new long[cumulative.length + 1];
+            long previous = 0;
+            for (int i = 0; i < cumulative.length; i++) {
+                bucketCounts[i] = cumulative[i] - previous;
+                previous = cumulative[i];
+            }
+            bucketCounts[cumulative.length] = data.getCount() - previous;
+            count = data.getCount();
+            sum = data.getSum();
+        }
+
+        private HistogramState delta(HistogramState previous) {
+            if (previous == null || previous.count > count || previous.bucketCounts.length != bucketCounts.length) {
+                // New endpoint or the collector is reset.
+                return this;
+            }
+            long[] result = new long[bucketCounts.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = bucketCounts[i] - previous.bucketCounts[i];
+            }
+            return new HistogramState(result, count - previous.count, sum - previous.sum);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.push;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Posts each batch to an HTTP endpoint that accepts OTLP JSON, like the {@code /v1/metrics} endpoint of an
+ * OpenTelemetry collector.
+ */
+class HttpPushSink implements PushSink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpPushSink.class);
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final URI url;
+    private final boolean compress;
+    private final HttpClient client;
+
+    HttpPushSink(URI url, boolean compress) {
+        this.url = url;
+        this.compress = compress;
+        client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+    }
+
+    @Override
+    public void send(String document) throws IOException {
+        byte[] body = document.getBytes(StandardCharsets.UTF_8);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(url)
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json");
+        if (compress) {
+            body = gzip(body);
+            builder.header("Content-Encoding", "gzip");
+        }
+        HttpResponse<Void> response;
+        try {
+            response = client.send(builder.POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(), HttpResponse.BodyHandlers.discarding());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while pushing the metrics", e);
+        }
+        int status = response.statusCode();
+        if (status == 429 || status >= 500) {
+            throw new IOException("Status " + status + " from " + url);
+        }
+        if (status >= 300) {
+            // The request itself is rejected, sending it again would give the same result.
+            LOGGER.warn("METRICS-107: Metrics batch rejected by " + url + " with status " + status);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(result, 8192)) {
+            out.write(data);
+        }
+        return result.toByteArray();
+    }
+
+    @Override
+    public String describe() {
+        return url.toString();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.push;
+
+import be.atbash.runtime.metrics.MetricsConfiguration;
+import be.atbash.runtime.metrics.MetricsDataProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Periodically collects the changes of the metrics and pushes them in OTLP JSON format to the configured HTTP
+ * endpoint and/or file. Useful for short-lived processes and instances that are never scraped.
+ * <p>
+ * Each sink has its own bounded buffer, collections that couldn't be delivered are retried at the next interval
+ * together with the new ones, up to the batch size per request. When the buffer is full, the oldest collection is
+ * dropped. A last collection is pushed when the pusher is stopped.
+ */
+public class MetricsPusher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsPusher.class);
+
+    private final DeltaCollector collector;
+    private final List<SinkBuffer> sinks = new ArrayList<>();
+    private final int batchSize;
+    private final int bufferSize;
+    private final String resourceStart;
+    private final LongAdder dropped = new LongAdder();
+
+    private ScheduledExecutorService executor;
+
+    public MetricsPusher(MetricsConfiguration configuration, MetricsDataProvider provider) {
+        this(provider, createSinks(configuration), configuration.getPushBatchSize(), configuration.getPushBufferSize(),
+                configuration.getPushServiceName());
+    }
+
+    MetricsPusher(MetricsDataProvider provider, List<PushSink> sinks, int batchSize, int bufferSize, String serviceName) {
+        collector = new DeltaCollector(provider, System.currentTimeMillis());
+        sinks.forEach(sink -> this.sinks.add(new SinkBuffer(sink)));
+        this.batchSize = batchSize;
+        this.bufferSize = bufferSize;
+
+        StringBuilder builder = new StringBuilder("{\"resourceMetrics\":[{\"resource\":{\"attributes\":[");
+        DeltaCollector.attribute(builder, "service.name", serviceName);
+        builder.append("]},\"scopeMetrics\":[{\"scope\":{\"name\":\"be.atbash.runtime.metrics\"},\"metrics\":[");
+        resourceStart = builder.toString();
+    }
+
+    private static List<PushSink> createSinks(MetricsConfiguration configuration) {
+        List<PushSink> result = new ArrayList<>();
+        if (configuration.getPushUrl() != null) {
+            result.add(new HttpPushSink(configuration.getPushUrl(), configuration.isPushCompress()));
+        }
+        if (configuration.getPushFile() != null) {
+            result.add(new FilePushSink(configuration.getPushFile()));
+        }
+        return result;
+    }
+
+    public boolean hasSinks() {
+        return !sinks.isEmpty();
+    }
+
+    public void start(long intervalSeconds) {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Metrics pusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::push, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // The requests since the last interval, important for short-lived processes.
+        push();
+    }
+
+    /**
+     * Collects the changes and sends all buffered collections to the sinks.
+     */
+    synchronized void push() {
+        try {
+            String metrics = collector.collect(System.currentTimeMillis());
+            if (!metrics.isEmpty()) {
+                sinks.forEach(sink -> sink.add(metrics));
+            }
+            sinks.forEach(SinkBuffer::flush);
+        } catch (RuntimeException e) {
+            // Never stop the scheduled task.
+            LOGGER.warn("METRICS-108: Unable to collect the metrics to push : " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Number of collections that are dropped because the buffer of a sink was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private class SinkBuffer {
+
+        private final PushSink sink;
+        private final Deque<String> pending = new ArrayDeque<>();
+        private boolean failing;
+
+        SinkBuffer(PushSink sink) {
+            this.sink = sink;
+        }
+
+        void add(String metrics) {
+            pending.addLast(metrics);
+            while (pending.size() > bufferSize) {
+                pending.removeFirst();
+                dropped.increment();
+            }
+        }
+
+        void flush() {
+            while (!pending.isEmpty()) {
+                int count = Math.min(batchSize, pending.size());
+                StringBuilder document = new StringBuilder(resourceStart);
+                int idx = 0;
+                for (String metrics : pending) {
+                    if (idx == count) {
+                        break;
+                    }
+                    if (idx > 0) {
+                        document.append(',');
+                    }
+                    document.append(metrics);
+                    idx++;
+                }
+                document.append("]}]}]}");
+                try {
+                    sink.send(document.toString());
+                } catch (IOException e) {
+                    if (!failing) {
+                        LOGGER.warn("METRICS-106: Unable to push the metrics to " + sink.describe() + ", will retry : " + e.getMessage());
+                        failing = true;
+                    }
+                    return;
+                }
+                failing = false;
+                for (int i = 0; i < count; i++) {
+                    pending.removeFirst();
+                }
+            }
+        }
+    }
+}
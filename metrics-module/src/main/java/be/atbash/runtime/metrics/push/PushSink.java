@@ -0,0 +1,34 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.push;
+
+import java.io.IOException;
+
+/**
+ * Destination of the pushed metrics.
+ */
+interface PushSink {
+
+    /**
+     * Sends a batch of metrics.
+     *
+     * @param document The OTLP JSON document.
+     * @throws IOException When the batch can't be delivered now but could be retried later.
+     */
+    void send(String document) throws IOException;
+
+    String describe();
+}
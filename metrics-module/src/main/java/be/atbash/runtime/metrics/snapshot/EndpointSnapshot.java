@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.snapshot;
+
+import be.atbash.runtime.metrics.RequestPhase;
+import be.atbash.runtime.metrics.collector.HistogramSnapshot;
+
+/**
+ * The persisted histograms of one endpoint.
+ */
+public class EndpointSnapshot {
+
+    private final String deploymentName;
+    private final String endpoint;
+    private final HistogramSnapshot requestTime;
+    private final HistogramSnapshot[] phases;  // Indexed by the ordinal of RequestPhase, entries can be null.
+
+    public EndpointSnapshot(String deploymentName, String endpoint, HistogramSnapshot requestTime, HistogramSnapshot[] phases) {
+        this.deploymentName = deploymentName;
+        this.endpoint = endpoint;
+        this.requestTime = requestTime;
+        this.phases = phases;
+    }
+
+    public String getDeploymentName() {
+        return deploymentName;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public HistogramSnapshot getRequestTime() {
+        return requestTime;
+    }
+
+    /**
+     * @return The snapshot of the phase or null when it isn't available (like a snapshot of an older version).
+     */
+    public HistogramSnapshot getPhase(RequestPhase phase) {
+        return phase.ordinal() < phases.length ? phases[phase.ordinal()] : null;
+    }
+
+    HistogramSnapshot[] getPhases() {
+        return phases;
+    }
+}
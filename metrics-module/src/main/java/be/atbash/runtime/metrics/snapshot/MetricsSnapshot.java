@@ -0,0 +1,41 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.snapshot;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The histograms of all endpoints at a certain moment, written to disk so that they survive a restart.
+ */
+public class MetricsSnapshot {
+
+    private final Instant timestamp;
+    private final List<EndpointSnapshot> endpoints;
+
+    public MetricsSnapshot(Instant timestamp, List<EndpointSnapshot> endpoints) {
+        this.timestamp = timestamp;
+        this.endpoints = endpoints;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public List<EndpointSnapshot> getEndpoints() {
+        return endpoints;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.snapshot;
+
+import be.atbash.runtime.metrics.collector.HistogramSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes a {@link MetricsSnapshot} in a compact binary format. Only the non-empty buckets are written, the
+ * bucket index as the difference with the previous one and all numbers as variable length values.
+ * <p>
+ * The file is first written under a temporary name and then moved so that a crash during the write never leaves a
+ * truncated snapshot behind.
+ */
+public class MetricsSnapshotFile {
+
+    private static final int MAGIC = 0x41544D53;  // ATMS
+    private static final int VERSION = 1;
+
+    private final Path file;
+
+    public MetricsSnapshotFile(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public void write(MetricsSnapshot snapshot) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(snapshot.getTimestamp().toEpochMilli());
+            writeVarLong(out, snapshot.getEndpoints().size());
+            for (EndpointSnapshot endpoint : snapshot.getEndpoints()) {
+                out.writeUTF(endpoint.getDeploymentName());
+                out.writeUTF(endpoint.getEndpoint());
+                writeHistogram(out, endpoint.getRequestTime());
+                HistogramSnapshot[] phases = endpoint.getPhases();
+                writeVarLong(out, phases.length);
+                for (HistogramSnapshot phase : phases) {
+                    out.writeBoolean(phase != null);
+                    if (phase != null) {
+                        writeHistogram(out, phase);
+                    }
+                }
+            }
+        }
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads the snapshot.
+     *
+     * @return The snapshot or null when the file doesn't exist.
+     * @throws IOException When the file can't be read or isn't a valid snapshot.
+     */
+    public MetricsSnapshot read() throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a metrics snapshot file");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported metrics snapshot version " + version);
+            }
+            Instant timestamp = Instant.ofEpochMilli(in.readLong());
+            int endpointCount = readVarInt(in);
+            List<EndpointSnapshot> endpoints = new ArrayList<>(endpointCount);
+            for (int i = 0; i < endpointCount; i++) {
+                String deploymentName = in.readUTF();
+                String endpoint = in.readUTF();
+                HistogramSnapshot requestTime = readHistogram(in);
+                HistogramSnapshot[] phases = new HistogramSnapshot[readVarInt(in)];
+                for (int p = 0; p < phases.length; p++) {
+                    phases[p] = in.readBoolean() ? readHistogram(in) : null;
+                }
+                endpoints.add(new EndpointSnapshot(deploymentName, endpoint, requestTime, phases));
+            }
+            return new MetricsSnapshot(timestamp, endpoints);
+        } catch (EOFException e) {
+            throw new IOException("Truncated metrics snapshot file", e);
+        }
+    }
+
+    private static void writeHistogram(DataOutputStream out, HistogramSnapshot histogram) throws IOException {
+        writeVarLong(out, histogram.getBucketCount());
+        writeVarLong(out, histogram.getSum());
+        int[] indexes = histogram.getIndexes();
+        long[] counts = histogram.getCounts();
+        writeVarLong(out, indexes.length);
+        int previous = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            writeVarLong(out, indexes[i] - previous);
+            writeVarLong(out, counts[i]);
+            previous = indexes[i];
+        }
+    }
+
+    private static HistogramSnapshot readHistogram(DataInputStream in) throws IOException {
+        int bucketCount = readVarInt(in);
+        long sum = readVarLong(in);
+        int size = readVarInt(in);
+        int[] indexes = new int[size];
+        long[] counts = new long[size];
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            indexes[i] = previous + readVarInt(in);
+            counts[i] = readVarLong(in);
+            previous = indexes[i];
+        }
+        return new HistogramSnapshot(bucketCount, indexes, counts, sum);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed variable length value in metrics snapshot");
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Malformed value in metrics snapshot");
+        }
+        return (int) value;
+    }
+}
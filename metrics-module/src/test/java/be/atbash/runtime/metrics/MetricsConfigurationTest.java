@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+class MetricsConfigurationTest {
+
+    @Test
+    void getMaxEndpoints() {
+        MetricsConfiguration configuration = new MetricsConfiguration(Map.of(MetricsConfiguration.ENDPOINTS_MAX, "50"));
+        Assertions.assertThat(configuration.getMaxEndpoints()).isEqualTo(50);
+    }
+
+    @Test
+    void getMaxEndpoints_tooLarge() {
+        // Larger than an int, the default is used instead of the overflowed value.
+        MetricsConfiguration configuration = new MetricsConfiguration(Map.of(MetricsConfiguration.ENDPOINTS_MAX, "4294967296"));
+        Assertions.assertThat(configuration.getMaxEndpoints()).isEqualTo(100);
+    }
+}
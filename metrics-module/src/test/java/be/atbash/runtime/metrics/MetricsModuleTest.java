@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics;
+
+import be.atbash.runtime.core.data.deployment.ArchiveDeployment;
+import be.atbash.runtime.core.data.module.event.EventPayload;
+import be.atbash.runtime.core.data.module.event.Events;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+class MetricsModuleTest {
+
+    @Test
+    void onEvent_undeployment() {
+        RequestMetricsPump pump = new RequestMetricsPump();
+        MetricsModule module = new MetricsModule(pump);
+        ArchiveDeployment deployment = new ArchiveDeployment(new File("./applications/test.war"));
+
+        module.onEvent(new EventPayload(Events.PRE_DEPLOYMENT, deployment));
+        pump.offer("test", "GET /", "GET", 1_000, 200, null);
+        Assertions.assertThat(pump.listDeploymentNames()).containsExactly("test");
+        Assertions.assertThat(pump.listEndpoints("test")).isNotEmpty();
+
+        // Payload of the UNDEPLOYMENT event is the deployment name.
+        module.onEvent(new EventPayload(Events.UNDEPLOYMENT, "test"));
+
+        Assertions.assertThat(pump.listDeploymentNames()).isEmpty();
+        Assertions.assertThat(pump.listEndpoints("test")).isEmpty();
+        Assertions.assertThat(pump.requestStarted("/test/index.html")).isNull();
+    }
+}
@@ -18,10 +18,6 @@ package be.atbash.runtime.metrics;
 import be.atbash.runtime.core.data.deployment.AbstractDeployment;
 import be.atbash.runtime.metrics.collector.Percentiles;
 import be.atbash.runtime.metrics.jaxrs.RequestMetricsData;
-import be.atbash.runtime.metrics.jaxrs.SimplePathSegment;
-import jakarta.ws.rs.core.MultivaluedHashMap;
-import jakarta.ws.rs.core.MultivaluedMap;
-import jakarta.ws.rs.core.PathSegment;
 import jakarta.ws.rs.core.UriInfo;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
@@ -32,10 +28,9 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.net.URI;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 
 @ExtendWith(MockitoExtension.class)
@@ -87,7 +82,7 @@ class RequestMetricsPumpTest {
 
         metricsPump.registerApplication(new TestDeployment("JUnit1", "/root1"));
         metricsPump.registerApplication(new TestDeployment("JUnit2", "/root2"));
-        metricsPump.unregisterApplication(new TestDeployment("JUnit1", "/root1"));
+        metricsPump.unregisterApplication("JUnit1");
 
         List<String> names = metricsPump.listDeploymentNames();
 
@@ -101,8 +96,6 @@ class RequestMetricsPumpTest {
         RequestMetricsData metricsData = defineRequestMetricsData("/root", "/path/to/endpoint", 5);
         metricsPump.offer(metricsData);
 
-        Thread.sleep(5L);  // Wait for the queue to be processed.
-
         List<String> names = metricsPump.listEndpoints("JUnit");
 
         Assertions.assertThat(names).containsExactlyInAnyOrder("/*", "GET /path/to/endpoint");
@@ -117,43 +110,158 @@ class RequestMetricsPumpTest {
         metricsData = defineRequestMetricsData("/root", "/path/to/endpoint2", 7);
         metricsPump.offer(metricsData);
 
-        Thread.sleep(5L);  // Wait for the queue to be processed.
-
         List<String> names = metricsPump.listEndpoints("JUnit");
 
         Assertions.assertThat(names).containsExactlyInAnyOrder("/*", "GET /path/to/endpoint", "GET /path/to/endpoint2");
     }
 
+    @Test
+    void listEndpoints_contextRootPrefix() throws InterruptedException {
+        metricsPump.registerApplication(new TestDeployment("JUnit1", "/api"));
+        metricsPump.registerApplication(new TestDeployment("JUnit2", "/api-v2"));
+
+        RequestMetricsData metricsData = defineRequestMetricsData("/api-v2", "/path/to/endpoint", 1);
+        metricsPump.offer(metricsData);
+
+        Assertions.assertThat(metricsPump.listEndpoints("JUnit1")).isEmpty();
+        Assertions.assertThat(metricsPump.listEndpoints("JUnit2")).containsExactlyInAnyOrder("/*", "GET /path/to/endpoint");
+    }
+
     @Test
     void getEndpointMetrics() throws InterruptedException {
         metricsPump.registerApplication(new TestDeployment("JUnit", "/root"));
 
         RequestMetricsData metricsData = defineRequestMetricsData("/root", "/path/to/endpoint", 5);
         metricsPump.offer(metricsData);
-        metricsData = defineRequestMetricsData("/root", "/path/to/endpoint2", 8);
+        metricsData = defineRequestMetricsData("/root", "/path/to/endpoint2", 20);
         metricsPump.offer(metricsData);
 
-        Thread.sleep(5L);  // Wait for the queue to be processed.
-
         Percentiles percentiles = metricsPump.getEndpointMetrics("JUnit", "GET /path/to/endpoint");
+        Percentiles percentiles2 = metricsPump.getEndpointMetrics("JUnit", "GET /path/to/endpoint2");
 
-        Assertions.assertThat(percentiles.getValueP01()).isLessThan(8);  // Less than the endpoint2 one, timing is not absolute.
+        Assertions.assertThat(percentiles.getValueP01()).isLessThan(percentiles2.getValueP01());  // Less than the endpoint2 one, timing is not absolute.
     }
 
-    private RequestMetricsData defineRequestMetricsData(String root, String path, long wait) throws InterruptedException {
-        // 'Fixed' URL
-        Mockito.when(uriInfoMock.getRequestUri()).thenReturn(URI.create("http://localhost:8080" + root + path));
-        MultivaluedMap<String, String> map = new MultivaluedHashMap<>();
-        Mockito.when(uriInfoMock.getPathParameters()).thenReturn(map);
+    @Test
+    void offer_statusAndException() throws InterruptedException {
+        metricsPump.registerApplication(new TestDeployment("JUnit", "/root"));
+
+        RequestMetricsData metricsData = defineRequestMetricsData("/root", "/path/to/endpoint", 0);
+        metricsData.setStatus(200);
+        metricsPump.offer(metricsData);
+        metricsData = defineRequestMetricsData("/root", "/path/to/endpoint", 0);
+        metricsData.setStatus(500);
+        metricsData.setExceptionType(IllegalStateException.class.getName());
+        metricsPump.offer(metricsData);
+
+        Assertions.assertThat(metricsPump.getEndpointStatusCounts("JUnit", "GET /path/to/endpoint"))
+                .containsExactly(Map.entry("2xx", 1L), Map.entry("5xx", 1L));
+        Assertions.assertThat(metricsPump.getEndpointExceptionCounts("JUnit", "GET /path/to/endpoint"))
+                .containsExactly(Map.entry("java.lang.IllegalStateException", 1L));
+        Assertions.assertThat(metricsPump.getEndpointStatusCounts("JUnit", "/*"))
+                .containsExactly(Map.entry("2xx", 1L), Map.entry("5xx", 1L));
+    }
+
+    @Test
+    void offerStatus() {
+        metricsPump.registerApplication(new TestDeployment("JUnit", "/root"));
+
+        metricsPump.offerStatus("JUnit", 404);
+
+        Assertions.assertThat(metricsPump.getEndpointStatusCounts("JUnit", "/*")).containsExactly(Map.entry("4xx", 1L));
+        Assertions.assertThat(metricsPump.getEndpointExceptionCounts("JUnit", "/*")).isEmpty();
+    }
+
+    @Test
+    void inFlightRequests() {
+        metricsPump.registerApplication(new TestDeployment("JUnit", "/root"));
 
-        List<PathSegment> segments = Arrays.stream(path.substring(1).split("/"))
-                .map(SimplePathSegment::new)
-                .collect(Collectors.toList());
+        Assertions.assertThat(metricsPump.requestStarted("/root/index.html")).isEqualTo("JUnit");
+        Assertions.assertThat(metricsPump.requestStarted("/root/index.html")).isEqualTo("JUnit");
+        Assertions.assertThat(metricsPump.requestStarted("/other")).isNull();
+        metricsPump.requestFinished("JUnit");
 
-        Mockito.when(uriInfoMock.getPathSegments()).thenReturn(segments);
+        Assertions.assertThat(metricsPump.getInFlightRequests()).containsExactly(Map.entry("JUnit", 1L));
+
+        metricsPump.unregisterApplication("JUnit");
+        Assertions.assertThat(metricsPump.getInFlightRequests()).isEmpty();
+    }
+
+    @Test
+    void offer_maxEndpoints() throws InterruptedException {
+        Map<String, String> config = new HashMap<>();
+        config.put(MetricsConfiguration.ENDPOINTS_MAX, "2");
+        RequestMetricsPump pump = new RequestMetricsPump(new MetricsConfiguration(config));
+        pump.registerApplication(new TestDeployment("JUnit", "/root"));
+
+        pump.offer(defineRequestMetricsData("/root", "/endpoint1", 0));
+        pump.offer(defineRequestMetricsData("/root", "/endpoint2", 0));
+        pump.offer(defineRequestMetricsData("/root", "/endpoint3", 0));
+        pump.offer(defineRequestMetricsData("/root", "/endpoint4", 0));
+        pump.offer(defineRequestMetricsData("/root", "/endpoint1", 0));
+
+        Assertions.assertThat(pump.listEndpoints("JUnit")).containsExactlyInAnyOrder("/*", "GET /endpoint1", "GET /endpoint2", RequestMetricsPump.OTHER_ENDPOINTS);
+        Assertions.assertThat(pump.getEndpointMetrics("JUnit", RequestMetricsPump.OTHER_ENDPOINTS).getCount()).isEqualTo(2);
+        Assertions.assertThat(pump.getEndpointMetrics("JUnit", "GET /endpoint1").getCount()).isEqualTo(2);
+        Assertions.assertThat(pump.getEndpointMetrics("JUnit", "/*").getCount()).isEqualTo(5);
+    }
+
+    @Test
+    void offer_unmatchedBeforeRealEndpoint() throws InterruptedException {
+        Map<String, String> config = new HashMap<>();
+        config.put(MetricsConfiguration.ENDPOINTS_MAX, "2");
+        RequestMetricsPump pump = new RequestMetricsPump(new MetricsConfiguration(config));
+        pump.registerApplication(new TestDeployment("JUnit", "/root"));
+
+        // Scan for random URLs, no resource method matched (404)
+        for (int i = 0; i < 10; i++) {
+            Mockito.when(uriInfoMock.getRequestUri()).thenReturn(URI.create("http://localhost:8080/root/random" + i));
+            RequestMetricsData metricsData = new RequestMetricsData(uriInfoMock, "GET");
+            metricsData.stop();
+            pump.offer(metricsData);
+        }
+        pump.offer(defineRequestMetricsData("/root", "/endpoint", 0));
+
+        Assertions.assertThat(pump.listEndpoints("JUnit")).containsExactlyInAnyOrder("/*", "GET __unmatched__", "GET /endpoint");
+        Assertions.assertThat(pump.getEndpointMetrics("JUnit", "GET __unmatched__").getCount()).isEqualTo(10);
+        Assertions.assertThat(pump.getEndpointMetrics("JUnit", "GET /endpoint").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void offer_unknownApplication() throws InterruptedException {
+        metricsPump.registerApplication(new TestDeployment("JUnit", "/root"));
+
+        metricsPump.offer(defineRequestMetricsData("/other", "/path/to/endpoint", 0));
+
+        Assertions.assertThat(metricsPump.listEndpoints("JUnit")).isEmpty();
+        Assertions.assertThat(metricsPump.listEndpoints("/other")).isEmpty();
+    }
+
+    @Test
+    void unregisterApplication_removesData() throws InterruptedException {
+        metricsPump.registerApplication(new TestDeployment("JUnit1", "/root1"));
+        metricsPump.registerApplication(new TestDeployment("JUnit2", "/root2"));
+        metricsPump.offer(defineRequestMetricsData("/root1", "/path/to/endpoint", 0));
+        metricsPump.offer(defineRequestMetricsData("/root2", "/path/to/endpoint", 0));
+
+        metricsPump.unregisterApplication("JUnit1");
+
+        Assertions.assertThat(metricsPump.listEndpoints("JUnit1")).isEmpty();
+        Assertions.assertThat(metricsPump.getEndpointMetrics("JUnit1", "/*")).isNull();
+        Assertions.assertThat(metricsPump.listEndpoints("JUnit2")).containsExactlyInAnyOrder("/*", "GET /path/to/endpoint");
+
+        // Late request after undeployment
+        metricsPump.offer("JUnit1", "GET /", "GET", 1_000, 200, null);
+        Assertions.assertThat(metricsPump.listEndpoints("JUnit1")).isEmpty();
+    }
+
+    private RequestMetricsData defineRequestMetricsData(String root, String path, long wait) throws InterruptedException {
+        // 'Fixed' URL, matched by a resource method.
+        Mockito.when(uriInfoMock.getRequestUri()).thenReturn(URI.create("http://localhost:8080" + root + path));
 
         RequestMetricsData metricsData = new RequestMetricsData(uriInfoMock, "GET");
         Thread.sleep(wait);
+        metricsData.setMethodAndPath("GET " + path);
         metricsData.stop();
 
         return metricsData;
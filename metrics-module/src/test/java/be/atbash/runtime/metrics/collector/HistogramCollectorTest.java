@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.collector;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class HistogramCollectorTest {
+
+    @Test
+    void calculatePercentiles_empty() {
+        HistogramCollector collector = new HistogramCollector(2, 3_600_000L);
+        Percentiles percentiles = collector.calculatePercentiles();
+        Assertions.assertThat(percentiles.getCount()).isEqualTo(0);
+        Assertions.assertThat(percentiles.getValueP01()).isEqualTo(0);
+        Assertions.assertThat(percentiles.getValueP99()).isEqualTo(0);
+    }
+
+    @Test
+    void calculatePercentiles_exactValues() {
+        // Values below 256 are recorded exactly with a precision of 2
+        HistogramCollector collector = new HistogramCollector(2, 3_600_000L);
+        for (long i = 1; i <= 100; i++) {
+            collector.handle(i);
+        }
+        Percentiles percentiles = collector.calculatePercentiles();
+        Assertions.assertThat(percentiles.getCount()).isEqualTo(100);
+        Assertions.assertThat(percentiles.getValueP01()).isEqualTo(1);
+        Assertions.assertThat(percentiles.getValueP05()).isEqualTo(5);
+        Assertions.assertThat(percentiles.getValueP10()).isEqualTo(10);
+        Assertions.assertThat(percentiles.getValueP25()).isEqualTo(25);
+        Assertions.assertThat(percentiles.getValueP50()).isEqualTo(50);
+        Assertions.assertThat(percentiles.getValueP75()).isEqualTo(75);
+        Assertions.assertThat(percentiles.getValueP90()).isEqualTo(90);
+        Assertions.assertThat(percentiles.getValueP95()).isEqualTo(95);
+        Assertions.assertThat(percentiles.getValueP99()).isEqualTo(99);
+    }
+
+    @Test
+    void calculatePercentiles_relativeError() {
+        HistogramCollector collector = new HistogramCollector(2, 3_600_000L);
+        for (long i = 1; i <= 100_000; i++) {
+            collector.handle(i);
+        }
+        Percentiles percentiles = collector.calculatePercentiles();
+        Assertions.assertThat(percentiles.getCount()).isEqualTo(100_000);
+        Assertions.assertThat(percentiles.getValueP50()).isCloseTo(50_000L, Assertions.withinPercentage(1));
+        Assertions.assertThat(percentiles.getValueP99()).isCloseTo(99_000L, Assertions.withinPercentage(1));
+    }
+
+    @Test
+    void handle_aboveHighest() {
+        HistogramCollector collector = new HistogramCollector(2, 10_000L);
+        collector.handle(1_000_000L);
+        Assertions.assertThat(collector.calculatePercentiles().getValueP50()).isCloseTo(10_000L, Assertions.withinPercentage(1));
+    }
+
+    @Test
+    void bucketIndex_continuous() {
+        HistogramCollector collector = new HistogramCollector(2, 3_600_000L);
+        int previous = collector.bucketIndex(0);
+        for (long value = 1; value < 3_600_000L; value++) {
+            int index = collector.bucketIndex(value);
+            Assertions.assertThat(index - previous).isBetween(0, 1);
+            Assertions.assertThat(collector.highestEquivalentValue(index)).isGreaterThanOrEqualTo(value);
+            previous = index;
+        }
+        Assertions.assertThat(previous).isEqualTo(collector.getBucketCount() - 1);
+    }
+
+    @Test
+    void reset() {
+        HistogramCollector collector = new HistogramCollector(2, 3_600_000L);
+        collector.handle(5);
+        collector.reset();
+        Assertions.assertThat(collector.getCount()).isEqualTo(0);
+    }
+
+    @Test
+    void calculateHistogram() {
+        HistogramCollector collector = new HistogramCollector(2, 3_600_000L);
+        for (long i = 1; i <= 100; i++) {
+            collector.handle(i);
+        }
+        collector.handle(5_000);
+
+        HistogramData histogram = collector.calculateHistogram(new long[]{10, 50, 1_000});
+        Assertions.assertThat(histogram.getCumulativeCounts()).containsExactly(10, 50, 100);
+        Assertions.assertThat(histogram.getCount()).isEqualTo(101);
+        Assertions.assertThat(histogram.getSum()).isEqualTo(5_050 + 5_000);
+    }
+
+    @Test
+    void calculateHistogram_empty() {
+        HistogramCollector collector = new HistogramCollector(2, 3_600_000L);
+
+        HistogramData histogram = collector.calculateHistogram(new long[]{10, 50});
+        Assertions.assertThat(histogram.getCumulativeCounts()).containsExactly(0, 0);
+        Assertions.assertThat(histogram.getCount()).isEqualTo(0);
+        Assertions.assertThat(histogram.getSum()).isEqualTo(0);
+    }
+
+    @Test
+    void snapshotAndRestore() {
+        HistogramCollector collector = new HistogramCollector(2, 3_600_000L);
+        for (long i = 1; i <= 1_000; i++) {
+            collector.handle(i * 100);
+        }
+        HistogramSnapshot snapshot = collector.snapshot();
+        Assertions.assertThat(snapshot.getIndexes()).isSorted();
+
+        HistogramCollector restored = new HistogramCollector(2, 3_600_000L);
+        Assertions.assertThat(restored.restore(snapshot)).isTrue();
+        Assertions.assertThat(restored.getCount()).isEqualTo(1_000);
+        Assertions.assertThat(restored.calculatePercentiles().getValueP90()).isEqualTo(collector.calculatePercentiles().getValueP90());
+
+        // Different layout
+        HistogramCollector other = new HistogramCollector(3, 3_600_000L);
+        Assertions.assertThat(other.restore(snapshot)).isFalse();
+        Assertions.assertThat(other.getCount()).isEqualTo(0);
+    }
+}
@@ -18,6 +18,9 @@ package be.atbash.runtime.metrics.collector;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 class SimpleCircularCollectorTest {
 
     @Test
@@ -39,4 +42,49 @@ class SimpleCircularCollectorTest {
         Assertions.assertThat(collector.calculatePercentiles().getValueP50()).isEqualTo(23);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void testStriped_sizeDivided() {
+        // The size is the total of all stripes, not the size of each stripe.
+        SimpleCircularCollector collector = new SimpleCircularCollector(10, 4);
+        for (long i = 0; i < 1000; i++) {
+            collector.handle(i);
+        }
+        Percentiles percentiles = collector.calculatePercentiles();
+        Assertions.assertThat(percentiles.getCount()).isEqualTo(1000);
+        // This thread uses one stripe, which has at most 3 of the 10 places.
+        Assertions.assertThat(percentiles.getValueP01()).isGreaterThanOrEqualTo(1000 - 3);
+
+        // More stripes than the size.
+        collector = new SimpleCircularCollector(2, 16);
+        for (long i = 0; i < 100; i++) {
+            collector.handle(i);
+        }
+        // 2 stripes of 1 place.
+        Assertions.assertThat(collector.calculatePercentiles().getValueP01()).isEqualTo(99);
+    }
+
+    @Test
+    void testStriped_concurrent() throws InterruptedException {
+        SimpleCircularCollector collector = new SimpleCircularCollector(16, 4);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (long i = 0; i < 1000; i++) {
+                    collector.handle(10);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertThat(collector.getCount()).isEqualTo(8000);
+        Percentiles percentiles = collector.calculatePercentiles();
+        Assertions.assertThat(percentiles.getCount()).isEqualTo(8000);
+        Assertions.assertThat(percentiles.getValueP01()).isEqualTo(10);
+        Assertions.assertThat(percentiles.getValueP99()).isEqualTo(10);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.collector;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class TimeWindowCollectorTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private final AtomicLong time = new AtomicLong(10 * MINUTE);
+
+    @Test
+    void calculatePercentiles_window() {
+        TimeWindowCollector collector = new TimeWindowCollector(MINUTE, 5 * MINUTE, 2, 3_600_000L, time::get);
+
+        collector.handle(100);
+        collector.handle(100);
+        collector.handle(100);
+        time.addAndGet(2 * MINUTE);
+        collector.handle(10);
+
+        Assertions.assertThat(collector.calculatePercentiles(MINUTE).getCount()).isEqualTo(1);
+        Assertions.assertThat(collector.calculatePercentiles(MINUTE).getValueP99()).isEqualTo(10);
+        Assertions.assertThat(collector.calculatePercentiles(5 * MINUTE).getCount()).isEqualTo(4);
+        Assertions.assertThat(collector.calculatePercentiles(5 * MINUTE).getValueP99()).isEqualTo(100);
+    }
+
+    @Test
+    void calculatePercentiles_quietEndpoint() {
+        TimeWindowCollector collector = new TimeWindowCollector(MINUTE, 5 * MINUTE, 2, 3_600_000L, time::get);
+
+        collector.handle(100);
+        time.addAndGet(30 * MINUTE);
+
+        // Old values are not reported anymore
+        Percentiles percentiles = collector.calculatePercentiles(5 * MINUTE);
+        Assertions.assertThat(percentiles.getCount()).isEqualTo(0);
+        Assertions.assertThat(percentiles.getValueP50()).isEqualTo(0);
+    }
+
+    @Test
+    void handle_rotation() {
+        TimeWindowCollector collector = new TimeWindowCollector(MINUTE, 5 * MINUTE, 2, 3_600_000L, time::get);
+
+        collector.handle(100);
+        time.addAndGet(5 * MINUTE);  // Same slice in the ring, must be cleared.
+        collector.handle(10);
+
+        Percentiles percentiles = collector.calculatePercentiles(5 * MINUTE);
+        Assertions.assertThat(percentiles.getCount()).isEqualTo(1);
+        Assertions.assertThat(percentiles.getValueP99()).isEqualTo(10);
+    }
+}
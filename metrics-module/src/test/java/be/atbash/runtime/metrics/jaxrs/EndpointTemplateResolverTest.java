@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jaxrs;
+
+import org.assertj.core.api.Assertions;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.uri.UriTemplate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+class EndpointTemplateResolverTest {
+
+    @Mock
+    private ExtendedUriInfo uriInfoMock;
+
+    private final ResourceMethod resourceMethod = defineResourceMethod();
+
+    @Test
+    void resolve() {
+        Mockito.when(uriInfoMock.getMatchedResourceMethod()).thenReturn(resourceMethod);
+        Mockito.when(uriInfoMock.getMatchedResourceLocators()).thenReturn(new ArrayList<>());
+        // Last matched first
+        Mockito.when(uriInfoMock.getMatchedTemplates()).thenReturn(List.of(new UriTemplate("/{name}"), new UriTemplate("/hello")));
+
+        EndpointTemplateResolver resolver = new EndpointTemplateResolver();
+        Assertions.assertThat(resolver.resolve(uriInfoMock, "GET")).isEqualTo("GET /hello/{name}");
+    }
+
+    @Test
+    void resolve_sameValues() {
+        // Parameter values equal to literal segments or each other don't influence the result.
+        Mockito.when(uriInfoMock.getMatchedResourceMethod()).thenReturn(resourceMethod);
+        Mockito.when(uriInfoMock.getMatchedResourceLocators()).thenReturn(new ArrayList<>());
+        Mockito.when(uriInfoMock.getMatchedTemplates()).thenReturn(List.of(new UriTemplate("/{first}/{second}"), new UriTemplate("/person")));
+
+        EndpointTemplateResolver resolver = new EndpointTemplateResolver();
+        Assertions.assertThat(resolver.resolve(uriInfoMock, "GET")).isEqualTo("GET /person/{first}/{second}");
+    }
+
+    @Test
+    void resolve_cached() {
+        Mockito.when(uriInfoMock.getMatchedResourceMethod()).thenReturn(resourceMethod);
+        Mockito.when(uriInfoMock.getMatchedResourceLocators()).thenReturn(new ArrayList<>());
+        Mockito.when(uriInfoMock.getMatchedTemplates()).thenReturn(List.of(new UriTemplate("/hello")));
+
+        EndpointTemplateResolver resolver = new EndpointTemplateResolver();
+        String first = resolver.resolve(uriInfoMock, "GET");
+        String second = resolver.resolve(uriInfoMock, "GET");
+        Assertions.assertThat(second).isSameAs(first);
+        Mockito.verify(uriInfoMock, Mockito.times(1)).getMatchedTemplates();
+    }
+
+    @Test
+    void resolve_headThenGet() {
+        // A HEAD request is handled by the GET resource method and must not determine the name of the GET requests.
+        Mockito.when(uriInfoMock.getMatchedResourceMethod()).thenReturn(resourceMethod);
+        Mockito.when(uriInfoMock.getMatchedResourceLocators()).thenReturn(new ArrayList<>());
+        Mockito.when(uriInfoMock.getMatchedTemplates()).thenReturn(List.of(new UriTemplate("/hello")));
+
+        EndpointTemplateResolver resolver = new EndpointTemplateResolver();
+        Assertions.assertThat(resolver.resolve(uriInfoMock, "HEAD")).isEqualTo("HEAD /hello");
+        Assertions.assertThat(resolver.resolve(uriInfoMock, "GET")).isEqualTo("GET /hello");
+        Assertions.assertThat(resolver.resolve(uriInfoMock, "HEAD")).isEqualTo("HEAD /hello");
+    }
+
+    @Test
+    void resolve_noMatch() {
+        Mockito.when(uriInfoMock.getMatchedResourceMethod()).thenReturn(null);
+
+        EndpointTemplateResolver resolver = new EndpointTemplateResolver();
+        Assertions.assertThat(resolver.resolve(uriInfoMock, "GET")).isNull();
+    }
+
+    @Test
+    void defineEndpointName_root() {
+        Assertions.assertThat(EndpointTemplateResolver.defineEndpointName(List.of(new UriTemplate("/")), "GET")).isEqualTo("GET /");
+    }
+
+    private static ResourceMethod defineResourceMethod() {
+        Resource.Builder builder = Resource.builder("hello");
+        builder.addMethod("GET").handledBy(requestContext -> "Hello");
+        return builder.build().getResourceMethods().get(0);
+    }
+}
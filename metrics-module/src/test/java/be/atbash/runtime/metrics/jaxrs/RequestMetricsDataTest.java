@@ -15,9 +15,7 @@
  */
 package be.atbash.runtime.metrics.jaxrs;
 
-import jakarta.ws.rs.core.MultivaluedHashMap;
-import jakarta.ws.rs.core.MultivaluedMap;
-import jakarta.ws.rs.core.PathSegment;
+import be.atbash.runtime.metrics.RequestPhase;
 import jakarta.ws.rs.core.UriInfo;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -27,8 +25,7 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @ExtendWith(MockitoExtension.class)
 class RequestMetricsDataTest {
@@ -40,42 +37,73 @@ class RequestMetricsDataTest {
     void RequestMetricsData_scenario1() throws InterruptedException {
         // 'Fixed' URL
         Mockito.when(uriInfoMock.getRequestUri()).thenReturn(URI.create("http://localhost:8080/root/path/to/endpoint"));
-        MultivaluedMap<String, String> map = new MultivaluedHashMap<>();
-        Mockito.when(uriInfoMock.getPathParameters()).thenReturn(map);
-        List<PathSegment> segments = new ArrayList<>();
-        segments.add(new SimplePathSegment("path"));
-        segments.add(new SimplePathSegment("to"));
-        segments.add(new SimplePathSegment("endpoint"));
-        Mockito.when(uriInfoMock.getPathSegments()).thenReturn(segments);
 
         RequestMetricsData metricsData = new RequestMetricsData(uriInfoMock, "POST");
         Thread.sleep(5L);
+        metricsData.setMethodAndPath("POST /path/to/endpoint");
         metricsData.stop();
 
-        Assertions.assertThat(metricsData.getDuration()).isGreaterThan(4);
+        Assertions.assertThat(metricsData.getDuration()).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(4));
         Assertions.assertThat(metricsData.getFullPath()).isEqualTo("/root/path/to/endpoint");
         Assertions.assertThat(metricsData.getMethodAndPath()).isEqualTo("POST /path/to/endpoint");
     }
 
     @Test
     void RequestMetricsData_scenario2() throws InterruptedException {
-        // 'templated' URL
+        // 'templated' URL, template is determined from the matched resource method.
         Mockito.when(uriInfoMock.getRequestUri()).thenReturn(URI.create("http://localhost:8080/root/hello/Atbash"));
-        MultivaluedMap<String, String> map = new MultivaluedHashMap<>();
-        map.add("name", "Atbash");
-        Mockito.when(uriInfoMock.getPathParameters()).thenReturn(map);
-        List<PathSegment> segments = new ArrayList<>();
-        segments.add(new SimplePathSegment("hello"));
-        segments.add(new SimplePathSegment("Atbash"));
-        Mockito.when(uriInfoMock.getPathSegments()).thenReturn(segments);
 
         RequestMetricsData metricsData = new RequestMetricsData(uriInfoMock, "GET");
         Thread.sleep(5L);
+        metricsData.setMethodAndPath("GET /hello/{name}");
         metricsData.stop();
 
-        Assertions.assertThat(metricsData.getDuration()).isGreaterThan(4);
+        Assertions.assertThat(metricsData.getDuration()).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(4));
         Assertions.assertThat(metricsData.getFullPath()).isEqualTo("/root/hello/Atbash");
         Assertions.assertThat(metricsData.getMethodAndPath()).isEqualTo("GET /hello/{name}");
     }
 
-}
\ No newline at end of file
+    @Test
+    void RequestMetricsData_unmatched() {
+        // No resource method matched, the requested path is not used as endpoint name.
+        Mockito.when(uriInfoMock.getRequestUri()).thenReturn(URI.create("http://localhost:8080/root/random/url"));
+
+        RequestMetricsData metricsData = new RequestMetricsData(uriInfoMock, "GET");
+        metricsData.stop();
+
+        Assertions.assertThat(metricsData.getFullPath()).isEqualTo("/root/random/url");
+        Assertions.assertThat(metricsData.getMethodAndPath()).isEqualTo("GET __unmatched__");
+    }
+
+    @Test
+    void RequestMetricsData_phases() throws InterruptedException {
+        Mockito.when(uriInfoMock.getRequestUri()).thenReturn(URI.create("http://localhost:8080/root/path"));
+
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10);  // Request arrived 10 ms earlier in Jetty
+        RequestMetricsData metricsData = new RequestMetricsData(uriInfoMock, "GET", start);
+        metricsData.resourceMethodStart();
+        Thread.sleep(5L);
+        metricsData.resourceMethodFinished();
+        metricsData.stop();
+
+        Assertions.assertThat(metricsData.getDuration()).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(14));
+        Assertions.assertThat(metricsData.getPhaseDuration(RequestPhase.JETTY)).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+        Assertions.assertThat(metricsData.getPhaseDuration(RequestPhase.MATCHING)).isGreaterThanOrEqualTo(0);
+        Assertions.assertThat(metricsData.getPhaseDuration(RequestPhase.RESOURCE)).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(4));
+        Assertions.assertThat(metricsData.getPhaseDuration(RequestPhase.WRITE)).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void RequestMetricsData_phasesNotReached() {
+        Mockito.when(uriInfoMock.getRequestUri()).thenReturn(URI.create("http://localhost:8080/root/path"));
+
+        // Exception during matching, resource method is never called.
+        RequestMetricsData metricsData = new RequestMetricsData(uriInfoMock, "GET");
+        metricsData.stop();
+
+        Assertions.assertThat(metricsData.getPhaseDuration(RequestPhase.JETTY)).isGreaterThanOrEqualTo(0);
+        Assertions.assertThat(metricsData.getPhaseDuration(RequestPhase.MATCHING)).isNegative();
+        Assertions.assertThat(metricsData.getPhaseDuration(RequestPhase.RESOURCE)).isNegative();
+        Assertions.assertThat(metricsData.getPhaseDuration(RequestPhase.WRITE)).isNegative();
+    }
+}
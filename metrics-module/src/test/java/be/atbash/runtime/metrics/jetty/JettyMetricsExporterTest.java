@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jetty;
+
+import org.assertj.core.api.Assertions;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.jupiter.api.Test;
+
+class JettyMetricsExporterTest {
+
+    @Test
+    void export() {
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(8080);
+        connector.addBean(new ConnectionStatistics());
+        server.addConnector(connector);
+
+        StringBuilder builder = new StringBuilder();
+        new JettyMetricsExporter(() -> server).export(new ExpositionWriter(builder, false));
+
+        String[] lines = builder.toString().split("\n");
+        Assertions.assertThat(lines).contains("# TYPE jetty_threads_busy gauge", "jetty_queue_size 0");
+        Assertions.assertThat(lines).anyMatch(line -> line.matches("jetty_threads_max [0-9]+"));
+        Assertions.assertThat(lines).contains("jetty_connections_open{connector=\"http-8080\"} 0",
+                "jetty_received_bytes_total{connector=\"http-8080\"} 0",
+                "jetty_sent_bytes_total{connector=\"http-8080\"} 0");
+    }
+
+    @Test
+    void export_withoutConnectionStatistics() {
+        Server server = new Server(8080);
+
+        StringBuilder builder = new StringBuilder();
+        new JettyMetricsExporter(() -> server).export(new ExpositionWriter(builder, false));
+
+        Assertions.assertThat(builder.toString()).contains("jetty_threads_current");
+        Assertions.assertThat(builder.toString()).doesNotContain("jetty_connections_open");
+    }
+
+    @Test
+    void export_noServer() {
+        StringBuilder builder = new StringBuilder();
+        new JettyMetricsExporter(() -> null).export(new ExpositionWriter(builder, false));
+
+        Assertions.assertThat(builder.toString()).isEmpty();
+    }
+}
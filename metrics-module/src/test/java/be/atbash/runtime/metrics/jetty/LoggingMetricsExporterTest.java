@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jetty;
+
+import be.atbash.runtime.core.data.watcher.model.LoggingMon;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LoggingMetricsExporterTest {
+
+    @Test
+    void export() {
+        LoggingMon loggingMon = new LoggingMon();
+        loggingMon.setOverflowPolicy("DROP_NEWEST");
+        loggingMon.setBufferCapacity(1024);
+        loggingMon.setPendingRecords(() -> 12);
+        loggingMon.getDroppedRecordsCounter().add(5);
+        loggingMon.getSuppressedRecordsCounter().add(7);
+        loggingMon.recordRotation(1500);
+        loggingMon.recordCompression(2_000_000);
+
+        StringBuilder builder = new StringBuilder();
+        new LoggingMetricsExporter(() -> loggingMon).export(new ExpositionWriter(builder, false));
+
+        String[] lines = builder.toString().split("\n");
+        Assertions.assertThat(lines).contains("# TYPE log_records_dropped_total counter",
+                "log_records_dropped_total{policy=\"DROP_NEWEST\"} 5",
+                "log_records_suppressed_total 7",
+                "log_records_pending 12",
+                "log_buffer_capacity 1024",
+                "log_rotations_total 1",
+                "log_rotation_last_swap_seconds 0.0015",
+                "log_rotation_last_compression_seconds 2");
+    }
+
+    @Test
+    void export_noLoggingMon() {
+        StringBuilder builder = new StringBuilder();
+        new LoggingMetricsExporter(() -> null).export(new ExpositionWriter(builder, false));
+
+        Assertions.assertThat(builder.toString()).isEmpty();
+    }
+}
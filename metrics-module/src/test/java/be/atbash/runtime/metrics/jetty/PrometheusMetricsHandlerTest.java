@@ -15,9 +15,13 @@
  */
 package be.atbash.runtime.metrics.jetty;
 
+import be.atbash.runtime.metrics.MetricsConfiguration;
+import be.atbash.runtime.metrics.RequestPhase;
+import be.atbash.runtime.metrics.collector.HistogramData;
 import be.atbash.runtime.metrics.collector.PercentileValue;
 import be.atbash.runtime.metrics.collector.Percentiles;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.assertj.core.api.Assertions;
 import org.eclipse.jetty.server.Request;
@@ -30,6 +34,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,11 +47,15 @@ import java.util.regex.Pattern;
 class PrometheusMetricsHandlerTest {
 
     private static final Pattern REGEX_COUNT = Pattern.compile("application_response_time_seconds_count\\{application=\"([^-\\s]+)\",endpoint=\"([^-\\s]+)\"} ([0-9]+)");
-    private static final Pattern REGEX_QUANTILE = Pattern.compile("application_response_time_seconds\\{application=\"([^-\\s]+)\",endpoint=\"([^-\\s]+)\",quantile=\"([.0-9]+)\"} ([0-9]+)");
+    private static final Pattern REGEX_WINDOW_COUNT = Pattern.compile("application_response_time_window_seconds_count\\{application=\"([^-\\s]+)\",endpoint=\"([^-\\s]+)\",window=\"([0-9]+m)\"} ([0-9]+)");
+    private static final Pattern REGEX_QUANTILE = Pattern.compile("application_response_time_seconds\\{application=\"([^-\\s]+)\",endpoint=\"([^-\\s]+)\",quantile=\"([.0-9]+)\"} ([.0-9]+)");
 
     @Mock
     private Request baseRequestMock;
 
+    @Mock
+    private HttpServletRequest requestMock;
+
     @Mock
     private HttpServletResponse responseMock;
 
@@ -78,7 +92,7 @@ class PrometheusMetricsHandlerTest {
             Assertions.assertThat(matcherQuantile.group(1)).isEqualTo("app1");
             Assertions.assertThat(matcherQuantile.group(2)).isEqualTo("endpoint1");
             Assertions.assertThat(matcherQuantile.group(3)).isEqualTo(Double.toString(percentileValue.getValue() / 100.0));
-            Assertions.assertThat(matcherQuantile.group(4)).isEqualTo(Integer.toString(percentileValue.getValue()));
+            Assertions.assertThat(matcherQuantile.group(4)).isEqualTo(toSeconds(percentileValue.getValue()));
 
         }
 
@@ -118,7 +132,7 @@ class PrometheusMetricsHandlerTest {
             Assertions.assertThat(matcherQuantile.group(1)).isEqualTo("app1");
             Assertions.assertThat(matcherQuantile.group(2)).isEqualTo("endpoint1");
             Assertions.assertThat(matcherQuantile.group(3)).isEqualTo(Double.toString(percentileValue.getValue() / 100.0));
-            Assertions.assertThat(matcherQuantile.group(4)).isEqualTo(Integer.toString(percentileValue.getValue()));
+            Assertions.assertThat(matcherQuantile.group(4)).isEqualTo(toSeconds(percentileValue.getValue()));
 
         }
 
@@ -135,7 +149,7 @@ class PrometheusMetricsHandlerTest {
             Assertions.assertThat(matcherQuantile.group(1)).isEqualTo("app1");
             Assertions.assertThat(matcherQuantile.group(2)).isEqualTo("endpoint2");
             Assertions.assertThat(matcherQuantile.group(3)).isEqualTo(Double.toString(percentileValue.getValue() / 100.0));
-            Assertions.assertThat(matcherQuantile.group(4)).isEqualTo(Integer.toString(percentileValue.getValue() + 50));
+            Assertions.assertThat(matcherQuantile.group(4)).isEqualTo(toSeconds(percentileValue.getValue() + 50));
 
         }
 
@@ -175,7 +189,7 @@ class PrometheusMetricsHandlerTest {
             Assertions.assertThat(matcherQuantile.group(1)).isEqualTo("app1");
             Assertions.assertThat(matcherQuantile.group(2)).isEqualTo("endpoint1");
             Assertions.assertThat(matcherQuantile.group(3)).isEqualTo(Double.toString(percentileValue.getValue() / 100.0));
-            Assertions.assertThat(matcherQuantile.group(4)).isEqualTo(Integer.toString(percentileValue.getValue()));
+            Assertions.assertThat(matcherQuantile.group(4)).isEqualTo(toSeconds(percentileValue.getValue()));
 
         }
 
@@ -192,12 +206,274 @@ class PrometheusMetricsHandlerTest {
             Assertions.assertThat(matcherQuantile.group(1)).isEqualTo("app2");
             Assertions.assertThat(matcherQuantile.group(2)).isEqualTo("endpoint3");
             Assertions.assertThat(matcherQuantile.group(3)).isEqualTo(Double.toString(percentileValue.getValue() / 100.0));
-            Assertions.assertThat(matcherQuantile.group(4)).isEqualTo(Integer.toString(percentileValue.getValue() + 50));
+            Assertions.assertThat(matcherQuantile.group(4)).isEqualTo(toSeconds(percentileValue.getValue() + 50));
 
         }
 
     }
 
+    @Test
+    void handle_windows() throws ServletException, IOException {
+
+        PrometheusMetricsHandler metricsHandler = new PrometheusMetricsHandler();
+        TestDataProvider dataProvider = new TestDataProvider();
+        metricsHandler.setProvider(dataProvider);
+
+        dataProvider.addData("app1", "endpoint1", percentiles(0));
+        dataProvider.addWindowData("app1", "endpoint1", Duration.ofMinutes(1), percentiles(10));
+        dataProvider.addWindowData("app1", "endpoint1", Duration.ofMinutes(5), percentiles(20));
+
+        StringWriter data = new StringWriter();
+        PrintWriter writer = new PrintWriter(data);
+        Mockito.when(responseMock.getWriter()).thenReturn(writer);
+        metricsHandler.handle("/metrics", baseRequestMock, null, responseMock);
+
+        String[] lines = data.toString().split("\n");
+        Assertions.assertThat(lines).hasSize(34);
+        Assertions.assertThat(lines[12]).isEqualTo("# TYPE application_response_time_window_seconds summary");
+        Assertions.assertThat(lines[13]).isEqualTo("# HELP application_response_time_window_seconds Server response time within a time window");
+
+        Matcher matcher = REGEX_WINDOW_COUNT.matcher(lines[14]);
+        Assertions.assertThat(matcher.matches()).isTrue();
+        Assertions.assertThat(matcher.group(1)).isEqualTo("app1");
+        Assertions.assertThat(matcher.group(2)).isEqualTo("endpoint1");
+        Assertions.assertThat(matcher.group(3)).isEqualTo("1m");
+        Assertions.assertThat(matcher.group(4)).isEqualTo("100");
+
+        Assertions.assertThat(lines[15]).isEqualTo("application_response_time_window_seconds{application=\"app1\",endpoint=\"endpoint1\",window=\"1m\",quantile=\"0.01\"} 0.000011");
+
+        matcher = REGEX_WINDOW_COUNT.matcher(lines[24]);
+        Assertions.assertThat(matcher.matches()).isTrue();
+        Assertions.assertThat(matcher.group(3)).isEqualTo("5m");
+        Assertions.assertThat(lines[25]).isEqualTo("application_response_time_window_seconds{application=\"app1\",endpoint=\"endpoint1\",window=\"5m\",quantile=\"0.01\"} 0.000021");
+    }
+
+    @Test
+    void handle_phases() throws ServletException, IOException {
+
+        PrometheusMetricsHandler metricsHandler = new PrometheusMetricsHandler();
+        TestDataProvider dataProvider = new TestDataProvider();
+        metricsHandler.setProvider(dataProvider);
+
+        dataProvider.addData("app1", "endpoint1", percentiles(0));
+        dataProvider.addPhaseData("app1", "endpoint1", RequestPhase.RESOURCE, percentiles(1_000_000));
+
+        StringWriter data = new StringWriter();
+        PrintWriter writer = new PrintWriter(data);
+        Mockito.when(responseMock.getWriter()).thenReturn(writer);
+        metricsHandler.handle("/metrics", baseRequestMock, null, responseMock);
+
+        String[] lines = data.toString().split("\n");
+        Assertions.assertThat(lines).hasSize(24);
+        Assertions.assertThat(lines[12]).isEqualTo("# TYPE application_request_phase_seconds summary");
+        Assertions.assertThat(lines[13]).isEqualTo("# HELP application_request_phase_seconds Server time for each phase of the request");
+        Assertions.assertThat(lines[14]).isEqualTo("application_request_phase_seconds_count{application=\"app1\",endpoint=\"endpoint1\",phase=\"resource\"} 100");
+        Assertions.assertThat(lines[15]).isEqualTo("application_request_phase_seconds{application=\"app1\",endpoint=\"endpoint1\",phase=\"resource\",quantile=\"0.01\"} 1.000001");
+    }
+
+    @Test
+    void handle_histogram() throws ServletException, IOException {
+
+        PrometheusMetricsHandler metricsHandler = new PrometheusMetricsHandler();
+        TestDataProvider dataProvider = new TestDataProvider();
+        metricsHandler.setProvider(dataProvider);
+
+        dataProvider.addData("app1", "endpoint1", percentiles(0));
+        dataProvider.addHistogramData("app1", "endpoint1", new HistogramData(new long[]{1_000, 1_000_000}, new long[]{40, 90}, 100, 2_500_000));
+
+        StringWriter data = new StringWriter();
+        PrintWriter writer = new PrintWriter(data);
+        Mockito.when(responseMock.getWriter()).thenReturn(writer);
+        metricsHandler.handle("/metrics", baseRequestMock, null, responseMock);
+
+        Mockito.verify(responseMock).setContentType(PrometheusMetricsHandler.CONTENT_TYPE_PROMETHEUS);
+        String[] lines = data.toString().split("\n");
+        Assertions.assertThat(lines).hasSize(19);
+        Assertions.assertThat(lines[12]).isEqualTo("# TYPE application_response_time_histogram_seconds histogram");
+        Assertions.assertThat(lines[13]).isEqualTo("# HELP application_response_time_histogram_seconds Server response time");
+        Assertions.assertThat(lines[14]).isEqualTo("application_response_time_histogram_seconds_bucket{application=\"app1\",endpoint=\"endpoint1\",le=\"0.001\"} 40");
+        Assertions.assertThat(lines[15]).isEqualTo("application_response_time_histogram_seconds_bucket{application=\"app1\",endpoint=\"endpoint1\",le=\"1\"} 90");
+        Assertions.assertThat(lines[16]).isEqualTo("application_response_time_histogram_seconds_bucket{application=\"app1\",endpoint=\"endpoint1\",le=\"+Inf\"} 100");
+        Assertions.assertThat(lines[17]).isEqualTo("application_response_time_histogram_seconds_sum{application=\"app1\",endpoint=\"endpoint1\"} 2.5");
+        Assertions.assertThat(lines[18]).isEqualTo("application_response_time_histogram_seconds_count{application=\"app1\",endpoint=\"endpoint1\"} 100");
+    }
+
+    @Test
+    void handle_openMetrics() throws ServletException, IOException {
+
+        PrometheusMetricsHandler metricsHandler = new PrometheusMetricsHandler();
+        TestDataProvider dataProvider = new TestDataProvider();
+        metricsHandler.setProvider(dataProvider);
+
+        dataProvider.addData("app1", "endpoint1", percentiles(0));
+        dataProvider.addHistogramData("app1", "endpoint1", new HistogramData(new long[]{1_000_000}, new long[]{90}, 100, 2_500_000));
+
+        StringWriter data = new StringWriter();
+        PrintWriter writer = new PrintWriter(data);
+        Mockito.when(responseMock.getWriter()).thenReturn(writer);
+        Mockito.when(requestMock.getHeader("Accept")).thenReturn("application/openmetrics-text; version=1.0.0,text/plain;q=0.5");
+        metricsHandler.handle("/metrics", baseRequestMock, requestMock, responseMock);
+
+        Mockito.verify(responseMock).setContentType(PrometheusMetricsHandler.CONTENT_TYPE_OPENMETRICS);
+        String[] lines = data.toString().split("\n");
+        Assertions.assertThat(lines).hasSize(19);
+        Assertions.assertThat(lines[14]).isEqualTo("application_response_time_histogram_seconds_bucket{application=\"app1\",endpoint=\"endpoint1\",le=\"1.0\"} 90");
+        Assertions.assertThat(lines[18]).isEqualTo("# EOF");
+    }
+
+    @Test
+    void handle_cached() throws ServletException, IOException {
+
+        PrometheusMetricsHandler metricsHandler = new PrometheusMetricsHandler(Duration.ofMinutes(1));
+        TestDataProvider dataProvider = new TestDataProvider();
+        metricsHandler.setProvider(dataProvider);
+
+        dataProvider.addData("app1", "endpoint1", percentiles(0));
+
+        StringWriter data = new StringWriter();
+        PrintWriter writer = new PrintWriter(data);
+        Mockito.when(responseMock.getWriter()).thenReturn(writer);
+        metricsHandler.handle("/metrics", baseRequestMock, null, responseMock);
+
+        // Not visible until the cached output expires.
+        dataProvider.addData("app2", "endpoint3", percentiles(50));
+
+        StringWriter data2 = new StringWriter();
+        Mockito.when(responseMock.getWriter()).thenReturn(new PrintWriter(data2));
+        metricsHandler.handle("/metrics", baseRequestMock, null, responseMock);
+
+        Assertions.assertThat(data2.toString()).isEqualTo(data.toString());
+        Assertions.assertThat(data2.toString().split("\n")).hasSize(12);
+    }
+
+    @Test
+    void handle_escapeLabelValues() throws ServletException, IOException {
+
+        PrometheusMetricsHandler metricsHandler = new PrometheusMetricsHandler();
+        TestDataProvider dataProvider = new TestDataProvider();
+        metricsHandler.setProvider(dataProvider);
+
+        dataProvider.addData("app1", "GET /\"quoted\"\\", percentiles(0));
+
+        StringWriter data = new StringWriter();
+        PrintWriter writer = new PrintWriter(data);
+        Mockito.when(responseMock.getWriter()).thenReturn(writer);
+        metricsHandler.handle("/metrics", baseRequestMock, null, responseMock);
+
+        String[] lines = data.toString().split("\n");
+        Assertions.assertThat(lines[2]).isEqualTo("application_response_time_seconds_count{application=\"app1\",endpoint=\"GET /\\\"quoted\\\"\\\\\"} 100");
+    }
+
+    @Test
+    void handle_statusAndInFlight() throws ServletException, IOException {
+
+        PrometheusMetricsHandler metricsHandler = new PrometheusMetricsHandler();
+        TestDataProvider dataProvider = new TestDataProvider();
+        metricsHandler.setProvider(dataProvider);
+
+        dataProvider.addData("app1", "endpoint1", percentiles(0));
+        dataProvider.addStatusData("app1", "endpoint1", new TreeMap<>(Map.of("2xx", 95L, "5xx", 5L)));
+        dataProvider.addExceptionData("app1", "endpoint1", Map.of("java.lang.IllegalStateException", 5L));
+        dataProvider.addInFlightData("app1", 3);
+
+        StringWriter data = new StringWriter();
+        PrintWriter writer = new PrintWriter(data);
+        Mockito.when(responseMock.getWriter()).thenReturn(writer);
+        metricsHandler.handle("/metrics", baseRequestMock, null, responseMock);
+
+        String[] lines = data.toString().split("\n");
+        Assertions.assertThat(lines).hasSize(22);
+        Assertions.assertThat(lines[12]).isEqualTo("# TYPE application_requests_total counter");
+        Assertions.assertThat(lines[14]).isEqualTo("application_requests_total{application=\"app1\",endpoint=\"endpoint1\",status=\"2xx\"} 95");
+        Assertions.assertThat(lines[15]).isEqualTo("application_requests_total{application=\"app1\",endpoint=\"endpoint1\",status=\"5xx\"} 5");
+        Assertions.assertThat(lines[16]).isEqualTo("# TYPE application_request_exceptions_total counter");
+        Assertions.assertThat(lines[18]).isEqualTo("application_request_exceptions_total{application=\"app1\",endpoint=\"endpoint1\",exception=\"java.lang.IllegalStateException\"} 5");
+        Assertions.assertThat(lines[19]).isEqualTo("# TYPE application_requests_in_flight gauge");
+        Assertions.assertThat(lines[21]).isEqualTo("application_requests_in_flight{application=\"app1\"} 3");
+    }
+
+    @Test
+    void handle_restored() throws ServletException, IOException {
+
+        PrometheusMetricsHandler metricsHandler = new PrometheusMetricsHandler();
+        TestDataProvider dataProvider = new TestDataProvider();
+        metricsHandler.setProvider(dataProvider);
+
+        dataProvider.addData("app1", "endpoint1", percentiles(0));
+        dataProvider.addRestoredData("app1", Instant.ofEpochMilli(1_700_000_000_500L));
+
+        StringWriter data = new StringWriter();
+        PrintWriter writer = new PrintWriter(data);
+        Mockito.when(responseMock.getWriter()).thenReturn(writer);
+        metricsHandler.handle("/metrics", baseRequestMock, null, responseMock);
+
+        String[] lines = data.toString().split("\n");
+        Assertions.assertThat(lines).contains("# TYPE application_metrics_restored_timestamp_seconds gauge",
+                "application_metrics_restored_timestamp_seconds{application=\"app1\"} 1700000000.5");
+    }
+
+    @Test
+    void handle_jvmMetrics() throws ServletException, IOException {
+
+        Map<String, String> config = new HashMap<>();
+        config.put(MetricsConfiguration.JETTY, "false");
+        config.put(MetricsConfiguration.SCRAPE_CACHE, "0");
+        PrometheusMetricsHandler metricsHandler = new PrometheusMetricsHandler(new MetricsConfiguration(config));
+        TestDataProvider dataProvider = new TestDataProvider();
+        metricsHandler.setProvider(dataProvider);
+
+        StringWriter data = new StringWriter();
+        PrintWriter writer = new PrintWriter(data);
+        Mockito.when(responseMock.getWriter()).thenReturn(writer);
+        metricsHandler.handle("/metrics", baseRequestMock, null, responseMock);
+
+        String[] lines = data.toString().split("\n");
+        Assertions.assertThat(lines).contains("# TYPE jvm_memory_used_bytes gauge", "# TYPE jvm_gc_collection_seconds summary", "# TYPE jvm_classes_loaded_total counter");
+        Assertions.assertThat(lines).anyMatch(line -> line.matches("jvm_memory_used_bytes\\{area=\"heap\"} [0-9]+"));
+        Assertions.assertThat(lines).anyMatch(line -> line.matches("jvm_threads_current [0-9]+"));
+        Assertions.assertThat(lines).noneMatch(line -> line.startsWith("jetty_"));
+    }
+
+    @Test
+    void appendSeconds() {
+        long[] values = {0, 1, 10, 999_999, 1_000_000, 1_000_001, 1_500_000, 12_345_678, 100_000_050};
+        for (long value : values) {
+            StringBuilder builder = new StringBuilder();
+            new ExpositionWriter(builder, false).sample("x", null).seconds(value);
+            Assertions.assertThat(builder.toString()).isEqualTo("x " + toSeconds(value) + "\n");
+        }
+        StringBuilder builder = new StringBuilder();
+        new ExpositionWriter(builder, false).sample("x", null).seconds(1_500_000);
+        Assertions.assertThat(builder.toString()).isEqualTo("x 1.5\n");
+    }
+
+    @Test
+    void handle_endpointRemoved() throws ServletException, IOException {
+        // Endpoint listed but the deployment is undeployed before the metrics are retrieved.
+        PrometheusMetricsHandler metricsHandler = new PrometheusMetricsHandler();
+        TestDataProvider dataProvider = new TestDataProvider();
+        metricsHandler.setProvider(dataProvider);
+
+        dataProvider.addData("app1", "endpoint1", null);
+        dataProvider.addData("app1", "endpoint2", percentiles(0));
+
+        StringWriter data = new StringWriter();
+        PrintWriter writer = new PrintWriter(data);
+        Mockito.when(responseMock.getWriter()).thenReturn(writer);
+        metricsHandler.handle("/metrics", baseRequestMock, null, responseMock);
+
+        String[] lines = data.toString().split("\n");
+        Assertions.assertThat(lines).noneMatch(line -> line.contains("endpoint1"));
+        Assertions.assertThat(lines).anyMatch(line -> line.contains("endpoint=\"endpoint2\""));
+    }
+
+    /**
+     * Expected representation of the value in microseconds as seconds.
+     */
+    private static String toSeconds(long micros) {
+        return BigDecimal.valueOf(micros, 6).stripTrailingZeros().toPlainString();
+    }
+
     private static Percentiles percentiles(long shift) {
         long[] data = new long[100];
         for (int i = 0; i < 100; i++) {
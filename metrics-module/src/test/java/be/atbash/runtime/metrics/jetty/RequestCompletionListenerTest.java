@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jetty;
+
+import be.atbash.runtime.core.data.deployment.AbstractDeployment;
+import be.atbash.runtime.metrics.RequestMetricsPump;
+import org.assertj.core.api.Assertions;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+class RequestCompletionListenerTest {
+
+    @Mock
+    private Request requestMock;
+
+    @Mock
+    private Response responseMock;
+
+    private final RequestMetricsPump metricsPump = new RequestMetricsPump();
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    @BeforeEach
+    void setup() {
+        metricsPump.registerApplication(new TestDeployment("JUnit", "/root"));
+        Mockito.lenient().doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(requestMock).setAttribute(Mockito.anyString(), Mockito.any());
+        Mockito.lenient().when(requestMock.getAttribute(Mockito.anyString()))
+                .thenAnswer(invocation -> attributes.get(invocation.<String>getArgument(0)));
+    }
+
+    @Test
+    void requestNotProcessedByJAXRS() {
+        RequestCompletionListener listener = new RequestCompletionListener(metricsPump);
+        Mockito.when(requestMock.getRequestURI()).thenReturn("/root/index.html");
+        Mockito.when(requestMock.getResponse()).thenReturn(responseMock);
+        Mockito.when(responseMock.getStatus()).thenReturn(200);
+
+        listener.onRequestBegin(requestMock);
+        Assertions.assertThat(metricsPump.getInFlightRequests()).containsEntry("JUnit", 1L);
+
+        listener.onComplete(requestMock);
+        Assertions.assertThat(metricsPump.getInFlightRequests()).containsEntry("JUnit", 0L);
+        Assertions.assertThat(metricsPump.getEndpointStatusCounts("JUnit", "/*")).containsExactly(Map.entry("2xx", 1L));
+    }
+
+    @Test
+    void requestProcessedByJAXRS() {
+        RequestCompletionListener listener = new RequestCompletionListener(metricsPump);
+        Mockito.when(requestMock.getRequestURI()).thenReturn("/root/api/hello");
+
+        listener.onRequestBegin(requestMock);
+        attributes.put(RequestCompletionListener.REQUEST_RECORDED, Boolean.TRUE);
+        listener.onComplete(requestMock);
+
+        Assertions.assertThat(metricsPump.getInFlightRequests()).containsEntry("JUnit", 0L);
+        // Status is recorded by the JAX-RS listener
+        Assertions.assertThat(metricsPump.getEndpointStatusCounts("JUnit", "/*")).isEmpty();
+    }
+
+    @Test
+    void requestOutsideDeployment() {
+        RequestCompletionListener listener = new RequestCompletionListener(metricsPump);
+        Mockito.when(requestMock.getRequestURI()).thenReturn("/metrics");
+
+        listener.onRequestBegin(requestMock);
+        listener.onComplete(requestMock);
+
+        Assertions.assertThat(metricsPump.getInFlightRequests()).containsEntry("JUnit", 0L);
+        Assertions.assertThat(metricsPump.listEndpoints("JUnit")).isEmpty();
+    }
+
+    private static class TestDeployment extends AbstractDeployment {
+
+        TestDeployment(String deploymentName, String contextRoot) {
+            super(deploymentName, contextRoot, new HashMap<>());
+        }
+    }
+}
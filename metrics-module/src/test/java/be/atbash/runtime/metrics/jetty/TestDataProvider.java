@@ -16,8 +16,12 @@
 package be.atbash.runtime.metrics.jetty;
 
 import be.atbash.runtime.metrics.MetricsDataProvider;
+import be.atbash.runtime.metrics.RequestPhase;
+import be.atbash.runtime.metrics.collector.HistogramData;
 import be.atbash.runtime.metrics.collector.Percentiles;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 
 public class TestDataProvider implements MetricsDataProvider {
@@ -28,6 +32,21 @@ public class TestDataProvider implements MetricsDataProvider {
 
     private final Map<String, Percentiles> allPercentiles = new HashMap<>();
 
+    private final List<Duration> windows = new ArrayList<>();
+
+    private final Map<String, Percentiles> windowPercentiles = new HashMap<>();
+
+    private final Map<String, Percentiles> phasePercentiles = new HashMap<>();
+
+    private final Map<String, HistogramData> histograms = new HashMap<>();
+
+    private final Map<String, Map<String, Long>> statusCounts = new HashMap<>();
+
+    private final Map<String, Map<String, Long>> exceptionCounts = new HashMap<>();
+
+    private final Map<String, Long> inFlightRequests = new TreeMap<>();
+    private final Map<String, Instant> restoredDeployments = new TreeMap<>();
+
     public void addData(String name, String endpoint, Percentiles percentiles) {
         deployments.add(name);
         List<String> endpoints = allEndpoints.computeIfAbsent(name, (k) -> new ArrayList<>());
@@ -35,6 +54,37 @@ public class TestDataProvider implements MetricsDataProvider {
         allPercentiles.put(getKey(name, endpoint), percentiles);
     }
 
+    public void addWindowData(String name, String endpoint, Duration window, Percentiles percentiles) {
+        if (!windows.contains(window)) {
+            windows.add(window);
+        }
+        windowPercentiles.put(getKey(name, endpoint) + "-" + window, percentiles);
+    }
+
+    public void addPhaseData(String name, String endpoint, RequestPhase phase, Percentiles percentiles) {
+        phasePercentiles.put(getKey(name, endpoint) + "-" + phase, percentiles);
+    }
+
+    public void addHistogramData(String name, String endpoint, HistogramData histogramData) {
+        histograms.put(getKey(name, endpoint), histogramData);
+    }
+
+    public void addStatusData(String name, String endpoint, Map<String, Long> counts) {
+        statusCounts.put(getKey(name, endpoint), counts);
+    }
+
+    public void addExceptionData(String name, String endpoint, Map<String, Long> counts) {
+        exceptionCounts.put(getKey(name, endpoint), counts);
+    }
+
+    public void addInFlightData(String name, long count) {
+        inFlightRequests.put(name, count);
+    }
+
+    public void addRestoredData(String name, Instant timestamp) {
+        restoredDeployments.put(name, timestamp);
+    }
+
     private static String getKey(String name, String endpoint) {
         return name + "-" + endpoint;
     }
@@ -55,4 +105,49 @@ public class TestDataProvider implements MetricsDataProvider {
     public Percentiles getEndpointMetrics(String deploymentName, String endpointPath) {
         return allPercentiles.get(getKey(deploymentName, endpointPath));
     }
+
+    @Override
+    public Percentiles getEndpointPhaseMetrics(String deploymentName, String endpointPath, RequestPhase phase) {
+        return phasePercentiles.get(getKey(deploymentName, endpointPath) + "-" + phase);
+    }
+
+    @Override
+    public List<Duration> getWindows() {
+        return windows;
+    }
+
+    @Override
+    public Percentiles getEndpointMetrics(String deploymentName, String endpointPath, Duration window) {
+        return windowPercentiles.get(getKey(deploymentName, endpointPath) + "-" + window);
+    }
+
+    @Override
+    public HistogramData getEndpointHistogram(String deploymentName, String endpointPath) {
+        return histograms.get(getKey(deploymentName, endpointPath));
+    }
+
+    @Override
+    public Map<String, Long> getEndpointStatusCounts(String deploymentName, String endpointPath) {
+        return statusCounts.getOrDefault(getKey(deploymentName, endpointPath), Collections.emptyMap());
+    }
+
+    @Override
+    public Map<String, Long> getEndpointExceptionCounts(String deploymentName, String endpointPath) {
+        return exceptionCounts.getOrDefault(getKey(deploymentName, endpointPath), Collections.emptyMap());
+    }
+
+    @Override
+    public Map<String, Long> getInFlightRequests() {
+        return inFlightRequests;
+    }
+
+    @Override
+    public Map<String, Instant> getRestoredDeployments() {
+        return restoredDeployments;
+    }
+
+    @Override
+    public HistogramData getRestoredHistogram(String deploymentName, String endpointPath) {
+        return null;
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jetty;
+
+import be.atbash.runtime.core.data.deployment.AbstractDeployment;
+import be.atbash.runtime.metrics.RequestMetricsPump;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletMapping;
+import org.assertj.core.api.Assertions;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+class WebAppMetricsHandlerTest {
+
+    @Mock
+    private Request baseRequestMock;
+
+    @Mock
+    private Response responseMock;
+
+    @Mock
+    private HttpServletMapping mappingMock;
+
+    @Mock
+    private AsyncContext asyncContextMock;
+
+    private final RequestMetricsPump metricsPump = new RequestMetricsPump();
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    @BeforeEach
+    void setup() {
+        metricsPump.registerApplication(new TestDeployment("JUnit", "/root"));
+        Mockito.lenient().doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(baseRequestMock).setAttribute(Mockito.anyString(), Mockito.any());
+        Mockito.lenient().when(baseRequestMock.getAttribute(Mockito.anyString()))
+                .thenAnswer(invocation -> attributes.get(invocation.<String>getArgument(0)));
+        Mockito.lenient().when(baseRequestMock.getHttpServletMapping()).thenReturn(mappingMock);
+        Mockito.lenient().when(baseRequestMock.getMethod()).thenReturn("GET");
+        Mockito.lenient().when(baseRequestMock.getResponse()).thenReturn(responseMock);
+    }
+
+    @Test
+    void handle() throws ServletException, IOException {
+        WebAppMetricsHandler handler = new WebAppMetricsHandler(metricsPump, "JUnit");
+        Mockito.when(mappingMock.getPattern()).thenReturn("/hello/*");
+        Mockito.when(responseMock.getStatus()).thenReturn(200);
+
+        handler.handle("/root/hello/world", baseRequestMock, baseRequestMock, null);
+        attributes.clear();  // Next request
+        handler.handle("/root/hello/there", baseRequestMock, baseRequestMock, null);
+
+        Assertions.assertThat(metricsPump.listEndpoints("JUnit")).containsExactlyInAnyOrder("/*", "GET /hello/*");
+        Assertions.assertThat(metricsPump.getEndpointMetrics("JUnit", "GET /hello/*").getCount()).isEqualTo(2);
+        Assertions.assertThat(metricsPump.getEndpointStatusCounts("JUnit", "GET /hello/*")).containsExactly(Map.entry("2xx", 2L));
+        Assertions.assertThat(attributes).containsKey(RequestCompletionListener.REQUEST_RECORDED);
+    }
+
+    @Test
+    void handle_defaultServlet() throws ServletException, IOException {
+        WebAppMetricsHandler handler = new WebAppMetricsHandler(metricsPump, "JUnit");
+        Mockito.when(mappingMock.getPattern()).thenReturn("/");
+        Mockito.when(responseMock.getStatus()).thenReturn(404);
+
+        handler.handle("/root/index.html", baseRequestMock, baseRequestMock, null);
+
+        Assertions.assertThat(metricsPump.getEndpointStatusCounts("JUnit", "GET /")).containsExactly(Map.entry("4xx", 1L));
+    }
+
+    @Test
+    void handle_recordedByJAXRS() throws ServletException, IOException {
+        WebAppMetricsHandler handler = new WebAppMetricsHandler(metricsPump, "JUnit");
+        attributes.put(RequestCompletionListener.REQUEST_RECORDED, Boolean.TRUE);
+
+        handler.handle("/root/api/hello", baseRequestMock, baseRequestMock, null);
+
+        Assertions.assertThat(metricsPump.listEndpoints("JUnit")).isEmpty();
+    }
+
+    @Test
+    void handle_async() throws ServletException, IOException {
+        WebAppMetricsHandler handler = new WebAppMetricsHandler(metricsPump, "JUnit");
+        Mockito.when(mappingMock.getPattern()).thenReturn("/async");
+        Mockito.when(responseMock.getStatus()).thenReturn(200);
+        Mockito.when(baseRequestMock.isAsyncStarted()).thenReturn(true);
+        Mockito.when(baseRequestMock.getAsyncContext()).thenReturn(asyncContextMock);
+
+        handler.handle("/root/async", baseRequestMock, baseRequestMock, null);
+        // Dispatch after the async processing, must not record nor add a second listener.
+        handler.handle("/root/async", baseRequestMock, baseRequestMock, null);
+
+        Assertions.assertThat(metricsPump.listEndpoints("JUnit")).isEmpty();
+
+        ArgumentCaptor<AsyncListener> listenerCaptor = ArgumentCaptor.forClass(AsyncListener.class);
+        Mockito.verify(asyncContextMock).addListener(listenerCaptor.capture());
+        listenerCaptor.getValue().onComplete(new AsyncEvent(asyncContextMock));
+
+        Assertions.assertThat(metricsPump.getEndpointStatusCounts("JUnit", "GET /async")).containsExactly(Map.entry("2xx", 1L));
+    }
+
+    private static class TestDeployment extends AbstractDeployment {
+
+        TestDeployment(String deploymentName, String contextRoot) {
+            super(deploymentName, contextRoot, new HashMap<>());
+        }
+    }
+}
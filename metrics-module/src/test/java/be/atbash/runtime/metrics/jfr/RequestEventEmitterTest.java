@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.jfr;
+
+import be.atbash.runtime.core.data.deployment.AbstractDeployment;
+import be.atbash.runtime.metrics.MetricsConfiguration;
+import be.atbash.runtime.metrics.RequestMetricsPump;
+import be.atbash.runtime.metrics.jaxrs.RequestMetricsData;
+import jakarta.ws.rs.core.UriInfo;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+class RequestEventEmitterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void slowRequest() throws IOException {
+        Map<String, String> config = new HashMap<>();
+        config.put(MetricsConfiguration.JFR_THRESHOLD, "10");
+        config.put(MetricsConfiguration.JFR_THRESHOLD + ".JUnit./fast", "-1");
+        RequestMetricsPump pump = new RequestMetricsPump(new MetricsConfiguration(config));
+        pump.registerApplication(new TestDeployment("JUnit", "/root"));
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(RequestEvent.NAME);
+            recording.start();
+
+            pump.offer("JUnit", "GET /slow", "GET", 20_000_000L, 200, handleRequest(20));
+            pump.offer("JUnit", "GET /slow", "GET", 5_000_000L, 200, handleRequest(5));  // Below threshold
+            pump.offer("JUnit", "GET /fast", "GET", 20_000_000L, 200, handleRequest(20));  // Disabled for endpoint
+
+            events = stopRecording(recording);
+        }
+
+        Assertions.assertThat(events).hasSize(1);
+        RecordedEvent event = events.get(0);
+        Assertions.assertThat(event.getString("deployment")).isEqualTo("JUnit");
+        Assertions.assertThat(event.getString("endpoint")).isEqualTo("GET /slow");
+        Assertions.assertThat(event.getString("method")).isEqualTo("GET");
+        Assertions.assertThat(event.getInt("status")).isEqualTo(200);
+        Assertions.assertThat(event.getDuration("requestTime")).isEqualTo(Duration.ofMillis(20));
+        // The event is started when the request arrives.
+        Assertions.assertThat(event.getDuration()).isGreaterThanOrEqualTo(Duration.ofMillis(20));
+    }
+
+    @Test
+    void slowRequest_jaxrs() throws IOException, InterruptedException {
+        Map<String, String> config = new HashMap<>();
+        config.put(MetricsConfiguration.JFR_THRESHOLD, "10");
+        RequestMetricsPump pump = new RequestMetricsPump(new MetricsConfiguration(config));
+        pump.registerApplication(new TestDeployment("JUnit", "/root"));
+        UriInfo uriInfoMock = Mockito.mock(UriInfo.class);
+        Mockito.when(uriInfoMock.getRequestUri()).thenReturn(URI.create("http://localhost:8080/root/slow"));
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(RequestEvent.NAME);
+            recording.start();
+
+            RequestMetricsData metricsData = new RequestMetricsData(uriInfoMock, "GET");
+            metricsData.resourceMethodStart();
+            Thread.sleep(20);
+            metricsData.resourceMethodFinished();
+            metricsData.setMethodAndPath("GET /slow");
+            metricsData.setStatus(200);
+            metricsData.stop();
+            pump.offer(metricsData);
+
+            events = stopRecording(recording);
+        }
+
+        Assertions.assertThat(events).hasSize(1);
+        RecordedEvent event = events.get(0);
+        Assertions.assertThat(event.getString("endpoint")).isEqualTo("GET /slow");
+        Assertions.assertThat(event.getDuration()).isGreaterThanOrEqualTo(Duration.ofMillis(20));
+        Assertions.assertThat(event.getDuration("resourceTime")).isGreaterThanOrEqualTo(Duration.ofMillis(20));
+    }
+
+    @Test
+    void begin_notRecorded() {
+        Assertions.assertThat(RequestEventEmitter.begin()).isNull();
+        Assertions.assertThat(RequestEventEmitter.end(null)).isNull();
+    }
+
+    private static RequestEvent handleRequest(long millis) {
+        RequestEvent event = RequestEventEmitter.begin();
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return RequestEventEmitter.end(event);
+    }
+
+    private List<RecordedEvent> stopRecording(Recording recording) throws IOException {
+        recording.stop();
+        Path file = tempDir.resolve("recording.jfr");
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(e -> RequestEvent.NAME.equals(e.getEventType().getName()))
+                .collect(Collectors.toList());
+    }
+
+    private static class TestDeployment extends AbstractDeployment {
+
+        TestDeployment(String deploymentName, String contextRoot) {
+            super(deploymentName, contextRoot, new HashMap<>());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.push;
+
+import be.atbash.runtime.core.data.deployment.AbstractDeployment;
+import be.atbash.runtime.metrics.MetricsConfiguration;
+import be.atbash.runtime.metrics.RequestMetricsPump;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class MetricsPusherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void push_delta() {
+        RequestMetricsPump pump = histogramPump();
+        TestSink sink = new TestSink();
+        MetricsPusher pusher = new MetricsPusher(pump, List.of(sink), 10, 100, "JUnit");
+
+        for (int i = 0; i < 10; i++) {
+            pump.offer("app", "GET /hello", "GET", 2_000_000L, 200, null);
+        }
+        pusher.push();
+
+        Assertions.assertThat(sink.documents).hasSize(1);
+        String document = sink.documents.get(0);
+        Assertions.assertThat(document).startsWith("{\"resourceMetrics\":[{\"resource\":{\"attributes\":[{\"key\":\"service.name\",\"value\":{\"stringValue\":\"JUnit\"}}]}");
+        Assertions.assertThat(document).contains("\"name\":\"http.server.request.duration\",\"unit\":\"s\",\"histogram\":{\"aggregationTemporality\":1");
+        Assertions.assertThat(document).contains("{\"key\":\"endpoint\",\"value\":{\"stringValue\":\"GET /hello\"}}");
+        Assertions.assertThat(document).contains("\"count\":\"10\",\"sum\":0.02,");
+        Assertions.assertThat(document).contains("\"explicitBounds\":[0.001,0.005,0.01,");
+        Assertions.assertThat(document).contains("{\"key\":\"status\",\"value\":{\"stringValue\":\"2xx\"}}],");
+        Assertions.assertThat(document).endsWith("]}]}]}");
+
+        // No new requests, only the in-flight gauge.
+        pusher.push();
+        Assertions.assertThat(sink.documents).hasSize(2);
+        Assertions.assertThat(sink.documents.get(1)).doesNotContain("http.server.request.duration", "http.server.requests\"");
+
+        pump.offer("app", "GET /hello", "GET", 2_000_000L, 500, null);
+        pusher.push();
+        Assertions.assertThat(sink.documents.get(2)).contains("\"count\":\"1\",\"sum\":0.002,");
+        Assertions.assertThat(sink.documents.get(2)).contains("{\"key\":\"status\",\"value\":{\"stringValue\":\"5xx\"}}],");
+        Assertions.assertThat(sink.documents.get(2)).doesNotContain("\"stringValue\":\"2xx\"");
+    }
+
+    @Test
+    void push_retryInBatch() {
+        RequestMetricsPump pump = histogramPump();
+        TestSink sink = new TestSink();
+        sink.failures = 2;
+        MetricsPusher pusher = new MetricsPusher(pump, List.of(sink), 2, 100, "JUnit");
+
+        pump.offer("app", "GET /hello", "GET", 1_000_000L, 200, null);
+        pusher.push();
+        pump.offer("app", "GET /hello", "GET", 1_000_000L, 200, null);
+        pusher.push();
+        Assertions.assertThat(sink.documents).isEmpty();
+
+        pump.offer("app", "GET /hello", "GET", 1_000_000L, 200, null);
+        pusher.push();
+        // 3 collections with a batch size of 2
+        Assertions.assertThat(sink.documents).hasSize(2);
+        Assertions.assertThat(sink.documents.get(0).split("\"name\":\"http.server.request.duration\"")).hasSize(3);
+        Assertions.assertThat(sink.documents.get(1).split("\"name\":\"http.server.request.duration\"")).hasSize(2);
+        Assertions.assertThat(pusher.getDroppedCount()).isEqualTo(0);
+    }
+
+    @Test
+    void push_boundedBuffer() {
+        RequestMetricsPump pump = histogramPump();
+        TestSink sink = new TestSink();
+        sink.failures = Integer.MAX_VALUE;
+        MetricsPusher pusher = new MetricsPusher(pump, List.of(sink), 10, 2, "JUnit");
+
+        for (int i = 0; i < 5; i++) {
+            pusher.push();
+        }
+
+        Assertions.assertThat(pusher.getDroppedCount()).isEqualTo(3);
+    }
+
+    @Test
+    void push_file() throws IOException {
+        RequestMetricsPump pump = histogramPump();
+        Path file = tempDir.resolve("metrics/push.json");
+        MetricsPusher pusher = new MetricsPusher(pump, List.of(new FilePushSink(file)), 10, 100, "JUnit");
+
+        pump.offer("app", "GET /hello", "GET", 1_000_000L, 200, null);
+        pusher.push();
+        pusher.stop();
+
+        List<String> lines = Files.readAllLines(file);
+        Assertions.assertThat(lines).hasSize(2);
+        Assertions.assertThat(lines.get(0)).contains("http.server.request.duration");
+    }
+
+    @Test
+    void push_restoredNotPushedAgain() {
+        RequestMetricsPump previousPump = histogramPump();
+        for (int i = 0; i < 10; i++) {
+            previousPump.offer("app", "GET /hello", "GET", 2_000_000L, 200, null);
+        }
+
+        // Restart with the snapshot of the previous process, that already pushed its data.
+        Map<String, String> config = new HashMap<>();
+        config.put(MetricsConfiguration.COLLECTOR, MetricsConfiguration.COLLECTOR_HISTOGRAM);
+        RequestMetricsPump pump = new RequestMetricsPump(new MetricsConfiguration(config));
+        pump.restore(previousPump.createSnapshot());
+        TestSink sink = new TestSink();
+        MetricsPusher pusher = new MetricsPusher(pump, List.of(sink), 10, 100, "JUnit");
+        pump.registerApplication(new TestDeployment("app", "/app"));
+
+        pump.offer("app", "GET /hello", "GET", 2_000_000L, 200, null);
+        pusher.push();
+
+        Assertions.assertThat(sink.documents.get(0)).contains("\"count\":\"1\",\"sum\":0.002,");
+        Assertions.assertThat(sink.documents.get(0)).doesNotContain("\"count\":\"11\"");
+    }
+
+    @Test
+    void push_summaryWithoutSum() {
+        RequestMetricsPump pump = new RequestMetricsPump();
+        pump.registerApplication(new TestDeployment("app", "/app"));
+        TestSink sink = new TestSink();
+        MetricsPusher pusher = new MetricsPusher(pump, List.of(sink), 10, 100, "JUnit");
+
+        pump.offer("app", "GET /hello", "GET", 2_000_000L, 200, null);
+        pusher.push();
+
+        Assertions.assertThat(sink.documents.get(0)).contains("\"summary\":", "\"count\":\"1\",\"quantileValues\":[");
+        Assertions.assertThat(sink.documents.get(0)).doesNotContain("\"sum\":0,");
+    }
+
+    private static RequestMetricsPump histogramPump() {
+        Map<String, String> config = new HashMap<>();
+        config.put(MetricsConfiguration.COLLECTOR, MetricsConfiguration.COLLECTOR_HISTOGRAM);
+        RequestMetricsPump pump = new RequestMetricsPump(new MetricsConfiguration(config));
+        pump.registerApplication(new TestDeployment("app", "/app"));
+        return pump;
+    }
+
+    private static class TestSink implements PushSink {
+
+        private final List<String> documents = new ArrayList<>();
+        private int failures;
+
+        @Override
+        public void send(String document) throws IOException {
+            if (failures > 0) {
+                failures--;
+                throw new IOException("Unavailable");
+            }
+            documents.add(document);
+        }
+
+        @Override
+        public String describe() {
+            return "test";
+        }
+    }
+
+    private static class TestDeployment extends AbstractDeployment {
+
+        TestDeployment(String deploymentName, String contextRoot) {
+            super(deploymentName, contextRoot, new HashMap<>());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021-2023 Rudy De Busscher (https://www.atbash.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package be.atbash.runtime.metrics.snapshot;
+
+import be.atbash.runtime.core.data.deployment.AbstractDeployment;
+import be.atbash.runtime.metrics.MetricsConfiguration;
+import be.atbash.runtime.metrics.RequestMetricsPump;
+import be.atbash.runtime.metrics.collector.Percentiles;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+class MetricsSnapshotFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeAndRestore() throws IOException {
+        RequestMetricsPump pump = new RequestMetricsPump(histogramConfiguration());
+        pump.registerApplication(new TestDeployment("JUnit", "/root"));
+        for (int i = 1; i <= 100; i++) {
+            pump.offer("JUnit", "GET /hello", "GET", i * 1_000_000L, 200, null);
+        }
+        Percentiles expected = pump.getEndpointMetrics("JUnit", "GET /hello");
+
+        MetricsSnapshotFile snapshotFile = new MetricsSnapshotFile(tempDir.resolve("metrics.snapshot"));
+        MetricsSnapshot snapshot = pump.createSnapshot();
+        snapshotFile.write(snapshot);
+
+        RequestMetricsPump restoredPump = new RequestMetricsPump(histogramConfiguration());
+        restoredPump.restore(snapshotFile.read());
+        Assertions.assertThat(restoredPump.getRestoredDeployments()).isEmpty();
+
+        restoredPump.registerApplication(new TestDeployment("JUnit", "/root"));
+
+        Percentiles restored = restoredPump.getEndpointMetrics("JUnit", "GET /hello");
+        Assertions.assertThat(restored.getCount()).isEqualTo(100);
+        Assertions.assertThat(restored.getValueP50()).isEqualTo(expected.getValueP50());
+        Assertions.assertThat(restored.getValueP99()).isEqualTo(expected.getValueP99());
+        Assertions.assertThat(restoredPump.getEndpointMetrics("JUnit", RequestMetricsPump.ALL_ENDPOINTS).getCount()).isEqualTo(100);
+        Assertions.assertThat(restoredPump.getEndpointHistogram("JUnit", "GET /hello").getSum())
+                .isEqualTo(pump.getEndpointHistogram("JUnit", "GET /hello").getSum());
+        Assertions.assertThat(restoredPump.getRestoredDeployments()).containsEntry("JUnit", snapshot.getTimestamp());
+    }
+
+    @Test
+    void createSnapshot_keepsPendingDeployments() throws IOException {
+        RequestMetricsPump pump = new RequestMetricsPump(histogramConfiguration());
+        pump.registerApplication(new TestDeployment("JUnit", "/root"));
+        pump.offer("JUnit", "GET /hello", "GET", 1_000_000L, 200, null);
+
+        RequestMetricsPump restoredPump = new RequestMetricsPump(histogramConfiguration());
+        restoredPump.restore(pump.createSnapshot());
+
+        // Deployment not yet active, the data must be part of the next snapshot.
+        MetricsSnapshot snapshot = restoredPump.createSnapshot();
+        Assertions.assertThat(snapshot.getEndpoints()).extracting(EndpointSnapshot::getEndpoint)
+                .containsExactlyInAnyOrder("GET /hello", RequestMetricsPump.ALL_ENDPOINTS);
+    }
+
+    @Test
+    void read_noFile() throws IOException {
+        MetricsSnapshotFile snapshotFile = new MetricsSnapshotFile(tempDir.resolve("metrics.snapshot"));
+        Assertions.assertThat(snapshotFile.read()).isNull();
+    }
+
+    @Test
+    void read_invalidFile() throws IOException {
+        Path file = tempDir.resolve("metrics.snapshot");
+        Files.writeString(file, "Not a snapshot");
+        MetricsSnapshotFile snapshotFile = new MetricsSnapshotFile(file);
+        Assertions.assertThatThrownBy(snapshotFile::read).isInstanceOf(IOException.class);
+    }
+
+    private static MetricsConfiguration histogramConfiguration() {
+        Map<String, String> config = new HashMap<>();
+        config.put(MetricsConfiguration.COLLECTOR, MetricsConfiguration.COLLECTOR_HISTOGRAM);
+        return new MetricsConfiguration(config);
+    }
+
+    private static class TestDeployment extends AbstractDeployment {
+
+        TestDeployment(String deploymentName, String contextRoot) {
+            super(deploymentName, contextRoot, new HashMap<>());
+        }
+    }
+}